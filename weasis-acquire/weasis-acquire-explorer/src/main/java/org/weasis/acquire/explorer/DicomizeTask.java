@@ -14,6 +14,11 @@ import java.io.File;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.SwingWorker;
 
@@ -21,14 +26,20 @@ import org.dcm4che3.util.UIDUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.acquire.explorer.dicom.Transform2Dicom;
+import org.weasis.acquire.explorer.dicom.Transform2Dicom.Compression;
 import org.weasis.core.api.gui.util.AppProperties;
+import org.weasis.core.api.service.BundleTools;
 import org.weasis.core.api.util.FileUtil;
+import org.weasis.core.api.util.ThreadUtil;
 
 /**
  * Do the process of convert to JPEG and dicomize given image collection to a temporary folder. All the job is done
  * outside of the EDT instead of setting AcquireImageStatus change. But, full process progression can still be listened
  * with propertyChange notification of this workerTask.
  *
+ * The images are processed concurrently within a memory budget ({@link #P_MEMORY_BUDGET}). When the task is cancelled
+ * or when an image fails, the running images are stopped and the partial output is deleted.
+ *
  * @version $Rev$ $Date$
  */
 
@@ -36,10 +47,46 @@ public class DicomizeTask extends SwingWorker<File, AcquireImageInfo> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DicomizeTask.class);
 
+    /**
+     * Maximum memory in MB for the images transformed concurrently
+     */
+    public static final String P_MEMORY_BUDGET = "weasis.acquire.dicomize.memory"; //$NON-NLS-1$
+
+    /**
+     * Transformation of one image, see {@link Transform2Dicom#dicomize(AcquireImageInfo, File, File, String,
+     * Compression, int)}
+     */
+    @FunctionalInterface
+    interface ImageDicomizer {
+        boolean dicomize(AcquireImageInfo imageInfo, File exportDirDicom, File exportDirImage, String seriesInstanceUID,
+            Compression compression, int jpegQuality);
+    }
+
     private final Collection<AcquireImageInfo> toDicomize;
+    private final ImageDicomizer dicomizer;
+    private final int memoryBudget;
+    private final Compression compression;
 
     public DicomizeTask(Collection<AcquireImageInfo> toDicomize) {
+        this(toDicomize, Transform2Dicom::dicomize, getMemoryBudget(), Transform2Dicom.getDefaultCompression());
+    }
+
+    /**
+     * @param toDicomize
+     *            the images
+     * @param dicomizer
+     *            the transformation of each image
+     * @param memoryBudget
+     *            the maximum memory in MB for the images transformed concurrently
+     * @param compression
+     *            the encoding of the modified images
+     */
+    DicomizeTask(Collection<AcquireImageInfo> toDicomize, ImageDicomizer dicomizer, int memoryBudget,
+        Compression compression) {
         this.toDicomize = Objects.requireNonNull(toDicomize);
+        this.dicomizer = Objects.requireNonNull(dicomizer);
+        this.memoryBudget = Math.max(1, memoryBudget);
+        this.compression = Objects.requireNonNull(compression);
     }
 
     @Override
@@ -53,30 +100,88 @@ public class DicomizeTask extends SwingWorker<File, AcquireImageInfo> {
         final int nbImageToProcess = toDicomize.size();
         int nbImageProcessed = 0;
 
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        ExecutorService executor = ThreadUtil.buildNewFixedThreadExecutor(threads, "Dicomize"); //$NON-NLS-1$
+        boolean success = false;
         try {
             Transform2Dicom.buildStudySeriesDate(toDicomize, AcquireManager.GLOBAL);
 
             String seriesInstanceUID = UIDUtils.createUID(); // Global series for all PR
+            int jpegQuality = Transform2Dicom.getDefaultJpegQuality();
 
+            // The permits are in MB
+            int budget = memoryBudget;
+            Semaphore memory = new Semaphore(budget);
+            CompletionService<Boolean> completion = new ExecutorCompletionService<>(executor);
             for (AcquireImageInfo imageInfo : toDicomize) {
-                if (!Transform2Dicom.dicomize(imageInfo, exportDirDicom, exportDirImage, seriesInstanceUID)) {
-                    FileUtil.recursiveDelete(exportDirDicom);
+                int cost = (int) Math.max(1, Math.min(budget, Transform2Dicom.getMemoryEstimate(imageInfo) >> 20));
+                completion.submit(() -> {
+                    memory.acquire(cost);
+                    try {
+                        if (isCancelled()) {
+                            return Boolean.FALSE;
+                        }
+                        boolean done = dicomizer.dicomize(imageInfo, exportDirDicom, exportDirImage,
+                            seriesInstanceUID, compression, jpegQuality);
+                        if (done) {
+                            publish(imageInfo);
+                        }
+                        return done;
+                    } finally {
+                        memory.release(cost);
+                    }
+                });
+            }
+
+            for (int i = 0; i < nbImageToProcess; i++) {
+                if (!completion.take().get()) {
                     return null;
                 }
                 setProgress(++nbImageProcessed * 100 / nbImageToProcess);
-                publish(imageInfo);
             }
+            success = true;
+        } catch (InterruptedException e) {
+            LOGGER.info("Dicomize process has been cancelled"); //$NON-NLS-1$
+            Thread.currentThread().interrupt();
+            return null;
         } catch (Exception ex) {
             LOGGER.error("Dicomize process", ex); //$NON-NLS-1$
-            FileUtil.recursiveDelete(exportDirDicom);
             return null;
         } finally {
+            shutdown(executor);
+            if (!success) {
+                FileUtil.recursiveDelete(exportDirDicom);
+            }
             FileUtil.recursiveDelete(exportDirImage);
         }
 
         return exportDirDicom;
     }
 
+    private static int getMemoryBudget() {
+        int defaultBudget = (int) Math.max(64, Runtime.getRuntime().maxMemory() / 4 >> 20);
+        return Math.max(64, BundleTools.SYSTEM_PREFERENCES.getIntProperty(P_MEMORY_BUDGET, defaultBudget));
+    }
+
+    /**
+     * Stop the running images and wait for them before deleting the partial output.
+     */
+    private static void shutdown(ExecutorService executor) {
+        executor.shutdownNow();
+        boolean interrupted = Thread.interrupted();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOGGER.warn("Dicomize threads are still running"); //$NON-NLS-1$
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     @Override
     protected void process(List<AcquireImageInfo> chunks) {
         chunks.stream().forEach(AcquireImageInfo.changeStatus(AcquireImageStatus.SUBMITTED));
@@ -56,6 +56,9 @@ public class ImportTask extends SwingWorker<List<AcquireImageInfo>, AcquireImage
         List<AcquireImageInfo> imagesToProcess = new ArrayList<>(imagesToImport.size());
 
         for (ImageElement imageElement : imagesToImport) {
+            if (isCancelled()) {
+                return imagesToProcess;
+            }
             try {
                 AcquireImageInfo imageInfo = AcquireManager.findByImage(imageElement);
                 if (imageInfo != null) {
@@ -72,7 +75,10 @@ public class ImportTask extends SwingWorker<List<AcquireImageInfo>, AcquireImage
 
     @Override
     protected void done() {
-
+        if (isCancelled()) {
+            LOGGER.info("Importing task has been cancelled"); //$NON-NLS-1$
+            return;
+        }
         try {
             AcquireManager.importImages(get(), searchedSeries, maxRangeInMinutes);
         } catch (InterruptedException doNothing) {
@@ -13,15 +13,23 @@ package org.weasis.acquire.explorer.dicom;
 import java.awt.Rectangle;
 import java.awt.geom.Point2D;
 import java.io.File;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Objects;
 import java.util.Optional;
 
 import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Fragments;
 import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
 import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomOutputStream;
 import org.dcm4che3.util.UIDUtils;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
 import org.opencv.core.MatOfInt;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.slf4j.Logger;
@@ -35,6 +43,7 @@ import org.weasis.core.api.image.util.Unit;
 import org.weasis.core.api.media.data.ImageElement;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.api.media.data.Tagable;
+import org.weasis.core.api.service.BundleTools;
 import org.weasis.core.api.util.FileUtil;
 import org.weasis.core.ui.model.GraphicModel;
 import org.weasis.dicom.codec.TagD;
@@ -49,9 +58,53 @@ public final class Transform2Dicom {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Transform2Dicom.class);
 
+    /**
+     * Encoding of the images modified by some operations. The original JPEG file is always encapsulated without
+     * re-encoding when no pixel operation applies.
+     */
+    public enum Compression {
+        JPEG_LOSSY, JPEG_2000_LOSSLESS
+    }
+
+    public static final String P_COMPRESSION = "weasis.acquire.dicomize.compression"; //$NON-NLS-1$
+    public static final String P_JPEG_QUALITY = "weasis.acquire.dicomize.jpeg.quality"; //$NON-NLS-1$
+
+    static final int J2K_MCT = 1;
+    static final int J2K_REVERSIBLE = 2;
+
+    // 12 megapixels when the size of the image is unknown
+    private static final long DEFAULT_PIXELS = 4000L * 3000L;
+
     private Transform2Dicom() {
     }
 
+    public static Compression getDefaultCompression() {
+        String val = BundleTools.SYSTEM_PREFERENCES.getProperty(P_COMPRESSION, Compression.JPEG_LOSSY.name());
+        try {
+            return Compression.valueOf(val);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Unknown compression {}, use {}", val, Compression.JPEG_LOSSY); //$NON-NLS-1$
+            return Compression.JPEG_LOSSY;
+        }
+    }
+
+    public static int getDefaultJpegQuality() {
+        return Math.max(1, Math.min(100, BundleTools.SYSTEM_PREFERENCES.getIntProperty(P_JPEG_QUALITY, 80)));
+    }
+
+    /**
+     * @param imageInfo
+     * @return the estimated memory in bytes for transforming and encoding the image (source, transformed image and
+     *         encoded data)
+     */
+    public static long getMemoryEstimate(AcquireImageInfo imageInfo) {
+        ImageElement imageElement = imageInfo.getImage();
+        Integer width = (Integer) imageElement.getTagValue(TagW.ImageWidth);
+        Integer height = (Integer) imageElement.getTagValue(TagW.ImageHeight);
+        long pixels = width == null || height == null ? DEFAULT_PIXELS : (long) width * height;
+        return pixels * 3L * 3L;
+    }
+
     /**
      * Do the encoding of the given image in a standard lossy JPEG format with optionally doing some pre-processing
      * operations (like resize, flip, crop, zoom, contrast ...) if any postProcessOperation have been set in the
@@ -70,9 +123,32 @@ public final class Transform2Dicom {
 
     public static boolean dicomize(AcquireImageInfo imageInfo, File exportDirDicom, File exportDirImage,
         String seriesInstanceUID) {
+        return dicomize(imageInfo, exportDirDicom, exportDirImage, seriesInstanceUID, getDefaultCompression(),
+            getDefaultJpegQuality());
+    }
+
+    /**
+     * Same as {@link #dicomize(AcquireImageInfo, File, File, String)} with the encoding of the modified images. This
+     * method can be called concurrently for different images.
+     *
+     * @param imageInfo
+     * @param exportDirDicom
+     * @param exportDirImage
+     * @param seriesInstanceUID
+     *            Global series for all PR
+     * @param compression
+     *            the encoding of the modified images
+     * @param jpegQuality
+     *            the quality of the lossy JPEG encoding (1 to 100)
+     * @return
+     */
+    public static boolean dicomize(AcquireImageInfo imageInfo, File exportDirDicom, File exportDirImage,
+        String seriesInstanceUID, Compression compression, int jpegQuality) {
 
         ImageElement imageElement = imageInfo.getImage();
         String sopInstanceUID = Objects.requireNonNull((String) imageElement.getTagValue(TagD.getUID(Level.INSTANCE)));
+        File dcmFile = new File(exportDirDicom, sopInstanceUID);
+        Attributes attrs = null;
 
         // Transform to JPEG
         File imgFile = imageElement.getFileCache().getOriginalFile().orElse(null);
@@ -82,7 +158,11 @@ public final class Transform2Dicom {
             imgFile = new File(exportDirImage, sopInstanceUID + ".jpg"); //$NON-NLS-1$
             SimpleOpManager opManager = imageInfo.getPostProcessOpManager();
             PlanarImage transformedImage = imageElement.getImage(opManager, false);
-            
+            if (transformedImage == null) {
+                LOGGER.error("Cannot read image {}", imageElement.getName()); //$NON-NLS-1$
+                return false;
+            }
+
             // TODO should be handled in the transformation
             // Rectangle area = (Rectangle) opManager.getParamValue(CropOp.OP_NAME, CropOp.P_AREA);
             // Integer rotationAngle = Optional
@@ -93,65 +173,223 @@ public final class Transform2Dicom {
             // (float) -area.getY(), null, null);
             // }
 
-            MatOfInt map = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 80);
-            if (!ImageProcessor.writeImage(transformedImage.toImageCV(), imgFile, map)) {
-                // out of memory ??
-                FileUtil.delete(imgFile);
-                LOGGER.error("Cannot Transform to jpeg {}", imageElement.getName()); //$NON-NLS-1$
-                return false;
+            if (compression == Compression.JPEG_2000_LOSSLESS && isJpeg2000Supported(transformedImage)) {
+                attrs = buildAttributes(imageInfo);
+                try {
+                    writeJpeg2000(attrs, transformedImage.toImageCV(), dcmFile);
+                } catch (Exception e) {
+                    FileUtil.delete(dcmFile);
+                    LOGGER.error("Cannot Dicomize {}", imageElement.getName(), e); //$NON-NLS-1$
+                    return false;
+                }
+            } else {
+                MatOfInt map = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, jpegQuality);
+                if (!ImageProcessor.writeImage(transformedImage.toImageCV(), imgFile, map)) {
+                    // out of memory ??
+                    FileUtil.delete(imgFile);
+                    LOGGER.error("Cannot Transform to jpeg {}", imageElement.getName()); //$NON-NLS-1$
+                    return false;
+                }
             }
         }
 
         // Dicomize
-        if (imgFile.canRead()) {
-            Attributes attrs = imageInfo.getAttributes();
-            DicomMediaUtils.fillAttributes(AcquireManager.GLOBAL.getTagEntrySetIterator(), attrs);
-            DicomMediaUtils.fillAttributes(imageInfo.getSeries().getTagEntrySetIterator(), attrs);
-            DicomMediaUtils.fillAttributes(imageElement.getTagEntrySetIterator(), attrs);
-            // Spatial calibration
-            if (Unit.PIXEL != imageElement.getPixelSpacingUnit()) {
-                attrs.setString(Tag.PixelSpacingCalibrationDescription, VR.LO, "Used fiducial"); //$NON-NLS-1$
-                double unitRatio = imageElement.getPixelSize()
-                    * Unit.MILLIMETER.getConversionRatio(imageElement.getPixelSpacingUnit().getConvFactor());
-                attrs.setDouble(Tag.PixelSpacing, VR.DS, unitRatio, unitRatio);
+        if (attrs == null) {
+            if (!imgFile.canRead()) {
+                LOGGER.error("Cannot read JPEG image {}", imageElement.getName()); //$NON-NLS-1$
+                return false;
             }
-
+            attrs = buildAttributes(imageInfo);
             try {
-                Dicomizer.jpeg(attrs, imgFile, new File(exportDirDicom, sopInstanceUID), false);
+                Dicomizer.jpeg(attrs, imgFile, dcmFile, false);
             } catch (Exception e) {
                 LOGGER.error("Cannot Dicomize {}", imageElement.getName(), e); //$NON-NLS-1$
                 return false;
             }
+        }
 
-            // Presentation State
-            GraphicModel grModel = (GraphicModel) imageElement.getTagValue(TagW.PresentationModel);
-            if (grModel != null && grModel.hasSerializableGraphics()) {
-                Point2D offset = null;
-                Rectangle crop =
-                    (Rectangle) imageInfo.getPostProcessOpManager().getParamValue(CropOp.OP_NAME, CropOp.P_AREA);
-                if (crop != null) {
-                    Integer rotationAngle = Optional.ofNullable((Integer) imageInfo.getPostProcessOpManager()
-                        .getParamValue(RotationOp.OP_NAME, RotationOp.P_ROTATE)).orElse(0);
-                    rotationAngle = rotationAngle % 360;
-                    if (rotationAngle == 0 || rotationAngle == 180) {
-                        offset = new Point2D.Double(crop.getX(), crop.getY());
-                    } else {
-                        double factor = 2.0; // work only with 90 and 270 degrees
-                        offset = new Point2D.Double(crop.getX() * factor, crop.getY() * factor);
-                    }
+        // Presentation State
+        GraphicModel grModel = (GraphicModel) imageElement.getTagValue(TagW.PresentationModel);
+        if (grModel != null && grModel.hasSerializableGraphics()) {
+            Point2D offset = null;
+            Rectangle crop =
+                (Rectangle) imageInfo.getPostProcessOpManager().getParamValue(CropOp.OP_NAME, CropOp.P_AREA);
+            if (crop != null) {
+                Integer rotationAngle = Optional.ofNullable((Integer) imageInfo.getPostProcessOpManager()
+                    .getParamValue(RotationOp.OP_NAME, RotationOp.P_ROTATE)).orElse(0);
+                rotationAngle = rotationAngle % 360;
+                if (rotationAngle == 0 || rotationAngle == 180) {
+                    offset = new Point2D.Double(crop.getX(), crop.getY());
+                } else {
+                    double factor = 2.0; // work only with 90 and 270 degrees
+                    offset = new Point2D.Double(crop.getX() * factor, crop.getY() * factor);
                 }
-                String prUid = UIDUtils.createUID();
-                File outputFile = new File(exportDirDicom, prUid);
-                DicomPrSerializer.writePresentation(grModel, attrs, outputFile, seriesInstanceUID, prUid, offset);
             }
-        } else {
-            LOGGER.error("Cannot read JPEG image {}", imageElement.getName()); //$NON-NLS-1$
-            return false;
+            String prUid = UIDUtils.createUID();
+            File outputFile = new File(exportDirDicom, prUid);
+            DicomPrSerializer.writePresentation(grModel, attrs, outputFile, seriesInstanceUID, prUid, offset);
         }
 
         return true;
     }
 
+    private static Attributes buildAttributes(AcquireImageInfo imageInfo) {
+        ImageElement imageElement = imageInfo.getImage();
+        Attributes attrs = imageInfo.getAttributes();
+        DicomMediaUtils.fillAttributes(AcquireManager.GLOBAL.getTagEntrySetIterator(), attrs);
+        DicomMediaUtils.fillAttributes(imageInfo.getSeries().getTagEntrySetIterator(), attrs);
+        DicomMediaUtils.fillAttributes(imageElement.getTagEntrySetIterator(), attrs);
+        // Spatial calibration
+        if (Unit.PIXEL != imageElement.getPixelSpacingUnit()) {
+            attrs.setString(Tag.PixelSpacingCalibrationDescription, VR.LO, "Used fiducial"); //$NON-NLS-1$
+            double unitRatio = imageElement.getPixelSize()
+                * Unit.MILLIMETER.getConversionRatio(imageElement.getPixelSpacingUnit().getConvFactor());
+            attrs.setDouble(Tag.PixelSpacing, VR.DS, unitRatio, unitRatio);
+        }
+        return attrs;
+    }
+
+    private static boolean isJpeg2000Supported(PlanarImage img) {
+        int depth = CvType.depth(img.type());
+        int channels = img.channels();
+        return (depth == CvType.CV_8U || depth == CvType.CV_16U) && (channels == 1 || channels == 3);
+    }
+
+    private static void writeJpeg2000(Attributes attrs, Mat img, File dcmFile) throws IOException {
+        MatOfByte buf = new MatOfByte();
+        if (!Imgcodecs.imencode(".jp2", img, buf, new MatOfInt())) { //$NON-NLS-1$
+            throw new IOException("Cannot encode the image in JPEG 2000"); //$NON-NLS-1$
+        }
+        byte[] codestream = getJ2kCodestream(buf.toArray());
+        buf.release();
+        int style = codestream == null ? -1 : getJ2kCodingStyle(codestream);
+        if (style < 0) {
+            throw new IOException("Invalid JPEG 2000 codestream"); //$NON-NLS-1$
+        }
+        boolean reversible = (style & J2K_REVERSIBLE) != 0;
+        if (!reversible) {
+            LOGGER.warn("The JPEG 2000 encoder is not lossless, the image is encoded with an irreversible transform"); //$NON-NLS-1$
+        }
+
+        // The same attributes are used by the presentation state
+        if (!attrs.containsValue(Tag.SOPClassUID)) {
+            attrs.setString(Tag.SOPClassUID, VR.UI, UID.VLPhotographicImageStorage);
+        }
+
+        Attributes dcm = new Attributes(attrs);
+        int channels = img.channels();
+        int bitsAllocated = CvType.depth(img.type()) == CvType.CV_16U ? 16 : 8;
+        dcm.setInt(Tag.SamplesPerPixel, VR.US, channels);
+        if (channels == 1) {
+            dcm.setString(Tag.PhotometricInterpretation, VR.CS, "MONOCHROME2"); //$NON-NLS-1$
+        } else {
+            String pmi = "RGB"; //$NON-NLS-1$
+            if ((style & J2K_MCT) != 0) {
+                pmi = reversible ? "YBR_RCT" : "YBR_ICT"; //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            dcm.setString(Tag.PhotometricInterpretation, VR.CS, pmi);
+            dcm.setInt(Tag.PlanarConfiguration, VR.US, 0);
+        }
+        dcm.setInt(Tag.Rows, VR.US, img.rows());
+        dcm.setInt(Tag.Columns, VR.US, img.cols());
+        dcm.setInt(Tag.BitsAllocated, VR.US, bitsAllocated);
+        dcm.setInt(Tag.BitsStored, VR.US, bitsAllocated);
+        dcm.setInt(Tag.HighBit, VR.US, bitsAllocated - 1);
+        dcm.setInt(Tag.PixelRepresentation, VR.US, 0);
+        if (!reversible) {
+            dcm.setString(Tag.LossyImageCompression, VR.CS, "01"); //$NON-NLS-1$
+        }
+
+        Fragments frags = dcm.newFragments(Tag.PixelData, VR.OB, 2);
+        // Empty basic offset table
+        frags.add(new byte[0]);
+        if ((codestream.length & 1) != 0) {
+            frags.add(Arrays.copyOf(codestream, codestream.length + 1));
+        } else {
+            frags.add(codestream);
+        }
+
+        String tsuid = reversible ? UID.JPEG2000LosslessOnly : UID.JPEG2000;
+        try (DicomOutputStream out = new DicomOutputStream(dcmFile)) {
+            out.writeDataset(dcm.createFileMetaInformation(tsuid), dcm);
+        }
+    }
+
+    /**
+     * @param data
+     *            a JP2 file or a JPEG 2000 codestream
+     * @return the codestream (content of the jp2c box) or null if not found
+     */
+    static byte[] getJ2kCodestream(byte[] data) {
+        // SOC marker
+        if (data.length > 1 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0x4F) {
+            return data;
+        }
+        int pos = 0;
+        while (pos + 8 <= data.length) {
+            long length = readInt(data, pos) & 0xFFFFFFFFL;
+            int type = readInt(data, pos + 4);
+            int header = 8;
+            if (length == 1) {
+                if (pos + 16 > data.length) {
+                    return null;
+                }
+                length = ((long) readInt(data, pos + 8) << 32) | (readInt(data, pos + 12) & 0xFFFFFFFFL);
+                header = 16;
+            } else if (length == 0) {
+                length = (long) data.length - pos;
+            }
+            if (length < header || pos + length > data.length) {
+                return null;
+            }
+            // jp2c box
+            if (type == 0x6A703263) {
+                return Arrays.copyOfRange(data, pos + header, (int) (pos + length));
+            }
+            pos += (int) length;
+        }
+        return null;
+    }
+
+    /**
+     * @param codestream
+     *            the JPEG 2000 codestream
+     * @return the coding style from the COD marker ({@link #J2K_MCT} and {@link #J2K_REVERSIBLE} flags) or -1 if not
+     *         found
+     */
+    static int getJ2kCodingStyle(byte[] codestream) {
+        int pos = 2;
+        while (pos + 4 <= codestream.length) {
+            int marker = readShort(codestream, pos);
+            if ((marker & 0xFF00) != 0xFF00 || marker == 0xFF90) {
+                // Not a marker or start of tile: end of the main header
+                break;
+            }
+            int length = readShort(codestream, pos + 2);
+            if (marker == 0xFF52) {
+                // Scod, progression order, layers, MCT, decomposition levels, code-block size and style, transform
+                if (length < 12 || pos + 14 > codestream.length) {
+                    return -1;
+                }
+                int style = codestream[pos + 8] == 1 ? J2K_MCT : 0;
+                if (codestream[pos + 13] == 1) {
+                    style |= J2K_REVERSIBLE;
+                }
+                return style;
+            }
+            pos += 2 + length;
+        }
+        return -1;
+    }
+
+    private static int readInt(byte[] b, int pos) {
+        return ((b[pos] & 0xFF) << 24) | ((b[pos + 1] & 0xFF) << 16) | ((b[pos + 2] & 0xFF) << 8) | (b[pos + 3] & 0xFF);
+    }
+
+    private static int readShort(byte[] b, int pos) {
+        return ((b[pos] & 0xFF) << 8) | (b[pos + 1] & 0xFF);
+    }
+
     /**
      * Populates Date and Time for all Attributes in the imageInfo Collection with respect to the youngest. That is :
      * the first image content Date and Time would define the SerieDate and SerieTime within the current Serie, and so
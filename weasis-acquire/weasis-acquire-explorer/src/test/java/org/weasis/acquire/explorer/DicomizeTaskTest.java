@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.acquire.explorer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.weasis.acquire.explorer.DicomizeTask.ImageDicomizer;
+import org.weasis.acquire.explorer.core.bean.SeriesGroup;
+import org.weasis.acquire.explorer.dicom.Transform2Dicom;
+import org.weasis.acquire.explorer.dicom.Transform2Dicom.Compression;
+import org.weasis.acquire.test.utils.AcquireImageHelper;
+import org.weasis.core.api.media.data.ImageElement;
+import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.util.FileUtil;
+import org.weasis.dicom.codec.TagD;
+import org.weasis.dicom.codec.TagD.Level;
+
+public class DicomizeTaskTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static AcquireImageInfo mockImage(int width, int height) {
+        ImageElement image = Mockito.mock(ImageElement.class);
+        Mockito.when(image.getTagValue(TagW.ImageWidth)).thenReturn(width);
+        Mockito.when(image.getTagValue(TagW.ImageHeight)).thenReturn(height);
+        AcquireImageInfo imageInfo = Mockito.mock(AcquireImageInfo.class);
+        Mockito.when(imageInfo.getImage()).thenReturn(image);
+        Mockito.when(imageInfo.getSeries()).thenReturn(new SeriesGroup());
+        return imageInfo;
+    }
+
+    private static List<AcquireImageInfo> mockImages(int nb, int width, int height) {
+        List<AcquireImageInfo> list = new ArrayList<>(nb);
+        for (int i = 0; i < nb; i++) {
+            list.add(mockImage(width, height));
+        }
+        return list;
+    }
+
+    private static boolean writeOutput(File dir, String name) {
+        try {
+            Files.write(new File(dir, name).toPath(), new byte[] { 1, 2, 3 });
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void waitForDeletion(File dir) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 30_000;
+        while (dir.exists() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertThat(dir).doesNotExist();
+    }
+
+    @Test
+    public void testMemoryBudget() throws Exception {
+        // 1024 x 1024: 9 MB, two images at the same time in 20 MB
+        List<AcquireImageInfo> images = mockImages(8, 1024, 1024);
+        // Larger than the budget: alone
+        AcquireImageInfo large = mockImage(4000, 3000);
+        images.add(4, large);
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger runningWithLarge = new AtomicInteger();
+        AtomicInteger index = new AtomicInteger();
+        ImageDicomizer dicomizer = (imageInfo, dcmDir, imgDir, seriesUID, compression, quality) -> {
+            int n = running.incrementAndGet();
+            maxRunning.accumulateAndGet(n, Math::max);
+            try {
+                Thread.sleep(20);
+                if (imageInfo == large) {
+                    runningWithLarge.set(running.get());
+                }
+                return writeOutput(dcmDir, Integer.toString(index.incrementAndGet()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                running.decrementAndGet();
+            }
+        };
+
+        DicomizeTask task = new DicomizeTask(images, dicomizer, 20, Compression.JPEG_LOSSY);
+        task.execute();
+        File dir = task.get(30, TimeUnit.SECONDS);
+        try {
+            assertThat(dir).isDirectory();
+            assertThat(dir.list()).hasSize(images.size());
+            assertThat(maxRunning.get()).isBetween(1, 2);
+            assertThat(runningWithLarge.get()).isEqualTo(1);
+            assertThat(task.getProgress()).isEqualTo(100);
+        } finally {
+            FileUtil.recursiveDelete(dir);
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        List<AcquireImageInfo> images = mockImages(6, 100, 100);
+        AtomicReference<File> outputDir = new AtomicReference<>();
+        AtomicReference<File> imageDir = new AtomicReference<>();
+        AtomicInteger begun = new AtomicInteger();
+        AtomicInteger stopped = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch never = new CountDownLatch(1);
+        ImageDicomizer dicomizer = (imageInfo, dcmDir, imgDir, seriesUID, compression, quality) -> {
+            outputDir.set(dcmDir);
+            imageDir.set(imgDir);
+            // Partial output
+            writeOutput(dcmDir, Integer.toString(begun.incrementAndGet()));
+            started.countDown();
+            try {
+                never.await();
+                return true;
+            } catch (InterruptedException e) {
+                stopped.incrementAndGet();
+                return false;
+            }
+        };
+
+        DicomizeTask task = new DicomizeTask(images, dicomizer, 64, Compression.JPEG_LOSSY);
+        task.execute();
+        assertThat(started.await(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(outputDir.get().list()).isNotEmpty();
+
+        assertThat(task.cancel(true)).isTrue();
+        assertThat(task.isCancelled()).isTrue();
+        assertThatThrownBy(task::get).isInstanceOf(CancellationException.class);
+
+        // The running images are stopped before deleting the partial output
+        waitForDeletion(outputDir.get());
+        waitForDeletion(imageDir.get());
+        assertThat(stopped.get()).isEqualTo(begun.get());
+        assertThat(begun.get()).isLessThan(images.size());
+    }
+
+    @Test
+    public void testFailedImage() throws Exception {
+        List<AcquireImageInfo> images = mockImages(6, 100, 100);
+        AcquireImageInfo failed = images.get(2);
+        AtomicReference<File> outputDir = new AtomicReference<>();
+        AtomicInteger index = new AtomicInteger();
+        ImageDicomizer dicomizer = (imageInfo, dcmDir, imgDir, seriesUID, compression, quality) -> {
+            outputDir.set(dcmDir);
+            boolean written = writeOutput(dcmDir, Integer.toString(index.incrementAndGet()));
+            return written && imageInfo != failed;
+        };
+
+        DicomizeTask task = new DicomizeTask(images, dicomizer, 64, Compression.JPEG_LOSSY);
+        task.execute();
+        assertThat(task.get(30, TimeUnit.SECONDS)).isNull();
+        assertThat(outputDir.get()).doesNotExist();
+    }
+
+    @Test
+    public void testSameAsSerial() throws Exception {
+        SeriesGroup series = new SeriesGroup();
+        List<AcquireImageInfo> images = new ArrayList<>();
+        int[][] sizes = { { 320, 240 }, { 240, 320 }, { 257, 129 }, { 640, 480 }, { 33, 17 }, { 512, 512 } };
+        for (int i = 0; i < sizes.length; i++) {
+            File jpeg = folder.newFile("image" + i + ".jpg"); //$NON-NLS-1$ //$NON-NLS-2$
+            images.add(AcquireImageHelper.buildJpegImage(jpeg, sizes[i][0], sizes[i][1], i, series));
+        }
+
+        DicomizeTask task = new DicomizeTask(images, Transform2Dicom::dicomize, 64, Compression.JPEG_LOSSY);
+        task.execute();
+        File dir = task.get(60, TimeUnit.SECONDS);
+        try {
+            assertThat(dir).isDirectory();
+            assertThat(dir.list()).hasSize(images.size());
+
+            File serialDir = folder.newFolder("serial"); //$NON-NLS-1$
+            File imgDir = folder.newFolder("img"); //$NON-NLS-1$
+            for (AcquireImageInfo imageInfo : images) {
+                assertThat(Transform2Dicom.dicomize(imageInfo, serialDir, imgDir, "1.2.3", //$NON-NLS-1$
+                    Compression.JPEG_LOSSY, 80)).isTrue();
+            }
+
+            for (int i = 0; i < images.size(); i++) {
+                AcquireImageInfo imageInfo = images.get(i);
+                String uid = (String) imageInfo.getImage().getTagValue(TagD.getUID(Level.INSTANCE));
+                File dcm = new File(dir, uid);
+                File serialDcm = new File(serialDir, uid);
+
+                // Valid DICOM file encapsulating the JPEG stream
+                Attributes fmi = AcquireImageHelper.readFileMetaInformation(dcm);
+                Attributes dataset = AcquireImageHelper.readDataset(dcm);
+                assertThat(fmi.getString(Tag.TransferSyntaxUID)).isEqualTo(UID.JPEGBaseline1);
+                assertThat(fmi.getString(Tag.MediaStorageSOPInstanceUID)).isEqualTo(uid);
+                assertThat(fmi.getString(Tag.MediaStorageSOPClassUID))
+                    .isEqualTo(dataset.getString(Tag.SOPClassUID));
+                assertThat(dataset.getString(Tag.SOPInstanceUID)).isEqualTo(uid);
+                assertThat(dataset.getString(Tag.SeriesInstanceUID)).isEqualTo(series.getUID());
+                assertThat(dataset.getString(Tag.StudyInstanceUID)).isNotEmpty();
+                assertThat(dataset.getInt(Tag.Columns, 0)).isEqualTo(sizes[i][0]);
+                assertThat(dataset.getInt(Tag.Rows, 0)).isEqualTo(sizes[i][1]);
+                assertThat(dataset.getInt(Tag.SamplesPerPixel, 0)).isEqualTo(3);
+                assertThat(dataset.getInt(Tag.BitsAllocated, 0)).isEqualTo(8);
+
+                // Same content as the serial output
+                Attributes serial = AcquireImageHelper.readDataset(serialDcm);
+                assertThat(AcquireImageHelper.getEncapsulatedData(dataset))
+                    .isEqualTo(AcquireImageHelper.getEncapsulatedData(serial));
+                for (int tag : new int[] { Tag.PixelData, Tag.InstanceCreationDate, Tag.InstanceCreationTime }) {
+                    dataset.remove(tag);
+                    serial.remove(tag);
+                }
+                assertThat(dataset).isEqualTo(serial);
+                assertThat(fmi).isEqualTo(AcquireImageHelper.readFileMetaInformation(serialDcm));
+            }
+            // Original JPEG files encapsulated, nothing encoded again
+            assertThat(imgDir.list()).isEmpty();
+        } finally {
+            FileUtil.recursiveDelete(dir);
+        }
+    }
+}
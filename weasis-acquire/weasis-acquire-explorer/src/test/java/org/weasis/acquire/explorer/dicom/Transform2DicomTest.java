@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.acquire.explorer.dicom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.weasis.acquire.explorer.AcquireImageInfo;
+import org.weasis.acquire.explorer.core.bean.SeriesGroup;
+import org.weasis.acquire.explorer.dicom.Transform2Dicom.Compression;
+import org.weasis.acquire.test.utils.AcquireImageHelper;
+import org.weasis.dicom.codec.TagD;
+import org.weasis.dicom.codec.TagD.Level;
+
+public class Transform2DicomTest {
+
+    // Global series of the presentation states (not used without graphics)
+    private static final String SERIES_UID = "1.2.3"; //$NON-NLS-1$
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static boolean loadOpenCV() {
+        try {
+            System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            return false;
+        }
+    }
+
+    private static File getDicomFile(File dir, AcquireImageInfo imageInfo) {
+        return new File(dir, (String) imageInfo.getImage().getTagValue(TagD.getUID(Level.INSTANCE)));
+    }
+
+    /**
+     * Rotate the image of 90 degrees for encoding it again.
+     */
+    private static void rotate(AcquireImageInfo imageInfo) {
+        imageInfo.getNextValues().setOrientation(90);
+        imageInfo.applyPostProcess(null);
+    }
+
+    private static byte[] codestream(int mct, int transform) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // SOC
+        out.write(0xFF);
+        out.write(0x4F);
+        // SIZ with a dummy content
+        out.write(0xFF);
+        out.write(0x51);
+        writeShort(out, 41);
+        out.write(new byte[39], 0, 39);
+        // COD
+        out.write(0xFF);
+        out.write(0x52);
+        writeShort(out, 12);
+        out.write(0); // Scod
+        out.write(0); // Progression order
+        writeShort(out, 1); // Layers
+        out.write(mct);
+        out.write(5); // Decomposition levels
+        out.write(4);
+        out.write(4);
+        out.write(0);
+        out.write(transform);
+        // SOT
+        out.write(0xFF);
+        out.write(0x90);
+        writeShort(out, 10);
+        out.write(new byte[8], 0, 8);
+        // EOC
+        out.write(0xFF);
+        out.write(0xD9);
+        return out.toByteArray();
+    }
+
+    private static byte[] jp2(byte[] codestream) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeBox(out, "jP  ", new byte[] { 0x0D, 0x0A, (byte) 0x87, 0x0A }); //$NON-NLS-1$
+        writeBox(out, "ftyp", "jp2 \0\0\0\0jp2 ".getBytes(StandardCharsets.US_ASCII)); //$NON-NLS-1$ //$NON-NLS-2$
+        writeBox(out, "jp2h", new byte[22]); //$NON-NLS-1$
+        writeBox(out, "jp2c", codestream); //$NON-NLS-1$
+        return out.toByteArray();
+    }
+
+    private static void writeBox(ByteArrayOutputStream out, String type, byte[] content) {
+        int length = content.length + 8;
+        writeShort(out, length >>> 16);
+        writeShort(out, length & 0xFFFF);
+        byte[] t = type.getBytes(StandardCharsets.US_ASCII);
+        out.write(t, 0, t.length);
+        out.write(content, 0, content.length);
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int val) {
+        out.write(val >> 8);
+        out.write(val);
+    }
+
+    @Test
+    public void testGetJ2kCodestream() {
+        byte[] cs = codestream(1, 1);
+        assertThat(Transform2Dicom.getJ2kCodestream(cs)).isSameAs(cs);
+        assertThat(Transform2Dicom.getJ2kCodestream(jp2(cs))).isEqualTo(cs);
+
+        byte[] truncated = jp2(cs);
+        truncated = Arrays.copyOf(truncated, truncated.length - 4);
+        assertThat(Transform2Dicom.getJ2kCodestream(truncated)).isNull();
+        assertThat(Transform2Dicom.getJ2kCodestream(new byte[] { 1, 2, 3 })).isNull();
+    }
+
+    @Test
+    public void testGetJ2kCodingStyle() {
+        assertThat(Transform2Dicom.getJ2kCodingStyle(codestream(1, 1)))
+            .isEqualTo(Transform2Dicom.J2K_MCT | Transform2Dicom.J2K_REVERSIBLE);
+        assertThat(Transform2Dicom.getJ2kCodingStyle(codestream(0, 1))).isEqualTo(Transform2Dicom.J2K_REVERSIBLE);
+        assertThat(Transform2Dicom.getJ2kCodingStyle(codestream(1, 0))).isEqualTo(Transform2Dicom.J2K_MCT);
+        assertThat(Transform2Dicom.getJ2kCodingStyle(codestream(0, 0))).isEqualTo(0);
+        // No COD marker before the first tile
+        assertThat(Transform2Dicom.getJ2kCodingStyle(new byte[] { (byte) 0xFF, 0x4F, (byte) 0xFF, (byte) 0x90, 0, 10 }))
+            .isEqualTo(-1);
+    }
+
+    @Test
+    public void testUntouchedJpeg() throws Exception {
+        File jpeg = folder.newFile("image.jpg"); //$NON-NLS-1$
+        AcquireImageInfo imageInfo = AcquireImageHelper.buildJpegImage(jpeg, 300, 200, 1, new SeriesGroup());
+        File dcmDir = folder.newFolder("dcm"); //$NON-NLS-1$
+        File imgDir = folder.newFolder("img"); //$NON-NLS-1$
+
+        // Without operation, the compression applies only to the modified images
+        assertThat(Transform2Dicom.dicomize(imageInfo, dcmDir, imgDir, SERIES_UID, Compression.JPEG_2000_LOSSLESS, 80))
+            .isTrue();
+        assertThat(imgDir.list()).isEmpty();
+
+        File dcm = getDicomFile(dcmDir, imageInfo);
+        Attributes fmi = AcquireImageHelper.readFileMetaInformation(dcm);
+        Attributes dataset = AcquireImageHelper.readDataset(dcm);
+        assertThat(fmi.getString(Tag.TransferSyntaxUID)).isEqualTo(UID.JPEGBaseline1);
+        assertThat(dataset.getInt(Tag.Columns, 0)).isEqualTo(300);
+        assertThat(dataset.getInt(Tag.Rows, 0)).isEqualTo(200);
+
+        // The JPEG stream of the file is encapsulated without change (with the padding to an even length)
+        byte[] original = Files.readAllBytes(jpeg.toPath());
+        byte[] data = AcquireImageHelper.getEncapsulatedData(dataset);
+        assertThat(data.length - original.length).isBetween(0, 1);
+        assertThat(Arrays.copyOf(data, original.length)).isEqualTo(original);
+    }
+
+    @Test
+    public void testReencodedJpeg() throws Exception {
+        Assume.assumeTrue("OpenCV native library not available", loadOpenCV()); //$NON-NLS-1$
+
+        File jpeg = folder.newFile("image.jpg"); //$NON-NLS-1$
+        AcquireImageInfo imageInfo = AcquireImageHelper.buildJpegImage(jpeg, 300, 200, 2, new SeriesGroup());
+        rotate(imageInfo);
+        File dcmDir = folder.newFolder("dcm"); //$NON-NLS-1$
+        File imgDir = folder.newFolder("img"); //$NON-NLS-1$
+        assertThat(Transform2Dicom.dicomize(imageInfo, dcmDir, imgDir, SERIES_UID, Compression.JPEG_LOSSY, 90))
+            .isTrue();
+
+        File dcm = getDicomFile(dcmDir, imageInfo);
+        Attributes fmi = AcquireImageHelper.readFileMetaInformation(dcm);
+        Attributes dataset = AcquireImageHelper.readDataset(dcm);
+        assertThat(fmi.getString(Tag.TransferSyntaxUID)).isEqualTo(UID.JPEGBaseline1);
+        assertThat(dataset.getInt(Tag.Columns, 0)).isEqualTo(200);
+        assertThat(dataset.getInt(Tag.Rows, 0)).isEqualTo(300);
+
+        byte[] data = AcquireImageHelper.getEncapsulatedData(dataset);
+        assertThat(data).isNotEqualTo(Files.readAllBytes(jpeg.toPath()));
+        Mat img = Imgcodecs.imdecode(new MatOfByte(data), Imgcodecs.IMREAD_UNCHANGED);
+        assertThat(img.cols()).isEqualTo(200);
+        assertThat(img.rows()).isEqualTo(300);
+        img.release();
+    }
+
+    @Test
+    public void testJpeg2000() throws Exception {
+        Assume.assumeTrue("OpenCV native library not available", loadOpenCV()); //$NON-NLS-1$
+
+        File jpeg = folder.newFile("image.jpg"); //$NON-NLS-1$
+        AcquireImageInfo imageInfo = AcquireImageHelper.buildJpegImage(jpeg, 300, 200, 3, new SeriesGroup());
+        rotate(imageInfo);
+        File dcmDir = folder.newFolder("dcm"); //$NON-NLS-1$
+        File imgDir = folder.newFolder("img"); //$NON-NLS-1$
+        assertThat(Transform2Dicom.dicomize(imageInfo, dcmDir, imgDir, SERIES_UID, Compression.JPEG_2000_LOSSLESS, 80))
+            .isTrue();
+        // Encoded in memory
+        assertThat(imgDir.list()).isEmpty();
+
+        File dcm = getDicomFile(dcmDir, imageInfo);
+        Attributes fmi = AcquireImageHelper.readFileMetaInformation(dcm);
+        Attributes dataset = AcquireImageHelper.readDataset(dcm);
+        String tsuid = fmi.getString(Tag.TransferSyntaxUID);
+        assertThat(tsuid).isIn(UID.JPEG2000LosslessOnly, UID.JPEG2000);
+        boolean lossless = UID.JPEG2000LosslessOnly.equals(tsuid);
+        String ybr = lossless ? "YBR_RCT" : "YBR_ICT"; //$NON-NLS-1$ //$NON-NLS-2$
+        assertThat(dataset.getString(Tag.PhotometricInterpretation)).isIn(ybr, "RGB"); //$NON-NLS-1$
+        assertThat(dataset.getInt(Tag.Columns, 0)).isEqualTo(200);
+        assertThat(dataset.getInt(Tag.Rows, 0)).isEqualTo(300);
+        assertThat(dataset.getInt(Tag.SamplesPerPixel, 0)).isEqualTo(3);
+        assertThat(dataset.getString(Tag.SOPClassUID)).isEqualTo(UID.VLPhotographicImageStorage);
+
+        // Codestream without the JP2 boxes
+        byte[] data = AcquireImageHelper.getEncapsulatedData(dataset);
+        assertThat(data[0] & 0xFF).isEqualTo(0xFF);
+        assertThat(data[1] & 0xFF).isEqualTo(0x4F);
+        assertThat(Transform2Dicom.getJ2kCodingStyle(data)).isNotNegative();
+
+        if (lossless) {
+            Mat img = Imgcodecs.imdecode(new MatOfByte(data), Imgcodecs.IMREAD_UNCHANGED);
+            Mat expected = imageInfo.getImage().getImage(imageInfo.getPostProcessOpManager(), false).toImageCV();
+            assertThat(img.size()).isEqualTo(expected.size());
+            assertThat(Core.norm(img, expected, Core.NORM_INF)).isZero();
+            img.release();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.acquire.test.utils;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Fragments;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.io.DicomInputStream;
+import org.weasis.acquire.explorer.AcquireImageInfo;
+import org.weasis.acquire.explorer.core.bean.SeriesGroup;
+import org.weasis.core.api.image.cv.ImageCVIO;
+import org.weasis.core.api.media.data.ImageElement;
+import org.weasis.core.api.media.data.TagW;
+
+/**
+ * Synthetic acquired images and reading of the dicomized files.
+ */
+public class AcquireImageHelper {
+
+    private AcquireImageHelper() {
+    }
+
+    /**
+     * Write a color JPEG file with ImageIO and build the image to dicomize, without any operation.
+     */
+    public static AcquireImageInfo buildJpegImage(File file, int width, int height, long seed, SeriesGroup series)
+        throws IOException {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = x * 255 / width;
+                int g = y * 255 / height;
+                int b = random.nextInt(32) + ((x / 16 + y / 16) % 2) * 192;
+                img.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        if (!ImageIO.write(img, "jpeg", file)) { //$NON-NLS-1$
+            throw new IOException("No JPEG writer"); //$NON-NLS-1$
+        }
+
+        ImageElement image =
+            (ImageElement) new ImageCVIO(file.toURI(), "image/jpeg", null).getMediaElement()[0]; //$NON-NLS-1$
+        // Size used for the memory estimate
+        image.setTag(TagW.ImageWidth, width);
+        image.setTag(TagW.ImageHeight, height);
+        AcquireImageInfo imageInfo = new AcquireImageInfo(image);
+        imageInfo.setSeries(series);
+        return imageInfo;
+    }
+
+    public static Attributes readFileMetaInformation(File dcmFile) throws IOException {
+        try (DicomInputStream dis = new DicomInputStream(dcmFile)) {
+            return dis.readFileMetaInformation();
+        }
+    }
+
+    public static Attributes readDataset(File dcmFile) throws IOException {
+        try (DicomInputStream dis = new DicomInputStream(dcmFile)) {
+            return dis.readDataset(-1, -1);
+        }
+    }
+
+    /**
+     * @return the concatenated fragments of the encapsulated Pixel Data, without the basic offset table
+     */
+    public static byte[] getEncapsulatedData(Attributes dataset) {
+        Object value = dataset.getValue(Tag.PixelData);
+        if (!(value instanceof Fragments)) {
+            return null;
+        }
+        Fragments fragments = (Fragments) value;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 1; i < fragments.size(); i++) {
+            Object frag = fragments.get(i);
+            if (frag instanceof byte[]) {
+                byte[] b = (byte[]) frag;
+                out.write(b, 0, b.length);
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -16,12 +16,10 @@ import java.net.URI;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.base.explorer.list.ThumbnailList;
@@ -29,18 +27,21 @@ import org.weasis.core.api.gui.util.GuiExecutor;
 import org.weasis.core.api.image.util.ImageFiler;
 import org.weasis.core.api.media.data.ImageElement;
 import org.weasis.core.api.media.data.MediaElement;
-import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.core.api.media.data.ThumbnailDiskCache;
+import org.weasis.core.api.media.data.ThumbnailService;
+import org.weasis.core.api.metrics.CacheMetrics;
+import org.weasis.core.api.metrics.MetricRegistry;
 import org.weasis.opencv.data.PlanarImage;
 import org.weasis.opencv.op.ImageConversion;
 import org.weasis.opencv.op.ImageProcessor;
 
 public final class JIThumbnailCache {
     private static final Logger LOGGER = LoggerFactory.getLogger(JIThumbnailCache.class);
+    private static final CacheMetrics METRICS =
+        new CacheMetrics(MetricRegistry.getDefault(), "cache.explorer.thumbnail"); //$NON-NLS-1$
 
-    private final LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
-    // Set only one concurrent thread. The time consuming part is in loading image thread (see ImageElement)
-    private final ExecutorService qExecutor =
-        new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, queue, ThreadUtil.getThreadFactory("Thumbnail Cache")); //$NON-NLS-1$
+    // The thumbnails are built by the shared pool of ThumbnailService, visible items first
+    private final Map<URI, ThumbnailService.Task> pending = new ConcurrentHashMap<>();
 
     private final Map<URI, ThumbnailIcon> cachedThumbnails;
 
@@ -63,21 +64,15 @@ public final class JIThumbnailCache {
     }
 
     public void removeInQueue(ImageElement imgElement) {
-        Runnable r = null;
-        for (Runnable runnable : queue) {
-            if (Objects.equals(imgElement, ((ThumbnailRunnable) runnable).getDiskObject())) {
-                r = runnable;
-            }
-        }
-        if (r != null && !queue.remove(r)) {
-            LOGGER.error("Cannot remove thumbnail from the queue"); //$NON-NLS-1$
+        if (imgElement != null) {
+            ThumbnailService.getDefault().remove(pending.remove(imgElement.getMediaURI()));
         }
     }
 
     public ThumbnailIcon getThumbnailFor(final ImageElement diskObject,
         final ThumbnailList<? extends MediaElement> aThumbnailList, final int index) {
         try {
-            final ThumbnailIcon jiIcon = this.cachedThumbnails.get(diskObject.getMediaURI());
+            final ThumbnailIcon jiIcon = METRICS.record(this.cachedThumbnails.get(diskObject.getMediaURI()));
             if (jiIcon != null) {
                 return jiIcon;
             }
@@ -93,22 +88,30 @@ public final class JIThumbnailCache {
 
     private void loadThumbnail(final ImageElement diskObject, final ThumbnailList<? extends MediaElement> thumbnailList,
         final int index) {
-        if ((index > thumbnailList.getLastVisibleIndex()) || (index < thumbnailList.getFirstVisibleIndex())) {
+        int first = thumbnailList.getFirstVisibleIndex();
+        if ((index > thumbnailList.getLastVisibleIndex()) || (index < first)) {
             return;
         }
-        for (Runnable runnable : queue) {
-            if (diskObject.equals(((ThumbnailRunnable) runnable).getDiskObject())) {
-                return;
-            }
+        URI uri = diskObject.getMediaURI();
+        if (pending.containsKey(uri)) {
+            return;
         }
         cleanPending();
         ThumbnailRunnable runnable = new ThumbnailRunnable(diskObject, thumbnailList, index);
-        qExecutor.execute(runnable);
+        // From the top of the viewport
+        ThumbnailService service = ThumbnailService.getDefault();
+        ThumbnailService.Task task =
+            service.newTask(runnable, ThumbnailService.PRIORITY_VISIBLE + Math.max(0, index - first));
+        runnable.task = task;
+        // Register before submitting: the runnable can complete and remove its entry before execute() returns
+        if (pending.putIfAbsent(uri, task) == null) {
+            service.execute(task);
+        }
     }
 
     private void cleanPending() {
-        for (Runnable runnable : queue) {
-            ThumbnailRunnable r = (ThumbnailRunnable) runnable;
+        for (Map.Entry<URI, ThumbnailService.Task> entry : pending.entrySet()) {
+            ThumbnailRunnable r = (ThumbnailRunnable) entry.getValue().getRunnable();
             int index = r.getIndex();
             if ((index > r.getThumbnailList().getLastVisibleIndex())
                 || (index < r.getThumbnailList().getFirstVisibleIndex())) {
@@ -117,10 +120,34 @@ public final class JIThumbnailCache {
         }
     }
 
+    private static PlanarImage readImage(ImageElement diskObject, File file) {
+        // Get the final that contain the thumbnail when the uncompress mode is activated
+        if (file != null && file.getName().endsWith(".wcv")) { //$NON-NLS-1$
+            File thumbFile = new File(ImageFiler.changeExtension(file.getPath(), ".jpg")); //$NON-NLS-1$
+            if (thumbFile.canRead()) {
+                return ImageProcessor.readImage(thumbFile);
+            }
+        }
+        if (file != null && "image/jpeg".equals(diskObject.getMimeType())) { //$NON-NLS-1$
+            // Reduced resolution decoding
+            PlanarImage img = ThumbnailService.readImage(file, ThumbnailRenderer.ICON_DIM.width);
+            if (img != null) {
+                return img;
+            }
+        }
+        try {
+            return diskObject.getRenderedImage(diskObject.getImage(null));
+        } finally {
+            // Prevent to many files open on Linux (Ubuntu => 1024) and close image stream
+            diskObject.removeImageFromCache();
+        }
+    }
+
     class ThumbnailRunnable implements Runnable {
         final ImageElement diskObject;
         final ThumbnailList<? extends MediaElement> thumbnailList;
         final int index;
+        volatile ThumbnailService.Task task;
 
         public ThumbnailRunnable(ImageElement diskObject, ThumbnailList<? extends MediaElement> thumbnailList,
             int index) {
@@ -143,37 +170,36 @@ public final class JIThumbnailCache {
 
         @Override
         public void run() {
-            PlanarImage img = null;
-
-            // Get the final that contain the thumbnail when the uncompress mode is activated
-            File file = diskObject.getFile();
-            if (file != null && file.getName().endsWith(".wcv")) { //$NON-NLS-1$
-                File thumbFile = new File(ImageFiler.changeExtension(file.getPath(), ".jpg")); //$NON-NLS-1$
-                if (thumbFile.canRead()) {
-                    img = ImageProcessor.readImage(thumbFile);
+            try {
+                File file = diskObject.getFile();
+                ThumbnailDiskCache diskCache = ThumbnailService.getDefault().getDiskCache();
+                String key =
+                    ThumbnailDiskCache.buildKey(file, diskObject.getKey(), null, ThumbnailRenderer.ICON_DIM.width);
+                File cached = diskCache.get(key);
+                PlanarImage thumb = cached == null ? null : ImageProcessor.readImage(cached);
+
+                if (thumb == null) {
+                    PlanarImage img = readImage(diskObject, file);
+                    if (img == null) {
+                        return;
+                    }
+                    final PlanarImage t = ImageProcessor.buildThumbnail(img, ThumbnailRenderer.ICON_DIM, true);
+                    MatOfInt map = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 80);
+                    diskCache.store(key, f -> ImageProcessor.writeImage(t.toMat(), f, map));
+                    thumb = t;
                 }
-            }
-
-            if (img == null) {
-                img = diskObject.getRenderedImage(diskObject.getImage(null));
-            }
 
-            if (img == null) {
-                return;
+                final BufferedImage tIcon = ImageConversion.toBufferedImage(thumb);
+                GuiExecutor.instance().execute(() -> {
+                    if (tIcon != null) {
+                        cachedThumbnails.put(diskObject.getMediaURI(), new ThumbnailIcon(tIcon));
+                    }
+                    thumbnailList.getThumbnailListModel().notifyAsUpdated(index);
+                });
+            } finally {
+                // Only its own entry, a new request for the same image may already be registered
+                pending.remove(diskObject.getMediaURI(), task);
             }
-
-            final BufferedImage tIcon = ImageConversion
-                .toBufferedImage((PlanarImage) ImageProcessor.buildThumbnail(img, ThumbnailRenderer.ICON_DIM, true));
-
-            // Prevent to many files open on Linux (Ubuntu => 1024) and close image stream
-            diskObject.removeImageFromCache();
-
-            GuiExecutor.instance().execute(() -> {
-                if (tIcon != null) {
-                    cachedThumbnails.put(diskObject.getMediaURI(), new ThumbnailIcon(tIcon));
-                }
-                thumbnailList.getThumbnailListModel().notifyAsUpdated(index);
-            });
         }
 
     }
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+
+/**
+ * Compares a JMH result file (-rf json) with a stored baseline and flags the benchmarks that are slower than the
+ * threshold.
+ *
+ * <pre>
+ * java -cp benchmarks.jar org.weasis.benchmark.BenchmarkComparator baseline.json result.json [threshold]
+ * </pre>
+ *
+ * The threshold is a ratio (default 0.1 for 10%). The exit code is 1 when at least one regression is found.
+ */
+public class BenchmarkComparator {
+
+    public static final double DEFAULT_THRESHOLD = 0.1;
+
+    private final double threshold;
+
+    public BenchmarkComparator(double threshold) {
+        if (threshold < 0.0) {
+            throw new IllegalArgumentException("Threshold must be positive"); //$NON-NLS-1$
+        }
+        this.threshold = threshold;
+    }
+
+    public static class Result {
+        private final String name;
+        private final boolean higherIsBetter;
+        private final double score;
+        private final String unit;
+
+        public Result(String name, boolean higherIsBetter, double score, String unit) {
+            this.name = name;
+            this.higherIsBetter = higherIsBetter;
+            this.score = score;
+            this.unit = unit;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+
+        /**
+         * @return the slowdown ratio compared to the baseline (0.25 means 25% slower, negative values are speedups)
+         */
+        public double slowdown(Result baseline) {
+            if (higherIsBetter) {
+                return score <= 0.0 ? Double.POSITIVE_INFINITY : baseline.score / score - 1.0;
+            }
+            return baseline.score <= 0.0 ? 0.0 : score / baseline.score - 1.0;
+        }
+    }
+
+    public static Map<String, Result> read(InputStream in) {
+        Map<String, Result> results = new LinkedHashMap<>();
+        try (JsonReader reader = Json.createReader(in)) {
+            JsonArray array = reader.readArray();
+            for (JsonValue val : array) {
+                JsonObject obj = (JsonObject) val;
+                String mode = obj.getString("mode"); //$NON-NLS-1$
+                StringBuilder name = new StringBuilder(obj.getString("benchmark")); //$NON-NLS-1$
+                name.append(" ["); //$NON-NLS-1$
+                name.append(mode);
+                JsonObject params = obj.getJsonObject("params"); //$NON-NLS-1$
+                if (params != null) {
+                    // Sort parameters to get a stable key
+                    for (Map.Entry<String, JsonValue> p : new TreeMap<>(params).entrySet()) {
+                        name.append(", "); //$NON-NLS-1$
+                        name.append(p.getKey());
+                        name.append('=');
+                        name.append(params.getString(p.getKey()));
+                    }
+                }
+                name.append(']');
+                JsonObject metric = obj.getJsonObject("primaryMetric"); //$NON-NLS-1$
+                Result r = new Result(name.toString(), "thrpt".equals(mode), //$NON-NLS-1$
+                    metric.getJsonNumber("score").doubleValue(), metric.getString("scoreUnit")); //$NON-NLS-1$ //$NON-NLS-2$
+                results.put(r.getName(), r);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return the names of the benchmarks slower than the threshold
+     */
+    public List<String> compare(Map<String, Result> baseline, Map<String, Result> current, PrintStream out) {
+        List<String> regressions = new ArrayList<>();
+        for (Result r : current.values()) {
+            Result b = baseline.get(r.getName());
+            if (b == null) {
+                out.println(String.format("NEW        %s: %.3f %s", r.getName(), r.getScore(), r.getUnit())); //$NON-NLS-1$
+                continue;
+            }
+            double slowdown = r.slowdown(b);
+            boolean regression = slowdown > threshold;
+            if (regression) {
+                regressions.add(r.getName());
+            }
+            out.println(String.format("%-10s %s: %.3f -> %.3f %s (%+.1f%%)", regression ? "REGRESSION" : "OK", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                r.getName(), b.getScore(), r.getScore(), r.getUnit(), slowdown * 100.0));
+        }
+        for (String name : baseline.keySet()) {
+            if (!current.containsKey(name)) {
+                out.println("MISSING    " + name); //$NON-NLS-1$
+            }
+        }
+        return regressions;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkComparator baseline.json result.json [threshold]"); //$NON-NLS-1$
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+        Map<String, Result> baseline;
+        Map<String, Result> current;
+        try (InputStream b = new FileInputStream(new File(args[0]));
+                        InputStream c = new FileInputStream(new File(args[1]))) {
+            baseline = read(b);
+            current = read(c);
+        }
+        List<String> regressions = new BenchmarkComparator(threshold).compare(baseline, current, System.out);
+        if (!regressions.isEmpty()) {
+            System.out.println(String.format("%d benchmark(s) slower than %.0f%%", regressions.size(), //$NON-NLS-1$
+                threshold * 100.0));
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.weasis.benchmark.data.NativeLibrary;
+import org.weasis.benchmark.data.SyntheticDicom;
+import org.weasis.core.api.media.data.MediaElement;
+import org.weasis.core.api.util.FileUtil;
+import org.weasis.dicom.codec.DicomMediaIO;
+import org.weasis.opencv.data.PlanarImage;
+
+/**
+ * Header parsing and pixel decoding of DICOM files ({@link DicomMediaIO#getImageFragment(MediaElement)} which calls
+ * getUncacheImage). The image cache is bypassed, so each invocation reads the file.
+ *
+ * JPEG_LS inputs require pre-encoded files, see {@link SyntheticDicom#P_CORPUS_DIR}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DicomDecodeBenchmark {
+
+    @Param({ "RAW_8", "RAW_12", "RAW_16", "RLE_8", "RLE_16", "JPEG_BASELINE_8", "JPEG_2000_8", "JPEG_2000_16" })
+    public String input;
+
+    @Param({ "512", "2048" })
+    public int size;
+
+    private File dir;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        NativeLibrary.load();
+        dir = Files.createTempDirectory("weasis-bench").toFile(); //$NON-NLS-1$
+        file = SyntheticDicom.write(input, size, dir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileUtil.recursiveDelete(dir);
+    }
+
+    @Benchmark
+    public boolean readHeader() {
+        DicomMediaIO dicomReader = new DicomMediaIO(file);
+        try {
+            return dicomReader.isReadableDicom();
+        } finally {
+            dicomReader.dispose();
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole bh) throws Exception {
+        bh.consume(decodeFile(file));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void decodeConcurrent(Blackhole bh) throws Exception {
+        bh.consume(decodeFile(file));
+    }
+
+    static long decodeFile(File file) throws Exception {
+        DicomMediaIO dicomReader = new DicomMediaIO(file);
+        try {
+            MediaElement[] medias = dicomReader.getMediaElement();
+            if (medias == null || medias.length == 0) {
+                throw new IllegalStateException("Cannot read " + file); //$NON-NLS-1$
+            }
+            PlanarImage img = dicomReader.getImageFragment(medias[0]);
+            long bytes = img.physicalBytes();
+            img.release();
+            return bytes;
+        } finally {
+            dicomReader.dispose();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.weasis.core.api.util.GzipManager;
+
+/**
+ * Gzip decompression of a WADO manifest (4 MB of XML) and of a 512x512 16-bit DICOM image: previous copy loop (default
+ * inflater buffer and 1 KB copy), GzipManager into a byte array and GzipManager stream read by 8 KB like a parser.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GzipBenchmark {
+
+    public enum Input {
+        MANIFEST, DICOM
+    }
+
+    @Param({ "MANIFEST", "DICOM" })
+    public Input input;
+
+    private byte[] compressed;
+    private int length;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        byte[] data = input == Input.MANIFEST ? buildManifest(500) : buildDicom(512);
+        length = data.length;
+        compressed = GzipManager.gzipCompressToByte(data);
+    }
+
+    static byte[] buildManifest(int series) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"); //$NON-NLS-1$
+        xml.append("<manifest xmlns=\"http://www.weasis.org/xsd/2.5\">\n<arcQuery arcId=\"1000\" "); //$NON-NLS-1$
+        xml.append("baseUrl=\"http://localhost:8080/dcm4chee-arc/aets/DCM4CHEE/wado\">\n"); //$NON-NLS-1$
+        xml.append("<Patient PatientID=\"12345\" PatientName=\"Test^Patient\">\n"); //$NON-NLS-1$
+        xml.append("<Study StudyInstanceUID=\"1.2.3.4\" StudyDate=\"20180102\">\n"); //$NON-NLS-1$
+        for (int s = 0; s < series; s++) {
+            xml.append("<Series SeriesInstanceUID=\"1.2.3.4.").append(s).append("\" Modality=\"CT\">\n"); //$NON-NLS-1$ //$NON-NLS-2$
+            for (int i = 0; i < 100; i++) {
+                xml.append("<Instance SOPInstanceUID=\"1.2.3.4.").append(s).append('.').append(i) //$NON-NLS-1$
+                    .append("\" InstanceNumber=\"").append(i + 1).append("\"/>\n"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            xml.append("</Series>\n"); //$NON-NLS-1$
+        }
+        xml.append("</Study>\n</Patient>\n</arcQuery>\n</manifest>\n"); //$NON-NLS-1$
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] buildDicom(int size) {
+        byte[] data = new byte[132 + size * size * 2];
+        data[128] = 'D';
+        data[129] = 'I';
+        data[130] = 'C';
+        data[131] = 'M';
+        Random random = new Random(size);
+        int index = 132;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                // Smooth gradient with noise, compressed like a CT image
+                int value = x * 4 + y * 2 + random.nextInt(16);
+                data[index++] = (byte) value;
+                data[index++] = (byte) (value >> 8);
+            }
+        }
+        return data;
+    }
+
+    @Benchmark
+    public byte[] previous() throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+                        ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            byte[] buf = new byte[1024];
+            int offset;
+            while ((offset = in.read(buf)) > 0) {
+                out.write(buf, 0, offset);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public byte[] uncompressToByte() throws IOException {
+        return GzipManager.gzipUncompressToByte(compressed);
+    }
+
+    @Benchmark
+    public void uncompressStream(Blackhole bh) throws IOException {
+        try (InputStream in = GzipManager.gzipUncompressStream(new ByteArrayInputStream(compressed))) {
+            byte[] buf = new byte[8192];
+            int total = 0;
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                total += n;
+                bh.consume(buf);
+            }
+            if (total != length) {
+                throw new IllegalStateException("Uncompressed " + total + " bytes instead of " + length); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmark;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.benchmark.data.NativeLibrary;
+import org.weasis.benchmark.data.SyntheticDicom;
+import org.weasis.benchmark.data.SyntheticImages;
+import org.weasis.core.api.gui.util.ActionW;
+import org.weasis.core.api.image.AffineTransformOp;
+import org.weasis.core.api.image.SimpleOpManager;
+import org.weasis.core.api.image.WindowOp;
+import org.weasis.core.api.media.data.MediaElement;
+import org.weasis.core.api.util.FileUtil;
+import org.weasis.dicom.codec.DicomImageElement;
+import org.weasis.dicom.codec.DicomMediaIO;
+import org.weasis.opencv.data.ImageCV;
+import org.weasis.opencv.data.LookupTableCV;
+import org.weasis.opencv.data.PlanarImage;
+import org.weasis.opencv.op.ImageConversion;
+import org.weasis.opencv.op.ImageProcessor;
+
+/**
+ * Display path of an image: LUT, window/level rescaling, conversion to a Java2D image and the whole operation
+ * pipeline (window/level and zoom out).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImagePipelineBenchmark {
+
+    @Param({ "8", "12", "16" })
+    public int bitsStored;
+
+    @Param({ "512", "2048" })
+    public int size;
+
+    private ImageCV source;
+    private ImageCV source8;
+    private LookupTableCV lut;
+    private double slope;
+    private double intercept;
+
+    private File dir;
+    private DicomMediaIO dicomReader;
+    private DicomImageElement imageElement;
+    private PlanarImage dicomImage;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        NativeLibrary.load();
+        source = SyntheticImages.gray(size, size, bitsStored);
+        source8 = ImageProcessor.rescaleToByte(source, 255.0 / ((1 << bitsStored) - 1), 0.0);
+
+        int entries = 1 << bitsStored;
+        if (bitsStored > 8) {
+            byte[] table = new byte[entries];
+            for (int i = 0; i < entries; i++) {
+                table[i] = (byte) (i * 255 / (entries - 1));
+            }
+            lut = new LookupTableCV(table);
+        } else {
+            byte[] table = new byte[256];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (byte) (255 - i);
+            }
+            lut = new LookupTableCV(table);
+        }
+        double window = (entries - 1) / 2.0;
+        double level = entries / 2.0;
+        slope = 255.0 / window;
+        intercept = 255.0 - slope * (level + window / 2.0);
+
+        dir = Files.createTempDirectory("weasis-bench").toFile(); //$NON-NLS-1$
+        File file = SyntheticDicom.write(SyntheticDicom.Encoding.RAW, bitsStored, size, dir);
+        dicomReader = new DicomMediaIO(file);
+        MediaElement[] medias = dicomReader.getMediaElement();
+        imageElement = (DicomImageElement) medias[0];
+        dicomImage = imageElement.getImage();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        imageElement.removeImageFromCache();
+        dicomReader.dispose();
+        source.release();
+        source8.release();
+        FileUtil.recursiveDelete(dir);
+    }
+
+    @State(Scope.Thread)
+    public static class PipelineState {
+        SimpleOpManager manager;
+
+        @Setup(Level.Trial)
+        public void setup(ImagePipelineBenchmark bench) {
+            manager = new SimpleOpManager();
+            WindowOp windowOp = new WindowOp();
+            windowOp.setParam(WindowOp.P_IMAGE_ELEMENT, bench.imageElement);
+            windowOp.setParam(ActionW.WINDOW.cmd(), bench.imageElement.getDefaultWindow(true));
+            windowOp.setParam(ActionW.LEVEL.cmd(), bench.imageElement.getDefaultLevel(true));
+            manager.addImageOperationAction(windowOp);
+
+            AffineTransformOp affineOp = new AffineTransformOp();
+            // Zoom out (fit a 2048 image in a 1024 viewport)
+            affineOp.setParam(AffineTransformOp.P_AFFINE_MATRIX, new double[] { 0.5, 0.0, 0.0, 0.0, 0.5, 0.0 });
+            affineOp.setParam(AffineTransformOp.P_DST_BOUNDS,
+                new Rectangle2D.Double(0, 0, bench.size / 2.0, bench.size / 2.0));
+            manager.addImageOperationAction(affineOp);
+            manager.setFirstNode(bench.dicomImage);
+        }
+    }
+
+    @Benchmark
+    public ImageCV lookup() {
+        return lut.lookup(source);
+    }
+
+    @Benchmark
+    public ImageCV rescaleToByte() {
+        return ImageProcessor.rescaleToByte(source, slope, intercept);
+    }
+
+    @Benchmark
+    public Object toBufferedImage() {
+        return ImageConversion.toBufferedImage(source8);
+    }
+
+    @Benchmark
+    public PlanarImage pipeline(PipelineState state) {
+        return state.manager.process();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public PlanarImage pipelineConcurrent(PipelineState state) {
+        return state.manager.process();
+    }
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmark;
+
+import java.awt.Dimension;
+import java.awt.geom.Rectangle2D;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.benchmark.data.NativeLibrary;
+import org.weasis.benchmark.data.SyntheticImages;
+import org.weasis.core.api.image.AffineTransformOp;
+import org.weasis.core.api.image.ImageOpNode;
+import org.weasis.core.api.image.util.ImagePyramid;
+import org.weasis.opencv.data.ImageCV;
+import org.weasis.opencv.data.PlanarImage;
+import org.weasis.opencv.op.ImageProcessor;
+
+/**
+ * Fit-to-window display (windowing and warping) of very large 16-bit images from the full resolution and from the
+ * pyramid level. The setup checks that the error of the pyramid path, compared to an area downsampling of the full
+ * resolution display, is bounded.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@State(Scope.Benchmark)
+public class ImagePyramidBenchmark {
+
+    static final int VIEWPORT = 1024;
+    /** Maximum mean absolute error on the 8-bit display values. */
+    static final double MAX_MEAN_ERROR = 2.0;
+
+    @Param({ "8192", "16384" })
+    public int size;
+
+    private ImageCV source;
+    private PlanarImage levelImage;
+    private AffineTransformOp fullOp;
+    private AffineTransformOp levelOp;
+    private int level;
+    private double slope;
+    private double intercept;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        NativeLibrary.load();
+        source = SyntheticImages.gray(size, size, 16);
+        double window = 65535 / 2.0;
+        double center = 65536 / 2.0;
+        slope = 255.0 / window;
+        intercept = 255.0 - slope * (center + window / 2.0);
+
+        double scale = VIEWPORT / (double) size;
+        level = ImagePyramid.getLevel(size, size, scale);
+        levelImage = ImagePyramid.getLevelImage(source, source, level);
+
+        double[] matrix = new double[] { scale, 0.0, 0.0, 0.0, scale, 0.0 };
+        Rectangle2D bounds = new Rectangle2D.Double(0, 0, VIEWPORT, VIEWPORT);
+        fullOp = new AffineTransformOp();
+        fullOp.setParam(AffineTransformOp.P_AFFINE_MATRIX, matrix);
+        fullOp.setParam(AffineTransformOp.P_DST_BOUNDS, bounds);
+        levelOp = fullOp.copy();
+        levelOp.setParam(AffineTransformOp.P_AFFINE_MATRIX, matrix);
+        levelOp.setParam(AffineTransformOp.P_DST_BOUNDS, bounds);
+        levelOp.setParam(ImageOpNode.Param.INPUT_SCALE, ImagePyramid.getScale(levelImage, source));
+
+        checkErrorBound();
+    }
+
+    private void checkErrorBound() {
+        ImageCV reference = ImageProcessor.scale(ImageProcessor.rescaleToByte(source, slope, intercept),
+            new Dimension(VIEWPORT, VIEWPORT), Imgproc.INTER_AREA);
+        double fullError = meanError(reference, display(source, fullOp));
+        double levelError = meanError(reference, display(levelImage, levelOp));
+        if (levelError > MAX_MEAN_ERROR || levelError > fullError + 0.5) {
+            throw new IllegalStateException(String.format("Pyramid level %d: mean error %.3f (full resolution %.3f)", //$NON-NLS-1$
+                level, levelError, fullError));
+        }
+    }
+
+    private static double meanError(Mat reference, PlanarImage img) {
+        Mat diff = new Mat();
+        Core.absdiff(reference, img.toMat(), diff);
+        return Core.mean(diff).val[0];
+    }
+
+    private PlanarImage display(PlanarImage input, AffineTransformOp op) {
+        op.setParam(ImageOpNode.Param.INPUT_IMG, ImageProcessor.rescaleToByte(input.toMat(), slope, intercept));
+        try {
+            op.process();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return (PlanarImage) op.getParam(ImageOpNode.Param.OUTPUT_IMG);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ImagePyramid.remove(source);
+        source.release();
+    }
+
+    @Benchmark
+    public PlanarImage fullResolution() {
+        return display(source, fullOp);
+    }
+
+    @Benchmark
+    public PlanarImage pyramidLevel() {
+        return display(levelImage, levelOp);
+    }
+
+    /** One-time cost of building the level from the full resolution. */
+    @Benchmark
+    public PlanarImage buildLevel() {
+        PlanarImage img = source;
+        for (int i = 0; i < level; i++) {
+            img = ImagePyramid.downscale(img);
+        }
+        return img;
+    }
+}
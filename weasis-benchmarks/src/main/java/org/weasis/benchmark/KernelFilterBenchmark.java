@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Core;
+import org.opencv.core.Core.MinMaxLocResult;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.benchmark.data.NativeLibrary;
+import org.weasis.benchmark.data.SyntheticImages;
+import org.weasis.core.api.image.util.KernelData;
+import org.weasis.core.api.image.util.KernelFilter;
+import org.weasis.opencv.data.ImageCV;
+
+/**
+ * Convolution with filter2D on the whole image (the previous implementation) and with the dispatch of
+ * {@link KernelFilter}, for Gaussian (separable) and random (non-separable) kernels from 3x3 to 31x31. The setup
+ * checks that every preset of {@link KernelData} and the benchmarked kernel give the same result as filter2D, within
+ * one unit of the integer types.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class KernelFilterBenchmark {
+
+    public enum KernelType {
+        GAUSSIAN, RANDOM
+    }
+
+    /** Maximum absolute difference with filter2D. */
+    static final double MAX_ERROR = 1.0;
+    static final int CHECK_SIZE = 700;
+
+    @Param({ "3", "7", "15", "31" })
+    public int kernelSize;
+
+    @Param({ "GAUSSIAN", "RANDOM" })
+    public KernelType kernelType;
+
+    @Param({ "8", "16" })
+    public int bitsStored;
+
+    @Param({ "2048" })
+    public int size;
+
+    private ImageCV source;
+    private KernelData kernel;
+    private Mat kernelMat;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        NativeLibrary.load();
+        source = SyntheticImages.gray(size, size, bitsStored);
+        kernel = buildKernel(kernelType, kernelSize);
+        kernelMat = toMat(kernel);
+
+        ImageCV img = SyntheticImages.gray(CHECK_SIZE, CHECK_SIZE, bitsStored);
+        for (KernelData k : KernelData.getAllFilters()) {
+            check(img, k);
+        }
+        check(img, kernel);
+    }
+
+    static KernelData buildKernel(KernelType type, int n) {
+        if (type == KernelType.GAUSSIAN) {
+            return KernelData.gaussianKernel(type.name(), n, n);
+        }
+        // Zero sum (edge-like) kernel with a positive center, not separable
+        Random random = new Random(n);
+        float[] data = new float[n * n];
+        float sum = 0.0F;
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextFloat() - 0.5F;
+            sum += data[i];
+        }
+        data[data.length / 2] += 1.0F - sum;
+        return new KernelData(type.name(), false, n, n, data);
+    }
+
+    private static Mat toMat(KernelData kernel) {
+        Mat k = new Mat(kernel.getHeight(), kernel.getWidth(), CvType.CV_32F);
+        k.put(0, 0, kernel.getData());
+        return k;
+    }
+
+    private static void check(Mat img, KernelData kernel) {
+        Mat reference = new Mat();
+        Imgproc.filter2D(img, reference, -1, toMat(kernel));
+        ImageCV result = KernelFilter.of(kernel).apply(img);
+        Mat diff = new Mat();
+        Core.absdiff(reference, result, diff);
+        MinMaxLocResult minMax = Core.minMaxLoc(diff);
+        if (minMax.maxVal > MAX_ERROR) {
+            throw new IllegalStateException(String.format("Kernel %s (%s): max error %.1f", kernel.getName(), //$NON-NLS-1$
+                KernelFilter.of(kernel).getMethod(), minMax.maxVal));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        source.release();
+    }
+
+    @Benchmark
+    public Mat filter2D() {
+        Mat dst = new Mat();
+        Imgproc.filter2D(source, dst, -1, kernelMat);
+        return dst;
+    }
+
+    @Benchmark
+    public Mat dispatched() {
+        return KernelFilter.of(kernel).apply(source);
+    }
+}
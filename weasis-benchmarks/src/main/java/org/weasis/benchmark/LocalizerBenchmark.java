@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.weasis.dicom.codec.geometry.GeometryOfSlice;
+import org.weasis.dicom.codec.geometry.IntersectSlice;
+import org.weasis.dicom.codec.geometry.IntersectVolume;
+import org.weasis.dicom.codec.geometry.LocalizerOutline;
+import org.weasis.dicom.codec.geometry.SlicePlane;
+
+/**
+ * Reference lines of a 4x4 synchronized layout while scrolling through a series of 2000 slices: for each slice, the
+ * 15 other views display the first and the last slices and the slab of the current slice (like
+ * View2d.computeCrosslines()). Compares the vecmath localizer posters, the allocation-free outlines for each view,
+ * the batch computation for the layout and the cached outlines.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocalizerBenchmark {
+
+    static final int SLICE_COUNT = 2000;
+    static final int VIEW_COUNT = 15;
+
+    private GeometryOfSlice[] slices;
+    private SlicePlane[] slicePlanes;
+    private GeometryOfSlice[] views;
+    private SlicePlane[] viewPlanes;
+
+    private final double[] work = new double[LocalizerOutline.WORK_SIZE];
+    private final double[] out = new double[LocalizerOutline.OUTPUT_SIZE];
+    private final double[] batchOut = new double[VIEW_COUNT * LocalizerOutline.OUTPUT_SIZE];
+    private final int[] counts = new int[VIEW_COUNT];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        double[] spacing = { 0.7, 0.7, 1.0 };
+        double[] dim = { 512, 512, 1 };
+        slices = new GeometryOfSlice[SLICE_COUNT];
+        slicePlanes = new SlicePlane[SLICE_COUNT];
+        for (int i = 0; i < SLICE_COUNT; i++) {
+            // Slightly tilted axial series
+            slices[i] = new GeometryOfSlice(new double[] { 1, 0, 0 },
+                new double[] { 0, Math.cos(0.1), -Math.sin(0.1) }, new double[] { -180, -180, -1000 + i }, spacing,
+                1.0, dim);
+            slicePlanes[i] = new SlicePlane(slices[i]);
+        }
+
+        views = new GeometryOfSlice[VIEW_COUNT];
+        viewPlanes = new SlicePlane[VIEW_COUNT];
+        for (int i = 0; i < VIEW_COUNT; i++) {
+            // Sagittal and coronal views with different obliquities
+            double angle = (i - VIEW_COUNT / 2) * 0.05;
+            double[] row = i % 2 == 0 ? new double[] { Math.cos(angle), Math.sin(angle), 0 }
+                : new double[] { Math.sin(angle), Math.cos(angle), 0 };
+            double[] column = { 0, 0, -1 };
+            views[i] = new GeometryOfSlice(row, column, new double[] { -250, -250 + i * 10, 1200 },
+                new double[] { 1.2, 1.2, 1.0 }, 1.0, new double[] { 2400, 512, 1 });
+            viewPlanes[i] = new SlicePlane(views[i]);
+        }
+        LocalizerOutline.clearCache();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SLICE_COUNT)
+    public void localizerPoster(Blackhole bh) {
+        GeometryOfSlice first = slices[0];
+        GeometryOfSlice last = slices[SLICE_COUNT - 1];
+        for (int s = 0; s < SLICE_COUNT; s++) {
+            for (int v = 0; v < VIEW_COUNT; v++) {
+                IntersectSlice slice = new IntersectSlice(views[v]);
+                bh.consume(slice.getOutlineOnLocalizerForThisGeometry(first));
+                bh.consume(slice.getOutlineOnLocalizerForThisGeometry(last));
+                bh.consume(new IntersectVolume(views[v]).getOutlineOnLocalizerForThisGeometry(slices[s]));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SLICE_COUNT)
+    public void outline(Blackhole bh) {
+        SlicePlane first = slicePlanes[0];
+        SlicePlane last = slicePlanes[SLICE_COUNT - 1];
+        for (int s = 0; s < SLICE_COUNT; s++) {
+            for (int v = 0; v < VIEW_COUNT; v++) {
+                bh.consume(LocalizerOutline.intersectSlice(viewPlanes[v], first, work, out, 0));
+                bh.consume(LocalizerOutline.intersectSlice(viewPlanes[v], last, work, out, 0));
+                bh.consume(LocalizerOutline.intersectVolume(viewPlanes[v], slicePlanes[s], work, out, 0));
+            }
+            bh.consume(out);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SLICE_COUNT)
+    public void batch(Blackhole bh) {
+        SlicePlane first = slicePlanes[0];
+        SlicePlane last = slicePlanes[SLICE_COUNT - 1];
+        for (int s = 0; s < SLICE_COUNT; s++) {
+            LocalizerOutline.intersect(viewPlanes, first, false, work, batchOut, counts);
+            LocalizerOutline.intersect(viewPlanes, last, false, work, batchOut, counts);
+            LocalizerOutline.intersect(viewPlanes, slicePlanes[s], true, work, batchOut, counts);
+            bh.consume(batchOut);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SLICE_COUNT)
+    public void cached(Blackhole bh) {
+        SlicePlane first = slicePlanes[0];
+        SlicePlane last = slicePlanes[SLICE_COUNT - 1];
+        for (int s = 0; s < SLICE_COUNT; s++) {
+            for (int v = 0; v < VIEW_COUNT; v++) {
+                bh.consume(LocalizerOutline.getOutline(viewPlanes[v], first, false));
+                bh.consume(LocalizerOutline.getOutline(viewPlanes[v], last, false));
+                bh.consume(LocalizerOutline.getOutline(viewPlanes[v], slicePlanes[s], true));
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.CvType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.benchmark.data.NativeLibrary;
+import org.weasis.core.api.media.data.NativeCache;
+import org.weasis.opencv.data.ImageCV;
+
+/**
+ * Lookup and insertion in {@link NativeCache} with a working set larger than the cache (entries are evicted).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NativeCacheBenchmark {
+
+    private static final int ENTRY_SIZE = 64 * 64 * 2;
+
+    /**
+     * Number of distinct keys compared to the number of entries the cache can hold.
+     */
+    @Param({ "0.5", "2.0" })
+    public double workingSetRatio;
+
+    @Param({ "1000" })
+    public int capacity;
+
+    private NativeCache<Integer, ImageCV> cache;
+    private int keys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        NativeLibrary.load();
+        cache = new NativeCache<Integer, ImageCV>((long) capacity * ENTRY_SIZE) {
+            @Override
+            protected void afterEntryRemove(Integer key, ImageCV img) {
+                if (img != null) {
+                    img.release();
+                }
+            }
+        };
+        keys = Math.max(1, (int) (capacity * workingSetRatio));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.clear();
+    }
+
+    @Benchmark
+    public ImageCV getOrPut() {
+        return getOrPut(cache, ThreadLocalRandom.current().nextInt(keys));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ImageCV getOrPutConcurrent() {
+        return getOrPut(cache, ThreadLocalRandom.current().nextInt(keys));
+    }
+
+    private static ImageCV getOrPut(NativeCache<Integer, ImageCV> cache, Integer key) {
+        ImageCV img = cache.get(key);
+        if (img == null) {
+            img = new ImageCV(64, 64, CvType.CV_16UC1);
+            cache.put(key, img);
+        }
+        return img;
+    }
+}
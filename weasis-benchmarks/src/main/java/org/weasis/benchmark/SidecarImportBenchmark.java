@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmark;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.weasis.core.api.media.data.SimpleTagable;
+import org.weasis.core.api.util.FileUtil;
+import org.weasis.core.ui.model.GraphicModel;
+import org.weasis.core.ui.model.graphic.imp.line.LineGraphic;
+import org.weasis.core.ui.model.imp.XmlGraphicModel;
+import org.weasis.core.ui.serialize.XmlSerializer;
+
+/**
+ * Sidecar graphic files at import over 10000 files, with and without sidecar files: previous behavior (one JAXB
+ * context per file), eager read with the shared context and lazy read (only the path is kept at import).
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SidecarImportBenchmark {
+
+    static final int FILE_COUNT = 10000;
+
+    @Param({ "true", "false" })
+    public boolean sidecars;
+
+    private Path dir;
+    private File[] files;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, JAXBException {
+        dir = Files.createTempDirectory("sidecar"); //$NON-NLS-1$
+        GraphicModel model = new XmlGraphicModel();
+        LineGraphic line = new LineGraphic();
+        line.setPts(Arrays.asList(new Point2D.Double(10.0, 10.0), new Point2D.Double(100.5, 80.0)));
+        model.addGraphic(line);
+        files = new File[FILE_COUNT];
+        for (int i = 0; i < FILE_COUNT; i++) {
+            files[i] = dir.resolve("img" + i + ".dcm").toFile(); //$NON-NLS-1$ //$NON-NLS-2$
+            Files.createFile(files[i].toPath());
+            if (sidecars) {
+                XmlSerializer.getContext(XmlGraphicModel.class).createMarshaller().marshal(model,
+                    new File(files[i].getPath() + ".xml")); //$NON-NLS-1$
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileUtil.recursiveDelete(dir.toFile());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public void contextPerFile(Blackhole bh) throws JAXBException {
+        for (File f : files) {
+            File gpxFile = new File(f.getPath() + ".xml"); //$NON-NLS-1$
+            if (gpxFile.canRead()) {
+                JAXBContext context = JAXBContext.newInstance(XmlGraphicModel.class);
+                bh.consume(context.createUnmarshaller().unmarshal(gpxFile));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public void sharedContext(Blackhole bh) {
+        for (File f : files) {
+            bh.consume(XmlSerializer.readPresentationModel(new File(f.getPath() + ".xml"))); //$NON-NLS-1$
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public void lazy(Blackhole bh) {
+        for (File f : files) {
+            SimpleTagable tags = new SimpleTagable();
+            XmlSerializer.setPresentationModelPath(tags, f);
+            bh.consume(tags);
+        }
+    }
+}
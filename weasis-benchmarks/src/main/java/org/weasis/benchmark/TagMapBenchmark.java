@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.core.api.media.data.TagMap;
+import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.media.data.TagW.TagType;
+
+/**
+ * Tags of a synthetic series of 10000 instances with 60 tags each, stored in HashMap (before) and TagMap (after). The
+ * time to build the series is measured and the heap retained by the series is reported after each iteration (the
+ * allocations are also given by running with {@code -prof gc}).
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+@State(Scope.Benchmark)
+public class TagMapBenchmark {
+
+    static final int INSTANCE_COUNT = 10_000;
+    static final int TAG_COUNT = 60;
+
+    public enum MapType {
+        HASH_MAP, TAG_MAP
+    }
+
+    @Param({ "HASH_MAP", "TAG_MAP" })
+    public MapType map;
+
+    private final List<TagW> tags = new ArrayList<>(TAG_COUNT);
+    private List<Map<TagW, Object>> series;
+    private long usedBefore;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        for (int i = 0; i < TAG_COUNT; i++) {
+            tags.add(new TagW(0x00100000 + i, "TagMapBenchmark" + i, TagType.STRING)); //$NON-NLS-1$
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clearSeries() {
+        series = null;
+        usedBefore = usedMemory();
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportFootprint() {
+        long retained = usedMemory() - usedBefore;
+        System.out.println(String.format("%n%s: tags of %d instances retain %d KB", map, series.size(), //$NON-NLS-1$
+            retained / 1024));
+        series = null;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public List<Map<TagW, Object>> buildSeries() {
+        List<Map<TagW, Object>> list = new ArrayList<>(INSTANCE_COUNT);
+        for (int i = 0; i < INSTANCE_COUNT; i++) {
+            Map<TagW, Object> values = map == MapType.TAG_MAP ? new TagMap() : new HashMap<>();
+            for (int k = 0; k < TAG_COUNT; k++) {
+                Object val;
+                switch (k % 4) {
+                    case 0:
+                        // Series level string, a new instance for each file like the DICOM parser
+                        val = new String("SIEMENS_" + k); //$NON-NLS-1$
+                        break;
+                    case 1:
+                        val = new double[] { 0.5, 0.5 };
+                        break;
+                    case 2:
+                        val = Integer.valueOf(i * TAG_COUNT + k);
+                        break;
+                    default:
+                        // Instance level string
+                        val = "1.2.3.4." + i + "." + k; //$NON-NLS-1$ //$NON-NLS-2$
+                        break;
+                }
+                values.put(tags.get(k), val);
+            }
+            list.add(values);
+        }
+        series = list;
+        return list;
+    }
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmark;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.benchmark.data.NativeLibrary;
+import org.weasis.benchmark.data.SyntheticImages;
+import org.weasis.core.api.media.data.ThumbnailDiskCache;
+import org.weasis.core.api.media.data.ThumbnailService;
+import org.weasis.core.api.util.FileUtil;
+import org.weasis.opencv.data.ImageCV;
+import org.weasis.opencv.data.PlanarImage;
+import org.weasis.opencv.op.ImageProcessor;
+
+/**
+ * Thumbnail latency over 5000 synthetic JPEG files: cold (empty persistent cache, reduced resolution decoding and
+ * encoding of the thumbnail) and warm (read from the persistent cache), with 1 to N workers. The setup checks that the
+ * cache size stays below its limit.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ThumbnailBenchmark {
+
+    static final int FILE_COUNT = 5000;
+    static final int THUMBNAIL_SIZE = 150;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    @Param({ "1024" })
+    public int size;
+
+    private Path sourceDir;
+    private File[] files;
+    private ThumbnailService service;
+    private ThumbnailDiskCache diskCache;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        NativeLibrary.load();
+        sourceDir = Files.createTempDirectory("thumb-src"); //$NON-NLS-1$
+        ImageCV img = SyntheticImages.gray(size, size, 8);
+        MatOfInt params = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 90);
+        files = new File[FILE_COUNT];
+        for (int i = 0; i < FILE_COUNT; i++) {
+            files[i] = sourceDir.resolve("img" + i + ".jpg").toFile(); //$NON-NLS-1$ //$NON-NLS-2$
+            Imgcodecs.imwrite(files[i].getPath(), img, params);
+        }
+        // Large enough for all the thumbnails
+        diskCache = new ThumbnailDiskCache(Files.createTempDirectory("thumb-cache"), 1024L * 1024L * 1024L); //$NON-NLS-1$
+        service = new ThumbnailService(threads, diskCache);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.shutdown();
+        long limit = diskCache.getMaxSize();
+        if (diskCache.getSize() > limit) {
+            throw new IllegalStateException("Cache size " + diskCache.getSize() + " above " + limit); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        diskCache.clear();
+        FileUtil.recursiveDelete(diskCache.getDirectory().toFile());
+        FileUtil.recursiveDelete(sourceDir.toFile());
+    }
+
+    @State(Scope.Thread)
+    public static class ColdCache {
+        @Setup(Level.Invocation)
+        public void clear(ThumbnailBenchmark benchmark) {
+            benchmark.diskCache.clear();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class WarmCache {
+        @Setup(Level.Invocation)
+        public void fill(ThumbnailBenchmark benchmark) throws InterruptedException {
+            benchmark.buildAll();
+        }
+    }
+
+    void buildAll() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(files.length);
+        for (int i = 0; i < files.length; i++) {
+            final File file = files[i];
+            service.execute(() -> {
+                try {
+                    buildThumbnail(file);
+                } finally {
+                    done.countDown();
+                }
+            }, ThumbnailService.PRIORITY_VISIBLE + i);
+        }
+        done.await();
+    }
+
+    private PlanarImage buildThumbnail(File file) {
+        String key = ThumbnailDiskCache.buildKey(file, null, null, THUMBNAIL_SIZE);
+        File cached = diskCache.get(key);
+        if (cached != null) {
+            return ImageProcessor.readImage(cached);
+        }
+        PlanarImage img = ThumbnailService.readImage(file, THUMBNAIL_SIZE);
+        ImageCV thumb = ImageProcessor.buildThumbnail(img, new Dimension(THUMBNAIL_SIZE, THUMBNAIL_SIZE), true);
+        MatOfInt map = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 80);
+        diskCache.store(key, f -> ImageProcessor.writeImage(thumb, f, map));
+        return thumb;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public void cold(ColdCache state) throws InterruptedException {
+        buildAll();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public void warm(WarmCache state) throws InterruptedException {
+        buildAll();
+    }
+}
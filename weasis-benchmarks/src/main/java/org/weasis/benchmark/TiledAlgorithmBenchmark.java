@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.benchmark.data.NativeLibrary;
+import org.weasis.benchmark.data.SyntheticImages;
+import org.weasis.core.api.image.util.KernelData;
+import org.weasis.opencv.data.ImageCV;
+import org.weasis.opencv.op.tile.TiledAlgorithm;
+
+/**
+ * Scaling of the tiled engine from 1 to N threads on a filter (with halo) and a window/level rescaling (point
+ * operator). The setup checks that the tiled results are identical to the whole image operation for several tile
+ * layouts: square tiles, 1xN strips, Nx1 strips and tile sizes not dividing the image size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class TiledAlgorithmBenchmark {
+
+    /** Tile layouts checked at setup: {width, height}. */
+    static final int[][] TILE_LAYOUTS = { { 512, 512 }, { 1, 4096 }, { 4096, 1 }, { 300, 700 }, { 97, 61 } };
+    static final int CHECK_SIZE = 1000;
+
+    @Param({ "1", "2", "4", "8" })
+    public int parallelism;
+
+    @Param({ "4096" })
+    public int size;
+
+    private ImageCV source;
+    private ImageCV result;
+    private Mat kernel;
+    private TiledAlgorithm filter;
+    private TiledAlgorithm rescale;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        NativeLibrary.load();
+        source = SyntheticImages.gray(size, size, 16);
+        result = new ImageCV();
+        kernel = toMat(KernelData.GAUSSIAN9);
+        filter = newFilter(kernel, TiledAlgorithm.DEFAULT_TILE_SIZE, TiledAlgorithm.DEFAULT_TILE_SIZE);
+        filter.setParallelism(parallelism);
+        rescale = newRescale(TiledAlgorithm.DEFAULT_TILE_SIZE, TiledAlgorithm.DEFAULT_TILE_SIZE);
+        rescale.setParallelism(parallelism);
+        checkIdentity();
+    }
+
+    private void checkIdentity() {
+        ImageCV img = SyntheticImages.gray(CHECK_SIZE, CHECK_SIZE, 16);
+        Mat filterRef = new Mat();
+        Imgproc.filter2D(img, filterRef, -1, kernel);
+        Mat rescaleRef = new Mat();
+        img.convertTo(rescaleRef, CvType.CV_8U, 255.0 / 65535.0, 0.0);
+        for (int[] layout : TILE_LAYOUTS) {
+            checkIdentity(newFilter(kernel, layout[0], layout[1]), img, filterRef, layout);
+            checkIdentity(newRescale(layout[0], layout[1]), img, rescaleRef, layout);
+        }
+    }
+
+    private void checkIdentity(TiledAlgorithm algo, Mat img, Mat reference, int[] layout) {
+        algo.setParallelism(Math.max(2, parallelism));
+        Mat tiled = new Mat();
+        algo.process(img, tiled);
+        Mat diff = new Mat();
+        Core.absdiff(reference, tiled, diff);
+        if (Core.countNonZero(diff) != 0) {
+            throw new IllegalStateException(String.format("Tiled result differs with tiles of %dx%d", //$NON-NLS-1$
+                layout[0], layout[1]));
+        }
+    }
+
+    static Mat toMat(KernelData kernel) {
+        Mat k = new Mat(kernel.getHeight(), kernel.getWidth(), CvType.CV_32F);
+        k.put(0, 0, kernel.getData());
+        return k;
+    }
+
+    static TiledAlgorithm newFilter(final Mat kernel, int tileWidth, int tileHeight) {
+        int padding = Math.max(kernel.cols(), kernel.rows()) / 2;
+        return new TiledAlgorithm(tileWidth, tileHeight, padding, Core.BORDER_DEFAULT) {
+            @Override
+            protected void processTile(Mat tileInput, Mat tileOutput) {
+                Imgproc.filter2D(tileInput, tileOutput, -1, kernel);
+            }
+        };
+    }
+
+    static TiledAlgorithm newRescale(int tileWidth, int tileHeight) {
+        return new TiledAlgorithm(tileWidth, tileHeight, 0, Core.BORDER_DEFAULT) {
+            @Override
+            protected int getOutputType(Mat src) {
+                return CvType.makeType(CvType.CV_8U, src.channels());
+            }
+
+            @Override
+            protected void processTile(Mat tileInput, Mat tileOutput) {
+                tileInput.convertTo(tileOutput, CvType.CV_8U, 255.0 / 65535.0, 0.0);
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        source.release();
+        result.release();
+    }
+
+    @Benchmark
+    public Mat filter() {
+        filter.process(source, result);
+        return result;
+    }
+
+    @Benchmark
+    public Mat rescaleToByte() {
+        rescale.process(source, result);
+        return result;
+    }
+}
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmark.data;
+
+import org.opencv.core.Core;
+
+/**
+ * Loads the OpenCV native library outside of the OSGI framework (the native bundle activator is not available). The
+ * library path must be given with -Djava.library.path when launching the benchmarks.
+ */
+public final class NativeLibrary {
+
+    private static volatile boolean loaded = false;
+
+    private NativeLibrary() {
+    }
+
+    public static synchronized void load() {
+        if (!loaded) {
+            System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+            loaded = true;
+        }
+    }
+}
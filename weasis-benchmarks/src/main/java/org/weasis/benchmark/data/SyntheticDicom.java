@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmark.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Fragments;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.util.UIDUtils;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * Writes synthetic single frame DICOM files with different transfer syntaxes.
+ */
+public final class SyntheticDicom {
+
+    /**
+     * Directory containing pre-encoded files (named like {@code JPEG_LS_16_512.dcm}) for the encodings that cannot be
+     * produced in Java.
+     */
+    public static final String P_CORPUS_DIR = "weasis.benchmark.corpus"; //$NON-NLS-1$
+
+    public enum Encoding {
+        RAW(UID.ExplicitVRLittleEndian, 16),
+        RLE(UID.RLELossless, 16),
+        JPEG_BASELINE(UID.JPEGBaseline1, 8),
+        JPEG_LS(UID.JPEGLSLossless, 16),
+        JPEG_2000(UID.JPEG2000LosslessOnly, 16);
+
+        private final String transferSyntaxUID;
+        private final int maxBitsStored;
+
+        private Encoding(String transferSyntaxUID, int maxBitsStored) {
+            this.transferSyntaxUID = transferSyntaxUID;
+            this.maxBitsStored = maxBitsStored;
+        }
+
+        public String getTransferSyntaxUID() {
+            return transferSyntaxUID;
+        }
+
+        public int getMaxBitsStored() {
+            return maxBitsStored;
+        }
+    }
+
+    private SyntheticDicom() {
+    }
+
+    /**
+     * @param input
+     *            encoding and bits stored separated by the last underscore (e.g. RAW_12, JPEG_2000_16)
+     * @param size
+     *            width and height of the image
+     * @param dir
+     *            the output directory
+     * @return the DICOM file
+     * @throws IOException
+     */
+    public static File write(String input, int size, File dir) throws IOException {
+        int index = input.lastIndexOf('_');
+        if (index < 0) {
+            throw new IllegalArgumentException("Expected format is ENCODING_BITS: " + input); //$NON-NLS-1$
+        }
+        Encoding encoding = Encoding.valueOf(input.substring(0, index));
+        int bitsStored = Integer.parseInt(input.substring(index + 1));
+        return write(encoding, bitsStored, size, dir);
+    }
+
+    public static File write(Encoding encoding, int bitsStored, int size, File dir) throws IOException {
+        if (bitsStored > encoding.getMaxBitsStored()) {
+            throw new IllegalArgumentException(encoding + " cannot encode " + bitsStored + " bits"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        String name = encoding.name() + "_" + bitsStored + "_" + size + ".dcm"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        File file = new File(dir, name);
+        if (encoding == Encoding.JPEG_LS) {
+            // No JPEG-LS encoder is available from Java in this environment
+            File corpus = new File(System.getProperty(P_CORPUS_DIR, ""), name); //$NON-NLS-1$
+            if (!corpus.canRead()) {
+                throw new IllegalStateException("Pre-encoded file not found: " + corpus + " (set -D" + P_CORPUS_DIR //$NON-NLS-1$ //$NON-NLS-2$
+                    + ")"); //$NON-NLS-1$
+            }
+            Files.copy(corpus.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return file;
+        }
+
+        Mat img = SyntheticImages.gray(size, size, bitsStored);
+        Attributes dcm = buildHeader(size, bitsStored);
+        switch (encoding) {
+            case RAW:
+                dcm.setBytes(Tag.PixelData, bitsStored > 8 ? VR.OW : VR.OB, SyntheticImages.toBytes(img));
+                break;
+            case RLE:
+                addFragment(dcm, encodeRLE(img, size, size, bitsStored > 8 ? 2 : 1));
+                break;
+            case JPEG_BASELINE:
+                addFragment(dcm, encode(".jpg", img, new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 90))); //$NON-NLS-1$
+                dcm.setString(Tag.LossyImageCompression, VR.CS, "01"); //$NON-NLS-1$
+                break;
+            case JPEG_2000:
+                addFragment(dcm, encode(".jp2", img, new MatOfInt())); //$NON-NLS-1$
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported encoding: " + encoding); //$NON-NLS-1$
+        }
+
+        try (DicomOutputStream out = new DicomOutputStream(file)) {
+            out.writeDataset(dcm.createFileMetaInformation(encoding.getTransferSyntaxUID()), dcm);
+        }
+        return file;
+    }
+
+    private static Attributes buildHeader(int size, int bitsStored) {
+        Attributes dcm = new Attributes();
+        dcm.setString(Tag.SOPClassUID, VR.UI, UID.SecondaryCaptureImageStorage);
+        dcm.setString(Tag.SOPInstanceUID, VR.UI, UIDUtils.createUID());
+        dcm.setString(Tag.StudyInstanceUID, VR.UI, UIDUtils.createUID());
+        dcm.setString(Tag.SeriesInstanceUID, VR.UI, UIDUtils.createUID());
+        dcm.setString(Tag.PatientID, VR.LO, "BENCH"); //$NON-NLS-1$
+        dcm.setString(Tag.PatientName, VR.PN, "Benchmark^Synthetic"); //$NON-NLS-1$
+        dcm.setString(Tag.Modality, VR.CS, "OT"); //$NON-NLS-1$
+        dcm.setInt(Tag.InstanceNumber, VR.IS, 1);
+        dcm.setInt(Tag.SamplesPerPixel, VR.US, 1);
+        dcm.setString(Tag.PhotometricInterpretation, VR.CS, "MONOCHROME2"); //$NON-NLS-1$
+        dcm.setInt(Tag.Rows, VR.US, size);
+        dcm.setInt(Tag.Columns, VR.US, size);
+        dcm.setInt(Tag.BitsAllocated, VR.US, bitsStored > 8 ? 16 : 8);
+        dcm.setInt(Tag.BitsStored, VR.US, bitsStored);
+        dcm.setInt(Tag.HighBit, VR.US, bitsStored - 1);
+        dcm.setInt(Tag.PixelRepresentation, VR.US, 0);
+        return dcm;
+    }
+
+    private static byte[] encode(String ext, Mat img, MatOfInt params) {
+        MatOfByte buf = new MatOfByte();
+        if (!Imgcodecs.imencode(ext, img, buf, params)) {
+            throw new IllegalStateException("Cannot encode image with " + ext); //$NON-NLS-1$
+        }
+        return buf.toArray();
+    }
+
+    private static void addFragment(Attributes dcm, byte[] frame) {
+        Fragments frags = dcm.newFragments(Tag.PixelData, VR.OB, 2);
+        // Empty basic offset table
+        frags.add(new byte[0]);
+        if ((frame.length & 1) != 0) {
+            byte[] padded = new byte[frame.length + 1];
+            System.arraycopy(frame, 0, padded, 0, frame.length);
+            frags.add(padded);
+        } else {
+            frags.add(frame);
+        }
+    }
+
+    /**
+     * DICOM RLE (PS 3.5 Annex G): one segment by byte plane, most significant byte first, each row is PackBits
+     * encoded separately.
+     */
+    static byte[] encodeRLE(Mat img, int width, int height, int bytesPerSample) {
+        byte[] raw = SyntheticImages.toBytes(img);
+        ByteArrayOutputStream[] segments = new ByteArrayOutputStream[bytesPerSample];
+        byte[] row = new byte[width];
+        for (int s = 0; s < bytesPerSample; s++) {
+            // Little endian raw data: the most significant byte has the highest index
+            int byteIndex = bytesPerSample - 1 - s;
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / bytesPerSample);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    row[x] = raw[(y * width + x) * bytesPerSample + byteIndex];
+                }
+                packBits(row, width, out);
+            }
+            if ((out.size() & 1) != 0) {
+                out.write(0);
+            }
+            segments[s] = out;
+        }
+
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        int offset = 64;
+        writeIntLE(frame, bytesPerSample);
+        for (int i = 0; i < 15; i++) {
+            writeIntLE(frame, i < bytesPerSample ? offset : 0);
+            if (i < bytesPerSample) {
+                offset += segments[i].size();
+            }
+        }
+        for (ByteArrayOutputStream s : segments) {
+            byte[] b = s.toByteArray();
+            frame.write(b, 0, b.length);
+        }
+        return frame.toByteArray();
+    }
+
+    static void packBits(byte[] src, int len, ByteArrayOutputStream out) {
+        int i = 0;
+        while (i < len) {
+            int run = 1;
+            while (i + run < len && run < 128 && src[i + run] == src[i]) {
+                run++;
+            }
+            if (run > 1) {
+                out.write(1 - run);
+                out.write(src[i]);
+                i += run;
+            } else {
+                int start = i;
+                int literal = 0;
+                while (i < len && literal < 128) {
+                    if (i + 1 < len && src[i] == src[i + 1]) {
+                        break;
+                    }
+                    i++;
+                    literal++;
+                }
+                out.write(literal - 1);
+                out.write(src, start, literal);
+            }
+        }
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int val) {
+        out.write(val);
+        out.write(val >> 8);
+        out.write(val >> 16);
+        out.write(val >> 24);
+    }
+}
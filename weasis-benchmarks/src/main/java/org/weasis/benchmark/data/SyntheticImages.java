@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.benchmark.data;
+
+import java.util.Random;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.weasis.opencv.data.ImageCV;
+
+/**
+ * Deterministic synthetic images: a smooth gradient with concentric rings and a low amplitude noise. The content is
+ * neither flat nor random, so the compression ratios stay in the range of real medical images.
+ */
+public final class SyntheticImages {
+
+    private static final long SEED = 0x5EED5EEDL;
+
+    private SyntheticImages() {
+    }
+
+    /**
+     * @param width
+     *            the image width
+     * @param height
+     *            the image height
+     * @param bitsStored
+     *            from 1 to 16. Values up to 8 bits are stored in a CV_8UC1 image, above in a CV_16UC1 image.
+     * @return the synthetic image
+     */
+    public static ImageCV gray(int width, int height, int bitsStored) {
+        if (bitsStored < 1 || bitsStored > 16) {
+            throw new IllegalArgumentException("Unsupported bits stored: " + bitsStored); //$NON-NLS-1$
+        }
+        int maxValue = (1 << bitsStored) - 1;
+        Random random = new Random(SEED);
+        double cx = width / 2.0;
+        double cy = height / 2.0;
+        double maxRadius = Math.sqrt(cx * cx + cy * cy);
+        int noise = Math.max(1, maxValue / 64);
+
+        if (bitsStored <= 8) {
+            byte[] data = new byte[width * height];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    data[y * width + x] = (byte) value(x, y, cx, cy, maxRadius, maxValue, noise, random);
+                }
+            }
+            ImageCV img = new ImageCV(height, width, CvType.CV_8UC1);
+            img.put(0, 0, data);
+            return img;
+        }
+
+        short[] data = new short[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                data[y * width + x] = (short) value(x, y, cx, cy, maxRadius, maxValue, noise, random);
+            }
+        }
+        ImageCV img = new ImageCV(height, width, CvType.CV_16UC1);
+        img.put(0, 0, data);
+        return img;
+    }
+
+    private static int value(int x, int y, double cx, double cy, double maxRadius, int maxValue, int noise,
+        Random random) {
+        double dx = x - cx;
+        double dy = y - cy;
+        double r = Math.sqrt(dx * dx + dy * dy) / maxRadius;
+        double ring = 0.5 + 0.5 * Math.cos(r * 24.0 * Math.PI);
+        double v = (0.6 * (1.0 - r) + 0.4 * ring) * (maxValue - noise);
+        int val = (int) v + random.nextInt(noise + 1);
+        return Math.max(0, Math.min(maxValue, val));
+    }
+
+    public static byte[] toBytes(Mat img) {
+        byte[] data = new byte[(int) (img.total() * img.elemSize())];
+        if (CvType.depth(img.type()) <= CvType.CV_8S) {
+            img.get(0, 0, data);
+        } else {
+            short[] s = new short[(int) img.total() * img.channels()];
+            img.get(0, 0, s);
+            // Little endian
+            for (int i = 0; i < s.length; i++) {
+                data[2 * i] = (byte) s[i];
+                data[2 * i + 1] = (byte) (s[i] >> 8);
+            }
+        }
+        return data;
+    }
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.explorer.model;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.weasis.core.api.media.data.MediaSeriesGroup;
+
+/**
+ * Immutable summary of a committed {@link TreeModelTransaction}. It is sent as the new value of a single
+ * {@link org.weasis.core.api.explorer.ObservableEvent.BasicAction#ADD} event, so the listeners can update only the
+ * parts of the view related to the batch.
+ */
+public class TreeModelChange {
+
+    private final TreeModel model;
+    private final Set<MediaSeriesGroup> addedNodes;
+    private final Set<MediaSeriesGroup> updatedNodes;
+    private final int mediaCount;
+
+    TreeModelChange(TreeModel model, Set<MediaSeriesGroup> addedNodes, Set<MediaSeriesGroup> updatedNodes,
+        int mediaCount) {
+        this.model = model;
+        this.addedNodes = Collections.unmodifiableSet(addedNodes);
+        this.updatedNodes = Collections.unmodifiableSet(updatedNodes);
+        this.mediaCount = mediaCount;
+    }
+
+    public TreeModel getModel() {
+        return model;
+    }
+
+    /**
+     * @return the nodes inserted in the model (all levels), in insertion order
+     */
+    public Set<MediaSeriesGroup> getAddedNodes() {
+        return addedNodes;
+    }
+
+    /**
+     * @return the nodes already in the model before the commit which have received new media elements
+     */
+    public Set<MediaSeriesGroup> getUpdatedNodes() {
+        return updatedNodes;
+    }
+
+    public int getMediaCount() {
+        return mediaCount;
+    }
+
+    public boolean isEmpty() {
+        return addedNodes.isEmpty() && updatedNodes.isEmpty();
+    }
+
+    /**
+     * @param level
+     *            the level of the model structure
+     * @return the nodes of this level which are or contain an added or an updated node
+     */
+    public Set<MediaSeriesGroup> getAffectedNodes(TreeModelNode level) {
+        Set<MediaSeriesGroup> nodes = new LinkedHashSet<>();
+        for (MediaSeriesGroup node : addedNodes) {
+            addParent(nodes, node, level);
+        }
+        for (MediaSeriesGroup node : updatedNodes) {
+            addParent(nodes, node, level);
+        }
+        return nodes;
+    }
+
+    private void addParent(Set<MediaSeriesGroup> nodes, MediaSeriesGroup node, TreeModelNode level) {
+        MediaSeriesGroup parent = model.getParent(node, level);
+        if (parent != null) {
+            nodes.add(parent);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "added: " + addedNodes.size() + ", updated: " + updatedNodes.size() + ", media: " + mediaCount; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+}
@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.explorer.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.weasis.core.api.explorer.ObservableEvent;
+import org.weasis.core.api.media.data.MediaElement;
+import org.weasis.core.api.media.data.MediaSeriesGroup;
+import org.weasis.core.api.media.data.Series;
+import org.weasis.core.api.media.data.SeriesEvent;
+import org.weasis.core.api.metrics.Histogram;
+import org.weasis.core.api.metrics.MetricRegistry;
+
+/**
+ * Collects the nodes and the media elements of a loading task outside the model, then applies them in one step.
+ * <p>
+ * The building methods are called from the loading thread without holding the model lock, except for the lookup of
+ * the existing nodes. {@link #commit()} inserts the nodes and the media elements while holding the lock of the model
+ * (so the readers never see a partial batch) and sends a single {@link ObservableEvent.BasicAction#ADD} event with a
+ * {@link TreeModelChange} instead of one event for each insertion. The commit never waits for the event dispatch
+ * thread.
+ * <p>
+ * A transaction is not thread-safe, each loading thread must use its own instance. It can be committed several times,
+ * the pending content is cleared after each commit.
+ *
+ * @param <M>
+ *            the model type
+ */
+public class TreeModelTransaction<M extends TreeModel & DataExplorerModel> {
+
+    private static final Histogram COMMIT_TIME = MetricRegistry.getDefault().timer("model.transaction.commit"); //$NON-NLS-1$
+
+    private static final ThreadLocal<TreeModelTransaction<?>> COMMITTING = new ThreadLocal<>();
+
+    private final M model;
+    private final Object lock;
+
+    private final List<MediaSeriesGroup> pendingNodes = new ArrayList<>();
+    private final Map<MediaSeriesGroup, MediaSeriesGroup> pendingParents = new IdentityHashMap<>();
+    private final Map<MediaSeriesGroup, Map<Object, MediaSeriesGroup>> pendingChildren = new IdentityHashMap<>();
+    private final List<MediaSeriesGroup> mediaTargets = new ArrayList<>();
+    private final List<MediaElement> medias = new ArrayList<>();
+
+    // Only used while committing
+    private Set<MediaSeriesGroup> added;
+    private Set<MediaSeriesGroup> updated;
+
+    /**
+     * @param model
+     *            the model receiving the content
+     * @param lock
+     *            the object used by the model to synchronize the modifications of its tree
+     */
+    public TreeModelTransaction(M model, Object lock) {
+        this.model = Objects.requireNonNull(model);
+        this.lock = Objects.requireNonNull(lock);
+    }
+
+    public M getModel() {
+        return model;
+    }
+
+    /**
+     * @return the node of the pending content or of the model, null if not found
+     */
+    public MediaSeriesGroup getNode(MediaSeriesGroup parent, Object id) {
+        Map<Object, MediaSeriesGroup> children = pendingChildren.get(parent);
+        if (children != null) {
+            MediaSeriesGroup node = children.get(id);
+            if (node != null) {
+                return node;
+            }
+        }
+        if (pendingParents.containsKey(parent)) {
+            // A pending parent has no child in the model
+            return null;
+        }
+        return model.getHierarchyNode(parent, id);
+    }
+
+    /**
+     * @param id
+     *            the identifier of the node
+     * @param level
+     *            the level of the node in the model structure
+     * @return the matching node among the pending ones, null if not found
+     */
+    public MediaSeriesGroup findPendingNode(Object id, TreeModelNode level) {
+        for (MediaSeriesGroup node : pendingNodes) {
+            if (node.getTagID().equals(level.getTagElement()) && node.matchIdValue(id)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the parent of the given level, looked up first in the pending content and then in the model
+     */
+    public MediaSeriesGroup getParent(MediaSeriesGroup node, TreeModelNode level) {
+        MediaSeriesGroup n = node;
+        while (n != null && pendingParents.containsKey(n)) {
+            if (n.getTagID().equals(level.getTagElement())) {
+                return n;
+            }
+            n = pendingParents.get(n);
+        }
+        return model.getParent(n, level);
+    }
+
+    /**
+     * Add a new node to the pending content. The node is not visible in the model until the commit.
+     *
+     * @param parent
+     *            the parent node (from the model or from the pending content)
+     * @param node
+     *            the new node
+     */
+    public void addNode(MediaSeriesGroup parent, MediaSeriesGroup node) {
+        Objects.requireNonNull(parent);
+        Objects.requireNonNull(node);
+        pendingNodes.add(node);
+        pendingParents.put(node, parent);
+        pendingChildren.computeIfAbsent(parent, k -> new HashMap<>()).put(node.getTagValue(node.getTagID()), node);
+    }
+
+    /**
+     * @param factory
+     *            builds the node when it does not exist
+     * @return the existing node or the new one built by the factory
+     */
+    public MediaSeriesGroup getOrAddNode(MediaSeriesGroup parent, Object id,
+        Supplier<? extends MediaSeriesGroup> factory) {
+        MediaSeriesGroup node = getNode(parent, id);
+        if (node == null) {
+            node = factory.get();
+            addNode(parent, node);
+        }
+        return node;
+    }
+
+    public boolean isPending(MediaSeriesGroup node) {
+        return pendingParents.containsKey(node);
+    }
+
+    /**
+     * Add a media element to the pending content. At the commit, the media is inserted with
+     * {@link DataExplorerModel#applySplittingRules(Series, MediaElement)}.
+     */
+    public void addMedia(Series<?> series, MediaElement media) {
+        mediaTargets.add(Objects.requireNonNull(series));
+        medias.add(Objects.requireNonNull(media));
+    }
+
+    /**
+     * @return the number of pending nodes and media elements
+     */
+    public int size() {
+        return pendingNodes.size() + medias.size();
+    }
+
+    public boolean isEmpty() {
+        return pendingNodes.isEmpty() && medias.isEmpty();
+    }
+
+    public TreeModelChange commit() {
+        return commit(null);
+    }
+
+    /**
+     * Apply the pending content to the model and send one event describing the change.
+     *
+     * @param beforeNotification
+     *            called with the change after the model update and before sending the event, can be null
+     * @return the change applied to the model
+     */
+    public TreeModelChange commit(Consumer<TreeModelChange> beforeNotification) {
+        long start = System.nanoTime();
+        int mediaCount = medias.size();
+        added = new LinkedHashSet<>();
+        updated = new LinkedHashSet<>();
+        COMMITTING.set(this);
+        try {
+            synchronized (lock) {
+                // A concurrent task may have added the same node since the lookup
+                Map<MediaSeriesGroup, MediaSeriesGroup> resolved = new IdentityHashMap<>();
+                for (MediaSeriesGroup node : pendingNodes) {
+                    MediaSeriesGroup parent = pendingParents.get(node);
+                    parent = resolved.getOrDefault(parent, parent);
+                    MediaSeriesGroup existing = model.getHierarchyNode(parent, node.getTagValue(node.getTagID()));
+                    if (existing == null) {
+                        model.addHierarchyNode(parent, node);
+                        added.add(node);
+                    } else {
+                        resolved.put(node, existing);
+                    }
+                }
+                for (int i = 0; i < mediaCount; i++) {
+                    MediaSeriesGroup series = mediaTargets.get(i);
+                    series = resolved.getOrDefault(series, series);
+                    if (series instanceof Series) {
+                        if (!added.contains(series)) {
+                            updated.add(series);
+                        }
+                        model.applySplittingRules((Series<?>) series, medias.get(i));
+                    }
+                }
+            }
+        } finally {
+            COMMITTING.remove();
+        }
+        TreeModelChange change = new TreeModelChange(model, added, updated, mediaCount);
+        added = null;
+        updated = null;
+        pendingNodes.clear();
+        pendingParents.clear();
+        pendingChildren.clear();
+        mediaTargets.clear();
+        medias.clear();
+        COMMIT_TIME.recordSince(start);
+
+        if (beforeNotification != null) {
+            beforeNotification.accept(change);
+        }
+        if (!change.isEmpty()) {
+            model.firePropertyChange(new ObservableEvent(ObservableEvent.BasicAction.ADD, model, null, change));
+        }
+        return change;
+    }
+
+    /**
+     * @return true if the current thread is committing a transaction
+     */
+    public static boolean isCommitting() {
+        return COMMITTING.get() != null;
+    }
+
+    /**
+     * Must be called by {@link DataExplorerModel#firePropertyChange(ObservableEvent)} of the models supporting the
+     * transactions. The insertion events sent by the model while committing are merged into the change of the
+     * transaction.
+     *
+     * @param model
+     *            the model sending the event
+     * @param event
+     *            the event to send
+     * @return true when the event is merged and must not be sent
+     */
+    public static boolean absorb(Object model, ObservableEvent event) {
+        TreeModelTransaction<?> t = COMMITTING.get();
+        if (t == null || t.model != model || !ObservableEvent.BasicAction.ADD.equals(event.getActionCommand())) {
+            return false;
+        }
+        Object val = event.getNewValue();
+        if (val instanceof SeriesEvent) {
+            SeriesEvent e = (SeriesEvent) val;
+            if (SeriesEvent.Action.ADD_IMAGE.equals(e.getActionCommand())
+                && e.getSource() instanceof MediaSeriesGroup) {
+                MediaSeriesGroup series = (MediaSeriesGroup) e.getSource();
+                if (!t.added.contains(series)) {
+                    t.updated.add(series);
+                }
+                return true;
+            }
+        } else if (val instanceof MediaSeriesGroup) {
+            t.updated.remove(val);
+            t.added.add((MediaSeriesGroup) val);
+            return true;
+        }
+        return false;
+    }
+}
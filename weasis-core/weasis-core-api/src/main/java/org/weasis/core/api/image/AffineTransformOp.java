@@ -58,6 +58,11 @@ public class AffineTransformOp extends AbstractOp {
         return new AffineTransformOp(this);
     }
 
+    @Override
+    public boolean handlesInputScale() {
+        return true;
+    }
+
     @Override
     public void process() throws Exception {
         PlanarImage source = (PlanarImage) params.get(Param.INPUT_IMG);
@@ -68,7 +73,7 @@ public class AffineTransformOp extends AbstractOp {
         if (bound != null && matrix != null && !Arrays.equals(identityMatrix, matrix)) {
             if (bound.getWidth() > 0 && bound.getHeight() > 0) {
                 Mat mat = new Mat(2, 3, CvType.CV_64FC1);
-                mat.put(0, 0, matrix);
+                mat.put(0, 0, getInputMatrix(matrix, (double[]) params.get(Param.INPUT_SCALE)));
                 Integer interpolation = (Integer) params.get(P_INTERPOLATION);
                 if (interpolation != null && interpolation == 3) {
                     interpolation = 4;
@@ -83,4 +88,27 @@ public class AffineTransformOp extends AbstractOp {
         params.put(Param.OUTPUT_IMG, result);
     }
 
+    /**
+     * Adapts the matrix defined on the full resolution image to a downsampled input image (see
+     * {@link org.weasis.core.api.image.util.ImagePyramid}).
+     *
+     * @param matrix
+     *            the affine matrix of the full resolution image
+     * @param inputScale
+     *            the scale of the input image relative to the full resolution image, null for the full resolution
+     * @return the affine matrix to apply on the input image
+     */
+    public static double[] getInputMatrix(double[] matrix, double[] inputScale) {
+        if (inputScale == null) {
+            return matrix;
+        }
+        double sx = inputScale[0];
+        double sy = inputScale[1];
+        // Pixel centers: x = (xl + 0.5) / sx - 0.5
+        double dx = 0.5 / sx - 0.5;
+        double dy = 0.5 / sy - 0.5;
+        return new double[] { matrix[0] / sx, matrix[1] / sy, matrix[2] + matrix[0] * dx + matrix[1] * dy,
+            matrix[3] / sx, matrix[4] / sy, matrix[5] + matrix[3] * dx + matrix[4] * dy };
+    }
+
 }
@@ -36,6 +36,11 @@ public class BrightnessOp extends AbstractOp {
         return new BrightnessOp(this);
     }
 
+    @Override
+    public boolean isResolutionIndependent() {
+        return true;
+    }
+
     @Override
     public void process() throws Exception {
         PlanarImage source = (PlanarImage) params.get(Param.INPUT_IMG);
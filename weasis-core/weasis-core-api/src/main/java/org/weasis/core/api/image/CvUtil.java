@@ -20,6 +20,7 @@ import org.opencv.core.Mat;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
 import org.weasis.core.api.image.util.KernelData;
+import org.weasis.core.api.image.util.KernelFilter;
 import org.weasis.core.api.media.data.ImageElement;
 import org.weasis.opencv.data.ImageCV;
 import org.weasis.opencv.data.PlanarImage;
@@ -43,14 +44,7 @@ public class CvUtil {
     
     public static ImageCV filter(Mat source, KernelData kernel) {
         Objects.requireNonNull(kernel);
-        Mat srcImg = Objects.requireNonNull(source);
-        Mat k = new Mat(kernel.getHeight(), kernel.getWidth(), CvType.CV_32F);
-        k.put(0, 0, kernel.getData());
-        ImageCV dstImg = new ImageCV();
-        Imgproc.filter2D(srcImg, dstImg, -1, k);
-        // TODO improve speed with dedicated call
-        // Imgproc.blur(srcImg, dstImg, new Size(3,3));
-        return dstImg;
+        return KernelFilter.of(kernel).apply(Objects.requireNonNull(source));
     }
     
     public static ImageCV meanStack(List<ImageElement> sources) {
@@ -41,6 +41,13 @@ public class FilterOp extends AbstractOp {
         return new FilterOp(this);
     }
 
+    @Override
+    public boolean isResolutionIndependent() {
+        // The kernel is defined for the full resolution image
+        KernelData kernel = (KernelData) params.get(P_KERNEL_DATA);
+        return kernel == null || kernel.equals(KernelData.NONE);
+    }
+
     @Override
     public void process() throws Exception {
         PlanarImage source = (PlanarImage) params.get(Param.INPUT_IMG);
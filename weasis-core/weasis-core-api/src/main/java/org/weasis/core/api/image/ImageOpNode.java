@@ -23,6 +23,11 @@ public interface ImageOpNode extends Copyable<ImageOpNode> {
 
         public static final String INPUT_IMG = "op.input.img"; //$NON-NLS-1$
         public static final String OUTPUT_IMG = "op.output.img"; //$NON-NLS-1$
+        /**
+         * Scale of the input image relative to the full resolution image on which the geometric parameters are
+         * defined (double[] {scaleX, scaleY}). Null when the input is at full resolution.
+         */
+        public static final String INPUT_SCALE = "op.input.scale"; //$NON-NLS-1$
 
         private Param() {
         }
@@ -30,6 +35,22 @@ public interface ImageOpNode extends Copyable<ImageOpNode> {
 
     void process() throws Exception;
 
+    /**
+     * @return true when the operation reads {@link Param#INPUT_SCALE} and adapts its geometric parameters to an input
+     *         image at a lower resolution (a level of {@link org.weasis.core.api.image.util.ImagePyramid})
+     */
+    default boolean handlesInputScale() {
+        return false;
+    }
+
+    /**
+     * @return true when the result does not depend on the resolution of the input image (e.g. a pixel-wise
+     *         transformation), so the operation can be applied on a pyramid level without knowing its scale
+     */
+    default boolean isResolutionIndependent() {
+        return false;
+    }
+
     boolean isEnabled();
 
     void setEnabled(boolean enabled);
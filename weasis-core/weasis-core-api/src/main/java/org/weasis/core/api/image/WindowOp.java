@@ -40,6 +40,11 @@ public class WindowOp extends AbstractOp {
         return new WindowOp(this);
     }
 
+    @Override
+    public boolean isResolutionIndependent() {
+        return true;
+    }
+
     @Override
     public void handleImageOpEvent(ImageOpEvent event) {
         OpEvent type = event.getEventType();
@@ -60,6 +60,11 @@ public class ZoomOp extends AbstractOp {
         return new ZoomOp(this);
     }
 
+    @Override
+    public boolean handlesInputScale() {
+        return true;
+    }
+
     @Override
     public void process() throws Exception {
         PlanarImage source = (PlanarImage) params.get(Param.INPUT_IMG);
@@ -69,8 +74,12 @@ public class ZoomOp extends AbstractOp {
 
         if (zoomFactorX != null && zoomFactorY != null
             && (MathUtil.isDifferent(zoomFactorX, 1.0) || MathUtil.isDifferent(zoomFactorY, 1.0))) {
-            Dimension dim = new Dimension((int) (Math.abs(zoomFactorX) * source.width()),
-                (int) (Math.abs(zoomFactorY) * source.height()));
+            // The ratios are defined for the full resolution image
+            double[] inputScale = (double[]) params.get(Param.INPUT_SCALE);
+            double sx = inputScale == null ? 1.0 : inputScale[0];
+            double sy = inputScale == null ? 1.0 : inputScale[1];
+            Dimension dim = new Dimension((int) (Math.abs(zoomFactorX) * source.width() / sx),
+                (int) (Math.abs(zoomFactorY) * source.height() / sy));
             Integer interpolation = (Integer) params.get(P_INTERPOLATION);
             if (Math.abs(zoomFactorX) < 0.1) {
                 interpolation = Imgproc.INTER_AREA;
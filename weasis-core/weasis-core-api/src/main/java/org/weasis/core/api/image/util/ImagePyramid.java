@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.image.util;
+
+import java.awt.Dimension;
+import java.util.Objects;
+
+import org.opencv.imgproc.Imgproc;
+import org.weasis.core.api.media.data.NativeCache;
+import org.weasis.opencv.data.PlanarImage;
+import org.weasis.opencv.op.ImageProcessor;
+
+/**
+ * Multi-resolution levels of large images for the zoomed-out display. The level n is the image downsampled n times by
+ * a factor 2 with an area interpolation, keeping the data type of the source (e.g. 16-bit images are not converted
+ * before windowing).
+ * <p>
+ * The levels are built on demand from the previous level and kept in a native cache.
+ */
+public final class ImagePyramid {
+
+    /** Minimum number of pixels of the source image for building levels. */
+    public static final long MIN_PIXELS = 2048L * 2048L;
+    /** Minimum size of the largest dimension of a level. */
+    public static final int MIN_LEVEL_SIZE = 256;
+    public static final int MAX_LEVEL = 8;
+
+    private static final NativeCache<Key, PlanarImage> CACHE =
+        new NativeCache<>(Runtime.getRuntime().maxMemory() / 8, "cache.pyramid"); //$NON-NLS-1$
+
+    private ImagePyramid() {
+    }
+
+    private static final class Key {
+        private final Object image;
+        private final int level;
+
+        Key(Object image, int level) {
+            this.image = image;
+            this.level = level;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(image) + level;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return image == other.image && level == other.level;
+        }
+    }
+
+    /**
+     * @param width
+     *            the width of the full resolution image
+     * @param height
+     *            the height of the full resolution image
+     * @param scale
+     *            the display scale of the full resolution image
+     * @return the smallest level with a scale greater than or equal to the display scale, 0 for the full resolution
+     */
+    public static int getLevel(int width, int height, double scale) {
+        if (scale >= 0.5 || scale <= 0.0 || (long) width * height < MIN_PIXELS) {
+            return 0;
+        }
+        int level = (int) Math.floor(-Math.log(scale) / Math.log(2.0) + 1e-9);
+        int maxSize = Math.max(width, height);
+        while (level > 0 && (maxSize >> level) < MIN_LEVEL_SIZE) {
+            level--;
+        }
+        return Math.min(level, MAX_LEVEL);
+    }
+
+    /**
+     * @param key
+     *            the identity of the source image (compared by reference), typically the image element
+     * @param source
+     *            the full resolution image
+     * @param level
+     *            the level to get
+     * @return the image of the level, the source for the level 0
+     */
+    public static PlanarImage getLevelImage(Object key, PlanarImage source, int level) {
+        Objects.requireNonNull(source);
+        if (level <= 0 || key == null) {
+            return source;
+        }
+        Key k = new Key(key, level);
+        PlanarImage img = CACHE.get(k);
+        if (img == null) {
+            img = downscale(getLevelImage(key, source, level - 1));
+            CACHE.put(k, img);
+        }
+        return img;
+    }
+
+    /**
+     * @return the image downsampled by 2 with an area interpolation (the odd dimensions are rounded up)
+     */
+    public static PlanarImage downscale(PlanarImage source) {
+        Dimension dim = new Dimension((source.width() + 1) / 2, (source.height() + 1) / 2);
+        return ImageProcessor.scale(source.toMat(), dim, Imgproc.INTER_AREA);
+    }
+
+    /**
+     * @return the horizontal and vertical scales of the level image relative to the full resolution image
+     */
+    public static double[] getScale(PlanarImage level, PlanarImage source) {
+        return new double[] { level.width() / (double) source.width(), level.height() / (double) source.height() };
+    }
+
+    /**
+     * Removes the levels of an image.
+     *
+     * @param key
+     *            the identity of the source image
+     */
+    public static void remove(Object key) {
+        if (key != null) {
+            for (int i = 1; i <= MAX_LEVEL; i++) {
+                CACHE.remove(new Key(key, i));
+            }
+        }
+    }
+}
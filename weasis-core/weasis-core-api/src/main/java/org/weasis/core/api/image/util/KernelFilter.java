@@ -0,0 +1,458 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.image.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.weasis.opencv.data.ImageCV;
+import org.weasis.opencv.op.tile.TiledAlgorithm;
+
+/**
+ * Convolution of an image with a {@link KernelData}, dispatched to the fastest equivalent OpenCV implementation:
+ * <ul>
+ * <li>a weighted box or 4-neighbor Laplacian plus a weighted identity (mean, edge, sharpen, unsharp masks)</li>
+ * <li>a separable Gaussian to GaussianBlur</li>
+ * <li>any other rank-1 kernel to sepFilter2D</li>
+ * <li>a large kernel to a product in the frequency domain</li>
+ * <li>the other kernels to filter2D</li>
+ * </ul>
+ * The intermediate values are computed in float and the result is clipped only when converted to the source type, so
+ * the result matches filter2D within the rounding of the float operations.
+ */
+public final class KernelFilter {
+
+    public enum Method {
+        SCALE, BOX, LAPLACIAN, GAUSSIAN, SEPARABLE, DFT, DIRECT
+    }
+
+    /** Relative tolerance on the kernel values for matching a kernel structure. */
+    static final float TOLERANCE = 1E-5F;
+    /** Relative tolerance for matching a Gaussian function, the preset kernels are computed in float. */
+    static final float GAUSSIAN_TOLERANCE = 1E-4F;
+    /** Minimum width or height of a non-separable kernel computed in the frequency domain. */
+    static final int DFT_MIN_SIZE = 11;
+
+    private final Method method;
+    private final int width;
+    private final int height;
+    private final float[] data;
+    // Weight of the box or of the Laplacian
+    private double weight;
+    // Weight of the identity (the central element)
+    private double identityWeight;
+    private float[] rowVector;
+    private float[] columnVector;
+    private double sigmaX;
+    private double sigmaY;
+
+    private KernelFilter(KernelData kernel) {
+        this.width = kernel.getWidth();
+        this.height = kernel.getHeight();
+        this.data = kernel.getData();
+        this.method = analyze();
+    }
+
+    public static KernelFilter of(KernelData kernel) {
+        return new KernelFilter(Objects.requireNonNull(kernel));
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public double getIdentityWeight() {
+        return identityWeight;
+    }
+
+    public float[] getRowVector() {
+        return rowVector;
+    }
+
+    public float[] getColumnVector() {
+        return columnVector;
+    }
+
+    public double getSigmaX() {
+        return sigmaX;
+    }
+
+    public double getSigmaY() {
+        return sigmaY;
+    }
+
+    private Method analyze() {
+        float max = 0.0F;
+        for (float v : data) {
+            max = Math.max(max, Math.abs(v));
+        }
+        float eps = Math.max(max * TOLERANCE, Float.MIN_NORMAL);
+        boolean odd = width % 2 == 1 && height % 2 == 1;
+        if (odd && matchBox(eps)) {
+            return weight == 0.0 ? Method.SCALE : Method.BOX;
+        }
+        if (width == 3 && height == 3 && matchLaplacian(eps)) {
+            return Method.LAPLACIAN;
+        }
+        if (matchSeparable(eps)) {
+            if (odd && matchGaussian()) {
+                return Method.GAUSSIAN;
+            }
+            return Method.SEPARABLE;
+        }
+        if (width >= DFT_MIN_SIZE || height >= DFT_MIN_SIZE) {
+            return Method.DFT;
+        }
+        return Method.DIRECT;
+    }
+
+    private int center() {
+        return (height / 2) * width + width / 2;
+    }
+
+    /**
+     * Kernel = weight * ones + identityWeight * delta
+     */
+    private boolean matchBox(float eps) {
+        int c = center();
+        float a = data.length > 1 ? data[c == 0 ? 1 : 0] : 0.0F;
+        for (int i = 0; i < data.length; i++) {
+            if (i != c && Math.abs(data[i] - a) > eps) {
+                return false;
+            }
+        }
+        weight = a;
+        identityWeight = data[c] - a;
+        return true;
+    }
+
+    /**
+     * Kernel = weight * [0 1 0; 1 -4 1; 0 1 0] + identityWeight * delta
+     */
+    private boolean matchLaplacian(float eps) {
+        float a = data[1];
+        if (Math.abs(data[0]) > eps || Math.abs(data[2]) > eps || Math.abs(data[6]) > eps
+            || Math.abs(data[8]) > eps) {
+            return false;
+        }
+        if (Math.abs(data[3] - a) > eps || Math.abs(data[5] - a) > eps || Math.abs(data[7] - a) > eps) {
+            return false;
+        }
+        weight = a;
+        identityWeight = data[4] + 4.0 * a;
+        return true;
+    }
+
+    /**
+     * Rank-1 factorization from the largest element: kernel(y,x) = column(y) * row(x). This is exact when the largest
+     * singular value is the only non-zero one.
+     */
+    private boolean matchSeparable(float eps) {
+        if (width == 1 || height == 1) {
+            return false;
+        }
+        int pivot = 0;
+        for (int i = 1; i < data.length; i++) {
+            if (Math.abs(data[i]) > Math.abs(data[pivot])) {
+                pivot = i;
+            }
+        }
+        float p = data[pivot];
+        if (p == 0.0F) {
+            return false;
+        }
+        int px = pivot % width;
+        int py = pivot / width;
+        float[] row = new float[width];
+        float[] column = new float[height];
+        // Balance the magnitude between the two vectors
+        float s = (float) Math.sqrt(Math.abs(p));
+        for (int x = 0; x < width; x++) {
+            row[x] = data[py * width + x] / s;
+        }
+        for (int y = 0; y < height; y++) {
+            column[y] = data[y * width + px] / (p / s);
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (Math.abs(data[y * width + x] - column[y] * row[x]) > eps) {
+                    return false;
+                }
+            }
+        }
+        rowVector = row;
+        columnVector = column;
+        return true;
+    }
+
+    private boolean matchGaussian() {
+        double sum = 0.0;
+        for (float v : rowVector) {
+            sum += v;
+        }
+        double sumY = 0.0;
+        for (float v : columnVector) {
+            sumY += v;
+        }
+        // GaussianBlur normalizes the kernel
+        if (Math.abs(sum * sumY - 1.0) > GAUSSIAN_TOLERANCE) {
+            return false;
+        }
+        double sx = getGaussianSigma(rowVector);
+        double sy = getGaussianSigma(columnVector);
+        if (sx <= 0.0 || sy <= 0.0) {
+            return false;
+        }
+        sigmaX = sx;
+        sigmaY = sy;
+        return true;
+    }
+
+    /**
+     * @return the sigma of the Gaussian function matching the vector, or 0 if it is not a Gaussian
+     */
+    static double getGaussianSigma(float[] vector) {
+        int c = vector.length / 2;
+        if (vector.length < 3 || vector[c] == 0.0F) {
+            return 0.0;
+        }
+        double r = vector[c + 1] / (double) vector[c];
+        if (r <= 0.0 || r >= 1.0) {
+            return 0.0;
+        }
+        double sigma2 = -1.0 / (2.0 * Math.log(r));
+        double eps = Math.abs(vector[c]) * GAUSSIAN_TOLERANCE;
+        for (int i = 0; i < vector.length; i++) {
+            double d = i - (double) c;
+            double expected = vector[c] * Math.exp(-d * d / (2.0 * sigma2));
+            if (Math.abs(vector[i] - expected) > eps) {
+                return 0.0;
+            }
+        }
+        return Math.sqrt(sigma2);
+    }
+
+    /**
+     * @param source
+     *            the source image
+     * @return the filtered image, of the type of the source
+     */
+    public ImageCV apply(Mat source) {
+        Objects.requireNonNull(source);
+        ImageCV dstImg = new ImageCV();
+        // Native kernels created for this call
+        List<Mat> kernels = new ArrayList<>(2);
+        try {
+            TiledAlgorithm algo = getTiledAlgorithm(kernels);
+            algo.process(source, dstImg);
+        } finally {
+            for (Mat k : kernels) {
+                k.release();
+            }
+        }
+        return dstImg;
+    }
+
+    private TiledAlgorithm getTiledAlgorithm(List<Mat> kernels) {
+        // The halo covers the kernel anchored at its center
+        int padding = Math.max(width, height) / 2;
+        final Size size = new Size(width, height);
+        switch (method) {
+            case SCALE:
+                return new TiledAlgorithm() {
+                    @Override
+                    protected void processTile(Mat tileInput, Mat tileOutput) {
+                        tileInput.convertTo(tileOutput, -1, identityWeight);
+                    }
+                };
+            case BOX:
+                return new TiledAlgorithm(TiledAlgorithm.DEFAULT_TILE_SIZE, padding, Core.BORDER_DEFAULT) {
+                    @Override
+                    protected void processTile(Mat tileInput, Mat tileOutput) {
+                        Mat box = new Mat();
+                        Imgproc.boxFilter(tileInput, box, CvType.CV_32F, size, new Point(-1, -1), true,
+                            Core.BORDER_DEFAULT);
+                        addIdentity(tileInput, box, weight * width * height, tileOutput);
+                        box.release();
+                    }
+                };
+            case LAPLACIAN:
+                return new TiledAlgorithm(TiledAlgorithm.DEFAULT_TILE_SIZE, padding, Core.BORDER_DEFAULT) {
+                    @Override
+                    protected void processTile(Mat tileInput, Mat tileOutput) {
+                        Mat lap = new Mat();
+                        Imgproc.Laplacian(tileInput, lap, CvType.CV_32F, 1, 1.0, 0.0, Core.BORDER_DEFAULT);
+                        addIdentity(tileInput, lap, weight, tileOutput);
+                        lap.release();
+                    }
+                };
+            case GAUSSIAN:
+                return new TiledAlgorithm(TiledAlgorithm.DEFAULT_TILE_SIZE, padding, Core.BORDER_DEFAULT) {
+                    @Override
+                    protected void processTile(Mat tileInput, Mat tileOutput) {
+                        Imgproc.GaussianBlur(tileInput, tileOutput, size, sigmaX, sigmaY, Core.BORDER_DEFAULT);
+                    }
+                };
+            case SEPARABLE:
+                final Mat kx = toMat(rowVector, 1, width);
+                kernels.add(kx);
+                final Mat ky = toMat(columnVector, height, 1);
+                kernels.add(ky);
+                return new TiledAlgorithm(TiledAlgorithm.DEFAULT_TILE_SIZE, padding, Core.BORDER_DEFAULT) {
+                    @Override
+                    protected void processTile(Mat tileInput, Mat tileOutput) {
+                        Imgproc.sepFilter2D(tileInput, tileOutput, -1, kx, ky, new Point(-1, -1), 0.0,
+                            Core.BORDER_DEFAULT);
+                    }
+                };
+            case DFT:
+                Mat dftKernel = toMat(data, height, width);
+                kernels.add(dftKernel);
+                return new DftFilter(dftKernel, padding);
+            default:
+                final Mat k = toMat(data, height, width);
+                kernels.add(k);
+                return new TiledAlgorithm(TiledAlgorithm.DEFAULT_TILE_SIZE, padding, Core.BORDER_DEFAULT) {
+                    @Override
+                    protected void processTile(Mat tileInput, Mat tileOutput) {
+                        Imgproc.filter2D(tileInput, tileOutput, -1, k);
+                    }
+                };
+        }
+    }
+
+    /**
+     * output = identityWeight * input + filterWeight * filtered, clipped only by the conversion to the input type.
+     */
+    private void addIdentity(Mat input, Mat filtered, double filterWeight, Mat output) {
+        if (identityWeight == 0.0) {
+            filtered.convertTo(output, input.type(), filterWeight);
+            return;
+        }
+        Mat in32 = new Mat();
+        input.convertTo(in32, CvType.CV_32F);
+        Core.addWeighted(in32, identityWeight, filtered, filterWeight, 0.0, in32);
+        in32.convertTo(output, input.type());
+        in32.release();
+    }
+
+    static Mat toMat(float[] values, int rows, int cols) {
+        Mat k = new Mat(rows, cols, CvType.CV_32F);
+        k.put(0, 0, values);
+        return k;
+    }
+
+    /**
+     * Correlation computed as a product of spectrums on each padded tile (overlap-save). The spectrum of the kernel is
+     * computed once for each DFT size.
+     */
+    static class DftFilter extends TiledAlgorithm {
+        private final Mat kernel;
+        private final Map<Size, Mat> spectrums = new ConcurrentHashMap<>();
+
+        DftFilter(Mat kernel, int padding) {
+            super(TiledAlgorithm.DEFAULT_TILE_SIZE, padding, Core.BORDER_DEFAULT);
+            this.kernel = kernel;
+        }
+
+        @Override
+        public void process(Mat source, Mat result) {
+            try {
+                super.process(source, result);
+            } finally {
+                for (Mat m : spectrums.values()) {
+                    m.release();
+                }
+                spectrums.clear();
+            }
+        }
+
+        @Override
+        protected void processWholeImage(Mat source, Mat result) {
+            // Without halo, the borders would be extrapolated with zeros instead of BORDER_DEFAULT like filter2D
+            processWithHalo(source, result);
+        }
+
+        private Mat getKernelSpectrum(int dftWidth, int dftHeight) {
+            Size size = new Size(dftWidth, dftHeight);
+            Mat spectrum = spectrums.get(size);
+            if (spectrum == null) {
+                // Kernel with its anchor at the origin (wrapped around), then correlation with the conjugate
+                Mat k = Mat.zeros(dftHeight, dftWidth, CvType.CV_32F);
+                int cx = kernel.cols() / 2;
+                int cy = kernel.rows() / 2;
+                float[] val = new float[1];
+                for (int y = 0; y < kernel.rows(); y++) {
+                    for (int x = 0; x < kernel.cols(); x++) {
+                        kernel.get(y, x, val);
+                        k.put(Math.floorMod(y - cy, dftHeight), Math.floorMod(x - cx, dftWidth), val);
+                    }
+                }
+                spectrum = new Mat();
+                Core.dft(k, spectrum);
+                k.release();
+                Mat previous = spectrums.putIfAbsent(size, spectrum);
+                if (previous != null) {
+                    spectrum.release();
+                    spectrum = previous;
+                }
+            }
+            return spectrum;
+        }
+
+        @Override
+        protected void processTile(Mat tileInput, Mat tileOutput) {
+            int w = tileInput.cols();
+            int h = tileInput.rows();
+            int dw = Core.getOptimalDFTSize(w);
+            int dh = Core.getOptimalDFTSize(h);
+            Mat k = getKernelSpectrum(dw, dh);
+
+            Mat in32 = new Mat();
+            tileInput.convertTo(in32, CvType.CV_32F);
+            List<Mat> channels = new ArrayList<>(tileInput.channels());
+            Core.split(in32, channels);
+            Mat padded = new Mat();
+            Mat spectrum = new Mat();
+            for (int i = 0; i < channels.size(); i++) {
+                Mat c = channels.get(i);
+                // No wrap-around in the area kept by the tiled algorithm (the tile without the halo)
+                Core.copyMakeBorder(c, padded, 0, dh - h, 0, dw - w, Core.BORDER_CONSTANT);
+                Core.dft(padded, spectrum, 0, h);
+                Core.mulSpectrums(spectrum, k, spectrum, 0, true);
+                Core.idft(spectrum, padded, Core.DFT_SCALE | Core.DFT_REAL_OUTPUT, h);
+                padded.submat(new Rect(0, 0, w, h)).copyTo(c);
+            }
+            Core.merge(channels, in32);
+            in32.convertTo(tileOutput, tileInput.type());
+            in32.release();
+            padded.release();
+            spectrum.release();
+            for (Mat c : channels) {
+                c.release();
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@ import java.util.Dictionary;
 import java.util.Hashtable;
 
 import org.apache.felix.prefs.BackingStore;
+import org.apache.felix.service.command.CommandProcessor;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
@@ -28,6 +29,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.gui.util.AppProperties;
 import org.weasis.core.api.media.data.Codec;
+import org.weasis.core.api.metrics.MetricRegistry;
 import org.weasis.core.api.service.AuditLog;
 import org.weasis.core.api.service.BundleTools;
 import org.weasis.core.api.service.DataFileBackingStoreImpl;
@@ -35,6 +37,8 @@ import org.weasis.core.api.service.DataFileBackingStoreImpl;
 public class Activator implements BundleActivator, ServiceListener {
     private static final Logger LOGGER = LoggerFactory.getLogger(Activator.class);
 
+    private final MetricsCommand metricsCommand = new MetricsCommand(MetricRegistry.getDefault());
+
     @Override
     public void start(BundleContext bundleContext) throws Exception {
         bundleContext.registerService(BackingStore.class.getName(), new DataFileBackingStoreImpl(bundleContext), null);
@@ -51,10 +55,12 @@ public class Activator implements BundleActivator, ServiceListener {
         ProxyDetector.setProxyFromJavaWebStart();
 
         initLoggerAndAudit(bundleContext);
+        registerMetrics(bundleContext);
     }
 
     @Override
     public void stop(BundleContext bundleContext) throws Exception {
+        metricsCommand.stop();
         // TODO should be stop in after all bundles implementing preferences
     }
 
@@ -94,6 +100,18 @@ public class Activator implements BundleActivator, ServiceListener {
         }
     }
 
+    private void registerMetrics(BundleContext bundleContext) {
+        bundleContext.registerService(MetricRegistry.class.getName(), MetricRegistry.getDefault(), null);
+
+        Dictionary<String, Object> dict = new Hashtable<>();
+        dict.put(CommandProcessor.COMMAND_SCOPE, "metrics"); //$NON-NLS-1$
+        dict.put(CommandProcessor.COMMAND_FUNCTION, MetricsCommand.FUNCTIONS);
+        bundleContext.registerService(MetricsCommand.class.getName(), metricsCommand, dict);
+
+        // Log periodically all the metrics by adding an entry "weasis.metrics.log.period=60" (in seconds)
+        metricsCommand.setLogPeriod(BundleTools.SYSTEM_PREFERENCES.getLongProperty(MetricsCommand.P_LOG_PERIOD, 0L));
+    }
+
     private static void initLoggerAndAudit(BundleContext bundleContext) throws IOException {
         // Audit log for giving statistics about usage of Weasis
         String loggerKey = "audit.log"; //$NON-NLS-1$
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.internal;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.command.Option;
+import org.weasis.core.api.command.Options;
+import org.weasis.core.api.metrics.MetricRegistry;
+import org.weasis.core.api.util.ThreadUtil;
+
+/**
+ * Felix shell commands for reading the metrics (metrics:dump, metrics:reset) and optional periodic log of the metrics
+ * in JSON.
+ */
+public class MetricsCommand {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsCommand.class);
+
+    public static final String P_LOG_PERIOD = "weasis.metrics.log.period"; //$NON-NLS-1$
+    public static final String[] FUNCTIONS = { "dump", "reset" }; //$NON-NLS-1$ //$NON-NLS-2$
+
+    private final MetricRegistry registry;
+    private ScheduledExecutorService scheduler;
+
+    public MetricsCommand(MetricRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void dump(String[] argv) {
+        final String[] usage = { "Print a snapshot of the metrics in JSON", //$NON-NLS-1$
+            "Usage: metrics:dump [-p PREFIX]", //$NON-NLS-1$
+            "  -p --prefix=PREFIX   only the metrics starting with the prefix (e.g. dicom.)", //$NON-NLS-1$
+            "  -? --help            show help" }; //$NON-NLS-1$
+        final Option opt = Options.compile(usage).parse(argv);
+        if (opt.isSet("help")) { //$NON-NLS-1$
+            opt.usage();
+            return;
+        }
+        System.out.println(registry.toJson(opt.isSet("prefix") ? opt.get("prefix") : null)); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    public void reset(String[] argv) {
+        final String[] usage = { "Reset all the metrics", //$NON-NLS-1$
+            "Usage: metrics:reset", //$NON-NLS-1$
+            "  -? --help   show help" }; //$NON-NLS-1$
+        final Option opt = Options.compile(usage).parse(argv);
+        if (opt.isSet("help")) { //$NON-NLS-1$
+            opt.usage();
+            return;
+        }
+        registry.reset();
+    }
+
+    /**
+     * @param period
+     *            in seconds, a value lower than 1 stops the periodic log
+     */
+    public synchronized void setLogPeriod(long period) {
+        stop();
+        if (period > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(ThreadUtil.getThreadFactory("Metrics Log")); //$NON-NLS-1$
+            scheduler.scheduleAtFixedRate(() -> LOGGER.info("metrics {}", registry.toJson(null)), period, period, //$NON-NLS-1$
+                TimeUnit.SECONDS);
+        }
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
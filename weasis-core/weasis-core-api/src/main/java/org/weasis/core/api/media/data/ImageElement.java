@@ -31,6 +31,7 @@ import org.weasis.core.api.image.LutShape;
 import org.weasis.core.api.image.OpManager;
 import org.weasis.core.api.image.ZoomOp;
 import org.weasis.core.api.image.measure.MeasurementsAdapter;
+import org.weasis.core.api.image.util.ImagePyramid;
 import org.weasis.core.api.image.util.Unit;
 import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.opencv.data.PlanarImage;
@@ -43,7 +44,7 @@ public class ImageElement extends MediaElement {
     public static final ExecutorService IMAGE_LOADER = ThreadUtil.buildNewSingleThreadExecutor("Image Loader"); //$NON-NLS-1$
 
     private static final NativeCache<ImageElement, PlanarImage> mCache =
-        new NativeCache<ImageElement, PlanarImage>(Runtime.getRuntime().maxMemory() / 2) {
+        new NativeCache<ImageElement, PlanarImage>(Runtime.getRuntime().maxMemory() / 2, "cache.image") { //$NON-NLS-1$
 
             @Override
             protected void afterEntryRemove(ImageElement key, PlanarImage img) {
@@ -363,6 +364,23 @@ public class ImageElement extends MediaElement {
         }
     }
 
+    /**
+     * Loads the image in the calling thread instead of the single thread of {@link #IMAGE_LOADER}, so that a dedicated
+     * executor can read several images ahead in parallel (e.g. the prefetch of the cine). The images sharing the same
+     * reader (frames of a multiframe) are still read one after the other.
+     */
+    public synchronized void prefetchImage() {
+        // Same lock order as getImage() (this, then the reader in the loading thread)
+        synchronized (mediaIO) {
+            try {
+                getCacheImage(startImageLoading(true), null, true);
+            } catch (OutOfMemoryError e) {
+                LOGGER.warn("Out of MemoryError when prefetching: {}", this, e); //$NON-NLS-1$
+                mCache.expungeStaleEntries();
+            }
+        }
+    }
+
     private PlanarImage getCacheImage(PlanarImage cacheImage, OpManager manager, boolean findMinMax) {
         if (findMinMax) {
             try {
@@ -392,28 +410,44 @@ public class ImageElement extends MediaElement {
     }
 
     private PlanarImage startImageLoading() throws OutOfMemoryError {
+        return startImageLoading(false);
+    }
+
+    private PlanarImage startImageLoading(boolean inCallingThread) throws OutOfMemoryError {
         PlanarImage cacheImage;
         if ((cacheImage = mCache.get(this)) == null && readable && setAsLoading()) {
             LOGGER.debug("Asking for reading image: {}", this); //$NON-NLS-1$
             Load ref = new Load();
-            Future<PlanarImage> future = IMAGE_LOADER.submit(ref);
             PlanarImage img = null;
-            try {
-                img = future.get();
-
-            } catch (InterruptedException e) {
-                // Re-assert the thread's interrupted status
-                Thread.currentThread().interrupt();
-                // We don't need the result, so cancel the task too
-                future.cancel(true);
-            } catch (ExecutionException e) {
-                if (e.getCause() instanceof OutOfMemoryError) {
+            if (inCallingThread) {
+                try {
+                    img = ref.call();
+                } catch (OutOfMemoryError e) {
                     setAsLoaded();
-                    throw (OutOfMemoryError) e.getCause();
-                } else {
+                    throw e;
+                } catch (Exception e) {
                     readable = false;
                     LOGGER.error("Cannot read pixel data!: {}", this, e); //$NON-NLS-1$
                 }
+            } else {
+                Future<PlanarImage> future = IMAGE_LOADER.submit(ref);
+                try {
+                    img = future.get();
+
+                } catch (InterruptedException e) {
+                    // Re-assert the thread's interrupted status
+                    Thread.currentThread().interrupt();
+                    // We don't need the result, so cancel the task too
+                    future.cancel(true);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof OutOfMemoryError) {
+                        setAsLoaded();
+                        throw (OutOfMemoryError) e.getCause();
+                    } else {
+                        readable = false;
+                        LOGGER.error("Cannot read pixel data!: {}", this, e); //$NON-NLS-1$
+                    }
+                }
             }
             if (img != null) {
                 readable = img.width() > 0;
@@ -434,6 +468,7 @@ public class ImageElement extends MediaElement {
 
     @Override
     public void dispose() {
+        ImagePyramid.remove(this);
         // Let the soft reference mechanism dispose the display image
         super.dispose();
     }
@@ -13,7 +13,6 @@ package org.weasis.core.api.media.data;
 import java.io.File;
 import java.net.URI;
 import java.nio.file.Paths;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -36,7 +35,7 @@ public class MediaElement implements Tagable {
     public <E> MediaElement(MediaReader mediaIO, Object key) {
         this.mediaIO = Objects.requireNonNull(mediaIO);
         this.key = key;
-        this.tags = Optional.ofNullable(mediaIO.getMediaFragmentTags(key)).orElseGet(HashMap::new);
+        this.tags = Optional.ofNullable(mediaIO.getMediaFragmentTags(key)).orElseGet(TagMap::new);
     }
 
     public MediaReader getMediaReader() {
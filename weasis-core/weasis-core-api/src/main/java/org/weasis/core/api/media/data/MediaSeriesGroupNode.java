@@ -11,9 +11,9 @@
 package org.weasis.core.api.media.data;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 
@@ -25,7 +25,7 @@ public class MediaSeriesGroupNode implements MediaSeriesGroup {
 
     private final TagW tagID;
     private final TagView displayTag;
-    private final HashMap<TagW, Object> tags = new HashMap<>();
+    private final Map<TagW, Object> tags = new TagMap();
     private final List<Object> oldIds = new ArrayList<>();
 
     public MediaSeriesGroupNode(TagW tagID, Object identifier, TagView displayTag) {
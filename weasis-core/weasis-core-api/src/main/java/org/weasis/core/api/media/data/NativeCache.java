@@ -17,7 +17,11 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
+import org.weasis.core.api.metrics.CacheMetrics;
+import org.weasis.core.api.metrics.Gauge;
+import org.weasis.core.api.metrics.MetricRegistry;
 import org.weasis.opencv.data.PlanarImage;
 
 public class NativeCache<K, V extends PlanarImage> extends AbstractMap<K, V> {
@@ -25,16 +29,40 @@ public class NativeCache<K, V extends PlanarImage> extends AbstractMap<K, V> {
     protected final Map<K, V> hash;
     private final long maxNativeMemory;
     private volatile long useNativeMemory;
+    private final CacheMetrics metrics;
 
     public NativeCache(long maxNativeMemory) {
+        this(maxNativeMemory, null);
+    }
+
+    /**
+     * @param maxNativeMemory
+     *            the maximum size in bytes
+     * @param metricName
+     *            the name for publishing the hit ratio and the memory usage in {@link MetricRegistry}, null for no
+     *            metrics
+     */
+    public NativeCache(long maxNativeMemory, String metricName) {
         this.maxNativeMemory = maxNativeMemory;
         this.useNativeMemory = 0;
         this.hash = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true));
+        if (metricName == null) {
+            this.metrics = null;
+        } else {
+            MetricRegistry registry = MetricRegistry.getDefault();
+            this.metrics = new CacheMetrics(registry, metricName);
+            registry.register(metricName + ".memory", (Gauge) () -> useNativeMemory); //$NON-NLS-1$
+            registry.register(metricName + ".size", (Gauge) hash::size); //$NON-NLS-1$
+        }
     }
 
     @Override
     public V get(Object key) {
-        return hash.get(key);
+        V val = hash.get(key);
+        if (metrics != null) {
+            metrics.record(val);
+        }
+        return val;
     }
 
     public boolean isMemoryAvailable() {
@@ -93,6 +121,26 @@ public class NativeCache<K, V extends PlanarImage> extends AbstractMap<K, V> {
         return val;
     }
 
+    /**
+     * Removes all the entries with a key matching the filter.
+     *
+     * @param filter
+     *            the predicate on the keys
+     */
+    public void removeKeys(Predicate<? super K> filter) {
+        List<K> remKeys = new ArrayList<>();
+        synchronized (hash) {
+            for (K key : hash.keySet()) {
+                if (filter.test(key)) {
+                    remKeys.add(key);
+                }
+            }
+        }
+        for (K key : remKeys) {
+            remove(key);
+        }
+    }
+
     @Override
     public void clear() {
         hash.clear();
@@ -21,11 +21,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
 
 import javax.swing.SwingUtilities;
 
@@ -49,7 +52,10 @@ public abstract class Series<E extends MediaElement> extends MediaSeriesGroupNod
 
     private PropertyChangeSupport propertyChange = null;
     protected final List<E> medias;
+    // Sorted copies of medias, updated by insertion when adding a media
     protected final Map<Comparator<E>, List<E>> sortedMedias = new HashMap<>(6);
+    // Values of the tags used by hasMediaContains()
+    private final Map<TagW, Set<Object>> mediaTagValues = new HashMap<>(2);
     protected final Comparator<E> mediaOrder;
     protected SeriesImporter seriesLoader;
     private long fileSize;
@@ -89,50 +95,124 @@ public abstract class Series<E extends MediaElement> extends MediaSeriesGroupNod
     }
 
     protected void resetSortedMediasMap() {
-        if (!sortedMedias.isEmpty()) {
-            sortedMedias.clear();
+        synchronized (this) {
+            if (!sortedMedias.isEmpty()) {
+                sortedMedias.clear();
+            }
         }
+        mediaListChanged();
+    }
+
+    /**
+     * Called when medias have been added or when the sorted lists have been reset.
+     */
+    protected void mediaListChanged() {
+        // Nothing by default
     }
 
     @Override
     public List<E> getSortedMedias(Comparator<E> comparator) {
         // Do not sort when it is the default order.
         if (comparator != null && !comparator.equals(mediaOrder)) {
-            List<E> sorted = sortedMedias.get(comparator);
-            if (sorted == null) {
-                sorted = new ArrayList<>(medias);
-                Collections.sort(sorted, comparator);
-                sortedMedias.put(comparator, sorted);
+            synchronized (this) {
+                List<E> sorted = sortedMedias.get(comparator);
+                if (sorted == null) {
+                    sorted = new ArrayList<>(medias);
+                    Collections.sort(sorted, comparator);
+                    sortedMedias.put(comparator, sorted);
+                }
+                return sorted;
             }
-            return sorted;
         }
         return medias;
     }
 
+    /**
+     * Insert the new media in the sorted lists at the same position as a stable sort of medias.
+     *
+     * @param media
+     *            the media added to medias
+     * @param append
+     *            true when the media has been added at the end of medias
+     */
+    private void insertInSortedMedias(E media, boolean append) {
+        synchronized (this) {
+            addMediaTagValues(media);
+            if (!sortedMedias.isEmpty()) {
+                if (!append && mediaOrder == null) {
+                    // Unknown order for the equal elements, sort again on the next request
+                    sortedMedias.clear();
+                } else {
+                    for (Entry<Comparator<E>, List<E>> entry : sortedMedias.entrySet()) {
+                        Comparator<E> comparator = entry.getKey();
+                        if (!append) {
+                            // medias is sorted by mediaOrder, so the equal elements are in this order
+                            comparator = comparator.thenComparing(mediaOrder);
+                        }
+                        List<E> sorted = entry.getValue();
+                        sorted.add(upperBound(sorted, media, comparator), media);
+                    }
+                }
+            }
+        }
+        mediaListChanged();
+    }
+
+    private static <T> int upperBound(List<T> list, T key, Comparator<? super T> comparator) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(list.get(mid), key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
     @Override
     public void add(E media) {
         medias.add(media);
-        resetSortedMediasMap();
+        insertInSortedMedias(media, true);
     }
 
     @Override
     public void add(int index, E media) {
         medias.add(index, media);
-        resetSortedMediasMap();
+        insertInSortedMedias(media, index == medias.size() - 1);
     }
 
     @Override
     public void addAll(Collection<? extends E> c) {
         medias.addAll(c);
+        addAllMediaTagValues(c);
         resetSortedMediasMap();
     }
 
     @Override
     public void addAll(int index, Collection<? extends E> c) {
         medias.addAll(index, c);
+        addAllMediaTagValues(c);
         resetSortedMediasMap();
     }
 
+    private void addMediaTagValues(E media) {
+        for (Entry<TagW, Set<Object>> entry : mediaTagValues.entrySet()) {
+            Object val = media.getTagValue(entry.getKey());
+            if (val != null) {
+                entry.getValue().add(val);
+            }
+        }
+    }
+
+    private void addAllMediaTagValues(Collection<? extends E> c) {
+        synchronized (this) {
+            c.forEach(this::addMediaTagValues);
+        }
+    }
+
     @Override
     public final E getMedia(MEDIA_POSITION position, Filter<E> filter, Comparator<E> sort) {
         List<E> sortedList = getSortedMedias(sort);
@@ -249,6 +329,9 @@ public abstract class Series<E extends MediaElement> extends MediaSeriesGroupNod
         });
 
         medias.clear();
+        synchronized (this) {
+            mediaTagValues.clear();
+        }
         resetSortedMediasMap();
 
         Optional.ofNullable((Thumbnail) getTagValue(TagW.Thumbnail)).ifPresent(t -> t.dispose());
@@ -403,14 +486,21 @@ public abstract class Series<E extends MediaElement> extends MediaSeriesGroupNod
     }
 
     public boolean hasMediaContains(TagW tag, Object val) {
-        if (val != null) {
+        if (val != null && tag != null) {
             synchronized (this) {
-                for (int i = 0; i < medias.size(); i++) {
-                    Object val2 = medias.get(i).getTagValue(tag);
-                    if (val.equals(val2)) {
-                        return true;
+                Set<Object> values = mediaTagValues.get(tag);
+                if (values == null) {
+                    // Index the values of this tag, then they are updated when adding medias
+                    values = new HashSet<>(Math.max(16, medias.size() * 2));
+                    for (int i = 0; i < medias.size(); i++) {
+                        Object val2 = medias.get(i).getTagValue(tag);
+                        if (val2 != null) {
+                            values.add(val2);
+                        }
                     }
+                    mediaTagValues.put(tag, values);
                 }
+                return values.contains(val);
             }
         }
         return false;
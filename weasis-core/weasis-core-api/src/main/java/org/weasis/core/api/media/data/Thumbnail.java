@@ -23,10 +23,6 @@ import java.awt.event.MouseWheelListener;
 import java.awt.geom.AffineTransform;
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.Icon;
@@ -45,7 +41,6 @@ import org.weasis.core.api.image.OpManager;
 import org.weasis.core.api.media.MimeInspector;
 import org.weasis.core.api.util.FileUtil;
 import org.weasis.core.api.util.FontTools;
-import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.opencv.data.PlanarImage;
 import org.weasis.opencv.op.ImageConversion;
 import org.weasis.opencv.op.ImageProcessor;
@@ -56,7 +51,6 @@ public class Thumbnail extends JLabel implements Thumbnailable {
 
     public static final File THUMBNAIL_CACHE_DIR =
         AppProperties.buildAccessibleTempDirectory(AppProperties.FILE_CACHE_DIR.getName(), "thumb"); //$NON-NLS-1$
-    public static final ExecutorService THUMB_LOADER = ThreadUtil.buildNewSingleThreadExecutor("Thumbnail Loader"); //$NON-NLS-1$
 
     public static final RenderingHints DownScaleQualityHints =
         new RenderingHints(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
@@ -66,7 +60,7 @@ public class Thumbnail extends JLabel implements Thumbnailable {
     public static final int MAX_SIZE = 256;
 
     private static final NativeCache<Thumbnail, PlanarImage> mCache =
-        new NativeCache<Thumbnail, PlanarImage>(30_000_000) {
+        new NativeCache<Thumbnail, PlanarImage>(30_000_000, "cache.thumbnail") { //$NON-NLS-1$
 
             @Override
             protected void afterEntryRemove(Thumbnail key, PlanarImage img) {
@@ -225,7 +219,7 @@ public class Thumbnail extends JLabel implements Thumbnailable {
                     }
 
                 };
-                THUMB_LOADER.execute(thumbnailReader);
+                ThumbnailService.getDefault().execute(thumbnailReader, ThumbnailService.PRIORITY_VISIBLE);
             } catch (Exception e) {
                 LOGGER.error("Cannot build thumbnail!", e);//$NON-NLS-1$
                 loading.set(false);
@@ -250,6 +244,18 @@ public class Thumbnail extends JLabel implements Thumbnailable {
                     }
                 }
             }
+            // The persistent cache is used only for the default rendering
+            String cacheKey = null;
+            if (noPath && media instanceof ImageElement && opManager == null) {
+                cacheKey = ThumbnailDiskCache.buildKey(media.getFile(), media.getKey(), null, Thumbnail.MAX_SIZE);
+                File cached = ThumbnailService.getDefault().getDiskCache().get(cacheKey);
+                if (cached != null) {
+                    media.setTag(TagW.ThumbnailPath, cached.getPath());
+                    thumbnailPath = cached;
+                    file = cached;
+                    noPath = false;
+                }
+            }
             if (noPath) {
                 if (media instanceof ImageElement) {
                     final ImageElement image = (ImageElement) media;
@@ -257,29 +263,19 @@ public class Thumbnail extends JLabel implements Thumbnailable {
                     if (imgPl != null) {
                         PlanarImage img = image.getRenderedImage(imgPl);
                         final PlanarImage thumb = createThumbnail(img);
-                        if (thumb != null) {
-                            try {
-                                file = File.createTempFile("tumb_", ".jpg", Thumbnail.THUMBNAIL_CACHE_DIR); //$NON-NLS-1$ //$NON-NLS-2$
-                            } catch (IOException e) {
-                                LOGGER.error("Cannot create file for thumbnail!", e);//$NON-NLS-1$
-                            }
-                        }
                         try {
-                            if (thumb != null && file != null) {
-                                MatOfInt map = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 80);
-                                if (ImageProcessor.writeImage(thumb.toMat(), file, map)) {
-                                    /*
-                                     * Write the thumbnail in temp folder, better than getting the thumbnail directly
-                                     * from t.getAsBufferedImage() (it is true if the image is big and cannot handle all
-                                     * the tiles in memory)
-                                     */
+                            if (thumb != null) {
+                                /*
+                                 * Write the thumbnail in the cache folder, better than getting the thumbnail directly
+                                 * from t.getAsBufferedImage() (it is true if the image is big and cannot handle all
+                                 * the tiles in memory)
+                                 */
+                                file = writeThumbnail(thumb, cacheKey);
+                                if (file != null) {
                                     image.setTag(TagW.ThumbnailPath, file.getPath());
                                     thumbnailPath = file;
                                     return;
-                                } else {
-                                    // out of memory
                                 }
-
                             }
 
                             if (thumb == null || thumb.width() <= 0) {
@@ -298,15 +294,11 @@ public class Thumbnail extends JLabel implements Thumbnailable {
                     }
                 }
             } else {
-                Load ref = new Load(file);
-                // loading images sequentially, only one thread pool
-                Future<PlanarImage> future = ImageElement.IMAGE_LOADER.submit(ref);
+                // Small JPEG files, read directly by the thumbnail worker
                 PlanarImage thumb = null;
                 try {
-                    PlanarImage img = future.get();
-                    if (img == null) {
-                        thumb = null;
-                    } else {
+                    PlanarImage img = ImageProcessor.readImageWithCvException(file);
+                    if (img != null) {
                         int width = img.width();
                         int height = img.height();
                         if (width > thumbnailSize || height > thumbnailSize) {
@@ -316,13 +308,7 @@ public class Thumbnail extends JLabel implements Thumbnailable {
                             thumb = img;
                         }
                     }
-
-                } catch (InterruptedException e) {
-                    // Re-assert the thread's interrupted status
-                    Thread.currentThread().interrupt();
-                    // We don't need the result, so cancel the task too
-                    future.cancel(true);
-                } catch (ExecutionException e) {
+                } catch (Exception e) {
                     LOGGER.error("Cannot read thumbnail pixel data!: {}", file, e);//$NON-NLS-1$
                 }
                 if ((thumb == null && media != null) || (thumb != null && thumb.width() <= 0)) {
@@ -336,6 +322,26 @@ public class Thumbnail extends JLabel implements Thumbnailable {
         }
     }
 
+    private static File writeThumbnail(PlanarImage thumb, String cacheKey) {
+        final MatOfInt map = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 80);
+        if (cacheKey != null) {
+            File file = ThumbnailService.getDefault().getDiskCache().store(cacheKey,
+                f -> ImageProcessor.writeImage(thumb.toMat(), f, map));
+            if (file != null) {
+                return file;
+            }
+        }
+        try {
+            File file = File.createTempFile("tumb_", ".jpg", Thumbnail.THUMBNAIL_CACHE_DIR); //$NON-NLS-1$ //$NON-NLS-2$
+            if (ImageProcessor.writeImage(thumb.toMat(), file, map)) {
+                return file;
+            }
+        } catch (IOException e) {
+            LOGGER.error("Cannot create file for thumbnail!", e);//$NON-NLS-1$
+        }
+        return null;
+    }
+
     protected void removeImageFromCache() {
         // Unload image from memory
         mCache.remove(this);
@@ -372,18 +378,4 @@ public class Thumbnail extends JLabel implements Thumbnailable {
         }
     }
 
-    class Load implements Callable<PlanarImage> {
-
-        private final File path;
-
-        public Load(File path) {
-            this.path = path;
-        }
-
-        @Override
-        public PlanarImage call() throws Exception {
-            return ImageProcessor.readImageWithCvException(path);
-        }
-    }
-
 }
@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.media.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.metrics.CacheMetrics;
+import org.weasis.core.api.metrics.Counter;
+import org.weasis.core.api.metrics.MetricRegistry;
+
+/**
+ * Persistent cache of the thumbnail files, shared by the sessions. The files are named by a hash of the source file
+ * identity (path, size and modification date), the frame, the window preset and the thumbnail size, so a modified
+ * source gets a new entry.
+ * <p>
+ * The total size is capped: when it is exceeded, the least recently used files (the modification date is updated on
+ * each hit) are deleted until the size is below {@link #LOW_WATERMARK} of the maximum.
+ */
+public class ThumbnailDiskCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThumbnailDiskCache.class);
+
+    public static final String EXTENSION = ".jpg"; //$NON-NLS-1$
+    static final double LOW_WATERMARK = 0.9;
+
+    @FunctionalInterface
+    public interface FileWriter {
+        /**
+         * @param file
+         *            the temporary file to write
+         * @return true if the file has been written
+         */
+        boolean write(File file) throws IOException;
+    }
+
+    private static final CacheMetrics METRICS =
+        new CacheMetrics(MetricRegistry.getDefault(), "cache.thumbnail.disk"); //$NON-NLS-1$
+    private static final Counter EVICTIONS = MetricRegistry.getDefault().counter("cache.thumbnail.disk.evicted"); //$NON-NLS-1$
+
+    private final Path directory;
+    private final long maxSize;
+    // Total size of the files, -1 until the first scan
+    private long size = -1L;
+
+    public ThumbnailDiskCache(Path directory, long maxSize) {
+        this.directory = Objects.requireNonNull(directory);
+        this.maxSize = maxSize;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            LOGGER.error("Cannot create the thumbnail cache directory {}", directory, e); //$NON-NLS-1$
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getSize() {
+        if (size < 0) {
+            size = 0L;
+            for (Path p : listFiles()) {
+                size += p.toFile().length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @param file
+     *            the source file
+     * @param frame
+     *            the frame identifier in the file (null for single frame)
+     * @param preset
+     *            the window preset or the name of the display operations, null for the default
+     * @param thumbnailSize
+     *            the maximum size of the thumbnail
+     * @return the key of the thumbnail, or null if the source file does not exist
+     */
+    public static String buildKey(File file, Object frame, String preset, int thumbnailSize) {
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        StringBuilder buf = new StringBuilder(file.getAbsolutePath());
+        buf.append('|').append(file.length());
+        buf.append('|').append(file.lastModified());
+        buf.append('|').append(frame == null ? "" : frame.toString()); //$NON-NLS-1$
+        buf.append('|').append(preset == null ? "" : preset); //$NON-NLS-1$
+        buf.append('|').append(thumbnailSize);
+        return hash(buf.toString());
+    }
+
+    static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8)); //$NON-NLS-1$
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path getPath(String key) {
+        return directory.resolve(key + EXTENSION);
+    }
+
+    /**
+     * @param key
+     *            the key from {@link #buildKey(File, Object, String, int)}
+     * @return the cached file or null
+     */
+    public File get(String key) {
+        if (key == null) {
+            return null;
+        }
+        Path path = getPath(key);
+        if (Files.isReadable(path)) {
+            try {
+                // Modification date as last access for the LRU eviction
+                Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException e) {
+                LOGGER.debug("Cannot update access time of {}", path, e); //$NON-NLS-1$
+            }
+            METRICS.hit();
+            return path.toFile();
+        }
+        METRICS.miss();
+        return null;
+    }
+
+    /**
+     * Writes a new entry. The file is first written in a temporary file and then atomically renamed, so concurrent
+     * readers and other instances of the application never see a partial file.
+     *
+     * @param key
+     *            the key from {@link #buildKey(File, Object, String, int)}
+     * @param writer
+     *            the writer of the thumbnail file
+     * @return the cached file or null if it cannot be written
+     */
+    public File store(String key, FileWriter writer) {
+        if (key == null) {
+            return null;
+        }
+        Path target = getPath(key);
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(directory, key, ".tmp" + EXTENSION); //$NON-NLS-1$
+            if (!writer.write(tmp.toFile())) {
+                return null;
+            }
+            long previous = target.toFile().length();
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+            added(target.toFile().length() - previous);
+            return target.toFile();
+        } catch (IOException e) {
+            LOGGER.error("Cannot write thumbnail {}", target, e); //$NON-NLS-1$
+            return null;
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    LOGGER.debug("Cannot delete {}", tmp, e); //$NON-NLS-1$
+                }
+            }
+        }
+    }
+
+    private synchronized void added(long length) {
+        if (size < 0) {
+            // The first scan includes the new file
+            getSize();
+        } else {
+            size += length;
+        }
+        if (size > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until the size is below the low watermark.
+     */
+    public synchronized void evict() {
+        List<Path> files = listFiles();
+        long[] lengths = new long[files.size()];
+        long[] times = new long[files.size()];
+        List<Integer> order = new ArrayList<>(files.size());
+        long total = 0L;
+        for (int i = 0; i < files.size(); i++) {
+            File f = files.get(i).toFile();
+            lengths[i] = f.length();
+            times[i] = f.lastModified();
+            total += lengths[i];
+            order.add(i);
+        }
+        order.sort(Comparator.comparingLong(i -> times[i]));
+
+        long target = (long) (maxSize * LOW_WATERMARK);
+        for (int i = 0; i < order.size() && total > target; i++) {
+            int idx = order.get(i);
+            try {
+                if (Files.deleteIfExists(files.get(idx))) {
+                    total -= lengths[idx];
+                    EVICTIONS.increment();
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Cannot delete {}", files.get(idx), e); //$NON-NLS-1$
+            }
+        }
+        size = total;
+    }
+
+    public synchronized void clear() {
+        for (Path p : listFiles()) {
+            try {
+                Files.deleteIfExists(p);
+            } catch (IOException e) {
+                LOGGER.debug("Cannot delete {}", p, e); //$NON-NLS-1$
+            }
+        }
+        size = 0L;
+    }
+
+    private List<Path> listFiles() {
+        List<Path> list = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) { //$NON-NLS-1$
+            for (Path p : stream) {
+                // Ignore the files being written
+                if (!p.getFileName().toString().endsWith(".tmp" + EXTENSION)) { //$NON-NLS-1$
+                    list.add(p);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Cannot list the thumbnail cache", e); //$NON-NLS-1$
+        }
+        return list;
+    }
+}
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.media.data;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.metrics.Histogram;
+import org.weasis.core.api.metrics.MetricRegistry;
+import org.weasis.core.api.service.BundleTools;
+import org.weasis.core.api.util.StringUtil;
+import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.opencv.data.ImageCV;
+import org.weasis.opencv.data.PlanarImage;
+import org.weasis.opencv.op.ImageProcessor;
+
+/**
+ * Builds the thumbnails of the application on a pool of workers. The tasks with the lowest priority value are executed
+ * first (the visible thumbnails before the others) and in submission order for the same priority. The thumbnails are
+ * stored in a persistent {@link ThumbnailDiskCache}.
+ */
+public final class ThumbnailService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThumbnailService.class);
+
+    public static final int PRIORITY_VISIBLE = 0;
+    public static final int PRIORITY_BACKGROUND = 1000;
+
+    /** Number of threads building the thumbnails. */
+    public static final String P_THREADS = "weasis.thumbnail.threads"; //$NON-NLS-1$
+    /** Maximum size of the persistent cache in MB. */
+    public static final String P_CACHE_SIZE = "weasis.thumbnail.cache.size"; //$NON-NLS-1$
+    public static final int DEFAULT_CACHE_SIZE = 256;
+    /** Directory of the persistent cache, by default "cache/thumbnails" in the “.weasis” directory of the user. */
+    public static final String P_CACHE_DIR = "weasis.thumbnail.cache.dir"; //$NON-NLS-1$
+
+    private static final Histogram LOAD_TIME = MetricRegistry.getDefault().timer("thumbnail.load"); //$NON-NLS-1$
+
+    private final PriorityBlockingQueue<Runnable> queue = new PriorityBlockingQueue<>();
+    private final ThreadPoolExecutor executor;
+    private final ThumbnailDiskCache diskCache;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private static class Holder {
+        static final ThumbnailService INSTANCE = buildDefault();
+    }
+
+    public ThumbnailService(int threads, ThumbnailDiskCache diskCache) {
+        int nbThreads = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(nbThreads, nbThreads, 0L, TimeUnit.MILLISECONDS, queue,
+            ThreadUtil.getThreadFactory("Thumbnail Loader")); //$NON-NLS-1$
+        this.diskCache = diskCache;
+    }
+
+    public static ThumbnailService getDefault() {
+        return Holder.INSTANCE;
+    }
+
+    private static ThumbnailService buildDefault() {
+        int threads = BundleTools.SYSTEM_PREFERENCES.getIntProperty(P_THREADS,
+            Math.min(4, Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
+        long cacheSize = BundleTools.SYSTEM_PREFERENCES.getLongProperty(P_CACHE_SIZE, DEFAULT_CACHE_SIZE);
+        File dir = getPersistentCacheDir();
+        return new ThumbnailService(threads, new ThumbnailDiskCache(dir.toPath(), cacheSize * 1024L * 1024L));
+    }
+
+    /**
+     * AppProperties.WEASIS_PATH falls back to a directory in APP_TEMP_DIR, which is cleaned at each startup. The
+     * persistent cache must stay in the “.weasis” directory of the user when the launcher has not set weasis.path.
+     */
+    static File getPersistentCacheDir() {
+        String path = System.getProperty(P_CACHE_DIR);
+        if (StringUtil.hasText(path)) {
+            return new File(path);
+        }
+        String weasisPath = System.getProperty("weasis.path"); //$NON-NLS-1$
+        File base = StringUtil.hasText(weasisPath) ? new File(weasisPath)
+            : new File(System.getProperty("user.home", ""), ".weasis"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        return new File(base, "cache" + File.separator + "thumbnails"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    public ThumbnailDiskCache getDiskCache() {
+        return diskCache;
+    }
+
+    /**
+     * @param runnable
+     *            the task building a thumbnail
+     * @param priority
+     *            the priority, the lowest value first (see {@link #PRIORITY_VISIBLE})
+     * @return the queued task, which can be cancelled
+     */
+    public Task execute(Runnable runnable, int priority) {
+        Task task = newTask(runnable, priority);
+        execute(task);
+        return task;
+    }
+
+    /**
+     * Builds a task without queuing it, so that the caller can register it before it runs (see
+     * {@link #execute(Task)}).
+     */
+    public Task newTask(Runnable runnable, int priority) {
+        return new Task(runnable, priority, sequence.getAndIncrement());
+    }
+
+    public void execute(Task task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Removes the task from the queue if it is not started.
+     */
+    public boolean remove(Task task) {
+        if (task == null) {
+            return false;
+        }
+        task.cancel();
+        return queue.remove(task);
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public static class Task implements Runnable, Comparable<Task> {
+        private final Runnable runnable;
+        private final int priority;
+        private final long sequence;
+        private volatile boolean cancelled;
+
+        Task(Runnable runnable, int priority, long sequence) {
+            this.runnable = runnable;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        public Runnable getRunnable() {
+            return runnable;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public void run() {
+            if (!cancelled) {
+                long start = System.nanoTime();
+                try {
+                    runnable.run();
+                } catch (Exception e) {
+                    LOGGER.error("Cannot build thumbnail", e); //$NON-NLS-1$
+                } finally {
+                    LOAD_TIME.recordSince(start);
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            int c = Integer.compare(priority, o.priority);
+            return c != 0 ? c : Long.compare(sequence, o.sequence);
+        }
+    }
+
+    /**
+     * @return the largest JPEG scale-down factor (1, 2, 4 or 8) keeping the image larger than the thumbnail size
+     */
+    static int getReducedFactor(int width, int height, int thumbnailSize) {
+        int factor = 8;
+        while (factor > 1 && (width / factor < thumbnailSize || height / factor < thumbnailSize)) {
+            factor /= 2;
+        }
+        return factor;
+    }
+
+    /**
+     * Reads an image for building a thumbnail. JPEG files are decoded at a reduced resolution (DCT scaling) when they
+     * are much larger than the thumbnail.
+     *
+     * @param file
+     *            the image file
+     * @param thumbnailSize
+     *            the size of the thumbnail
+     * @return the image or null
+     */
+    public static PlanarImage readImage(File file, int thumbnailSize) {
+        String name = file.getName().toLowerCase(Locale.ENGLISH);
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) { //$NON-NLS-1$ //$NON-NLS-2$
+            int factor = getJpegReducedFactor(file, thumbnailSize);
+            if (factor > 1) {
+                int flag = factor == 8 ? Imgcodecs.IMREAD_REDUCED_COLOR_8
+                    : factor == 4 ? Imgcodecs.IMREAD_REDUCED_COLOR_4 : Imgcodecs.IMREAD_REDUCED_COLOR_2;
+                Mat img = Imgcodecs.imread(file.getPath(), flag);
+                if (img.width() > 0 && img.height() > 0) {
+                    return ImageCV.toImageCV(img);
+                }
+            }
+        }
+        return ImageProcessor.readImage(file);
+    }
+
+    private static int getJpegReducedFactor(File file, int thumbnailSize) {
+        // Read only the header for the image size
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (readers.hasNext()) {
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(in, true, true);
+                    return getReducedFactor(reader.getWidth(0), reader.getHeight(0), thumbnailSize);
+                } finally {
+                    reader.dispose();
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Cannot read the JPEG header of {}", file, e); //$NON-NLS-1$
+        }
+        return 1;
+    }
+}
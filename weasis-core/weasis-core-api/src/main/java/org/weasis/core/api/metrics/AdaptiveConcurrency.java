@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.metrics;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrency limit adapted with an AIMD policy (additive increase, multiplicative decrease) from the throughput and
+ * the errors observed during a time window:
+ * <ul>
+ * <li>an error in the window halves the limit</li>
+ * <li>a throughput higher than the previous window increases the limit by one</li>
+ * <li>a throughput much lower than the previous window decreases the limit by one</li>
+ * </ul>
+ * The value of the gauge is the current limit.
+ */
+public class AdaptiveConcurrency implements Gauge {
+
+    static final double INCREASE_THRESHOLD = 1.05;
+    static final double DECREASE_THRESHOLD = 0.8;
+
+    private final int min;
+    private final int max;
+    private final long window;
+    private final IntConsumer limitListener;
+    private final LongSupplier clock;
+
+    private int limit;
+    private long windowStart;
+    private long bytes;
+    private int successes;
+    private int errors;
+    private double lastThroughput = 0.0;
+
+    /**
+     * @param min
+     *            the minimum limit
+     * @param initial
+     *            the initial limit
+     * @param max
+     *            the maximum limit
+     * @param window
+     *            the duration of the observation window in milliseconds
+     * @param limitListener
+     *            called with the new limit when it changes (can be null)
+     */
+    public AdaptiveConcurrency(int min, int initial, int max, long window, IntConsumer limitListener) {
+        this(min, initial, max, TimeUnit.MILLISECONDS.toNanos(window), limitListener, System::nanoTime);
+    }
+
+    AdaptiveConcurrency(int min, int initial, int max, long windowNanos, IntConsumer limitListener,
+        LongSupplier clock) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Invalid bounds: " + min + " - " + max); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        this.min = min;
+        this.max = max;
+        this.window = windowNanos;
+        this.limitListener = limitListener;
+        this.clock = Objects.requireNonNull(clock);
+        this.limit = bound(initial);
+        this.windowStart = clock.getAsLong();
+    }
+
+    private int bound(int value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    @Override
+    public double getValue() {
+        return getLimit();
+    }
+
+    /**
+     * Record a successful task.
+     *
+     * @param transferredBytes
+     *            the size of the data transferred by the task
+     */
+    public void onSuccess(long transferredBytes) {
+        int newLimit;
+        synchronized (this) {
+            successes++;
+            bytes += Math.max(0L, transferredBytes);
+            newLimit = update();
+        }
+        notifyLimit(newLimit);
+    }
+
+    /**
+     * Record a failed task (e.g. a network error or a server overload).
+     */
+    public void onError() {
+        int newLimit;
+        synchronized (this) {
+            errors++;
+            newLimit = update();
+        }
+        notifyLimit(newLimit);
+    }
+
+    /**
+     * Increase immediately the limit by one, for starting a task which has a higher priority without stopping the
+     * running tasks.
+     *
+     * @return false if the limit is already the maximum
+     */
+    public boolean boost() {
+        int newLimit;
+        synchronized (this) {
+            if (limit >= max) {
+                return false;
+            }
+            limit++;
+            newLimit = limit;
+            // Do not compare the current window with a different number of tasks
+            startWindow(clock.getAsLong());
+            lastThroughput = 0.0;
+        }
+        notifyLimit(newLimit);
+        return true;
+    }
+
+    /**
+     * Set the limit and forget the observations.
+     *
+     * @param value
+     *            the new limit
+     */
+    public void reset(int value) {
+        int newLimit;
+        synchronized (this) {
+            int old = limit;
+            limit = bound(value);
+            startWindow(clock.getAsLong());
+            lastThroughput = 0.0;
+            newLimit = old == limit ? -1 : limit;
+        }
+        notifyLimit(newLimit);
+    }
+
+    private void notifyLimit(int newLimit) {
+        if (newLimit > 0 && limitListener != null) {
+            limitListener.accept(newLimit);
+        }
+    }
+
+    private void startWindow(long now) {
+        windowStart = now;
+        bytes = 0L;
+        successes = 0;
+        errors = 0;
+    }
+
+    /**
+     * @return the new limit or -1 when the limit has not changed
+     */
+    private int update() {
+        long now = clock.getAsLong();
+        long elapsed = now - windowStart;
+        if (elapsed < window) {
+            return -1;
+        }
+        int old = limit;
+        if (errors > 0) {
+            limit = bound(limit / 2);
+            lastThroughput = 0.0;
+        } else if (successes > 0) {
+            double throughput = bytes / (double) elapsed;
+            if (lastThroughput <= 0.0 || throughput > lastThroughput * INCREASE_THRESHOLD) {
+                limit = bound(limit + 1);
+            } else if (throughput < lastThroughput * DECREASE_THRESHOLD) {
+                limit = bound(limit - 1);
+            }
+            lastThroughput = throughput;
+        }
+        startWindow(now);
+        return old == limit ? -1 : limit;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "limit:" + limit + " [" + min + "-" + max + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    }
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.metrics;
+
+/**
+ * Hit ratio of a cache, built from two counters.
+ */
+public class CacheMetrics {
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public CacheMetrics(MetricRegistry registry, String name) {
+        this.hits = registry.counter(name + ".hit"); //$NON-NLS-1$
+        this.misses = registry.counter(name + ".miss"); //$NON-NLS-1$
+        registry.register(name + ".hitRatio", (Gauge) this::getHitRatio); //$NON-NLS-1$
+    }
+
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    /**
+     * @param value
+     *            the value returned by the cache
+     * @return the value
+     */
+    public <T> T record(T value) {
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    public double getHitRatio() {
+        long h = hits.getCount();
+        long total = h + misses.getCount();
+        return total == 0 ? Double.NaN : h / (double) total;
+    }
+}
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free counter, suitable for updates from many threads.
+ */
+public class Counter implements Metric {
+
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long value) {
+        count.add(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+    }
+
+    @Override
+    public void appendJson(StringBuilder json) {
+        json.append(getCount());
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(getCount());
+    }
+}
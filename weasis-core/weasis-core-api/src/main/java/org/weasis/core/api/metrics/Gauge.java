@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.metrics;
+
+/**
+ * Value computed when a snapshot is requested (e.g. size of a cache or of a queue).
+ */
+@FunctionalInterface
+public interface Gauge extends Metric {
+
+    double getValue();
+
+    @Override
+    default void reset() {
+        // Nothing to reset, the value is read from the source
+    }
+
+    @Override
+    default void appendJson(StringBuilder json) {
+        double val = getValue();
+        if (Double.isNaN(val) || Double.isInfinite(val)) {
+            json.append("null"); //$NON-NLS-1$
+        } else {
+            json.append(val);
+        }
+    }
+}
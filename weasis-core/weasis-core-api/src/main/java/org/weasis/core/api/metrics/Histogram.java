@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of positive long values (typically durations in nanoseconds) with log-linear buckets like the
+ * HDR histogram: values are exact below {@link #SUB_BUCKET_COUNT} and above the relative error is bounded by
+ * 1/{@link #SUB_BUCKET_COUNT} (less than 1%) over the whole long range.
+ */
+public class Histogram implements Metric {
+
+    static final int SUB_BUCKET_BITS = 7;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+    static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+    private final TimeUnit unit;
+
+    /**
+     * @param unit
+     *            the unit of the recorded values, used only for display. Null for unitless values.
+     */
+    public Histogram(TimeUnit unit) {
+        this.unit = unit;
+    }
+
+    public TimeUnit getUnit() {
+        return unit;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        int mantissa = (int) (value >>> shift);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (mantissa - SUB_BUCKET_HALF);
+    }
+
+    static long lowestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int i = index - SUB_BUCKET_COUNT;
+        int shift = i / SUB_BUCKET_HALF + 1;
+        long mantissa = (long) (i % SUB_BUCKET_HALF) + SUB_BUCKET_HALF;
+        return mantissa << shift;
+    }
+
+    static long highestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int i = index - SUB_BUCKET_COUNT;
+        int shift = i / SUB_BUCKET_HALF + 1;
+        long mantissa = (long) (i % SUB_BUCKET_HALF) + SUB_BUCKET_HALF;
+        // Avoid overflow of the last bucket
+        return ((mantissa << shift) - 1) + (1L << shift);
+    }
+
+    public void record(long value) {
+        long val = value < 0 ? 0 : value;
+        counts.incrementAndGet(bucketIndex(val));
+        count.increment();
+        sum.add(val);
+        long m = min.get();
+        while (val < m && !min.compareAndSet(m, val)) {
+            m = min.get();
+        }
+        m = max.get();
+        while (val > m && !max.compareAndSet(m, val)) {
+            m = max.get();
+        }
+    }
+
+    /**
+     * Record the elapsed time since startTime.
+     *
+     * @param startTime
+     *            a value of System.nanoTime()
+     */
+    public void recordSince(long startTime) {
+        record(System.nanoTime() - startTime);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0L);
+        }
+        count.reset();
+        sum.reset();
+        min.set(Long.MAX_VALUE);
+        max.set(Long.MIN_VALUE);
+    }
+
+    public Snapshot getSnapshot() {
+        long[] c = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            c[i] = counts.get(i);
+            total += c[i];
+        }
+        return new Snapshot(c, total, sum.sum(), min.get(), max.get());
+    }
+
+    @Override
+    public void appendJson(StringBuilder json) {
+        getSnapshot().appendJson(json, unit);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        appendJson(buf);
+        return buf.toString();
+    }
+
+    /**
+     * Immutable view of the histogram values. As the recording is not blocked while reading, the values of a snapshot
+     * can be slightly inconsistent (e.g. the sum can include a value not yet counted in a bucket).
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long min, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.min = count == 0 ? 0 : min;
+            this.max = count == 0 ? 0 : max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0.0 : sum / (double) count;
+        }
+
+        /**
+         * @param quantile
+         *            between 0.0 and 1.0
+         * @return the value at the quantile (the middle of the bucket, bounded by min and max)
+         */
+        public long getValueAtQuantile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            double q = Math.max(0.0, Math.min(1.0, quantile));
+            long rank = Math.max(1L, (long) Math.ceil(q * count));
+            long cumul = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumul += counts[i];
+                if (cumul >= rank) {
+                    long low = lowestValue(i);
+                    long val = low + (highestValue(i) - low) / 2;
+                    return Math.max(min, Math.min(max, val));
+                }
+            }
+            return max;
+        }
+
+        public void appendJson(StringBuilder json, TimeUnit unit) {
+            json.append("{\"count\":").append(count); //$NON-NLS-1$
+            if (unit != null) {
+                json.append(",\"unit\":\"").append(unit.name().toLowerCase()).append('"'); //$NON-NLS-1$
+            }
+            json.append(",\"min\":").append(min); //$NON-NLS-1$
+            json.append(",\"mean\":").append(String.format(Locale.US, "%.1f", getMean())); //$NON-NLS-1$ //$NON-NLS-2$
+            json.append(",\"p50\":").append(getValueAtQuantile(0.5)); //$NON-NLS-1$
+            json.append(",\"p90\":").append(getValueAtQuantile(0.9)); //$NON-NLS-1$
+            json.append(",\"p99\":").append(getValueAtQuantile(0.99)); //$NON-NLS-1$
+            json.append(",\"p999\":").append(getValueAtQuantile(0.999)); //$NON-NLS-1$
+            json.append(",\"max\":").append(max); //$NON-NLS-1$
+            json.append('}');
+        }
+    }
+}
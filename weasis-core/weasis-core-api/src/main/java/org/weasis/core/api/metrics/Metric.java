@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.metrics;
+
+public interface Metric {
+
+    /**
+     * Reset the values of the metric (has no effect on gauges).
+     */
+    void reset();
+
+    /**
+     * Append a JSON representation of the current values.
+     *
+     * @param json
+     *            the output
+     */
+    void appendJson(StringBuilder json);
+
+}
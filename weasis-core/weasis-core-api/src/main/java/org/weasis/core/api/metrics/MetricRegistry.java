@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.metrics;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of the application metrics. The metrics are created on the first call and then shared, so the instances can
+ * be kept in static fields by the instrumented classes.
+ *
+ * Naming convention: lower case domain and measure separated by dots (e.g. dicom.header.read).
+ */
+public final class MetricRegistry {
+
+    private static final MetricRegistry DEFAULT = new MetricRegistry();
+
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    public static MetricRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public Counter counter(String name) {
+        return getOrCreate(name, Counter.class, new Counter());
+    }
+
+    /**
+     * @return a histogram of durations in nanoseconds
+     */
+    public Histogram timer(String name) {
+        return histogram(name, TimeUnit.NANOSECONDS);
+    }
+
+    public Histogram histogram(String name, TimeUnit unit) {
+        Metric m = metrics.get(Objects.requireNonNull(name));
+        if (m == null) {
+            m = metrics.computeIfAbsent(name, k -> new Histogram(unit));
+        }
+        if (m instanceof Histogram) {
+            return (Histogram) m;
+        }
+        throw new IllegalArgumentException(name + " is already registered as " + m.getClass().getSimpleName()); //$NON-NLS-1$
+    }
+
+    /**
+     * Register or replace a metric.
+     *
+     * @param name
+     *            the name of the metric
+     * @param metric
+     *            the metric
+     */
+    public void register(String name, Metric metric) {
+        metrics.put(Objects.requireNonNull(name), Objects.requireNonNull(metric));
+    }
+
+    public void remove(String name) {
+        if (name != null) {
+            metrics.remove(name);
+        }
+    }
+
+    public Metric get(String name) {
+        return name == null ? null : metrics.get(name);
+    }
+
+    private <T extends Metric> T getOrCreate(String name, Class<T> type, T newMetric) {
+        Metric m = metrics.putIfAbsent(Objects.requireNonNull(name), newMetric);
+        if (m == null) {
+            return newMetric;
+        }
+        if (type.isInstance(m)) {
+            return type.cast(m);
+        }
+        throw new IllegalArgumentException(name + " is already registered as " + m.getClass().getSimpleName()); //$NON-NLS-1$
+    }
+
+    /**
+     * @return the metrics sorted by name
+     */
+    public SortedMap<String, Metric> getMetrics() {
+        return new TreeMap<>(metrics);
+    }
+
+    public void reset() {
+        for (Metric m : metrics.values()) {
+            m.reset();
+        }
+    }
+
+    /**
+     * @param prefix
+     *            the filter on the metric names, null for all the metrics
+     * @return a JSON object with all the values
+     */
+    public String toJson(String prefix) {
+        StringBuilder json = new StringBuilder("{"); //$NON-NLS-1$
+        boolean first = true;
+        for (Entry<String, Metric> e : getMetrics().entrySet()) {
+            if (prefix != null && !e.getKey().startsWith(prefix)) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append('"').append(e.getKey()).append("\":"); //$NON-NLS-1$
+            e.getValue().appendJson(json);
+        }
+        json.append('}');
+        return json.toString();
+    }
+}
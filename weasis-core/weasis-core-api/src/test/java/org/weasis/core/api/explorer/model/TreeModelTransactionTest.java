@@ -0,0 +1,387 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.explorer.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.beans.PropertyChangeListener;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Test;
+import org.weasis.core.api.explorer.ObservableEvent;
+import org.weasis.core.api.media.data.Codec;
+import org.weasis.core.api.media.data.MediaElement;
+import org.weasis.core.api.media.data.MediaReader;
+import org.weasis.core.api.media.data.MediaSeriesGroup;
+import org.weasis.core.api.media.data.MediaSeriesGroupNode;
+import org.weasis.core.api.media.data.Series;
+import org.weasis.core.api.media.data.SeriesEvent;
+import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.media.data.TagW.TagType;
+
+public class TreeModelTransactionTest {
+
+    private static final TagW PATIENT = new TagW("TxTestPatient", TagType.STRING); //$NON-NLS-1$
+    private static final TagW STUDY = new TagW("TxTestStudy", TagType.STRING); //$NON-NLS-1$
+    private static final TagW SERIES = new TagW("TxTestSeries", TagType.STRING); //$NON-NLS-1$
+    private static final TagW INSTANCE = new TagW("TxTestInstance", TagType.INTEGER); //$NON-NLS-1$
+
+    private static final TreeModelNode PATIENT_NODE = new TreeModelNode(1, 0, PATIENT, null);
+    private static final TreeModelNode STUDY_NODE = new TreeModelNode(2, 0, STUDY, null);
+
+    private static final MediaReader READER = (MediaReader) Proxy.newProxyInstance(
+        TreeModelTransactionTest.class.getClassLoader(), new Class<?>[] { MediaReader.class },
+        (proxy, method, args) -> null);
+
+    private static final int PATIENTS = 10;
+    private static final int STUDIES = 10;
+    private static final int SERIES_NB = 10;
+    private static final int INSTANCES = 100;
+    private static final int BATCH = 1000;
+
+    static class TestSeries extends Series<MediaElement> {
+        TestSeries(String uid) {
+            super(SERIES, uid, null);
+        }
+
+        @Override
+        public void addMedia(MediaElement media) {
+            add(media);
+            DataExplorerModel model = (DataExplorerModel) getTagValue(TagW.ExplorerModel);
+            if (model != null) {
+                model.firePropertyChange(new ObservableEvent(ObservableEvent.BasicAction.ADD, model, null,
+                    new SeriesEvent(SeriesEvent.Action.ADD_IMAGE, this, media)));
+            }
+        }
+
+        @Override
+        public String getMimeType() {
+            return "test"; //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Minimal model with the same locking and notification policy as the DICOM model.
+     */
+    static class TestModel implements TreeModel, DataExplorerModel {
+        private final Tree<MediaSeriesGroup> tree = new Tree<>(MediaSeriesGroupNode.rootNode);
+        private final List<ObservableEvent> events = Collections.synchronizedList(new ArrayList<>());
+        private final List<Thread> eventThreads = Collections.synchronizedList(new ArrayList<>());
+
+        TreeModelTransaction<TestModel> newTransaction() {
+            return new TreeModelTransaction<>(this, tree);
+        }
+
+        @Override
+        public List<TreeModelNode> getModelStructure() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Collection<MediaSeriesGroup> getChildren(MediaSeriesGroup node) {
+            synchronized (tree) {
+                return tree.getSuccessors(node);
+            }
+        }
+
+        @Override
+        public MediaSeriesGroup getHierarchyNode(MediaSeriesGroup parent, Object value) {
+            synchronized (tree) {
+                for (MediaSeriesGroup node : getChildren(parent)) {
+                    if (node.matchIdValue(value)) {
+                        return node;
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void addHierarchyNode(MediaSeriesGroup root, MediaSeriesGroup leaf) {
+            synchronized (tree) {
+                tree.addLeaf(root, leaf);
+            }
+        }
+
+        @Override
+        public void removeHierarchyNode(MediaSeriesGroup root, MediaSeriesGroup leaf) {
+            synchronized (tree) {
+                Tree<MediaSeriesGroup> t = tree.getTree(root);
+                if (t != null) {
+                    t.removeLeaf(leaf);
+                }
+            }
+        }
+
+        @Override
+        public MediaSeriesGroup getParent(MediaSeriesGroup node, TreeModelNode modelNode) {
+            if (node != null && modelNode != null) {
+                if (node.getTagID().equals(modelNode.getTagElement())) {
+                    return node;
+                }
+                synchronized (tree) {
+                    Tree<MediaSeriesGroup> t = tree.getTree(node);
+                    Tree<MediaSeriesGroup> parent;
+                    while (t != null && (parent = t.getParent()) != null) {
+                        if (parent.getHead().getTagID().equals(modelNode.getTagElement())) {
+                            return parent.getHead();
+                        }
+                        t = parent;
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public List<Codec> getCodecPlugins() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void addPropertyChangeListener(PropertyChangeListener propertychangelistener) {
+            // Not used
+        }
+
+        @Override
+        public void removePropertyChangeListener(PropertyChangeListener propertychangelistener) {
+            // Not used
+        }
+
+        @Override
+        public void firePropertyChange(ObservableEvent event) {
+            if (TreeModelTransaction.absorb(this, event)) {
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                events.add(event);
+                eventThreads.add(Thread.currentThread());
+            });
+        }
+
+        @Override
+        public TreeModelNode getTreeModelNodeForNewPlugin() {
+            return PATIENT_NODE;
+        }
+
+        @Override
+        public boolean applySplittingRules(Series<?> original, MediaElement media) {
+            ((Series<MediaElement>) original).addMedia(media);
+            return false;
+        }
+    }
+
+    private static MediaElement media(int instance) {
+        MediaElement m = new MediaElement(READER, null);
+        m.setTag(INSTANCE, instance);
+        return m;
+    }
+
+    private static void loadWithTransactions(TestModel model) {
+        TreeModelTransaction<TestModel> tx = model.newTransaction();
+        int k = 0;
+        for (int p = 0; p < PATIENTS; p++) {
+            String ptUID = "pt" + p; //$NON-NLS-1$
+            MediaSeriesGroup pt = tx.getOrAddNode(MediaSeriesGroupNode.rootNode, ptUID,
+                () -> new MediaSeriesGroupNode(PATIENT, ptUID, null));
+            for (int s = 0; s < STUDIES; s++) {
+                String stUID = ptUID + ".st" + s; //$NON-NLS-1$
+                MediaSeriesGroup st =
+                    tx.getOrAddNode(pt, stUID, () -> new MediaSeriesGroupNode(STUDY, stUID, null));
+                for (int r = 0; r < SERIES_NB; r++) {
+                    for (int i = 0; i < INSTANCES; i++) {
+                        // Lookup for each instance like a loader reading the files one by one
+                        String seUID = stUID + ".se" + r; //$NON-NLS-1$
+                        Series<?> se = (Series<?>) tx.getOrAddNode(st, seUID, () -> {
+                            TestSeries series = new TestSeries(seUID);
+                            series.setTag(TagW.ExplorerModel, model);
+                            return series;
+                        });
+                        tx.addMedia(se, media(k++));
+                        if (k % BATCH == 0) {
+                            tx.commit();
+                        }
+                    }
+                }
+            }
+        }
+        tx.commit();
+    }
+
+    private static void loadDirectly(TestModel model) {
+        int k = 0;
+        for (int p = 0; p < PATIENTS; p++) {
+            MediaSeriesGroup pt = new MediaSeriesGroupNode(PATIENT, "pt" + p, null); //$NON-NLS-1$
+            model.addHierarchyNode(MediaSeriesGroupNode.rootNode, pt);
+            for (int s = 0; s < STUDIES; s++) {
+                MediaSeriesGroup st = new MediaSeriesGroupNode(STUDY, "pt" + p + ".st" + s, null); //$NON-NLS-1$ //$NON-NLS-2$
+                model.addHierarchyNode(pt, st);
+                for (int r = 0; r < SERIES_NB; r++) {
+                    TestSeries se = new TestSeries("pt" + p + ".st" + s + ".se" + r); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    model.addHierarchyNode(st, se);
+                    for (int i = 0; i < INSTANCES; i++) {
+                        se.addMedia(media(k++));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void drainEdt() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            // Wait for the pending events
+        });
+    }
+
+    private static void assertSameTree(TestModel expected, TestModel actual, MediaSeriesGroup e, MediaSeriesGroup a) {
+        assertThat(a).isEqualTo(e);
+        if (e instanceof Series) {
+            List<MediaElement> em = ((Series<MediaElement>) e).copyOfMedias(null, null);
+            List<MediaElement> am = ((Series<MediaElement>) a).copyOfMedias(null, null);
+            assertThat(am.size()).isEqualTo(em.size());
+            for (int i = 0; i < em.size(); i++) {
+                assertThat(am.get(i).getTagValue(INSTANCE)).isEqualTo(em.get(i).getTagValue(INSTANCE));
+            }
+        }
+        List<MediaSeriesGroup> ec = new ArrayList<>(expected.getChildren(e));
+        List<MediaSeriesGroup> ac = new ArrayList<>(actual.getChildren(a));
+        assertThat(ac.size()).isEqualTo(ec.size());
+        for (int i = 0; i < ec.size(); i++) {
+            assertSameTree(expected, actual, ec.get(i), ac.get(i));
+        }
+    }
+
+    @Test
+    public void load100kInstancesWithBlockedEdt() throws Exception {
+        TestModel model = new TestModel();
+        CountDownLatch edtBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SwingUtilities.invokeLater(() -> {
+            edtBlocked.countDown();
+            try {
+                release.await(2, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(edtBlocked.await(30, TimeUnit.SECONDS)).isTrue();
+
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread loader = new Thread(() -> {
+            try {
+                loadWithTransactions(model);
+            } catch (Throwable t) {
+                error.set(t);
+            }
+        }, "Test loader"); //$NON-NLS-1$
+        try {
+            loader.start();
+            // The loader must finish while the EDT cannot run anything
+            loader.join(TimeUnit.MINUTES.toMillis(1));
+            assertThat(loader.isAlive()).isFalse();
+            assertThat(error.get()).isNull();
+            assertThat(model.events.size()).isZero();
+        } finally {
+            release.countDown();
+        }
+        drainEdt();
+
+        int total = PATIENTS * STUDIES * SERIES_NB * INSTANCES;
+        assertThat(model.events.size()).isEqualTo(total / BATCH);
+        int media = 0;
+        int added = 0;
+        for (ObservableEvent evt : model.events) {
+            assertThat(evt.getActionCommand()).isEqualTo(ObservableEvent.BasicAction.ADD);
+            assertThat(evt.getNewValue() instanceof TreeModelChange).isTrue();
+            TreeModelChange change = (TreeModelChange) evt.getNewValue();
+            media += change.getMediaCount();
+            added += change.getAddedNodes().size();
+        }
+        assertThat(media).isEqualTo(total);
+        assertThat(added).isEqualTo(PATIENTS + PATIENTS * STUDIES + PATIENTS * STUDIES * SERIES_NB);
+        for (Thread t : model.eventThreads) {
+            assertThat(t).isNotEqualTo(loader);
+        }
+
+        TestModel expected = new TestModel();
+        loadDirectly(expected);
+        assertSameTree(expected, model, MediaSeriesGroupNode.rootNode, MediaSeriesGroupNode.rootNode);
+    }
+
+    @Test
+    public void pendingNodesAreInvisibleUntilCommit() throws Exception {
+        TestModel model = new TestModel();
+        TreeModelTransaction<TestModel> tx = model.newTransaction();
+        MediaSeriesGroup pt = tx.getOrAddNode(MediaSeriesGroupNode.rootNode, "pt", //$NON-NLS-1$
+            () -> new MediaSeriesGroupNode(PATIENT, "pt", null)); //$NON-NLS-1$
+        MediaSeriesGroup st = tx.getOrAddNode(pt, "st", () -> new MediaSeriesGroupNode(STUDY, "st", null)); //$NON-NLS-1$ //$NON-NLS-2$
+        TestSeries se = new TestSeries("se"); //$NON-NLS-1$
+        se.setTag(TagW.ExplorerModel, model);
+        tx.addNode(st, se);
+        tx.addMedia(se, media(1));
+
+        assertThat(model.getChildren(MediaSeriesGroupNode.rootNode).size()).isZero();
+        assertThat(tx.getNode(pt, "st")).isEqualTo(st); //$NON-NLS-1$
+        assertThat(tx.findPendingNode("st", STUDY_NODE)).isEqualTo(st); //$NON-NLS-1$
+        assertThat(tx.getParent(se, PATIENT_NODE)).isEqualTo(pt);
+        assertThat(tx.size()).isEqualTo(4);
+
+        TreeModelChange change = tx.commit();
+        assertThat(tx.isEmpty()).isTrue();
+        assertThat(change.getAddedNodes().size()).isEqualTo(3);
+        assertThat(change.getAffectedNodes(PATIENT_NODE).size()).isEqualTo(1);
+        assertThat(model.getParent(se, PATIENT_NODE)).isEqualTo(pt);
+        assertThat(se.size(null)).isEqualTo(1);
+
+        drainEdt();
+        // The insertion event of the media is merged into the change
+        assertThat(model.events.size()).isEqualTo(1);
+        assertThat(model.events.get(0).getNewValue()).isEqualTo(change);
+    }
+
+    @Test
+    public void concurrentNodesAreMerged() throws Exception {
+        TestModel model = new TestModel();
+        TreeModelTransaction<TestModel> tx1 = model.newTransaction();
+        TreeModelTransaction<TestModel> tx2 = model.newTransaction();
+        TestSeries[] series = new TestSeries[2];
+        List<TreeModelTransaction<TestModel>> txs = new ArrayList<>();
+        txs.add(tx1);
+        txs.add(tx2);
+        for (int i = 0; i < txs.size(); i++) {
+            TreeModelTransaction<TestModel> tx = txs.get(i);
+            MediaSeriesGroup pt = tx.getOrAddNode(MediaSeriesGroupNode.rootNode, "pt", //$NON-NLS-1$
+                () -> new MediaSeriesGroupNode(PATIENT, "pt", null)); //$NON-NLS-1$
+            series[i] = (TestSeries) tx.getOrAddNode(pt, "se", () -> new TestSeries("se")); //$NON-NLS-1$ //$NON-NLS-2$
+            tx.addMedia(series[i], media(i));
+        }
+        assertThat(series[1]).isNotSameAs(series[0]);
+
+        TreeModelChange c1 = tx1.commit();
+        TreeModelChange c2 = tx2.commit();
+        assertThat(c1.getAddedNodes().size()).isEqualTo(2);
+        assertThat(c2.getAddedNodes().size()).isZero();
+        assertThat(c2.getUpdatedNodes().size()).isEqualTo(1);
+        assertThat(model.getChildren(MediaSeriesGroupNode.rootNode).size()).isEqualTo(1);
+        // The media of the second transaction goes to the node of the first one
+        assertThat(series[0].size(null)).isEqualTo(2);
+        assertThat(series[1].size(null)).isZero();
+    }
+}
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.image.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import org.junit.Test;
+import org.weasis.core.api.image.AffineTransformOp;
+
+public class ImagePyramidTest {
+
+    @Test
+    public void testLevelForScale() {
+        // Small images have no levels
+        assertThat(ImagePyramid.getLevel(1024, 1024, 0.1)).isZero();
+        // No level when zooming in or close to 1:1
+        assertThat(ImagePyramid.getLevel(8192, 8192, 1.0)).isZero();
+        assertThat(ImagePyramid.getLevel(8192, 8192, 0.51)).isZero();
+
+        // Fit 8k and 16k in a 1024 viewport
+        assertThat(ImagePyramid.getLevel(8192, 8192, 1024 / 8192.0)).isEqualTo(3);
+        assertThat(ImagePyramid.getLevel(16384, 16384, 1024 / 16384.0)).isEqualTo(4);
+        assertThat(ImagePyramid.getLevel(16384, 16384, 1000 / 16384.0)).isEqualTo(4);
+        assertThat(ImagePyramid.getLevel(16384, 16384, 1100 / 16384.0)).isEqualTo(3);
+
+        // The level scale is never below the display scale
+        for (double scale = 0.001; scale < 1.0; scale *= 1.07) {
+            int level = ImagePyramid.getLevel(10000, 7000, scale);
+            assertThat(Math.pow(0.5, level)).isGreaterThanOrEqualTo(scale);
+            assertThat(level).isBetween(0, ImagePyramid.MAX_LEVEL);
+            assertThat(10000 >> level).isGreaterThanOrEqualTo(ImagePyramid.MIN_LEVEL_SIZE);
+        }
+    }
+
+    @Test
+    public void testInputMatrix() {
+        double[] matrix = { 0.3, -0.1, 12.5, 0.1, 0.3, -4.0 };
+        assertThat(AffineTransformOp.getInputMatrix(matrix, null)).isSameAs(matrix);
+
+        int fullWidth = 10001;
+        int levelWidth = (((fullWidth + 1) / 2) + 1) / 2;
+        double sx = levelWidth / (double) fullWidth;
+        double sy = 0.25;
+        double[] m = AffineTransformOp.getInputMatrix(matrix, new double[] { sx, sy });
+
+        // The center of a pixel of the level maps to the same destination as its location in the full image
+        for (int i = 0; i < 10; i++) {
+            double xl = i * 97.0;
+            double yl = i * 31.0;
+            double x = (xl + 0.5) / sx - 0.5;
+            double y = (yl + 0.5) / sy - 0.5;
+            assertThat(m[0] * xl + m[1] * yl + m[2]).isCloseTo(matrix[0] * x + matrix[1] * y + matrix[2],
+                offset(1e-9));
+            assertThat(m[3] * xl + m[4] * yl + m[5]).isCloseTo(matrix[3] * x + matrix[4] * y + matrix[5],
+                offset(1e-9));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.image.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+import org.weasis.core.api.image.util.KernelFilter.Method;
+
+public class KernelFilterTest {
+
+    @Test
+    public void testPresetDispatch() {
+        assertThat(KernelFilter.of(KernelData.NONE).getMethod()).isEqualTo(Method.SCALE);
+        assertThat(KernelFilter.of(KernelData.MEAN).getMethod()).isEqualTo(Method.BOX);
+        assertThat(KernelFilter.of(KernelData.DEFOCUS).getMethod()).isEqualTo(Method.BOX);
+        assertThat(KernelFilter.of(KernelData.EDGE2).getMethod()).isEqualTo(Method.BOX);
+        assertThat(KernelFilter.of(KernelData.SHARPENMORE).getMethod()).isEqualTo(Method.BOX);
+        assertThat(KernelFilter.of(KernelData.BLUR).getMethod()).isEqualTo(Method.LAPLACIAN);
+        assertThat(KernelFilter.of(KernelData.SHARPEN).getMethod()).isEqualTo(Method.LAPLACIAN);
+        assertThat(KernelFilter.of(KernelData.EDGE1).getMethod()).isEqualTo(Method.LAPLACIAN);
+        assertThat(KernelFilter.of(KernelData.GAUSSIAN3).getMethod()).isEqualTo(Method.GAUSSIAN);
+        assertThat(KernelFilter.of(KernelData.GAUSSIAN9).getMethod()).isEqualTo(Method.GAUSSIAN);
+        assertThat(KernelFilter.of(KernelData.BLURMORE).getMethod()).isEqualTo(Method.DIRECT);
+        assertThat(KernelFilter.of(KernelData.EMBOSS).getMethod()).isEqualTo(Method.DIRECT);
+        assertThat(KernelFilter.of(KernelData.OUTLINE).getMethod()).isEqualTo(Method.DIRECT);
+        assertThat(KernelFilter.of(KernelData.GAUSSIAN27).getMethod()).isEqualTo(Method.DIRECT);
+    }
+
+    @Test
+    public void testBoxAndLaplacianWeights() {
+        // (9 * identity - ones) / 4
+        KernelFilter sharpen = KernelFilter.of(KernelData.SHARPENMORE);
+        assertThat(sharpen.getWeight()).isCloseTo(-0.25, offset(1E-6));
+        assertThat(sharpen.getIdentityWeight()).isCloseTo(3.25, offset(1E-6));
+
+        // identity + laplacian / 8
+        KernelFilter blur = KernelFilter.of(KernelData.BLUR);
+        assertThat(blur.getWeight()).isCloseTo(0.125, offset(1E-6));
+        assertThat(blur.getIdentityWeight()).isCloseTo(1.0, offset(1E-6));
+    }
+
+    @Test
+    public void testGaussianSigma() {
+        KernelFilter gauss = KernelFilter.of(KernelData.GAUSSIAN7);
+        assertThat(gauss.getSigmaX()).isCloseTo(1.0, offset(1E-3));
+        assertThat(gauss.getSigmaY()).isCloseTo(1.0, offset(1E-3));
+
+        KernelFilter aniso = KernelFilter.of(KernelData.gaussianKernel("aniso", 2.0F, 0.5F)); //$NON-NLS-1$
+        assertThat(aniso.getMethod()).isEqualTo(Method.GAUSSIAN);
+        assertThat(aniso.getSigmaX()).isCloseTo(2.0, offset(1E-3));
+        assertThat(aniso.getSigmaY()).isCloseTo(0.5, offset(1E-3));
+    }
+
+    @Test
+    public void testSeparableFactorization() {
+        float[] row = { 1.0F, -2.0F, 0.5F, 3.0F };
+        float[] column = { 2.0F, 0.0F, -1.0F, 4.0F, 1.5F };
+        float[] data = new float[row.length * column.length];
+        for (int y = 0; y < column.length; y++) {
+            for (int x = 0; x < row.length; x++) {
+                data[y * row.length + x] = column[y] * row[x];
+            }
+        }
+        KernelFilter filter = KernelFilter.of(new KernelData("sep", false, row.length, column.length, data)); //$NON-NLS-1$
+        assertThat(filter.getMethod()).isEqualTo(Method.SEPARABLE);
+        float[] rx = filter.getRowVector();
+        float[] cy = filter.getColumnVector();
+        for (int y = 0; y < column.length; y++) {
+            for (int x = 0; x < row.length; x++) {
+                assertThat((double) (cy[y] * rx[x])).isCloseTo(data[y * row.length + x], offset(1E-5));
+            }
+        }
+
+        // Rank 2
+        data[0] += 1.0F;
+        assertThat(KernelFilter.of(new KernelData("rank2", false, row.length, column.length, data)).getMethod()) //$NON-NLS-1$
+            .isEqualTo(Method.DIRECT);
+    }
+
+    @Test
+    public void testLargeKernelInFrequencyDomain() {
+        int n = 15;
+        float[] data = new float[n * n];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (i * 7919) % 13 - 6.0F;
+        }
+        assertThat(KernelFilter.of(new KernelData("large", false, n, n, data)).getMethod()).isEqualTo(Method.DFT); //$NON-NLS-1$
+    }
+
+    private static boolean loadOpenCV() {
+        try {
+            System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testDftBordersLikeFilter2D() {
+        Assume.assumeTrue("OpenCV native library not available", loadOpenCV()); //$NON-NLS-1$
+
+        int n = 15;
+        float[] data = new float[n * n];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = ((i * 7919) % 13 - 6.0F) / 50.0F;
+        }
+        KernelFilter filter = KernelFilter.of(new KernelData("large", false, n, n, data)); //$NON-NLS-1$
+        assertThat(filter.getMethod()).isEqualTo(Method.DFT);
+
+        Random random = new Random(11);
+        // Single tile images, and one larger than a tile
+        for (int[] dim : new int[][] { { 40, 30 }, { 512, 512 }, { 700, 300 } }) {
+            int cols = dim[0];
+            int rows = dim[1];
+            Mat source = new Mat(rows, cols, CvType.CV_32F);
+            float[] pixels = new float[rows * cols];
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = random.nextFloat();
+            }
+            source.put(0, 0, pixels);
+
+            Mat expected = new Mat();
+            Imgproc.filter2D(source, expected, -1, KernelFilter.toMat(data, n, n));
+            Mat result = filter.apply(source);
+
+            float[] val1 = new float[1];
+            float[] val2 = new float[1];
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < cols; x++) {
+                    // Border pixels within the reach of the kernel
+                    if (x > n && x < cols - n - 1 && y > n && y < rows - n - 1) {
+                        continue;
+                    }
+                    expected.get(y, x, val1);
+                    result.get(y, x, val2);
+                    assertThat((double) val2[0]).as("pixel %d,%d of %dx%d", x, y, cols, rows) //$NON-NLS-1$
+                        .isCloseTo(val1[0], offset(1E-3));
+                }
+            }
+            source.release();
+            expected.release();
+            result.release();
+        }
+    }
+}
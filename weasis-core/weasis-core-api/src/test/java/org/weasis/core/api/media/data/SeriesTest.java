@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.media.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.weasis.core.api.media.data.TagW.TagType;
+
+public class SeriesTest {
+
+    private static final TagW INSTANCE = new TagW("SeriesTestInstance", TagType.INTEGER); //$NON-NLS-1$
+    private static final TagW LOCATION = new TagW("SeriesTestLocation", TagType.DOUBLE); //$NON-NLS-1$
+    private static final TagW PHASE = new TagW("SeriesTestPhase", TagType.INTEGER); //$NON-NLS-1$
+    private static final TagW UID = new TagW("SeriesTestUID", TagType.STRING); //$NON-NLS-1$
+
+    private static final MediaReader READER = (MediaReader) Proxy.newProxyInstance(
+        SeriesTest.class.getClassLoader(), new Class<?>[] { MediaReader.class }, (proxy, method, args) -> null);
+
+    static class TestSeries extends Series<MediaElement> {
+        TestSeries(Comparator<MediaElement> mediaOrder) {
+            super(UID, "1.2.3", null, new ArrayList<>(), mediaOrder); //$NON-NLS-1$
+        }
+
+        @Override
+        public void addMedia(MediaElement media) {
+            // Insert sorted by mediaOrder like DicomSeries
+            synchronized (this) {
+                int index = Collections.binarySearch(medias, media, mediaOrder);
+                add(index < 0 ? -(index + 1) : index + 1, media);
+            }
+        }
+
+        @Override
+        public String getMimeType() {
+            return "test"; //$NON-NLS-1$
+        }
+    }
+
+    static class CountingComparator implements Comparator<MediaElement> {
+        private final Comparator<MediaElement> comparator;
+        private final AtomicLong counter;
+
+        CountingComparator(Comparator<MediaElement> comparator, AtomicLong counter) {
+            this.comparator = comparator;
+            this.counter = counter;
+        }
+
+        @Override
+        public int compare(MediaElement o1, MediaElement o2) {
+            counter.incrementAndGet();
+            return comparator.compare(o1, o2);
+        }
+    }
+
+    private static Comparator<MediaElement> byTag(TagW tag, boolean reverse) {
+        Comparator<MediaElement> c = Comparator.comparing(m -> (Comparable) m.getTagValue(tag));
+        return reverse ? c.reversed() : c;
+    }
+
+    private static MediaElement media(int instance, double location, int phase) {
+        MediaElement m = new MediaElement(READER, null);
+        m.setTag(INSTANCE, instance);
+        m.setTag(LOCATION, location);
+        m.setTag(PHASE, phase);
+        m.setTag(UID, "1.2.3." + instance); //$NON-NLS-1$
+        return m;
+    }
+
+    @Test
+    public void testIncrementalSortedViews() {
+        int nb = 20_000;
+        Random random = new Random(11);
+        List<MediaElement> elements = new ArrayList<>(nb);
+        for (int i = 0; i < nb; i++) {
+            // 50 phases at 400 locations: many equal elements for the location and the phase comparators
+            elements.add(media(i, (i % 400) * 1.5, i / 400));
+        }
+        Collections.shuffle(elements, random);
+
+        AtomicLong counter = new AtomicLong();
+        TestSeries series = new TestSeries(byTag(INSTANCE, false));
+        List<Comparator<MediaElement>> comparators = new ArrayList<>();
+        comparators.add(new CountingComparator(byTag(LOCATION, false), counter));
+        comparators.add(new CountingComparator(byTag(LOCATION, true), counter));
+        comparators.add(new CountingComparator(byTag(PHASE, false), counter));
+
+        for (int i = 0; i < nb; i++) {
+            series.addMedia(elements.get(i));
+            // Sorted views used by the viewers while downloading
+            for (Comparator<MediaElement> c : comparators) {
+                Assert.assertNotNull(series.getMedia(i / 2, null, c));
+            }
+        }
+
+        // Each insertion is a binary search (two comparisons by step with the tie-break by instance number)
+        int log2 = 32 - Integer.numberOfLeadingZeros(nb);
+        assertThat(counter.get()).isLessThan(3L * nb * 2 * (log2 + 1));
+
+        // Same result as a stable sort of the list ordered by instance number
+        List<MediaElement> byInstance = new ArrayList<>(elements);
+        byInstance.sort(byTag(INSTANCE, false));
+        Assert.assertEquals(byInstance, series.getSortedMedias(null));
+        for (Comparator<MediaElement> c : comparators) {
+            List<MediaElement> expected = new ArrayList<>(byInstance);
+            expected.sort(c);
+            Assert.assertEquals(expected, series.getSortedMedias(c));
+        }
+    }
+
+    @Test
+    public void testAppendWithoutMediaOrder() {
+        Random random = new Random(12);
+        TestSeries series = new TestSeries(null);
+        Comparator<MediaElement> c = byTag(LOCATION, false);
+        List<MediaElement> expected = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            MediaElement m = media(i, random.nextInt(100), 0);
+            series.add(m);
+            expected.add(m);
+            series.getSortedMedias(c);
+        }
+        expected.sort(c);
+        Assert.assertEquals(expected, series.getSortedMedias(c));
+    }
+
+    @Test
+    public void testHasMediaContains() {
+        TestSeries series = new TestSeries(byTag(INSTANCE, false));
+        for (int i = 0; i < 100; i++) {
+            series.addMedia(media(i, i, 0));
+        }
+        Assert.assertTrue(series.hasMediaContains(UID, "1.2.3.50")); //$NON-NLS-1$
+        Assert.assertFalse(series.hasMediaContains(UID, "1.2.3.100")); //$NON-NLS-1$
+        series.addMedia(media(100, 100, 0));
+        Assert.assertTrue(series.hasMediaContains(UID, "1.2.3.100")); //$NON-NLS-1$
+        List<MediaElement> list = new ArrayList<>();
+        list.add(media(101, 101, 0));
+        series.addAll(list);
+        Assert.assertTrue(series.hasMediaContains(UID, "1.2.3.101")); //$NON-NLS-1$
+        Assert.assertFalse(series.hasMediaContains(UID, null));
+    }
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.media.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.weasis.core.api.media.data.TagW.TagType;
+
+public class TagMapTest {
+
+    private static final int NB_TAGS = 60;
+    private static final List<TagW> TAGS = new ArrayList<>();
+
+    static {
+        for (int i = 0; i < NB_TAGS; i++) {
+            TAGS.add(new TagW(0x00100000 + i, "TagMapTest" + i, TagType.STRING)); //$NON-NLS-1$
+        }
+    }
+
+    @Test
+    public void testSameBehaviorAsHashMap() {
+        Random random = new Random(7);
+        Map<TagW, Object> expected = new HashMap<>();
+        TagMap map = new TagMap();
+        for (int i = 0; i < 20_000; i++) {
+            TagW tag = TAGS.get(random.nextInt(NB_TAGS));
+            int op = random.nextInt(10);
+            if (op < 5) {
+                Object val = random.nextInt(5) == 0 ? null : "v" + random.nextInt(100); //$NON-NLS-1$
+                Assert.assertEquals(expected.put(tag, val), map.put(tag, val));
+            } else if (op < 8) {
+                Assert.assertEquals(expected.remove(tag), map.remove(tag));
+            } else if (op < 9) {
+                // Remove with the iterator
+                Iterator<Entry<TagW, Object>> it = map.entrySet().iterator();
+                while (it.hasNext()) {
+                    if (it.next().getKey().equals(tag)) {
+                        it.remove();
+                        expected.remove(tag);
+                    }
+                }
+            } else if (random.nextInt(50) == 0) {
+                map.clear();
+                expected.clear();
+            }
+            Assert.assertEquals(expected.size(), map.size());
+            Assert.assertEquals(expected.containsKey(tag), map.containsKey(tag));
+            Assert.assertEquals(expected.get(tag), map.get(tag));
+        }
+        Assert.assertEquals(expected, map);
+        Assert.assertEquals(map, expected);
+        Assert.assertEquals(expected.hashCode(), map.hashCode());
+        Assert.assertEquals(expected, new TagMap(expected));
+        // Equal tags share the same index
+        TagW copy = new TagW(TAGS.get(3).getId(), TAGS.get(3).getKeyword(), TagType.STRING);
+        Assert.assertEquals(TAGS.get(3).getIndex(), copy.getIndex());
+        map.put(TAGS.get(3), "val"); //$NON-NLS-1$
+        Assert.assertEquals("val", map.get(copy)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testInternValues() {
+        TagMap m1 = new TagMap();
+        TagMap m2 = new TagMap();
+        m1.put(TAGS.get(0), new String("CT")); //$NON-NLS-1$
+        m2.put(TAGS.get(0), new String("CT")); //$NON-NLS-1$
+        Assert.assertSame(m1.get(TAGS.get(0)), m2.get(TAGS.get(0)));
+
+        // Arrays can be modified by the callers (e.g. window values rescaled in place), they must not be shared
+        m1.put(TAGS.get(1), new double[] { 0.5, 0.5 });
+        m2.put(TAGS.get(1), new double[] { 0.5, 0.5 });
+        Assert.assertNotSame(m1.get(TAGS.get(1)), m2.get(TAGS.get(1)));
+        double[] ww = (double[]) m1.get(TAGS.get(1));
+        ww[0] = ww[0] / 2.0;
+        Assert.assertArrayEquals(new double[] { 0.25, 0.5 }, (double[]) m1.get(TAGS.get(1)), 0.0);
+        Assert.assertArrayEquals(new double[] { 0.5, 0.5 }, (double[]) m2.get(TAGS.get(1)), 0.0);
+
+        // A copy of the map has its own arrays only when the caller clones them, like before with HashMap
+        TagMap copy = new TagMap(m2);
+        Assert.assertSame(m2.get(TAGS.get(1)), copy.get(TAGS.get(1)));
+    }
+
+    @Test
+    public void testIndexRegistryBounded() {
+        // Tags created dynamically (e.g. private tags of each file) do not make the registry grow without bound
+        List<TagW> tags = new ArrayList<>();
+        for (int i = 0; i < TagW.MAX_INDEXES + 1000; i++) {
+            TagW tag = new TagW("TagMapTestDynamic" + i, TagType.STRING); //$NON-NLS-1$
+            Assert.assertTrue(tag.getIndex() >= 0);
+            tags.add(tag);
+        }
+        Assert.assertTrue(TagW.getIndexCount() <= TagW.MAX_INDEXES);
+
+        TagMap map = new TagMap();
+        for (TagW tag : tags) {
+            map.put(tag, tag.getKeyword());
+        }
+        for (TagW tag : tags) {
+            // Equal tags share the same index beyond the bound
+            TagW copy = new TagW(tag.getId(), tag.getKeyword(), TagType.STRING);
+            Assert.assertEquals(tag.getIndex(), copy.getIndex());
+            Assert.assertEquals(tag.getKeyword(), map.get(copy));
+        }
+        Assert.assertEquals(tags.size(), map.size());
+    }
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.media.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThumbnailDiskCacheTest {
+
+    private static final int ENTRY_SIZE = 200;
+
+    private Path dir;
+    private Path sources;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("thumbcache"); //$NON-NLS-1$
+        sources = Files.createTempDirectory("thumbsrc"); //$NON-NLS-1$
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        delete(dir);
+        delete(sources);
+    }
+
+    private static void delete(Path path) throws IOException {
+        File[] files = path.toFile().listFiles();
+        if (files != null) {
+            for (File f : files) {
+                Files.deleteIfExists(f.toPath());
+            }
+        }
+        Files.deleteIfExists(path);
+    }
+
+    private static boolean write(File file, int length) throws IOException {
+        Files.write(file.toPath(), new byte[length]);
+        return true;
+    }
+
+    private File newSource(String name) throws IOException {
+        File f = sources.resolve(name).toFile();
+        write(f, 10);
+        return f;
+    }
+
+    @Test
+    public void testKeyIdentity() throws IOException {
+        File src = newSource("a.dcm"); //$NON-NLS-1$
+        String key = ThumbnailDiskCache.buildKey(src, 1, null, 256);
+        assertThat(key).isEqualTo(ThumbnailDiskCache.buildKey(src, 1, null, 256));
+        assertThat(key).isNotEqualTo(ThumbnailDiskCache.buildKey(src, 2, null, 256));
+        assertThat(key).isNotEqualTo(ThumbnailDiskCache.buildKey(src, 1, "Lung", 256)); //$NON-NLS-1$
+        assertThat(key).isNotEqualTo(ThumbnailDiskCache.buildKey(src, 1, null, 128));
+
+        // A modified source is a new entry
+        Files.setLastModifiedTime(src.toPath(), FileTime.fromMillis(src.lastModified() - 10_000L));
+        assertThat(key).isNotEqualTo(ThumbnailDiskCache.buildKey(src, 1, null, 256));
+
+        assertThat(ThumbnailDiskCache.buildKey(sources.resolve("missing").toFile(), 1, null, 256)).isNull(); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testStoreAndGet() throws IOException {
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(dir, 1_000_000L);
+        String key = ThumbnailDiskCache.buildKey(newSource("b.dcm"), null, null, 256); //$NON-NLS-1$
+        assertThat(cache.get(key)).isNull();
+
+        File stored = cache.store(key, f -> write(f, ENTRY_SIZE));
+        assertThat(stored).isNotNull();
+        assertThat(cache.get(key)).isEqualTo(stored);
+        assertThat(cache.getSize()).isEqualTo(ENTRY_SIZE);
+
+        // Replace an entry
+        cache.store(key, f -> write(f, ENTRY_SIZE * 2));
+        assertThat(cache.getSize()).isEqualTo(ENTRY_SIZE * 2);
+
+        // Failed write: no entry and no temporary file left
+        String key2 = ThumbnailDiskCache.hash("failed"); //$NON-NLS-1$
+        assertThat(cache.store(key2, f -> false)).isNull();
+        assertThat(cache.get(key2)).isNull();
+        assertThat(dir.toFile().list()).hasSize(1);
+
+        // The size is restored from the directory
+        assertThat(new ThumbnailDiskCache(dir, 1_000_000L).getSize()).isEqualTo(ENTRY_SIZE * 2);
+    }
+
+    @Test
+    public void testEvictionLimit() throws IOException {
+        long maxSize = 100L * ENTRY_SIZE;
+        ThumbnailDiskCache cache = new ThumbnailDiskCache(dir, maxSize);
+        List<String> keys = new ArrayList<>();
+        long time = System.currentTimeMillis() - 10_000_000L;
+        for (int i = 0; i < 5000; i++) {
+            String key = ThumbnailDiskCache.hash(Integer.toString(i));
+            keys.add(key);
+            File f = cache.store(key, file -> write(file, ENTRY_SIZE));
+            if (f != null) {
+                // Deterministic access order
+                Files.setLastModifiedTime(f.toPath(), FileTime.fromMillis(time + i * 1000L));
+            }
+            assertThat(cache.getSize()).isLessThanOrEqualTo(maxSize);
+            if (i == 50) {
+                // Recently used: must survive the next evictions
+                assertThat(cache.get(keys.get(0))).isNotNull();
+            }
+        }
+        long count = dir.toFile().list().length;
+        assertThat(count * ENTRY_SIZE).isEqualTo(cache.getSize());
+        assertThat(count).isLessThanOrEqualTo(100L);
+        assertThat(count).isGreaterThanOrEqualTo((long) (100 * ThumbnailDiskCache.LOW_WATERMARK));
+        // The most recent entries are kept
+        assertThat(cache.get(keys.get(4999))).isNotNull();
+        assertThat(cache.get(keys.get(0))).isNotNull();
+        assertThat(cache.get(keys.get(100))).isNull();
+    }
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.media.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ThumbnailServiceTest {
+
+    @Test
+    public void testReducedFactor() {
+        assertThat(ThumbnailService.getReducedFactor(4000, 3000, 150)).isEqualTo(8);
+        assertThat(ThumbnailService.getReducedFactor(1000, 800, 150)).isEqualTo(4);
+        assertThat(ThumbnailService.getReducedFactor(400, 400, 150)).isEqualTo(2);
+        assertThat(ThumbnailService.getReducedFactor(200, 2000, 150)).isEqualTo(1);
+    }
+
+    @Test
+    public void testVisibleFirst() throws InterruptedException {
+        ThumbnailService service = new ThumbnailService(1, null);
+        try {
+            checkOrder(service);
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private static void checkOrder(ThumbnailService service) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        service.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, ThumbnailService.PRIORITY_BACKGROUND);
+        started.await();
+
+        CountDownLatch done = new CountDownLatch(5);
+        int[] priorities = { ThumbnailService.PRIORITY_BACKGROUND, 3, ThumbnailService.PRIORITY_VISIBLE, 3, 1 };
+        for (int i = 0; i < priorities.length; i++) {
+            final int id = i;
+            service.execute(() -> {
+                order.add(id);
+                done.countDown();
+            }, priorities[i]);
+        }
+        // Cancelled tasks are not executed
+        ThumbnailService.Task cancelled = service.execute(() -> order.add(-1), 2);
+        assertThat(service.remove(cancelled)).isTrue();
+
+        release.countDown();
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).containsExactly(2, 4, 1, 3, 0);
+    }
+}
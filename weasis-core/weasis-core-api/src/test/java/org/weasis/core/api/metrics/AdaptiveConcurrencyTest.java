@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class AdaptiveConcurrencyTest {
+
+    private static final long WINDOW = 1000L;
+
+    @Test
+    public void testIncreaseAndDecrease() {
+        AtomicLong clock = new AtomicLong();
+        List<Integer> changes = new ArrayList<>();
+        AdaptiveConcurrency c = new AdaptiveConcurrency(1, 2, 6, WINDOW, changes::add, clock::get);
+
+        // First window: no reference, the limit increases
+        c.onSuccess(1000);
+        clock.addAndGet(WINDOW);
+        c.onSuccess(1000);
+        Assert.assertEquals(3, c.getLimit());
+
+        // Higher throughput: increase
+        clock.addAndGet(WINDOW);
+        c.onSuccess(3000);
+        Assert.assertEquals(4, c.getLimit());
+
+        // Same throughput: hold
+        clock.addAndGet(WINDOW);
+        c.onSuccess(3000);
+        Assert.assertEquals(4, c.getLimit());
+
+        // Much lower throughput: decrease
+        clock.addAndGet(WINDOW);
+        c.onSuccess(1000);
+        Assert.assertEquals(3, c.getLimit());
+
+        // No update before the end of the window
+        c.onSuccess(100_000);
+        Assert.assertEquals(3, c.getLimit());
+        Assert.assertEquals(Integer.valueOf(3), changes.get(changes.size() - 1));
+        Assert.assertEquals(3, changes.size());
+    }
+
+    @Test
+    public void testErrorHalvesLimit() {
+        AtomicLong clock = new AtomicLong();
+        AdaptiveConcurrency c = new AdaptiveConcurrency(1, 6, 8, WINDOW, null, clock::get);
+        c.onSuccess(1000);
+        c.onError();
+        clock.addAndGet(WINDOW);
+        c.onSuccess(1000);
+        Assert.assertEquals(3, c.getLimit());
+
+        clock.addAndGet(WINDOW);
+        c.onError();
+        Assert.assertEquals(1, c.getLimit());
+
+        clock.addAndGet(WINDOW);
+        c.onError();
+        Assert.assertEquals("Cannot be lower than min", 1, c.getLimit()); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testBoundsBoostAndReset() {
+        AtomicLong clock = new AtomicLong();
+        AdaptiveConcurrency c = new AdaptiveConcurrency(1, 10, 3, WINDOW, null, clock::get);
+        Assert.assertEquals(3, c.getLimit());
+        Assert.assertFalse(c.boost());
+
+        c.reset(1);
+        Assert.assertEquals(1, c.getLimit());
+        Assert.assertTrue(c.boost());
+        Assert.assertEquals(2, c.getLimit());
+        Assert.assertEquals(2.0, c.getValue(), 0.0);
+
+        // After a boost, the first window has no reference and cannot decrease the limit
+        clock.addAndGet(WINDOW);
+        c.onSuccess(1);
+        Assert.assertEquals(3, c.getLimit());
+
+        try {
+            new AdaptiveConcurrency(0, 1, 3, WINDOW, null);
+            Assert.fail("min must be positive"); //$NON-NLS-1$
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLatencyBoundServer() throws Exception {
+        HttpServer server = startServer(Integer.MAX_VALUE);
+        try {
+            int port = server.getAddress().getPort();
+            long fixed = download(port, new AdaptiveConcurrency(1, 1, 1, 50L, null), 120);
+            AdaptiveConcurrency adaptive = new AdaptiveConcurrency(1, 1, 8, 50L, null);
+            long adapted = download(port, adaptive, 120);
+            assertThat((double) adapted).isLessThan(fixed * 0.75);
+            Assert.assertTrue(adaptive.getLimit() > 1);
+        } finally {
+            stop(server);
+        }
+    }
+
+    @Test
+    public void testOverloadedServer() throws Exception {
+        int capacity = 3;
+        HttpServer server = startServer(capacity);
+        try {
+            List<Integer> changes = Collections.synchronizedList(new ArrayList<>());
+            AdaptiveConcurrency adaptive = new AdaptiveConcurrency(1, 8, 8, 50L, changes::add);
+            download(server.getAddress().getPort(), adaptive, 120);
+            // The limit has been reduced because of the server errors
+            Assert.assertFalse(changes.isEmpty());
+            assertThat((double) Collections.min(changes)).isLessThan(capacity + 1.0);
+        } finally {
+            stop(server);
+        }
+    }
+
+    /**
+     * Server with a latency of 10 ms which returns 503 when the number of concurrent requests exceeds the capacity.
+     */
+    private static HttpServer startServer(int capacity) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0); //$NON-NLS-1$
+        AtomicInteger running = new AtomicInteger();
+        byte[] payload = new byte[32 * 1024];
+        server.createContext("/", exchange -> { //$NON-NLS-1$
+            try {
+                if (running.incrementAndGet() > capacity) {
+                    exchange.sendResponseHeaders(503, -1);
+                    return;
+                }
+                Thread.sleep(10);
+                exchange.sendResponseHeaders(200, payload.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(payload);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        return server;
+    }
+
+    private static void stop(HttpServer server) {
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+
+    /**
+     * Download the files with a number of concurrent requests following the adaptive limit, the failed requests are
+     * retried.
+     *
+     * @return the duration in nanoseconds
+     */
+    private static long download(int port, AdaptiveConcurrency concurrency, int files) throws Exception {
+        URL url = new URL("http://127.0.0.1:" + port + "/file"); //$NON-NLS-1$ //$NON-NLS-2$
+        AtomicInteger remaining = new AtomicInteger(files);
+        AtomicInteger running = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency.getMax());
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency.getMax(); i++) {
+            executor.execute(() -> {
+                while (remaining.get() > 0) {
+                    int n = running.incrementAndGet();
+                    if (n > concurrency.getLimit()) {
+                        running.decrementAndGet();
+                        sleep();
+                        continue;
+                    }
+                    try {
+                        if (remaining.getAndDecrement() <= 0) {
+                            break;
+                        }
+                        long bytes = get(url);
+                        if (bytes < 0) {
+                            remaining.incrementAndGet();
+                            concurrency.onError();
+                        } else {
+                            concurrency.onSuccess(bytes);
+                        }
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        return System.nanoTime() - start;
+    }
+
+    private static long get(URL url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                connection.disconnect();
+                return -1;
+            }
+            long size = 0;
+            byte[] buf = new byte[8192];
+            try (InputStream in = connection.getInputStream()) {
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    size += n;
+                }
+            }
+            return size;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
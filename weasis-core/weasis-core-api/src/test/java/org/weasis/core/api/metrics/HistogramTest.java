@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.assertj.core.api.Assertions.withinPercentage;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void testBucketBoundaries() {
+        for (int i = 0; i < Histogram.BUCKET_COUNT - 1; i++) {
+            long low = Histogram.lowestValue(i);
+            long high = Histogram.highestValue(i);
+            if (high < 0 || low < 0) {
+                break;
+            }
+            Assert.assertEquals(i, Histogram.bucketIndex(low));
+            Assert.assertEquals(i, Histogram.bucketIndex(high));
+            Assert.assertEquals(high + 1, Histogram.lowestValue(i + 1));
+        }
+        Assert.assertTrue(Histogram.bucketIndex(Long.MAX_VALUE) < Histogram.BUCKET_COUNT);
+    }
+
+    @Test
+    public void testQuantiles() {
+        Histogram histogram = new Histogram(TimeUnit.NANOSECONDS);
+        for (long i = 1; i <= 100_000; i++) {
+            histogram.record(i * 1000);
+        }
+        Histogram.Snapshot snapshot = histogram.getSnapshot();
+        Assert.assertEquals(100_000, snapshot.getCount());
+        Assert.assertEquals(1000, snapshot.getMin());
+        Assert.assertEquals(100_000_000, snapshot.getMax());
+        assertThat((double) snapshot.getValueAtQuantile(0.5)).isCloseTo(50_000_000.0,
+            withinPercentage(1.0));
+        assertThat((double) snapshot.getValueAtQuantile(0.99)).isCloseTo(99_000_000.0,
+            withinPercentage(1.0));
+        assertThat(snapshot.getMean()).isCloseTo(50_000_500.0, offset(1.0));
+
+        Random random = new Random(42);
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        for (int i = 0; i < 100_000; i++) {
+            histogram.record((long) (Math.abs(random.nextGaussian()) * 1_000_000));
+        }
+        // Median of the half-normal distribution: sigma * 0.6745
+        assertThat((double) histogram.getSnapshot().getValueAtQuantile(0.5)).isCloseTo(674_500.0,
+            withinPercentage(2.0));
+    }
+
+    @Test
+    public void testRegistry() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.timer("a.timer").record(10); //$NON-NLS-1$
+        registry.counter("a.counter").add(3); //$NON-NLS-1$
+        CacheMetrics cache = new CacheMetrics(registry, "a.cache"); //$NON-NLS-1$
+        cache.record(null);
+        cache.record(this);
+        Assert.assertEquals(0.5, cache.getHitRatio(), 0.0);
+        Assert.assertSame(registry.timer("a.timer"), registry.get("a.timer")); //$NON-NLS-1$ //$NON-NLS-2$
+
+        String json = registry.toJson("a."); //$NON-NLS-1$
+        assertThat(json).contains("\"a.counter\"", "\"a.timer\"", "\"a.cache.hitRatio\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        registry.reset();
+        Assert.assertEquals(0, registry.counter("a.counter").getCount()); //$NON-NLS-1$
+        try {
+            registry.timer("a.counter"); //$NON-NLS-1$
+            Assert.fail("Should not return a timer for a counter"); //$NON-NLS-1$
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testRecordOverhead() {
+        Histogram histogram = new Histogram(TimeUnit.NANOSECONDS);
+        int n = 1_000_000;
+        // Warm up
+        for (int i = 0; i < n; i++) {
+            histogram.record(i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            histogram.record(i);
+        }
+        long avg = (System.nanoTime() - start) / n;
+        // Very generous bound to not fail on slow build machines
+        assertThat(avg).isLessThan(1000L);
+    }
+}
@@ -37,7 +37,6 @@ import org.weasis.core.api.media.data.Series;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.api.service.BundleTools;
 import org.weasis.core.ui.docking.UIManager;
-import org.weasis.core.ui.model.GraphicModel;
 import org.weasis.core.ui.serialize.XmlSerializer;
 
 public class ViewerPluginBuilder {
@@ -261,11 +260,7 @@ public class ViewerPluginBuilder {
 
             for (MediaElement media : medias) {
                 if (media instanceof ImageElement) {
-                    File gpxFile = new File(media.getFile().getPath() + ".xml"); //$NON-NLS-1$
-                    GraphicModel graphicModel = XmlSerializer.readPresentationModel(gpxFile);
-                    if (graphicModel != null) {
-                        media.setTag(TagW.PresentationModel, graphicModel);
-                    }
+                    XmlSerializer.setPresentationModelPath(media, media.getFile());
                 }
             }
 
@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.ui.editor.image;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.metrics.Counter;
+import org.weasis.core.api.metrics.Histogram;
+import org.weasis.core.api.metrics.MetricRegistry;
+import org.weasis.core.api.util.ThreadUtil;
+
+/**
+ * Plays a sequence of frames at a fixed rate.
+ * <p>
+ * Each frame has a deadline computed from the start time (no drift when a frame is displayed late). The next frames
+ * are decoded ahead of the play head in a background pool, in a bounded buffer. At its deadline, a frame which is not
+ * yet decoded is awaited, and the frames whose deadline is already over by more than one period are dropped to catch
+ * up the rate.
+ * <p>
+ * When the frame is changed by another way (e.g. the user moves the slider), {@link #setCurrentIndex(int)} restarts
+ * the play from this frame.
+ */
+public class CineEngine {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CineEngine.class);
+
+    // Decodes the frames ahead in parallel, independently of the single thread of ImageElement.IMAGE_LOADER
+    private static final ExecutorService PREFETCH_EXECUTOR = Executors.newFixedThreadPool(
+        Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)),
+        ThreadUtil.getThreadFactory("Cine Prefetch")); //$NON-NLS-1$
+
+    private static final Histogram FRAME_INTERVAL = MetricRegistry.getDefault().timer("cine.frame.interval"); //$NON-NLS-1$
+    private static final Counter DROPPED_FRAMES = MetricRegistry.getDefault().counter("cine.frame.dropped"); //$NON-NLS-1$
+
+    static final int STATS_WINDOW = 32;
+    private static final int NO_JUMP = Integer.MIN_VALUE;
+
+    public interface FrameSource {
+
+        /**
+         * @param index
+         *            the index of the current frame
+         * @return the index of the following frame
+         */
+        int getNextIndex(int index);
+
+        /**
+         * Decodes the frame in advance. Called concurrently from the threads of the prefetch pool, it must decode in the
+         * calling thread.
+         *
+         * @param index
+         *            the index of the frame
+         */
+        void prepare(int index) throws Exception;
+
+        /**
+         * Displays the frame. Called from the thread of the engine and must return when the frame is displayed.
+         *
+         * @param index
+         *            the index of the frame
+         */
+        void show(int index);
+    }
+
+    /**
+     * Source of time, can be replaced for testing.
+     */
+    public interface Clock {
+        long nanoTime();
+
+        void parkUntil(long deadline) throws InterruptedException;
+    }
+
+    static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void parkUntil(long deadline) throws InterruptedException {
+            long wait = deadline - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    };
+
+    private static final class Frame {
+        private final int index;
+        private final Future<?> loading;
+
+        Frame(int index, Future<?> loading) {
+            this.index = index;
+            this.loading = loading;
+        }
+    }
+
+    private final FrameSource source;
+    private final Clock clock;
+    private final IntFunction<Future<?>> loader;
+    private final int capacity;
+    private final Deque<Frame> buffer;
+
+    // Statistics on the last displayed frames
+    private final long[] shownTimes = new long[STATS_WINDOW];
+    private int shownCount;
+    private volatile double measuredRate;
+    private volatile double jitter;
+    private volatile long droppedFrames;
+
+    private volatile long period;
+    private volatile boolean resetDeadline;
+    private long deadline;
+    private int nextIndex;
+    private volatile int shownIndex;
+    private final AtomicInteger jumpIndex = new AtomicInteger(NO_JUMP);
+    private volatile boolean playing;
+    private Thread thread;
+
+    /**
+     * @param source
+     *            the frames to play
+     * @param startIndex
+     *            the index of the first frame to play
+     * @param periodNanos
+     *            the time between two frames in nanoseconds
+     * @param capacity
+     *            the maximum number of frames decoded ahead
+     */
+    public CineEngine(FrameSource source, int startIndex, long periodNanos, int capacity) {
+        this(source, startIndex, periodNanos, capacity, SYSTEM_CLOCK, null);
+    }
+
+    CineEngine(FrameSource source, int startIndex, long periodNanos, int capacity, Clock clock,
+        IntFunction<Future<?>> loader) {
+        if (periodNanos <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("Invalid period or capacity"); //$NON-NLS-1$
+        }
+        this.source = source;
+        this.clock = clock;
+        this.loader = loader == null ? i -> PREFETCH_EXECUTOR.submit(() -> {
+            source.prepare(i);
+            return null;
+        }) : loader;
+        this.capacity = capacity;
+        this.buffer = new ArrayDeque<>(capacity);
+        this.period = periodNanos;
+        this.nextIndex = startIndex;
+        this.shownIndex = NO_JUMP;
+        this.resetDeadline = true;
+    }
+
+    public synchronized void start() {
+        if (thread == null) {
+            playing = true;
+            thread = new Thread(this::run, "Cine"); //$NON-NLS-1$
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public synchronized void stop() {
+        playing = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * Changes the rate, the new deadlines are computed from the next frame.
+     *
+     * @param periodNanos
+     *            the time between two frames in nanoseconds
+     */
+    public void setPeriod(long periodNanos) {
+        if (periodNanos > 0 && periodNanos != period) {
+            this.period = periodNanos;
+            this.resetDeadline = true;
+        }
+    }
+
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * @return the number of frames displayed by second measured on the last frames, 0 when not yet measured
+     */
+    public double getMeasuredRate() {
+        return measuredRate;
+    }
+
+    /**
+     * @return the standard deviation of the time between two displayed frames in milliseconds
+     */
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Continues the play after the given frame, which is displayed by another way than the engine (e.g. the slider is
+     * moved manually). The frames decoded ahead are discarded. Does nothing when it is the last frame displayed by the
+     * engine.
+     *
+     * @param index
+     *            the index of the frame currently displayed
+     */
+    public void setCurrentIndex(int index) {
+        if (index != shownIndex) {
+            jumpIndex.set(index);
+        }
+    }
+
+    /**
+     * @return the index of the last frame displayed by the engine
+     */
+    public int getShownIndex() {
+        return shownIndex;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    private void run() {
+        try {
+            while (playing) {
+                playNextFrame();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.error("Cine", e); //$NON-NLS-1$
+        } finally {
+            playing = false;
+            clearBuffer();
+            LOGGER.debug("End of cine: {} fps, jitter {} ms, {} dropped frames", //$NON-NLS-1$
+                String.format("%.1f", measuredRate), String.format("%.2f", jitter), droppedFrames); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Waits the deadline of the next frame and displays it.
+     */
+    void playNextFrame() throws InterruptedException {
+        int jump = jumpIndex.getAndSet(NO_JUMP);
+        if (jump != NO_JUMP) {
+            clearBuffer();
+            shownIndex = jump;
+            nextIndex = source.getNextIndex(jump);
+            resetDeadline = true;
+        }
+        if (resetDeadline) {
+            resetDeadline = false;
+            deadline = clock.nanoTime() + period;
+            shownCount = 0;
+        }
+        fillBuffer();
+        clock.parkUntil(deadline);
+
+        // Drop the frames which are late by more than one period
+        long late = (clock.nanoTime() - deadline) / period;
+        for (long i = 0; i < late; i++) {
+            Frame dropped = buffer.pollFirst();
+            if (dropped == null) {
+                nextIndex = source.getNextIndex(nextIndex);
+            } else {
+                dropped.loading.cancel(false);
+            }
+            droppedFrames++;
+            DROPPED_FRAMES.increment();
+        }
+        deadline += late * period;
+        fillBuffer();
+
+        Frame frame = buffer.pollFirst();
+        if (frame != null) {
+            try {
+                // Wait when the frame is not decoded in time, then the next frames are dropped if too late
+                frame.loading.get();
+            } catch (ExecutionException e) {
+                LOGGER.error("Cannot decode the frame {}", frame.index, e.getCause()); //$NON-NLS-1$
+            }
+            // Set before showing, the listener of the display can compare it with its new value
+            shownIndex = frame.index;
+            source.show(frame.index);
+            recordShownFrame(clock.nanoTime());
+        }
+        deadline += period;
+    }
+
+    private void fillBuffer() {
+        while (buffer.size() < capacity) {
+            int index = nextIndex;
+            buffer.addLast(new Frame(index, loader.apply(index)));
+            nextIndex = source.getNextIndex(index);
+        }
+    }
+
+    private void clearBuffer() {
+        Frame frame;
+        while ((frame = buffer.pollFirst()) != null) {
+            frame.loading.cancel(false);
+        }
+    }
+
+    int getBufferSize() {
+        return buffer.size();
+    }
+
+    private void recordShownFrame(long time) {
+        int n = shownCount;
+        if (n > 0) {
+            FRAME_INTERVAL.record(time - shownTimes[(n - 1) % STATS_WINDOW]);
+        }
+        shownTimes[n % STATS_WINDOW] = time;
+        shownCount = ++n;
+
+        int size = Math.min(n, STATS_WINDOW);
+        if (size > 1) {
+            long first = shownTimes[(n - size) % STATS_WINDOW];
+            measuredRate = (size - 1) * 1_000_000_000.0 / Math.max(1L, time - first);
+            double mean = (time - first) / (double) (size - 1);
+            double sum = 0.0;
+            for (int i = n - size + 1; i < n; i++) {
+                double d = shownTimes[i % STATS_WINDOW] - shownTimes[(i - 1) % STATS_WINDOW] - mean;
+                sum += d * d;
+            }
+            jitter = Math.sqrt(sum / (size - 1)) / 1_000_000.0;
+        }
+    }
+}
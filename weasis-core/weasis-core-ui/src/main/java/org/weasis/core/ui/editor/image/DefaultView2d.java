@@ -122,6 +122,7 @@ import org.weasis.core.ui.model.utils.bean.PanPoint;
 import org.weasis.core.ui.model.utils.bean.PanPoint.State;
 import org.weasis.core.ui.model.utils.imp.DefaultViewModel;
 import org.weasis.core.ui.pref.Monitor;
+import org.weasis.core.ui.serialize.XmlSerializer;
 import org.weasis.core.ui.util.DefaultAction;
 import org.weasis.core.ui.util.MouseEventDouble;
 import org.weasis.core.ui.util.TitleMenuItem;
@@ -609,7 +610,7 @@ public abstract class DefaultView2d<E extends ImageElement> extends GraphicsPane
             imageLayer.setEnableDispOperations(true);
 
             if (updateGraphics) {
-                GraphicModel modelList = (GraphicModel) img.getTagValue(TagW.PresentationModel);
+                GraphicModel modelList = XmlSerializer.getPresentationModel(img);
                 // After getting a new image iterator, update the measurements
                 if (modelList == null) {
                     modelList = new XmlGraphicModel(img);
@@ -62,6 +62,7 @@ public abstract class ImageViewerEventManager<E extends ImageElement> implements
     public static final int LEVEL_SMALLEST = 0;
     public static final int LEVEL_LARGEST = 4096;
     public static final int LEVEL_DEFAULT = 300;
+    public static final int CINE_PREFETCH_FRAMES = 8;
 
     protected final ArrayList<SeriesViewerListener> seriesViewerListeners = new ArrayList<>();
     protected final MouseActions mouseActions = new MouseActions(null);
@@ -91,10 +92,15 @@ public abstract class ImageViewerEventManager<E extends ImageElement> implements
 
             private volatile boolean cining = true;
 
-            protected CineThread currentCine;
+            protected volatile CineEngine currentCine;
 
             @Override
             public void stateChanged(BoundedRangeModel model) {
+                CineEngine engine = currentCine;
+                if (engine != null) {
+                    // Continue the cine from a frame selected manually
+                    engine.setCurrentIndex(model.getValue());
+                }
 
                 ViewCanvas<ImageElement> view2d = null;
                 Series<ImageElement> series = null;
@@ -131,70 +137,10 @@ public abstract class ImageViewerEventManager<E extends ImageElement> implements
             @Override
             public void setSpeed(int speed) {
                 super.setSpeed(speed);
-                if (currentCine != null) {
-                    currentCine.iniSpeed();
-                }
-            }
-
-            /** Create a thread to cine the images. */
-
-            class CineThread extends Thread {
-
-                private volatile int iteration;
-                private volatile int wait;
-                private volatile int currentCineRate;
-                private volatile long start;
-                private final int timeDiv =
-                    TIME.SECOND.equals(time) ? 1000 : TIME.MINUTE.equals(time) ? 60000 : 3600000;
-
-                @Override
-                public void run() {
-                    iniSpeed();
-
-                    while (cining) {
-                        GuiExecutor.instance().execute(() -> {
-                            int frameIndex = getSliderValue() + 1;
-                            frameIndex = frameIndex > getSliderMax() ? 0 : frameIndex;
-                            setSliderValue(frameIndex);
-                        });
-                        iteration++;
-
-                        // adjust the delay time based on the current performance
-                        long elapsed = (System.currentTimeMillis() - start) / 1000;
-                        if (elapsed > 0) {
-                            currentCineRate = (int) (iteration / elapsed);
-
-                            if (currentCineRate < getSpeed()) {
-                                wait--;
-                            } else {
-                                wait++;
-                            }
-                            if (wait < 0) {
-                                wait = 0;
-                            }
-                        }
-
-                        // wait
-                        if (wait > 0) {
-                            try {
-                                Thread.sleep(wait);
-                            } catch (Exception e) {
-                            }
-                        }
-                    }
-                }
-
-                public void iniSpeed() {
-                    iteration = 0;
-                    wait = timeDiv / getSpeed();
-                    currentCineRate = getSpeed();
-                    start = System.currentTimeMillis();
+                CineEngine engine = currentCine;
+                if (engine != null) {
+                    engine.setPeriod(getCinePeriod(speed, time));
                 }
-
-                public int getCurrentCineRate() {
-                    return currentCineRate;
-                }
-
             }
 
             /** Start the cining. */
@@ -206,7 +152,7 @@ public abstract class ImageViewerEventManager<E extends ImageElement> implements
                 }
                 if (getSliderMax() - getSliderMin() > 0) {
                     cining = true;
-                    currentCine = new CineThread();
+                    currentCine = newCineEngine(this, time);
                     currentCine.start();
                 }
             }
@@ -215,11 +161,11 @@ public abstract class ImageViewerEventManager<E extends ImageElement> implements
 
             @Override
             public synchronized void stop() {
-                CineThread moribund = currentCine;
+                CineEngine moribund = currentCine;
                 currentCine = null;
                 if (moribund != null) {
                     cining = false;
-                    moribund.interrupt();
+                    moribund.stop();
                 }
             }
 
@@ -235,13 +181,85 @@ public abstract class ImageViewerEventManager<E extends ImageElement> implements
 
             @Override
             public int getCurrentCineRate() {
-                if (currentCine != null) {
-                    return currentCine.getCurrentCineRate();
+                return getCineRate(currentCine, time);
+            }
+
+        };
+    }
+
+    /**
+     * @param speed
+     *            the number of frames by time unit
+     * @param time
+     *            the time unit
+     * @return the time between two frames in nanoseconds
+     */
+    public static long getCinePeriod(int speed, TIME time) {
+        long timeDiv = TIME.SECOND.equals(time) ? 1000L : TIME.MINUTE.equals(time) ? 60000L : 3600000L;
+        return timeDiv * 1_000_000L / Math.max(1, speed);
+    }
+
+    /**
+     * @param engine
+     *            the running engine, can be null
+     * @param time
+     *            the time unit
+     * @return the measured number of frames by time unit, 0 when unknown
+     */
+    public static int getCineRate(CineEngine engine, TIME time) {
+        if (engine == null) {
+            return 0;
+        }
+        return (int) Math.round(engine.getMeasuredRate() * getCinePeriod(1, time) / 1_000_000_000.0);
+    }
+
+    /**
+     * Builds a cine engine which decodes the next images of the selected view in advance and moves the slider at each
+     * frame.
+     *
+     * @param listener
+     *            the slider of the series
+     * @param time
+     *            the time unit of the speed
+     * @return the engine, not started
+     */
+    protected CineEngine newCineEngine(final SliderCineListener listener, TIME time) {
+        CineEngine.FrameSource source = new CineEngine.FrameSource() {
+
+            @Override
+            public int getNextIndex(int index) {
+                int next = index + 1;
+                return next > listener.getSliderMax() ? listener.getSliderMin() : next;
+            }
+
+            @Override
+            public void prepare(int index) throws Exception {
+                ImageViewerPlugin<E> container = selectedView2dContainer;
+                ViewCanvas<E> view2d = container == null ? null : container.getSelectedImagePane();
+                if (view2d != null && view2d.getSeries() instanceof Series) {
+                    // Slider value-1 is the index value of a sequence
+                    E image = ((Series<E>) view2d.getSeries()).getMedia(index - 1,
+                        (Filter<E>) view2d.getActionValue(ActionW.FILTERED_SERIES.cmd()),
+                        view2d.getCurrentSortComparator());
+                    if (image != null) {
+                        // Decode in the prefetch thread, in parallel with the other frames
+                        image.prefetchImage();
+                    }
                 }
-                return 0;
             }
 
+            @Override
+            public void show(int index) {
+                // Must be in EDT for refreshing UI correctly
+                GuiExecutor.instance().invokeAndWait(() -> {
+                    if (listener.isCining()) {
+                        listener.setSliderValue(index);
+                    }
+                });
+            }
         };
+        return new CineEngine(source, source.getNextIndex(listener.getSliderValue()),
+            getCinePeriod(listener.getSpeed(), time), CINE_PREFETCH_FRAMES);
     }
 
     protected SliderChangeListener newWindowAction() {
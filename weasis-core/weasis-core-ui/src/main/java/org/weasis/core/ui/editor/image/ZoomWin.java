@@ -87,6 +87,8 @@ public class ZoomWin<E extends ImageElement> extends GraphicsPane implements Ima
     private final RenderedImageLayer<E> imageLayer;
     private final MouseHandler mouseHandler;
     private SimpleOpManager freezeOperations;
+    private PlanarImage parentLevelImage;
+    private SimpleOpManager parentFullResolution;
     private final HashMap<String, Object> freezeActionsInView = new HashMap<>();
 
     public ZoomWin(DefaultView2d<E> view2d) {
@@ -366,7 +368,19 @@ public class ZoomWin<E extends ImageElement> extends GraphicsPane implements Ima
         // return the image before the zoom operation from the parent view
         ImageOpNode node = view2d.getImageLayer().getDisplayOpManager().getNode(AffineTransformOp.OP_NAME);
         if (node != null) {
-            return (PlanarImage) node.getParam(Param.INPUT_IMG);
+            PlanarImage img = (PlanarImage) node.getParam(Param.INPUT_IMG);
+            if (img != null && node.getParam(Param.INPUT_SCALE) != null) {
+                // The parent view displays a downsampled level, the lens requires the full resolution
+                if (img != parentLevelImage || parentFullResolution == null) {
+                    parentLevelImage = img;
+                    parentFullResolution = buildParentOperations();
+                    parentFullResolution.process();
+                }
+                return parentFullResolution.getLastNodeOutputImage();
+            }
+            parentLevelImage = null;
+            parentFullResolution = null;
+            return img;
         }
         return view2d.getImageLayer().getDisplayOpManager().getLastNodeOutputImage();
     }
@@ -385,21 +399,35 @@ public class ZoomWin<E extends ImageElement> extends GraphicsPane implements Ima
     }
 
     void freezeParentParameters() {
-        SimpleOpManager pManager = view2d.getImageLayer().getDisplayOpManager();
         freezeActionsInView.clear();
         view2d.copyActionWState(freezeActionsInView);
 
-        freezeOperations = new SimpleOpManager();
+        freezeOperations = buildParentOperations();
+        freezeOperations.process();
+    }
+
+    /**
+     * @return a copy of the operations of the parent view before the zoom operation, applied on the full resolution
+     *         image
+     */
+    private SimpleOpManager buildParentOperations() {
+        return copyOperations(view2d.getImageLayer().getDisplayOpManager(), imageLayer.getSourceRenderedImage());
+    }
+
+    static SimpleOpManager copyOperations(SimpleOpManager pManager, PlanarImage fullResolution) {
+        SimpleOpManager operations = new SimpleOpManager();
         for (ImageOpNode op : pManager.getOperations()) {
             if (AffineTransformOp.OP_NAME.equals(op.getParam(Param.NAME))) {
                 break;
             }
             ImageOpNode operation = op.copy();
-            freezeOperations.addImageOperationAction(operation);
+            // The scale of the parent pyramid level does not apply to the full resolution image (e.g. shutter shape)
+            operation.setParam(Param.INPUT_SCALE, null);
+            operations.addImageOperationAction(operation);
         }
 
-        freezeOperations.setFirstNode(imageLayer.getSourceRenderedImage());
-        freezeOperations.process();
+        operations.setFirstNode(fullResolution);
+        return operations;
     }
 
     class MouseHandler extends MouseAdapter {
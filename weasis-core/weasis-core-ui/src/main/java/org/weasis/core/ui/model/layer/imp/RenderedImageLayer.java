@@ -26,15 +26,19 @@ import org.weasis.core.api.image.AffineTransformOp;
 import org.weasis.core.api.image.CvUtil;
 import org.weasis.core.api.image.ImageOpEvent;
 import org.weasis.core.api.image.ImageOpNode;
+import org.weasis.core.api.image.ImageOpNode.Param;
 import org.weasis.core.api.image.OpEventListener;
 import org.weasis.core.api.image.OpManager;
 import org.weasis.core.api.image.SimpleOpManager;
 import org.weasis.core.api.image.ZoomOp;
 import org.weasis.core.api.image.measure.MeasurementsAdapter;
 import org.weasis.core.api.image.util.ImageLayer;
+import org.weasis.core.api.image.util.ImagePyramid;
 import org.weasis.core.api.image.util.Unit;
 import org.weasis.core.api.media.data.ImageElement;
 import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.metrics.Histogram;
+import org.weasis.core.api.metrics.MetricRegistry;
 import org.weasis.core.ui.editor.image.Canvas;
 import org.weasis.core.ui.model.layer.Layer;
 import org.weasis.core.ui.model.layer.LayerType;
@@ -52,6 +56,9 @@ public class RenderedImageLayer<E extends ImageElement> extends DefaultUUID impl
     private static final long serialVersionUID = -7071485066284475687L;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RenderedImageLayer.class);
+    private static final Histogram PAINT_TIMER = MetricRegistry.getDefault().timer("render.image.paint"); //$NON-NLS-1$
+    private static final Histogram PROCESS_TIMER =
+        MetricRegistry.getDefault().timer("render.image.process"); //$NON-NLS-1$
 
     private final SimpleOpManager disOpManager;
     private final List<ImageLayerChangeListener<E>> listenerList;
@@ -60,6 +67,8 @@ public class RenderedImageLayer<E extends ImageElement> extends DefaultUUID impl
     private OpManager preprocessing;
     private E sourceImage;
     private PlanarImage displayImage;
+    private PlanarImage fullResolutionInput;
+    private PlanarImage levelInput;
     private Boolean visible = true;
     private boolean enableDispOperations = true;
     private Point offset;
@@ -225,9 +234,11 @@ public class RenderedImageLayer<E extends ImageElement> extends DefaultUUID impl
             g2d.setClip(rect);
         }
 
+        long start = System.nanoTime();
         try {
             g2d.drawRenderedImage(ImageConversion.toBufferedImage(displayImage),
                 AffineTransform.getTranslateInstance(0.0, 0.0));
+            PAINT_TIMER.recordSince(start);
         } catch (Exception e) {
             LOGGER.error("Cannot draw the image", e);//$NON-NLS-1$
             if ("java.io.IOException: closed".equals(e.getMessage())) { //$NON-NLS-1$
@@ -356,7 +367,7 @@ public class RenderedImageLayer<E extends ImageElement> extends DefaultUUID impl
         matrix[5] = offsetY/ ry;
         disOpManager.setParamValue(AffineTransformOp.OP_NAME, AffineTransformOp.P_AFFINE_MATRIX, matrix);
         disOpManager.setParamValue(AffineTransformOp.OP_NAME, AffineTransformOp.P_DST_BOUNDS, b);
-        PlanarImage img = bound.equals(b) ? displayImage : disOpManager.process();
+        PlanarImage img = bound.equals(b) ? displayImage : processDisplayOperations();
 
         matrix[0] = ratioX;
         matrix[4] = ratioY;
@@ -373,6 +384,8 @@ public class RenderedImageLayer<E extends ImageElement> extends DefaultUUID impl
     public void dispose() {
         sourceImage = null;
         displayImage = null;
+        fullResolutionInput = null;
+        levelInput = null;
         listenerList.clear();
         opListeners.clear();
     }
@@ -426,10 +439,64 @@ public class RenderedImageLayer<E extends ImageElement> extends DefaultUUID impl
         }
     }
 
+    /**
+     * Processes the display operations from the smallest pyramid level of the source image that is at least the scale
+     * of the affine transformation, so that windowing and warping of a zoomed-out large image are not done at full
+     * resolution. Only the operations handling the scale receive {@link Param#INPUT_SCALE}.
+     */
+    private PlanarImage processDisplayOperations() {
+        PlanarImage input = disOpManager.getFirstNodeInputImage();
+        if (input != null) {
+            if (input != levelInput) {
+                // New input image set from outside
+                fullResolutionInput = input;
+            }
+            PlanarImage fullImage = fullResolutionInput;
+            int level = 0;
+            ImageOpNode node = disOpManager.getNode(AffineTransformOp.OP_NAME);
+            // Only when the input is the source image (the pyramid is built from the image element)
+            if (preprocessing == null && sourceImage != null && node != null && node.isEnabled()
+                && node != disOpManager.getFirstNode() && acceptsPyramidLevel(node)) {
+                double[] m = (double[]) node.getParam(AffineTransformOp.P_AFFINE_MATRIX);
+                if (m != null) {
+                    double scale = Math.max(Math.hypot(m[0], m[3]), Math.hypot(m[1], m[4]));
+                    level = ImagePyramid.getLevel(fullImage.width(), fullImage.height(), scale);
+                }
+            }
+            PlanarImage levelImage = ImagePyramid.getLevelImage(sourceImage, fullImage, level);
+            levelInput = level == 0 ? null : levelImage;
+            disOpManager.setFirstNode(levelImage);
+            double[] inputScale = level == 0 ? null : ImagePyramid.getScale(levelImage, fullImage);
+            for (ImageOpNode op : disOpManager.getOperations()) {
+                op.setParam(Param.INPUT_SCALE, op.handlesInputScale() ? inputScale : null);
+            }
+        }
+        return disOpManager.process();
+    }
+
+    /**
+     * @return true when all the operations applied before the affine transformation can process a pyramid level: they
+     *         adapt their parameters to the input scale or they do not depend on the resolution. Otherwise (e.g. a
+     *         convolution kernel), the full resolution image is processed.
+     */
+    private boolean acceptsPyramidLevel(ImageOpNode affineNode) {
+        for (ImageOpNode op : disOpManager.getOperations()) {
+            if (op == affineNode) {
+                break;
+            }
+            if (op.isEnabled() && !op.handlesInputScale() && !op.isResolutionIndependent()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public void updateDisplayOperations() {
         if (isEnableDispOperations()) {
-            displayImage = disOpManager.process();
+            long start = System.nanoTime();
+            displayImage = processDisplayOperations();
+            PROCESS_TIMER.recordSince(start);
             fireImageChanged();
         }
     }
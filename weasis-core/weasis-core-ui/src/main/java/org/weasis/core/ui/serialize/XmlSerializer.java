@@ -12,8 +12,18 @@ package org.weasis.core.ui.serialize;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
@@ -26,6 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.media.data.ImageElement;
 import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.media.data.Tagable;
 import org.weasis.core.api.util.GzipManager;
 import org.weasis.core.ui.model.GraphicModel;
 import org.weasis.core.ui.model.imp.XmlGraphicModel;
@@ -33,18 +44,56 @@ import org.weasis.core.ui.model.imp.XmlGraphicModel;
 public class XmlSerializer {
     private static final Logger LOGGER = LoggerFactory.getLogger(XmlSerializer.class);
 
+    /** The JAXB contexts are thread-safe and expensive to build, so they are created once per class. */
+    private static final Map<Class<?>, JAXBContext> CONTEXTS = new ConcurrentHashMap<>();
+
+    /** The unmarshallers are not thread-safe, the idle ones of the graphic model are kept for the next reads. */
+    private static final Queue<Unmarshaller> UNMARSHALLERS = new ConcurrentLinkedQueue<>();
+    private static final int MAX_IDLE_UNMARSHALLERS = 8;
+
+    private XmlSerializer() {
+    }
+
+    public static JAXBContext getContext(Class<?> clazz) throws JAXBException {
+        JAXBContext context = CONTEXTS.get(clazz);
+        if (context == null) {
+            context = JAXBContext.newInstance(clazz);
+            JAXBContext previous = CONTEXTS.putIfAbsent(clazz, context);
+            if (previous != null) {
+                context = previous;
+            }
+        }
+        return context;
+    }
+
+    private static Unmarshaller acquireUnmarshaller() throws JAXBException {
+        Unmarshaller unmarshaller = UNMARSHALLERS.poll();
+        return unmarshaller == null ? getContext(XmlGraphicModel.class).createUnmarshaller() : unmarshaller;
+    }
+
+    private static void releaseUnmarshaller(Unmarshaller unmarshaller) {
+        // Not synchronized, the limit can be slightly exceeded
+        if (UNMARSHALLERS.size() < MAX_IDLE_UNMARSHALLERS) {
+            UNMARSHALLERS.offer(unmarshaller);
+        }
+    }
+
+    private static GraphicModel removeGraphicsWithoutLayer(GraphicModel model) {
+        int length = model.getModels().size();
+        model.getModels().removeIf(g -> g.getLayer() == null);
+        if (length > model.getModels().size()) {
+            LOGGER.error("Removing {} graphics wihout a attached layer", length - model.getModels().size()); //$NON-NLS-1$
+        }
+        return model;
+    }
+
     public static GraphicModel readPresentationModel(File gpxFile) {
         if (gpxFile.canRead()) {
             try {
-                JAXBContext jaxbContext = JAXBContext.newInstance(XmlGraphicModel.class);
-                Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
+                Unmarshaller jaxbUnmarshaller = acquireUnmarshaller();
                 GraphicModel model = (GraphicModel) jaxbUnmarshaller.unmarshal(gpxFile);
-                int length = model.getModels().size();
-                model.getModels().removeIf(g -> g.getLayer() == null);
-                if (length > model.getModels().size()) {
-                    LOGGER.error("Removing {} graphics wihout a attached layer", model.getModels().size() - length); //$NON-NLS-1$
-                }
-                return model;
+                releaseUnmarshaller(jaxbUnmarshaller);
+                return removeGraphicsWithoutLayer(model);
             } catch (Exception e) {
                 LOGGER.error("Cannot load xml: ", e); //$NON-NLS-1$
             }
@@ -52,36 +101,89 @@ public class XmlSerializer {
         return null;
     }
 
+    /**
+     * Set the path of the graphic model file (the media file name with the xml extension) when it exists. The file is
+     * read by {@link #getPresentationModel(Tagable)} when the model is required.
+     *
+     * @param media
+     *            the media element or the reader holding the tags
+     * @param mediaFile
+     *            the media file
+     */
+    public static void setPresentationModelPath(Tagable media, File mediaFile) {
+        File gpxFile = new File(mediaFile.getPath() + ".xml"); //$NON-NLS-1$
+        if (gpxFile.isFile()) {
+            media.setTag(TagW.PresentationModelPath, gpxFile.getPath());
+        }
+    }
+
+    /**
+     * @param media
+     *            the media element
+     * @return the graphic model of the media or null. When the model is not loaded yet, it is read from the file
+     *         defined by {@link TagW#PresentationModelPath}.
+     */
+    public static GraphicModel getPresentationModel(Tagable media) {
+        if (media == null) {
+            return null;
+        }
+        GraphicModel model = (GraphicModel) media.getTagValue(TagW.PresentationModel);
+        if (model == null && media.getTagValue(TagW.PresentationModelPath) != null) {
+            synchronized (media) {
+                model = (GraphicModel) media.getTagValue(TagW.PresentationModel);
+                String path = (String) media.getTagValue(TagW.PresentationModelPath);
+                if (model == null && path != null) {
+                    model = readPresentationModel(new File(path));
+                    media.setTag(TagW.PresentationModel, model);
+                    media.setTag(TagW.PresentationModelPath, null);
+                }
+            }
+        }
+        return model;
+    }
+
     public static void writePresentation(ImageElement img, File destinationFile) {
-        GraphicModel model = (GraphicModel) img.getTagValue(TagW.PresentationModel);
+        GraphicModel model = getPresentationModel(img);
         if (model != null && !model.getModels().isEmpty()) {
             File gpxFile = new File(destinationFile.getParent(), destinationFile.getName() + ".xml"); //$NON-NLS-1$
-
+            Path tmp = null;
             try {
-                JAXBContext jaxbContext = JAXBContext.newInstance(model.getClass());
-                Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
+                // Write in a temporary file and rename it, a reader never gets a partial file
+                tmp = Files.createTempFile(gpxFile.getParentFile().toPath(), gpxFile.getName(), ".tmp"); //$NON-NLS-1$
+                Marshaller jaxbMarshaller = getContext(model.getClass()).createMarshaller();
 
                 // output pretty printed
                 jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-
-                // jaxbMarshaller.marshal(model, System.out);
-                jaxbMarshaller.marshal(model, gpxFile);
+                jaxbMarshaller.marshal(model, tmp.toFile());
+                try {
+                    Files.move(tmp, gpxFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, gpxFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                tmp = null;
             } catch (Exception e) {
                 LOGGER.error("Cannot save xml: ", e); //$NON-NLS-1$
+            } finally {
+                if (tmp != null) {
+                    try {
+                        Files.deleteIfExists(tmp);
+                    } catch (IOException e) {
+                        LOGGER.debug("Cannot delete {}", tmp, e); //$NON-NLS-1$
+                    }
+                }
             }
         }
     }
 
     public static void writePresentation(ImageElement img, Writer writer) {
-        GraphicModel model = (GraphicModel) img.getTagValue(TagW.PresentationModel);
-        writePresentation(model, writer);
+        writePresentation(getPresentationModel(img), writer);
     }
 
     public static void writePresentation(GraphicModel model, Writer writer) {
         if (model != null && model.hasSerializableGraphics()) {
             try {
-                JAXBContext jaxbContext = JAXBContext.newInstance(model.getClass());
-                Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
+                Marshaller jaxbMarshaller = getContext(model.getClass()).createMarshaller();
                 // Remove the xml header tag
                 jaxbMarshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
                 jaxbMarshaller.marshal(model, writer);
@@ -93,18 +195,11 @@ public class XmlSerializer {
 
     public static GraphicModel readPresentation(XMLStreamReader xmler) {
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(XmlGraphicModel.class);
-            Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
+            Unmarshaller jaxbUnmarshaller = acquireUnmarshaller();
             JAXBElement<XmlGraphicModel> unmarshalledObj =
                 jaxbUnmarshaller.unmarshal(new NoNamespaceStreamReaderDelegate(xmler), XmlGraphicModel.class);
-            GraphicModel model = unmarshalledObj.getValue();
-
-            int length = model.getModels().size();
-            model.getModels().removeIf(g -> g.getLayer() == null);
-            if (length > model.getModels().size()) {
-                LOGGER.error("Removing {} graphics wihout a attached layer", model.getModels().size() - length); //$NON-NLS-1$
-            }
-            return model;
+            releaseUnmarshaller(jaxbUnmarshaller);
+            return removeGraphicsWithoutLayer(unmarshalledObj.getValue());
         } catch (Exception e) {
             LOGGER.error("Cannot write GraphicModel", e); //$NON-NLS-1$
         }
@@ -113,24 +208,17 @@ public class XmlSerializer {
 
     @SuppressWarnings("unchecked")
     public static <T> T deserialize(Reader reader, Class<T> clazz) throws JAXBException {
-        JAXBContext context = JAXBContext.newInstance(clazz);
-        Unmarshaller unmarshaller = context.createUnmarshaller();
+        Unmarshaller unmarshaller = getContext(clazz).createUnmarshaller();
 
         return (T) unmarshaller.unmarshal(reader);
     }
 
     public static GraphicModel buildPresentationModel(byte[] gzipData) {
-        try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(XmlGraphicModel.class);
-            Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
-            ByteArrayInputStream inputStream = new ByteArrayInputStream(GzipManager.gzipUncompressToByte(gzipData));
+        try (InputStream inputStream = GzipManager.gzipUncompressStream(new ByteArrayInputStream(gzipData))) {
+            Unmarshaller jaxbUnmarshaller = acquireUnmarshaller();
             GraphicModel model = (GraphicModel) jaxbUnmarshaller.unmarshal(inputStream);
-            int length = model.getModels().size();
-            model.getModels().removeIf(g -> g.getLayer() == null);
-            if (length > model.getModels().size()) {
-                LOGGER.error("Removing {} graphics wihout a attached layer", model.getModels().size() - length); //$NON-NLS-1$
-            }
-            return model;
+            releaseUnmarshaller(jaxbUnmarshaller);
+            return removeGraphicsWithoutLayer(model);
         } catch (Exception e) {
             LOGGER.error("Cannot load xml graphic model: ", e); //$NON-NLS-1$
         }
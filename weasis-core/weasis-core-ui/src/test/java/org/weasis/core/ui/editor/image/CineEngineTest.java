@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.ui.editor.image;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+import org.junit.Test;
+
+public class CineEngineTest {
+    private static final long MS = 1_000_000L;
+    private static final long PERIOD = 10 * MS;
+
+    /** Time advancing only when the engine waits. */
+    static class FakeClock implements CineEngine.Clock {
+        long now;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public void parkUntil(long deadline) {
+            now = Math.max(now, deadline);
+        }
+    }
+
+    /** Frame decoded after a latency, waiting for it advances the clock. */
+    static class FakeFuture implements Future<Object> {
+        private final FakeClock clock;
+        private final long readyAt;
+        boolean cancelled;
+
+        FakeFuture(FakeClock clock, long readyAt) {
+            this.clock = clock;
+            this.readyAt = readyAt;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            cancelled = true;
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return clock.now >= readyAt;
+        }
+
+        @Override
+        public Object get() {
+            clock.now = Math.max(clock.now, readyAt);
+            return null;
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) {
+            return get();
+        }
+    }
+
+    static class Player implements CineEngine.FrameSource {
+        final FakeClock clock = new FakeClock();
+        final int nbFrames;
+        final List<Integer> shownIndexes = new ArrayList<>();
+        final List<Long> shownTimes = new ArrayList<>();
+        final List<FakeFuture> loadings = new ArrayList<>();
+        final CineEngine engine;
+
+        Player(int nbFrames, int capacity, IntUnaryOperator decodeLatency) {
+            this.nbFrames = nbFrames;
+            this.engine = new CineEngine(this, 1, PERIOD, capacity, clock, i -> {
+                FakeFuture f = new FakeFuture(clock, clock.now + decodeLatency.applyAsInt(i) * MS);
+                loadings.add(f);
+                return f;
+            });
+        }
+
+        @Override
+        public int getNextIndex(int index) {
+            return index >= nbFrames ? 1 : index + 1;
+        }
+
+        @Override
+        public void prepare(int index) {
+            // Decoding is simulated by the loader
+        }
+
+        @Override
+        public void show(int index) {
+            shownIndexes.add(index);
+            shownTimes.add(clock.now);
+        }
+
+        void play(int frames) throws InterruptedException {
+            for (int i = 0; i < frames; i++) {
+                engine.playNextFrame();
+                assertThat(engine.getBufferSize()).isLessThanOrEqualTo(8);
+            }
+        }
+    }
+
+    @Test
+    public void testFramesOnDeadlines() throws InterruptedException {
+        Player p = new Player(5, 4, i -> 0);
+        p.play(12);
+
+        assertThat(p.shownIndexes).containsExactly(1, 2, 3, 4, 5, 1, 2, 3, 4, 5, 1, 2);
+        for (int i = 0; i < p.shownTimes.size(); i++) {
+            assertThat(p.shownTimes.get(i)).isEqualTo((i + 1) * PERIOD);
+        }
+        assertThat(p.engine.getDroppedFrames()).isZero();
+        assertThat(p.engine.getMeasuredRate()).isCloseTo(100.0, offset(1e-6));
+        assertThat(p.engine.getJitter()).isCloseTo(0.0, offset(1e-6));
+    }
+
+    @Test
+    public void testDecodeAheadHidesLatency() throws InterruptedException {
+        // Decoding takes more than one period but the buffer of 4 frames gives enough time
+        Player p = new Player(100, 4, i -> 25);
+        p.play(30);
+
+        assertThat(p.engine.getDroppedFrames()).isLessThanOrEqualTo(3);
+        int n = p.shownTimes.size();
+        // After the start-up, the frames are on the deadline grid
+        assertThat(p.shownTimes.get(n - 1) - p.shownTimes.get(n - 2)).isEqualTo(PERIOD);
+        assertThat(p.shownTimes.get(n - 1) % PERIOD).isZero();
+    }
+
+    @Test
+    public void testDropLateFrames() throws InterruptedException {
+        // Frame 3 takes 45 ms to decode: it is displayed late and the next frames are dropped to catch up
+        Player p = new Player(50, 1, i -> i == 3 ? 45 : 0);
+        p.play(8);
+
+        assertThat(p.shownIndexes.subList(0, 3)).containsExactly(1, 2, 3);
+        assertThat(p.shownTimes.get(2)).isEqualTo(20 * MS + 45 * MS);
+        assertThat(p.engine.getDroppedFrames()).isEqualTo(2);
+        // Less than one period late, frame 6 is displayed immediately
+        assertThat(p.shownIndexes.get(3)).isEqualTo(6);
+        assertThat(p.shownTimes.get(3)).isEqualTo(65 * MS);
+        // Back on the deadline grid
+        for (int i = 4; i < p.shownTimes.size(); i++) {
+            assertThat(p.shownTimes.get(i) % PERIOD).isZero();
+            assertThat(p.shownTimes.get(i) - p.shownTimes.get(i - 1)).isLessThanOrEqualTo(PERIOD);
+        }
+        // Frames are always shown in increasing order
+        for (int i = 1; i < p.shownIndexes.size(); i++) {
+            assertThat(p.shownIndexes.get(i)).isGreaterThan(p.shownIndexes.get(i - 1));
+        }
+    }
+
+    @Test
+    public void testDroppedFramesAreCancelled() throws InterruptedException {
+        Player p = new Player(50, 4, i -> i == 2 ? 50 : 0);
+        p.play(6);
+
+        long cancelled = p.loadings.stream().filter(FakeFuture::isCancelled).count();
+        assertThat(cancelled).isEqualTo(p.engine.getDroppedFrames());
+        assertThat(p.engine.getDroppedFrames()).isGreaterThan(0);
+    }
+
+    @Test
+    public void testChangeRate() throws InterruptedException {
+        Player p = new Player(50, 4, i -> 0);
+        p.play(3);
+        p.engine.setPeriod(2 * PERIOD);
+        p.play(3);
+
+        int n = p.shownTimes.size();
+        assertThat(p.shownTimes.get(n - 1) - p.shownTimes.get(n - 2)).isEqualTo(2 * PERIOD);
+        assertThat(p.engine.getDroppedFrames()).isZero();
+    }
+
+    @Test
+    public void testResyncFromManualMove() throws InterruptedException {
+        Player p = new Player(50, 4, i -> 0);
+        p.play(3);
+        assertThat(p.engine.getShownIndex()).isEqualTo(3);
+
+        // Value set by the engine itself: no jump
+        p.engine.setCurrentIndex(3);
+        p.play(1);
+        assertThat(p.shownIndexes).containsExactly(1, 2, 3, 4);
+
+        // The slider is moved manually to frame 20
+        int nbLoadings = p.loadings.size();
+        p.engine.setCurrentIndex(20);
+        p.play(3);
+        assertThat(p.shownIndexes.subList(4, 7)).containsExactly(21, 22, 23);
+        // The frames decoded ahead before the move are discarded
+        assertThat(p.loadings.subList(0, nbLoadings).stream().filter(FakeFuture::isCancelled).count())
+            .isEqualTo(3);
+        assertThat(p.engine.getDroppedFrames()).isZero();
+    }
+
+    @Test
+    public void testParallelPrefetch() throws Exception {
+        // The default loader decodes the frames ahead in several threads
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        CineEngine.FrameSource source = new CineEngine.FrameSource() {
+            @Override
+            public int getNextIndex(int index) {
+                return index + 1;
+            }
+
+            @Override
+            public void prepare(int index) throws Exception {
+                threads.add(Thread.currentThread().getName());
+                bothStarted.countDown();
+                // Fails when the frames are decoded one after the other
+                bothStarted.await(5, TimeUnit.SECONDS);
+            }
+
+            @Override
+            public void show(int index) {
+                // Nothing to display
+            }
+        };
+        FakeClock clock = new FakeClock();
+        CineEngine engine = new CineEngine(source, 1, PERIOD, 2, clock, null);
+        engine.playNextFrame();
+        engine.playNextFrame();
+
+        assertThat(bothStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(threads).hasSize(2);
+    }
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.ui.editor.image;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.weasis.core.api.image.AbstractOp;
+import org.weasis.core.api.image.AffineTransformOp;
+import org.weasis.core.api.image.ImageOpNode;
+import org.weasis.core.api.image.SimpleOpManager;
+import org.weasis.opencv.data.PlanarImage;
+
+public class ZoomWinTest {
+
+    /** Computes the shutter area in the input image like ShutterOp, without OpenCV. */
+    static class ShutterLikeOp extends AbstractOp {
+        static final String P_SHAPE = "shutter.shape"; //$NON-NLS-1$
+        Rectangle2D shutterBounds;
+
+        ShutterLikeOp() {
+            setName("Shutter"); //$NON-NLS-1$
+        }
+
+        @Override
+        public ImageOpNode copy() {
+            // Copy all the parameters, including the IO cache
+            ShutterLikeOp op = new ShutterLikeOp();
+            op.setAllParameters(params);
+            return op;
+        }
+
+        @Override
+        public boolean handlesInputScale() {
+            return true;
+        }
+
+        @Override
+        public void process() throws Exception {
+            Area area = (Area) params.get(P_SHAPE);
+            double[] scale = (double[]) params.get(Param.INPUT_SCALE);
+            Area shape = scale == null ? area
+                : area.createTransformedArea(AffineTransform.getScaleInstance(scale[0], scale[1]));
+            shutterBounds = shape.getBounds2D();
+            params.put(Param.OUTPUT_IMG, params.get(Param.INPUT_IMG));
+        }
+    }
+
+    static class ZoomOp extends AbstractOp {
+        ZoomOp() {
+            setName(AffineTransformOp.OP_NAME);
+        }
+
+        @Override
+        public ImageOpNode copy() {
+            return new ZoomOp();
+        }
+
+        @Override
+        public boolean handlesInputScale() {
+            return true;
+        }
+
+        @Override
+        public void process() throws Exception {
+            params.put(Param.OUTPUT_IMG, params.get(Param.INPUT_IMG));
+        }
+    }
+
+    private static PlanarImage image(int width, int height) {
+        PlanarImage img = Mockito.mock(PlanarImage.class);
+        Mockito.when(img.width()).thenReturn(width);
+        Mockito.when(img.height()).thenReturn(height);
+        return img;
+    }
+
+    @Test
+    public void testShutterInLensAtFullResolution() {
+        Rectangle shutter = new Rectangle(100, 120, 400, 300);
+
+        // Parent view displaying the level 2 of the pyramid (1/4 of 1024x1024)
+        ShutterLikeOp parentShutter = new ShutterLikeOp();
+        parentShutter.setParam(ShutterLikeOp.P_SHAPE, new Area(shutter));
+        ZoomOp parentZoom = new ZoomOp();
+        SimpleOpManager parent = new SimpleOpManager();
+        parent.addImageOperationAction(parentShutter);
+        parent.addImageOperationAction(parentZoom);
+        double[] levelScale = { 0.25, 0.25 };
+        parentShutter.setParam(ImageOpNode.Param.INPUT_SCALE, levelScale);
+        parentZoom.setParam(ImageOpNode.Param.INPUT_SCALE, levelScale);
+        parent.setFirstNode(image(256, 256));
+        parent.process();
+        assertThat(parentShutter.shutterBounds).isEqualTo(new Rectangle2D.Double(25, 30, 100, 75));
+
+        // The lens copies the operations before the zoom and applies them on the full resolution image
+        SimpleOpManager lens = ZoomWin.copyOperations(parent, image(1024, 1024));
+        assertThat(lens.getOperations()).hasSize(1);
+        lens.process();
+        ShutterLikeOp lensShutter = (ShutterLikeOp) lens.getFirstNode();
+        assertThat(lensShutter.getParam(ImageOpNode.Param.INPUT_SCALE)).isNull();
+        assertThat(lensShutter.shutterBounds).isEqualTo(new Rectangle2D.Double(100, 120, 400, 300));
+
+        // The parent operations are unchanged
+        assertThat(parentShutter.getParam(ImageOpNode.Param.INPUT_SCALE)).isSameAs(levelScale);
+    }
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.ui.serialize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.weasis.core.api.media.data.ImageElement;
+import org.weasis.core.api.media.data.SimpleTagable;
+import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.ui.model.GraphicModel;
+import org.weasis.core.ui.model.graphic.Graphic;
+import org.weasis.core.ui.model.graphic.imp.AnnotationGraphicTest;
+import org.weasis.core.ui.model.graphic.imp.PixelInfoGraphicTest;
+import org.weasis.core.ui.model.graphic.imp.PointGraphicTest;
+import org.weasis.core.ui.model.graphic.imp.angle.AngleToolGraphicTest;
+import org.weasis.core.ui.model.graphic.imp.angle.CobbAngleToolGraphicTest;
+import org.weasis.core.ui.model.graphic.imp.angle.FourPointsAngleToolGraphicTest;
+import org.weasis.core.ui.model.graphic.imp.angle.OpenAngleToolGraphicTest;
+import org.weasis.core.ui.model.graphic.imp.area.EllipseGraphicTest;
+import org.weasis.core.ui.model.graphic.imp.area.PolygonGraphicTest;
+import org.weasis.core.ui.model.graphic.imp.area.RectangleGraphicTest;
+import org.weasis.core.ui.model.graphic.imp.area.SelectGraphicTest;
+import org.weasis.core.ui.model.graphic.imp.area.ThreePointsCircleGraphicTest;
+import org.weasis.core.ui.model.graphic.imp.line.LineGraphicTest;
+import org.weasis.core.ui.model.graphic.imp.line.LineWithGapGraphicTest;
+import org.weasis.core.ui.model.graphic.imp.line.ParallelLineGraphicTest;
+import org.weasis.core.ui.model.graphic.imp.line.PerpendicularLineGraphicTest;
+import org.weasis.core.ui.model.graphic.imp.line.PolylineGraphicTest;
+import org.weasis.core.ui.model.imp.XmlGraphicModel;
+
+@RunWith(PowerMockRunner.class)
+public class XmlSerializerTest {
+
+    private static final List<Graphic> ALL_GRAPHICS = Arrays.asList(AnnotationGraphicTest.COMPLETE_OBJECT,
+        PixelInfoGraphicTest.COMPLETE_OBJECT, PointGraphicTest.COMPLETE_OBJECT, AngleToolGraphicTest.COMPLETE_OBJECT,
+        CobbAngleToolGraphicTest.COMPLETE_OBJECT, FourPointsAngleToolGraphicTest.COMPLETE_OBJECT,
+        OpenAngleToolGraphicTest.COMPLETE_OBJECT, EllipseGraphicTest.COMPLETE_OBJECT,
+        PolygonGraphicTest.COMPLETE_OBJECT, RectangleGraphicTest.COMPLETE_OBJECT, SelectGraphicTest.COMPLETE_OBJECT,
+        ThreePointsCircleGraphicTest.COMPLETE_OBJECT, LineGraphicTest.COMPLETE_OBJECT,
+        LineWithGapGraphicTest.COMPLETE_OBJECT, ParallelLineGraphicTest.COMPLETE_OBJECT,
+        PerpendicularLineGraphicTest.COMPLETE_OBJECT, PolylineGraphicTest.COMPLETE_OBJECT);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static GraphicModel buildModel() {
+        GraphicModel model = new XmlGraphicModel();
+        for (Graphic g : ALL_GRAPHICS) {
+            model.addGraphic(g.copy());
+        }
+        return model;
+    }
+
+    private static void assertSameGraphics(GraphicModel expected, GraphicModel actual) {
+        assertThat(actual).isNotNull();
+        assertThat(actual.getModels()).hasSameSizeAs(expected.getModels());
+        for (int i = 0; i < expected.getModels().size(); i++) {
+            Graphic e = expected.getModels().get(i);
+            Graphic a = actual.getModels().get(i);
+            assertThat(a).isExactlyInstanceOf(e.getClass());
+            assertThat(a.getUuid()).isEqualTo(e.getUuid());
+            assertThat(a.getPts()).isEqualTo(e.getPts());
+            assertThat(a.getLayer()).isNotNull();
+        }
+    }
+
+    private File writeModel(GraphicModel model, String name) throws Exception {
+        ImageElement img = PowerMockito.mock(ImageElement.class);
+        PowerMockito.when(img.getTagValue(ArgumentMatchers.any())).thenReturn(model);
+        File dcm = new File(folder.getRoot(), name);
+        XmlSerializer.writePresentation(img, dcm);
+        return new File(dcm.getPath() + ".xml"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void test_round_trip_all_graphics() throws Exception {
+        GraphicModel model = buildModel();
+        assertThat(model.getModels()).hasSize(ALL_GRAPHICS.size());
+
+        File gpxFile = writeModel(model, "img.dcm"); //$NON-NLS-1$
+        assertThat(gpxFile).isFile();
+        assertSameGraphics(model, XmlSerializer.readPresentationModel(gpxFile));
+
+        // Overwrite the file, no temporary file is left
+        writeModel(model, "img.dcm"); //$NON-NLS-1$
+        assertThat(folder.getRoot().list()).containsExactly(gpxFile.getName());
+        assertSameGraphics(model, XmlSerializer.readPresentationModel(gpxFile));
+    }
+
+    @Test
+    public void test_concurrent_reads() throws Exception {
+        GraphicModel model = buildModel();
+        File gpxFile = writeModel(model, "img.dcm"); //$NON-NLS-1$
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<GraphicModel>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                results.add(executor.submit(() -> XmlSerializer.readPresentationModel(gpxFile)));
+            }
+            for (Future<GraphicModel> f : results) {
+                assertSameGraphics(model, f.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_lazy_presentation_model() throws Exception {
+        GraphicModel model = buildModel();
+        File gpxFile = writeModel(model, "img.dcm"); //$NON-NLS-1$
+
+        SimpleTagable media = new SimpleTagable();
+        XmlSerializer.setPresentationModelPath(media, new File(folder.getRoot(), "img.dcm")); //$NON-NLS-1$
+        assertThat(media.getTagValue(TagW.PresentationModelPath)).isEqualTo(gpxFile.getPath());
+        assertThat(media.getTagValue(TagW.PresentationModel)).isNull();
+
+        GraphicModel actual = XmlSerializer.getPresentationModel(media);
+        assertSameGraphics(model, actual);
+        assertThat(media.getTagValue(TagW.PresentationModelPath)).isNull();
+        // Read only once
+        assertThat(XmlSerializer.getPresentationModel(media)).isSameAs(actual);
+
+        // No sidecar file
+        SimpleTagable other = new SimpleTagable();
+        XmlSerializer.setPresentationModelPath(other, new File(folder.getRoot(), "other.dcm")); //$NON-NLS-1$
+        assertThat(other.getTagValue(TagW.PresentationModelPath)).isNull();
+        assertThat(XmlSerializer.getPresentationModel(other)).isNull();
+    }
+}
@@ -0,0 +1,350 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.media.data;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Compact map of tag values. The keys and the values are stored in two open-addressed arrays indexed by
+ * {@link TagW#getIndex()}, so there is no entry object per tag. Like HashMap, null values are allowed and the map is
+ * not synchronized.
+ * <p>
+ * The strings are interned when they are put in the map: the values repeated in all the instances of a series
+ * (modality, manufacturer...) share the same object. The arrays are never shared because the callers can modify them
+ * (e.g. the rescale of the window values).
+ */
+public class TagMap extends AbstractMap<TagW, Object> {
+
+    private static final int MIN_CAPACITY = 8;
+    private static final TagW REMOVED = new TagW("__removed__", TagW.TagType.OBJECT); //$NON-NLS-1$
+
+    private TagW[] keys;
+    private Object[] values;
+    private int size;
+    private int removed;
+    private int modCount;
+    private transient EntrySet entrySet;
+
+    public TagMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public TagMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    public TagMap(Map<TagW, ?> map) {
+        this(Objects.requireNonNull(map).size());
+        putAll(map);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        // Keep the load factor under 0.75
+        while (capacity * 3 < expectedSize * 4) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new TagW[capacity];
+        values = new Object[capacity];
+    }
+
+    private static int slot(TagW key, int mask) {
+        // Fibonacci hashing to spread the consecutive indexes
+        return (key.getIndex() * 0x9E3779B9) >>> 16 & mask;
+    }
+
+    private int find(Object key) {
+        if (!(key instanceof TagW)) {
+            return -1;
+        }
+        TagW tag = (TagW) key;
+        TagW[] k = keys;
+        int mask = k.length - 1;
+        int i = slot(tag, mask);
+        TagW cur;
+        while ((cur = k[i]) != null) {
+            if (cur != REMOVED && (cur == tag || cur.equals(tag))) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int i = find(key);
+        return i < 0 ? null : values[i];
+    }
+
+    @Override
+    public Object put(TagW key, Object value) {
+        Objects.requireNonNull(key);
+        Object val = intern(value);
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        int free = -1;
+        TagW cur;
+        while ((cur = keys[i]) != null) {
+            if (cur == REMOVED) {
+                if (free < 0) {
+                    free = i;
+                }
+            } else if (cur == key || cur.equals(key)) {
+                Object old = values[i];
+                values[i] = val;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        if (free >= 0) {
+            i = free;
+            removed--;
+        }
+        keys[i] = key;
+        values[i] = val;
+        size++;
+        modCount++;
+        if ((size + removed) * 4 >= keys.length * 3) {
+            rehash(tableSizeFor(size + 1));
+        }
+        return null;
+    }
+
+    private void rehash(int capacity) {
+        TagW[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            TagW k = oldKeys[j];
+            if (k != null && k != REMOVED) {
+                int i = slot(k, mask);
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = k;
+                values[i] = oldValues[j];
+            }
+        }
+        removed = 0;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int i = find(key);
+        if (i < 0) {
+            return null;
+        }
+        return removeAt(i);
+    }
+
+    private Object removeAt(int i) {
+        Object old = values[i];
+        keys[i] = REMOVED;
+        values[i] = null;
+        size--;
+        removed++;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0 || removed > 0) {
+            Arrays.fill(keys, null);
+            Arrays.fill(values, null);
+            size = 0;
+            removed = 0;
+            modCount++;
+        }
+    }
+
+    @Override
+    public Set<Entry<TagW, Object>> entrySet() {
+        EntrySet es = entrySet;
+        if (es == null) {
+            es = new EntrySet();
+            entrySet = es;
+        }
+        return es;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<TagW, Object>> {
+
+        @Override
+        public Iterator<Entry<TagW, Object>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            TagMap.this.clear();
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Entry<TagW, Object>> {
+        private int next;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        EntryIterator() {
+            next = advance(0);
+        }
+
+        private int advance(int from) {
+            TagW[] k = keys;
+            int i = from;
+            while (i < k.length && (k[i] == null || k[i] == REMOVED)) {
+                i++;
+            }
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < keys.length;
+        }
+
+        @Override
+        public Entry<TagW, Object> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= keys.length) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = advance(next + 1);
+            return new TagEntry(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            // Leave a tombstone, so the position of the other entries does not change during the iteration
+            removeAt(last);
+            expectedModCount = modCount;
+            last = -1;
+        }
+    }
+
+    private final class TagEntry implements Entry<TagW, Object> {
+        private final TagW key;
+        private final int pos;
+
+        TagEntry(int pos) {
+            this.key = keys[pos];
+            this.pos = pos;
+        }
+
+        @Override
+        public TagW getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return keys[pos] == key ? values[pos] : get(key);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            if (keys[pos] == key) {
+                Object old = values[pos];
+                values[pos] = intern(value);
+                return old;
+            }
+            return put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return key.equals(e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue(); //$NON-NLS-1$
+        }
+    }
+
+    /*
+     * Interning of strings: a fixed-size cache indexed by the hash of the value. A value repeated in many instances stays
+     * in the cache, a unique value (like a UID) only replaces a slot, so the memory used by the cache is bounded.
+     */
+    private static final int INTERN_BITS = 12;
+    private static final AtomicReferenceArray<String> INTERNED = new AtomicReferenceArray<>(1 << INTERN_BITS);
+
+    /**
+     * Returns a shared instance equal to the value for strings, otherwise returns the value. Mutable values like arrays
+     * are not shared.
+     *
+     * @param value
+     *            the value
+     * @return a shared instance equal to the value
+     */
+    public static Object intern(Object value) {
+        if (!(value instanceof String)) {
+            return value;
+        }
+        int hash = value.hashCode();
+        int i = (hash ^ (hash >>> 16)) & ((1 << INTERN_BITS) - 1);
+        String cached = INTERNED.get(i);
+        if (cached != null && cached != value && cached.equals(value)) {
+            return cached;
+        }
+        INTERNED.set(i, (String) value);
+        return value;
+    }
+}
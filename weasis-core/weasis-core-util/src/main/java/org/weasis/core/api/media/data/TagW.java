@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.DoubleStream;
@@ -49,6 +50,12 @@ public class TagW implements Serializable {
 
     protected static final Map<String, TagW> tags = Collections.synchronizedMap(new HashMap<String, TagW>());
 
+    // Dense index of the tags, equal tags share the same index
+    private static final Map<TagW, Integer> indexes = new ConcurrentHashMap<>();
+    private static final AtomicInteger indexCounter = new AtomicInteger(0);
+    // Bound of the index registry, the tags created beyond get an index from their hash code
+    static final int MAX_INDEXES = 8192;
+
     public static final String NO_VALUE = "UNKNOWN";//$NON-NLS-1$
 
     public enum TagType {
@@ -96,6 +103,7 @@ public class TagW implements Serializable {
         new TagW("ExplorerModel", Messages.getString("TagElement.exp_model"), TagType.OBJECT); //$NON-NLS-1$ //$NON-NLS-2$
     public static final TagW PresentationModel = new TagW("PesentationModel", TagType.OBJECT); //$NON-NLS-1$
     public static final TagW PresentationModelBirary = new TagW("PesentationModelBinary", TagType.BYTE); //$NON-NLS-1$
+    public static final TagW PresentationModelPath = new TagW("PresentationModelPath", TagType.STRING); //$NON-NLS-1$
     public static final TagW SplitSeriesNumber =
         new TagW("SplitSeriesNumber", Messages.getString("TagElement.split_no"), TagType.INTEGER); //$NON-NLS-1$ //$NON-NLS-2$
     public static final TagW SeriesSelected =
@@ -202,6 +210,7 @@ public class TagW implements Serializable {
     protected final int vmMin;
     protected final int vmMax;
     protected final transient Object defaultValue;
+    private transient volatile int index = -1;
 
     public TagW(int id, String keyword, String displayedName, TagType type, int vmMin, int vmMax, Object defaultValue) {
         this.id = id;
@@ -242,6 +251,27 @@ public class TagW implements Serializable {
         this(idCounter.getAndDecrement(), keyword, null, type);
     }
 
+    /**
+     * @return a positive integer which is the same for equal tags. The first {@link #MAX_INDEXES} tags get a small
+     *         unique value (allocated on demand in the order of the first call), so the registry does not grow with
+     *         the tags created dynamically. Used by {@link TagMap} for spreading the keys in its arrays.
+     */
+    public int getIndex() {
+        int idx = index;
+        if (idx < 0) {
+            // Atomic for equal tags: once the registry is full, a tag never gets a dense index
+            Integer val = indexes.computeIfAbsent(this,
+                t -> indexCounter.get() < MAX_INDEXES ? indexCounter.getAndIncrement() : null);
+            idx = val == null ? MAX_INDEXES + (hashCode() & (Integer.MAX_VALUE >>> 1)) : val;
+            index = idx;
+        }
+        return idx;
+    }
+
+    static int getIndexCount() {
+        return indexes.size();
+    }
+
     public int getId() {
         return id;
     }
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.weasis.core.api.util;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -30,6 +31,15 @@ public class GzipManager {
 
     private static final String ERROR_CTX = "Cannot gzip uncompress"; //$NON-NLS-1$
 
+    /**
+     * Size of the buffers of the streams and of the copy loops. The deflate window is 32 KB, so smaller buffers call
+     * the native inflater too often.
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    // Maximum size preallocated from the gzip trailer
+    private static final int MAX_SIZE_HINT = 64 * 1024 * 1024;
+
     private GzipManager() {
     }
 
@@ -45,8 +55,8 @@ public class GzipManager {
     }
 
     private static boolean gzipCompress(InputStream in, OutputStream out) throws IOException {
-        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
-            byte[] buf = new byte[1024];
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out, BUFFER_SIZE)) {
+            byte[] buf = new byte[BUFFER_SIZE];
             int offset;
             while ((offset = in.read(buf)) > 0) {
                 gzipOut.write(buf, 0, offset);
@@ -64,8 +74,8 @@ public class GzipManager {
     }
 
     private static boolean gzipUncompress(InputStream inputStream, OutputStream out) throws IOException {
-        try (GZIPInputStream in = new GZIPInputStream(inputStream)) {
-            byte[] buf = new byte[1024];
+        try (GZIPInputStream in = new GZIPInputStream(inputStream, BUFFER_SIZE)) {
+            byte[] buf = new byte[BUFFER_SIZE];
             int offset;
             while ((offset = in.read(buf)) > 0) {
                 out.write(buf, 0, offset);
@@ -93,9 +103,31 @@ public class GzipManager {
         }
     }
 
+    /**
+     * Uncompress while reading, so the consumer (e.g. an XML parser or a DicomInputStream) gets the data without
+     * intermediate file or byte array. Concatenated gzip members are read as a single stream.
+     *
+     * @param inputStream
+     *            the source, closed when closing the returned stream
+     * @return a stream of the uncompressed data when the source starts with the gzip magic number, otherwise a stream
+     *         of the source data
+     * @throws IOException
+     */
+    public static InputStream gzipUncompressStream(InputStream inputStream) throws IOException {
+        BufferedInputStream bufStream = new BufferedInputStream(inputStream, BUFFER_SIZE);
+        bufStream.mark(2);
+        int magic = bufStream.read() | (bufStream.read() << 8);
+        bufStream.reset();
+        if (magic == GZIPInputStream.GZIP_MAGIC) {
+            // Inflate into the caller buffer, no need to buffer the output
+            return new GZIPInputStream(bufStream, BUFFER_SIZE);
+        }
+        return bufStream;
+    }
+
     public static byte[] gzipUncompressToByte(byte[] bytes) throws IOException {
         if (isGzip(bytes)) {
-            try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream(getUncompressedSizeHint(bytes));
                             ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);) {
                 gzipUncompress(inputStream, outputStream);
                 return outputStream.toByteArray();
@@ -127,6 +159,20 @@ public class GzipManager {
         return bytes;
     }
 
+    /**
+     * @return the uncompressed size from the ISIZE field of the trailer (modulo 2^32 and only of the last member), so
+     *         it can be used only as an initial capacity.
+     */
+    private static int getUncompressedSizeHint(byte[] bytes) {
+        int l = bytes.length;
+        long size = (bytes[l - 4] & 0xffL) | ((bytes[l - 3] & 0xffL) << 8) | ((bytes[l - 2] & 0xffL) << 16)
+            | ((bytes[l - 1] & 0xffL) << 24);
+        if (size <= 0) {
+            return 32;
+        }
+        return (int) Math.min(size, MAX_SIZE_HINT);
+    }
+
     public static boolean isGzip(byte[] bytes) {
         // Check to see if it's gzip-compressed
         // GZIP Magic Two-Byte Number: 0x8b1f (35615)
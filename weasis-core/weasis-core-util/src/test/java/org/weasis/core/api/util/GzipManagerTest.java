@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.core.api.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GzipManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * @return a WADO manifest with the given number of series of 100 instances
+     */
+    static byte[] buildManifest(int series) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"); //$NON-NLS-1$
+        xml.append("<manifest xmlns=\"http://www.weasis.org/xsd/2.5\">\n<arcQuery arcId=\"1000\" "); //$NON-NLS-1$
+        xml.append("baseUrl=\"http://localhost:8080/dcm4chee-arc/aets/DCM4CHEE/wado\">\n"); //$NON-NLS-1$
+        xml.append("<Patient PatientID=\"12345\" PatientName=\"Test^Patient\">\n"); //$NON-NLS-1$
+        xml.append("<Study StudyInstanceUID=\"1.2.3.4\" StudyDate=\"20180102\">\n"); //$NON-NLS-1$
+        for (int s = 0; s < series; s++) {
+            xml.append("<Series SeriesInstanceUID=\"1.2.3.4.").append(s).append("\" Modality=\"CT\">\n"); //$NON-NLS-1$ //$NON-NLS-2$
+            for (int i = 0; i < 100; i++) {
+                xml.append("<Instance SOPInstanceUID=\"1.2.3.4.").append(s).append('.').append(i) //$NON-NLS-1$
+                    .append("\" InstanceNumber=\"").append(i + 1).append("\"/>\n"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            xml.append("</Series>\n"); //$NON-NLS-1$
+        }
+        xml.append("</Study>\n</Patient>\n</arcQuery>\n</manifest>\n"); //$NON-NLS-1$
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return a DICOM file (preamble and prefix) with a 16-bit image of a smooth gradient with noise
+     */
+    static byte[] buildDicom(int size) {
+        byte[] data = new byte[132 + size * size * 2];
+        data[128] = 'D';
+        data[129] = 'I';
+        data[130] = 'C';
+        data[131] = 'M';
+        Random random = new Random(size);
+        int index = 132;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int value = x * 4 + y * 2 + random.nextInt(16);
+                data[index++] = (byte) value;
+                data[index++] = (byte) (value >> 8);
+            }
+        }
+        return data;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... arrays) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] a : arrays) {
+            out.write(a);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            // Read one byte first like a parser checking the header
+            int b = stream.read();
+            if (b >= 0) {
+                out.write(b);
+                byte[] buf = new byte[8192];
+                int n;
+                while ((n = stream.read(buf)) > 0) {
+                    out.write(buf, 0, n);
+                }
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private void assertUncompress(byte[] compressed, byte[] expected) throws IOException {
+        assertThat(GzipManager.isGzip(compressed)).isTrue();
+        assertThat(GzipManager.gzipUncompressToByte(compressed)).isEqualTo(expected);
+        assertThat(readAll(GzipManager.gzipUncompressStream(new ByteArrayInputStream(compressed)))).isEqualTo(expected);
+
+        File gzFile = folder.newFile();
+        Files.write(gzFile.toPath(), compressed);
+        File outFile = folder.newFile();
+        assertThat(GzipManager.gzipUncompressToFile(gzFile, outFile)).isTrue();
+        assertThat(Files.readAllBytes(outFile.toPath())).isEqualTo(expected);
+
+        outFile = folder.newFile();
+        assertThat(GzipManager.gzipUncompressToFile(gzFile.toURI().toURL(), outFile)).isTrue();
+        assertThat(Files.readAllBytes(outFile.toPath())).isEqualTo(expected);
+
+        outFile = folder.newFile();
+        assertThat(GzipManager.gzipUncompressToFile(compressed, outFile)).isTrue();
+        assertThat(Files.readAllBytes(outFile.toPath())).isEqualTo(expected);
+    }
+
+    @Test
+    public void testNotGzip() throws IOException {
+        byte[] manifest = buildManifest(2);
+        assertThat(GzipManager.isGzip(manifest)).isFalse();
+        assertThat(GzipManager.gzipUncompressToByte(manifest)).isSameAs(manifest);
+        assertThat(readAll(GzipManager.gzipUncompressStream(new ByteArrayInputStream(manifest)))).isEqualTo(manifest);
+
+        File outFile = folder.newFile();
+        assertThat(GzipManager.gzipUncompressToFile(manifest, outFile)).isTrue();
+        assertThat(Files.readAllBytes(outFile.toPath())).isEqualTo(manifest);
+
+        // Only the first byte of the magic number
+        byte[] data = { 0x1f, 0x00, 0x01, 0x02, 0x03 };
+        assertThat(GzipManager.isGzip(data)).isFalse();
+        assertThat(readAll(GzipManager.gzipUncompressStream(new ByteArrayInputStream(data)))).isEqualTo(data);
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        byte[] empty = new byte[0];
+        assertThat(GzipManager.isGzip(empty)).isFalse();
+        assertThat(GzipManager.gzipUncompressToByte(empty)).isSameAs(empty);
+        assertThat(readAll(GzipManager.gzipUncompressStream(new ByteArrayInputStream(empty)))).isEmpty();
+        assertThat(GzipManager.gzipCompressToByte(empty)).isSameAs(empty);
+
+        // Shorter than the magic number
+        byte[] data = { 0x1f };
+        assertThat(readAll(GzipManager.gzipUncompressStream(new ByteArrayInputStream(data)))).isEqualTo(data);
+
+        // Compressed empty content
+        byte[] compressed = GzipManager.gzipCompressToByte(empty, 0);
+        assertUncompress(compressed, empty);
+        assertUncompress(gzip(empty), empty);
+    }
+
+    @Test
+    public void testMultiMember() throws IOException {
+        byte[] first = buildManifest(50);
+        byte[] second = buildDicom(64);
+        byte[] third = new byte[0];
+        byte[] expected = concat(first, second, third);
+        // The size in the trailer of the last member is not the total size
+        assertUncompress(concat(gzip(first), gzip(second), gzip(third)), expected);
+        assertUncompress(concat(gzip(second), GzipManager.gzipCompressToByte(first)), concat(second, first));
+    }
+
+    @Test
+    public void testManifest() throws IOException {
+        byte[] manifest = buildManifest(500);
+        assertThat(manifest.length).isGreaterThan(4 * GzipManager.BUFFER_SIZE);
+        byte[] compressed = GzipManager.gzipCompressToByte(manifest);
+        assertThat(compressed.length).isLessThan(manifest.length / 10);
+        assertUncompress(compressed, manifest);
+        assertUncompress(gzip(manifest), manifest);
+
+        File gzFile = folder.newFile();
+        assertThat(GzipManager.gzipCompress(new ByteArrayInputStream(manifest), gzFile.getPath())).isTrue();
+        assertUncompress(Files.readAllBytes(gzFile.toPath()), manifest);
+
+        // Not compressed under the required size
+        assertThat(GzipManager.gzipCompressToByte(manifest, manifest.length + 1)).isSameAs(manifest);
+    }
+
+    @Test
+    public void testDicom() throws IOException {
+        for (int size : new int[] { 1, 181, 512 }) {
+            byte[] dicom = buildDicom(size);
+            assertUncompress(GzipManager.gzipCompressToByte(dicom), dicom);
+            assertUncompress(gzip(dicom), dicom);
+        }
+    }
+}
@@ -11,17 +11,20 @@
 package org.weasis.dicom.au;
 
 import java.awt.BorderLayout;
+import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
-import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioFormat.Encoding;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
 import javax.sound.sampled.DataLine;
 import javax.sound.sampled.FloatControl;
 import javax.sound.sampled.LineUnavailableException;
@@ -31,10 +34,13 @@ import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
 import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JSlider;
+import javax.swing.SwingWorker;
 import javax.swing.Timer;
 import javax.swing.border.TitledBorder;
 
@@ -62,8 +68,7 @@ public class AuView extends JPanel implements SeriesViewerListener {
 
     private Series<?> series;
 
-    private Clip clip;
-    private boolean playing = false; // whether the sound is currently playing
+    private AudioEngine engine;
 
     private int audioLength; // Length of the sound.
     private int audioPosition = 0; // Current position within the sound
@@ -71,6 +76,7 @@ public class AuView extends JPanel implements SeriesViewerListener {
     private JButton play; // The Play/Stop button
     private JSlider progress; // Shows and sets current position in sound
     private JLabel time; // Displays audioPosition as a number
+    private WaveformOverview overview; // Min/max of the samples of the whole sound
     private Timer timer; // Updates slider every 100 milliseconds
 
     public AuView() {
@@ -153,8 +159,11 @@ public class AuView extends JPanel implements SeriesViewerListener {
             closingSeries(series);
             series = null;
         }
-        if (clip != null) {
-            clip.close();
+        if (timer != null) {
+            timer.stop();
+        }
+        if (engine != null) {
+            engine.close();
         }
     }
 
@@ -174,15 +183,13 @@ public class AuView extends JPanel implements SeriesViewerListener {
             throw new IllegalStateException("Cannot build an AudioInputStream"); //$NON-NLS-1$
         }
 
-        try (AudioInputStream audioStream = new AudioInputStream(audioData.bulkData.openStream(), audioData.audioFormat,
-            audioData.bulkData.length() / audioData.audioFormat.getFrameSize())) {
-            DataLine.Info info = new DataLine.Info(Clip.class, audioStream.getFormat());
-            clip = (Clip) AudioSystem.getLine(info);
-            clip.open(audioStream);
-        }
+        // The samples are read from the mapped file, the whole sound is not loaded in memory like with a Clip
+        engine = new AudioEngine(media.getFile(), audioData.bulkData.offset(), audioData.bulkData.length(),
+            audioData.audioFormat);
+        engine.open(AudioEngine.getDefaultLine(audioData.audioFormat));
 
-        // Get the clip length in microseconds and convert to milliseconds
-        audioLength = (int) (clip.getMicrosecondLength() / 1000);
+        // Get the sound length in microseconds and convert to milliseconds
+        audioLength = (int) (engine.getMicrosecondLength() / 1000);
 
         play = new JButton(Messages.getString("AuView.play")); // Play/stop button //$NON-NLS-1$
         progress = new JSlider(0, audioLength, 0); // Shows position in sound
@@ -190,7 +197,7 @@ public class AuView extends JPanel implements SeriesViewerListener {
 
         // When clicked, start or stop playing the sound
         play.addActionListener(e -> {
-            if (playing) {
+            if (engine.isPlaying()) {
                 stop();
             } else {
                 play();
@@ -217,8 +224,14 @@ public class AuView extends JPanel implements SeriesViewerListener {
         row.add(progress);
         row.add(time);
 
+        JCheckBox loop = new JCheckBox(Messages.getString("AuView.loop")); //$NON-NLS-1$
+        loop.addActionListener(e -> engine.setLooping(loop.isSelected()));
+        row.add(loop);
+
         // And add them to this component.
         setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+        overview = new WaveformOverview(engine);
+        this.add(overview);
         this.add(row);
 
         addSampledControls();
@@ -250,12 +263,11 @@ public class AuView extends JPanel implements SeriesViewerListener {
                     String extension = filter == null ? ".au" : "." + filter.getDefaultExtension(); //$NON-NLS-1$ //$NON-NLS-2$
                     String filename = file.getName().endsWith(extension) ? file.getPath() : file.getPath() + extension;
 
-                    try (AudioInputStream audioStream = new AudioInputStream(audioData.bulkData.openStream(),
-                        audioData.audioFormat, audioData.bulkData.length() / audioData.audioFormat.getFrameSize())) {
+                    try {
                         if (".wav".equals(extension)) { //$NON-NLS-1$
-                            AudioSystem.write(audioStream, AudioFileFormat.Type.WAVE, new File(filename));
+                            engine.exportWav(new File(filename));
                         } else {
-                            AudioSystem.write(audioStream, AudioFileFormat.Type.AU, new File(filename));
+                            engine.exportAu(new File(filename));
                         }
                     } catch (IOException ex) {
                         LOGGER.error("Cannot save audio file!", ex); //$NON-NLS-1$
@@ -267,32 +279,30 @@ public class AuView extends JPanel implements SeriesViewerListener {
 
     /** Start playing the sound at the current position */
     public void play() {
-
-        clip.start();
+        engine.play();
 
         timer.start();
         play.setText(Messages.getString("AuView.stop")); //$NON-NLS-1$
-        playing = true;
     }
 
     /** Stop playing the sound, but retain the current position */
     public void stop() {
         timer.stop();
 
-        clip.stop();
+        engine.stop();
 
         play.setText(Messages.getString("AuView.play")); //$NON-NLS-1$
-        playing = false;
     }
 
     /** Stop playing the sound and reset the position to 0 */
     public void reset() {
         stop();
 
-        clip.setMicrosecondPosition(0);
+        engine.setFramePosition(0);
 
         audioPosition = 0;
         progress.setValue(0);
+        overview.repaint();
     }
 
     /** Skip to the specified position */
@@ -302,9 +312,10 @@ public class AuView extends JPanel implements SeriesViewerListener {
         }
         audioPosition = position;
 
-        clip.setMicrosecondPosition(position * 1000L);
+        engine.setFramePosition(engine.microsecondsToFrames(position * 1000L));
 
         progress.setValue(position); // in case skip( ) is called from outside
+        overview.repaint();
     }
 
     /** Return the length of the sound in ms or ticks */
@@ -316,9 +327,10 @@ public class AuView extends JPanel implements SeriesViewerListener {
     // The Timer object calls it 10 times a second.
     // If the sound has finished, it resets to the beginning
     void tick() {
-        if (clip.isActive()) {
-            audioPosition = (int) (clip.getMicrosecondPosition() / 1000);
+        if (engine.isPlaying()) {
+            audioPosition = (int) (engine.framesToMicroseconds(engine.getFramePosition()) / 1000);
             progress.setValue(audioPosition);
+            overview.repaint();
         } else {
             reset();
         }
@@ -327,7 +339,7 @@ public class AuView extends JPanel implements SeriesViewerListener {
     // For sampled sounds, add sliders to control volume and balance
     void addSampledControls() {
         try {
-            FloatControl gainControl = (FloatControl) clip.getControl(FloatControl.Type.MASTER_GAIN);
+            FloatControl gainControl = (FloatControl) engine.getLine().getControl(FloatControl.Type.MASTER_GAIN);
             if (gainControl != null) {
                 this.add(createSlider(gainControl));
             }
@@ -338,7 +350,7 @@ public class AuView extends JPanel implements SeriesViewerListener {
         try {
             // FloatControl.Type.BALANCE is probably the correct control to
             // use here, but it doesn't work for me, so I use PAN instead.
-            FloatControl panControl = (FloatControl) clip.getControl(FloatControl.Type.PAN);
+            FloatControl panControl = (FloatControl) engine.getLine().getControl(FloatControl.Type.PAN);
             if (panControl != null) {
                 this.add(createSlider(panControl));
             }
@@ -422,6 +434,87 @@ public class AuView extends JPanel implements SeriesViewerListener {
         return null;
     }
 
+    /**
+     * Draws the min/max overview of each channel and the current position. A click moves the position. The overview
+     * reads the whole recording, so it is computed in background and drawn when available.
+     */
+    class WaveformOverview extends JComponent {
+
+        private float[][] values;
+
+        WaveformOverview(final AudioEngine audioEngine) {
+            setPreferredSize(new Dimension(1024, 150));
+            setMaximumSize(new Dimension(Integer.MAX_VALUE, 150));
+            addMouseListener(new MouseAdapter() {
+                @Override
+                public void mousePressed(MouseEvent e) {
+                    if (getWidth() > 0) {
+                        skip((int) ((long) audioLength * e.getX() / getWidth()));
+                    }
+                }
+            });
+            if (audioEngine != null) {
+                new SwingWorker<float[][], Void>() {
+
+                    @Override
+                    protected float[][] doInBackground() throws Exception {
+                        return audioEngine.getOverview();
+                    }
+
+                    @Override
+                    protected void done() {
+                        try {
+                            values = get();
+                            repaint();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } catch (ExecutionException e) {
+                            LOGGER.error("Cannot compute the audio overview", e); //$NON-NLS-1$
+                        }
+                    }
+                }.execute();
+            }
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            int width = getWidth();
+            int height = getHeight();
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, width, height);
+            if (values == null || values.length == 0 || width <= 0) {
+                return;
+            }
+            int channelHeight = height / values.length;
+            g.setColor(Color.GREEN);
+            for (int c = 0; c < values.length; c++) {
+                float[] minMax = values[c];
+                int bins = minMax.length / 2;
+                int center = c * channelHeight + channelHeight / 2;
+                int amplitude = channelHeight / 2;
+                for (int x = 0; x < width; x++) {
+                    // Merge the overview ranges displayed in this column
+                    int start = bins * x / width;
+                    int end = Math.max(start + 1, bins * (x + 1) / width);
+                    float min = Float.MAX_VALUE;
+                    float max = -Float.MAX_VALUE;
+                    for (int b = start; b < end && b < bins; b++) {
+                        min = Math.min(min, minMax[b * 2]);
+                        max = Math.max(max, minMax[b * 2 + 1]);
+                    }
+                    if (min <= max) {
+                        g.drawLine(x, center - Math.round(max * amplitude), x, center - Math.round(min * amplitude));
+                    }
+                }
+            }
+            if (audioLength > 0) {
+                g.setColor(Color.RED);
+                int x = (int) ((long) audioPosition * width / audioLength);
+                g.drawLine(x, 0, x, height);
+            }
+        }
+    }
+
     static class AudioData {
         final BulkData bulkData;
         final AudioFormat audioFormat;
@@ -0,0 +1,544 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.au;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioFormat.Encoding;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Audio player reading the samples directly from the memory-mapped range of the Waveform Data in the DICOM file, so the
+ * recording is neither copied in the heap nor read again for playing from another position.
+ * <p>
+ * The position is a frame index (one sample of each channel), which allows sample-accurate seeking and looping.
+ */
+public final class AudioEngine {
+
+    /**
+     * Number of min/max values of the overview for each channel.
+     */
+    public static final int OVERVIEW_SIZE = 4096;
+
+    private static final int CHUNK_FRAMES = 2048;
+
+    private final File file;
+    private final long offset;
+    private final MappedByteBuffer buffer;
+    private final AudioFormat format;
+    private final int frameSize;
+    private final long frameLength;
+
+    private final Object lock = new Object();
+    private SourceDataLine line;
+    private Thread player;
+    private volatile boolean playing;
+    // Next frame written in the line
+    private long framePosition;
+    private boolean looping;
+    private long loopStart;
+    private long loopEnd;
+
+    private volatile float[][] overview;
+
+    /**
+     * @param file
+     *            the DICOM file
+     * @param offset
+     *            the position of the Waveform Data in the file
+     * @param length
+     *            the length of the Waveform Data
+     * @param format
+     *            the format of the samples
+     * @throws IOException
+     *             when the file cannot be mapped
+     */
+    public AudioEngine(File file, long offset, long length, AudioFormat format) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Audio data too large: " + length); //$NON-NLS-1$
+        }
+        this.file = file;
+        this.offset = offset;
+        this.format = format;
+        this.frameSize = Math.max(1, format.getFrameSize());
+        this.frameLength = length / frameSize;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // The mapping remains valid after closing the channel
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, frameLength * frameSize);
+        }
+        this.loopEnd = frameLength;
+    }
+
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    public long getMicrosecondLength() {
+        return framesToMicroseconds(frameLength);
+    }
+
+    public long framesToMicroseconds(long frames) {
+        return (long) (frames * 1_000_000.0 / format.getFrameRate());
+    }
+
+    public long microsecondsToFrames(long microseconds) {
+        return Math.round(microseconds * (double) format.getFrameRate() / 1_000_000.0);
+    }
+
+    /**
+     * Open the line for playing. The line can be obtained with {@link #getDefaultLine(AudioFormat)}.
+     *
+     * @param sourceLine
+     *            the line receiving the samples
+     * @throws LineUnavailableException
+     *             if the line cannot be opened
+     */
+    public void open(SourceDataLine sourceLine) throws LineUnavailableException {
+        synchronized (lock) {
+            close();
+            sourceLine.open(format);
+            this.line = sourceLine;
+        }
+    }
+
+    public SourceDataLine getLine() {
+        synchronized (lock) {
+            return line;
+        }
+    }
+
+    public static SourceDataLine getDefaultLine(AudioFormat format) throws LineUnavailableException {
+        return AudioSystem.getSourceDataLine(format);
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    public void play() {
+        synchronized (lock) {
+            if (line == null || playing) {
+                return;
+            }
+            if (framePosition >= getEnd()) {
+                framePosition = looping ? loopStart : 0;
+            }
+            playing = true;
+            line.start();
+            player = new Thread(this::writeSamples, "Audio player"); //$NON-NLS-1$
+            player.setDaemon(true);
+            player.start();
+        }
+    }
+
+    /**
+     * Stop playing and keep the current position.
+     */
+    public void stop() {
+        Thread t;
+        synchronized (lock) {
+            if (!playing) {
+                return;
+            }
+            playing = false;
+            t = player;
+            player = null;
+            framePosition = getPlayedFrame();
+            if (line != null) {
+                line.stop();
+                line.flush();
+            }
+        }
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                t.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void close() {
+        stop();
+        synchronized (lock) {
+            if (line != null) {
+                line.close();
+                line = null;
+            }
+        }
+    }
+
+    /**
+     * @param frame
+     *            the new position (index of the frame)
+     */
+    public void setFramePosition(long frame) {
+        synchronized (lock) {
+            framePosition = Math.max(0, Math.min(frame, frameLength));
+            if (line != null) {
+                // Drop the samples of the previous position not yet played
+                line.flush();
+            }
+        }
+    }
+
+    /**
+     * @return the index of the frame currently played
+     */
+    public long getFramePosition() {
+        synchronized (lock) {
+            return playing ? getPlayedFrame() : framePosition;
+        }
+    }
+
+    private long getPlayedFrame() {
+        long pos = framePosition;
+        if (line != null) {
+            // Remove the frames written in the line but not yet played
+            pos -= (line.getBufferSize() - line.available()) / frameSize;
+        }
+        return Math.max(looping ? loopStart : 0, pos);
+    }
+
+    /**
+     * @param start
+     *            the first frame of the loop
+     * @param end
+     *            the frame after the last frame of the loop
+     */
+    public void setLoopPoints(long start, long end) {
+        synchronized (lock) {
+            long s = Math.max(0, Math.min(start, frameLength));
+            long e = end < 0 ? frameLength : Math.max(s, Math.min(end, frameLength));
+            loopStart = s;
+            loopEnd = e;
+        }
+    }
+
+    public void setLooping(boolean looping) {
+        synchronized (lock) {
+            this.looping = looping;
+        }
+    }
+
+    public boolean isLooping() {
+        synchronized (lock) {
+            return looping;
+        }
+    }
+
+    private long getEnd() {
+        return looping ? loopEnd : frameLength;
+    }
+
+    private void writeSamples() {
+        byte[] chunk = new byte[CHUNK_FRAMES * frameSize];
+        SourceDataLine l;
+        while (true) {
+            int length;
+            synchronized (lock) {
+                l = line;
+                // Another thread can be started after stop() while this one was blocked by writing
+                if (player != Thread.currentThread() || l == null) {
+                    return;
+                }
+                long end = getEnd();
+                if (framePosition >= end) {
+                    if (looping && loopEnd > loopStart) {
+                        framePosition = loopStart;
+                    } else {
+                        break;
+                    }
+                }
+                int frames = (int) Math.min(CHUNK_FRAMES, getEnd() - framePosition);
+                length = frames * frameSize;
+                ByteBuffer src = buffer.duplicate();
+                src.position((int) (framePosition * frameSize));
+                src.get(chunk, 0, length);
+                framePosition += frames;
+            }
+            // Blocks until the line can receive the samples, outside the lock for allowing seeking
+            l.write(chunk, 0, length);
+        }
+        l.drain();
+        synchronized (lock) {
+            if (player == Thread.currentThread()) {
+                playing = false;
+                player = null;
+                framePosition = frameLength;
+            }
+        }
+    }
+
+    /**
+     * @param frame
+     *            the index of the frame
+     * @param channel
+     *            the channel
+     * @return the sample value normalized between -1.0 and 1.0
+     */
+    public float getSample(long frame, int channel) {
+        return getSample(buffer, (int) (frame * frameSize) + channel * (frameSize / format.getChannels()));
+    }
+
+    private float getSample(ByteBuffer buf, int index) {
+        Encoding encoding = format.getEncoding();
+        if (format.getSampleSizeInBits() == 16) {
+            int b1 = buf.get(index) & 0xFF;
+            int b2 = buf.get(index + 1) & 0xFF;
+            int val = format.isBigEndian() ? (b1 << 8) | b2 : (b2 << 8) | b1;
+            if (Encoding.PCM_SIGNED.equals(encoding)) {
+                return (short) val / 32768.0f;
+            }
+            return (val - 32768) / 32768.0f;
+        }
+        int val = buf.get(index);
+        if (Encoding.PCM_SIGNED.equals(encoding)) {
+            return val / 128.0f;
+        } else if (Encoding.PCM_UNSIGNED.equals(encoding)) {
+            return ((val & 0xFF) - 128) / 128.0f;
+        } else if (Encoding.ULAW.equals(encoding)) {
+            return ulaw2linear(val) / 32768.0f;
+        } else if (Encoding.ALAW.equals(encoding)) {
+            return alaw2linear(val) / 32768.0f;
+        }
+        return 0.0f;
+    }
+
+    // ITU-T G.711 decoding
+    static int ulaw2linear(int val) {
+        int u = ~val & 0xFF;
+        int t = ((u & 0x0F) << 3) + 0x84;
+        t <<= (u & 0x70) >> 4;
+        return (u & 0x80) != 0 ? 0x84 - t : t - 0x84;
+    }
+
+    static int alaw2linear(int val) {
+        int a = (val ^ 0x55) & 0xFF;
+        int t = (a & 0x0F) << 4;
+        int seg = (a & 0x70) >> 4;
+        if (seg == 0) {
+            t += 8;
+        } else {
+            t += 0x108;
+            if (seg > 1) {
+                t <<= seg - 1;
+            }
+        }
+        return (a & 0x80) != 0 ? t : -t;
+    }
+
+    /**
+     * Get the minimum and maximum values of the samples for drawing the whole recording. The overview is computed once.
+     *
+     * @return for each channel, the min and max pairs of {@link #OVERVIEW_SIZE} ranges of frames (or less when the
+     *         recording is shorter)
+     */
+    public float[][] getOverview() {
+        float[][] result = overview;
+        if (result == null) {
+            synchronized (this) {
+                result = overview;
+                if (result == null) {
+                    result = computeOverview();
+                    overview = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private float[][] computeOverview() {
+        int channels = Math.max(1, format.getChannels());
+        int bins = (int) Math.min(OVERVIEW_SIZE, frameLength);
+        float[][] values = new float[channels][bins * 2];
+        int sampleSize = frameSize / channels;
+        ByteBuffer buf = buffer.duplicate();
+        for (int b = 0; b < bins; b++) {
+            long start = frameLength * b / bins;
+            long end = frameLength * (b + 1) / bins;
+            for (int c = 0; c < channels; c++) {
+                float min = Float.MAX_VALUE;
+                float max = -Float.MAX_VALUE;
+                for (long f = start; f < end; f++) {
+                    float v = getSample(buf, (int) (f * frameSize) + c * sampleSize);
+                    if (v < min) {
+                        min = v;
+                    }
+                    if (v > max) {
+                        max = v;
+                    }
+                }
+                values[c][b * 2] = min;
+                values[c][b * 2 + 1] = max;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return a stream of the audio samples, without the duration of reading the DICOM file
+     */
+    public AudioInputStream getAudioInputStream() {
+        return new AudioInputStream(new BufferInputStream(buffer.duplicate()), format, frameLength);
+    }
+
+    /**
+     * Write a WAVE file. When the WAVE format can contain the samples without conversion (unsigned 8-bit, signed 16-bit
+     * little endian, mu-law or A-law), the samples are transferred directly from the DICOM file to the WAVE file.
+     *
+     * @param outFile
+     *            the WAVE file
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public void exportWav(File outFile) throws IOException {
+        int formatTag = getWaveFormatTag();
+        if (formatTag == 0) {
+            // Let Java Sound convert the samples
+            try (AudioInputStream stream = AudioSystem.getAudioInputStream(getWaveCompatibleFormat(),
+                getAudioInputStream())) {
+                AudioSystem.write(stream, AudioFileFormat.Type.WAVE, outFile);
+            }
+            return;
+        }
+        long dataLength = frameLength * frameSize;
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                        FileChannel out = FileChannel.open(outFile.toPath(), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = buildWaveHeader(formatTag, dataLength);
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            long position = 0;
+            while (position < dataLength) {
+                long n = in.transferTo(offset + position, dataLength - position, out);
+                if (n <= 0) {
+                    throw new IOException("Cannot transfer the audio data"); //$NON-NLS-1$
+                }
+                position += n;
+            }
+            if ((dataLength & 1) != 0) {
+                // RIFF chunks are word aligned
+                out.write(ByteBuffer.wrap(new byte[1]));
+            }
+        }
+    }
+
+    public void exportAu(File outFile) throws IOException {
+        try (AudioInputStream stream = getAudioInputStream()) {
+            AudioSystem.write(stream, AudioFileFormat.Type.AU, outFile);
+        }
+    }
+
+    private int getWaveFormatTag() {
+        Encoding encoding = format.getEncoding();
+        int bits = format.getSampleSizeInBits();
+        if (bits == 8) {
+            if (Encoding.PCM_UNSIGNED.equals(encoding)) {
+                return 1;
+            } else if (Encoding.ALAW.equals(encoding)) {
+                return 6;
+            } else if (Encoding.ULAW.equals(encoding)) {
+                return 7;
+            }
+        } else if (bits == 16 && Encoding.PCM_SIGNED.equals(encoding) && !format.isBigEndian()) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private AudioFormat getWaveCompatibleFormat() {
+        int bits = format.getSampleSizeInBits();
+        return new AudioFormat(format.getSampleRate(), bits, format.getChannels(), bits != 8, false);
+    }
+
+    private ByteBuffer buildWaveHeader(int formatTag, long dataLength) {
+        int channels = format.getChannels();
+        int sampleRate = Math.round(format.getSampleRate());
+        boolean pcm = formatTag == 1;
+        // Non-PCM formats require the cbSize field and the fact chunk
+        int fmtLength = pcm ? 16 : 18;
+        int factLength = pcm ? 0 : 12;
+        ByteBuffer header = ByteBuffer.allocate(20 + fmtLength + factLength + 8).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[] { 'R', 'I', 'F', 'F' });
+        header.putInt((int) (4 + 8 + fmtLength + factLength + 8 + dataLength + (dataLength & 1)));
+        header.put(new byte[] { 'W', 'A', 'V', 'E', 'f', 'm', 't', ' ' });
+        header.putInt(fmtLength);
+        header.putShort((short) formatTag);
+        header.putShort((short) channels);
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * frameSize);
+        header.putShort((short) frameSize);
+        header.putShort((short) format.getSampleSizeInBits());
+        if (!pcm) {
+            header.putShort((short) 0);
+            header.put(new byte[] { 'f', 'a', 'c', 't' });
+            header.putInt(4);
+            header.putInt((int) frameLength);
+        }
+        header.put(new byte[] { 'd', 'a', 't', 'a' });
+        header.putInt((int) dataLength);
+        header.flip();
+        return header;
+    }
+
+    private static class BufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        BufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buf.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int k = (int) Math.max(0, Math.min(n, buf.remaining()));
+            buf.position(buf.position() + k);
+            return k;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+    }
+}
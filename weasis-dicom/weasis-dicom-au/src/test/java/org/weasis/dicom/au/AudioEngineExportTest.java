@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.au;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFormat;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * WAVE export of the formats which are not written directly as PCM (see {@link AudioEngineTest} for the PCM formats).
+ */
+public class AudioEngineExportTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File writeDicomLikeFile(byte[] samples) throws IOException {
+        byte[] content = new byte[AudioEngineTest.OFFSET + samples.length + 16];
+        Arrays.fill(content, (byte) 0x7F);
+        System.arraycopy(samples, 0, content, AudioEngineTest.OFFSET, samples.length);
+        File file = folder.newFile();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    @Test
+    public void testNonPcm() throws Exception {
+        // The fmt extension and the fact chunk, the odd data length is padded
+        AudioFormat ulaw = new AudioFormat(AudioFormat.Encoding.ULAW, 8000.0f, 8, 1, 1, 8000.0f, false);
+        byte[] ulawSamples = AudioEngineTest.buildSamples(ulaw, 0, 1001);
+        AudioEngine engine = new AudioEngine(writeDicomLikeFile(ulawSamples), AudioEngineTest.OFFSET,
+            ulawSamples.length, ulaw);
+        File wav = folder.newFile("out.wav"); //$NON-NLS-1$
+        engine.exportWav(wav);
+        byte[] content = Files.readAllBytes(wav.toPath());
+        int headerLength = 12 + 8 + 18 + 12 + 8;
+        assertThat(content).hasSize(headerLength + ulawSamples.length + 1);
+        assertThat(Arrays.copyOfRange(content, headerLength, headerLength + ulawSamples.length))
+            .isEqualTo(ulawSamples);
+        assertThat(ByteBuffer.wrap(content, 4, 4).order(ByteOrder.LITTLE_ENDIAN).getInt())
+            .isEqualTo(content.length - 8);
+    }
+
+    @Test
+    public void testBigEndian() throws Exception {
+        // Converted by Java Sound, same sample values
+        AudioFormat littleEndian = new AudioFormat(8000.0f, 16, 2, true, false);
+        byte[] samples = AudioEngineTest.buildSamples(littleEndian, 0, 10_000);
+        byte[] swapped = new byte[samples.length];
+        for (int i = 0; i < samples.length; i += 2) {
+            swapped[i] = samples[i + 1];
+            swapped[i + 1] = samples[i];
+        }
+        AudioFormat bigEndian = new AudioFormat(8000.0f, 16, 2, true, true);
+        AudioEngine engine =
+            new AudioEngine(writeDicomLikeFile(swapped), AudioEngineTest.OFFSET, swapped.length, bigEndian);
+        File wav = folder.newFile("out.wav"); //$NON-NLS-1$
+        engine.exportWav(wav);
+        byte[] content = Files.readAllBytes(wav.toPath());
+        assertThat(Arrays.copyOfRange(content, content.length - samples.length, content.length)).isEqualTo(samples);
+    }
+}
@@ -0,0 +1,349 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.au;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioFormat.Encoding;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.SourceDataLine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.mockito.Mockito;
+
+@RunWith(Parameterized.class)
+public class AudioEngineTest {
+    // Bytes before the Waveform Data in the test file
+    static final int OFFSET = 132;
+    private static final int FRAMES = 10_000;
+    private static final float RATE = 8000.0f;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AudioFormat format;
+    private final int frameSize;
+    private final int sampleSize;
+
+    public AudioEngineTest(String name, AudioFormat format) {
+        this.format = format;
+        this.frameSize = format.getFrameSize();
+        this.sampleSize = frameSize / format.getChannels();
+    }
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> formats() {
+        List<Object[]> list = new ArrayList<>();
+        for (int channels = 1; channels <= 2; channels++) {
+            String suffix = channels == 1 ? " mono" : " stereo"; //$NON-NLS-1$ //$NON-NLS-2$
+            list.add(new Object[] { "8-bit unsigned" + suffix, //$NON-NLS-1$
+                new AudioFormat(Encoding.PCM_UNSIGNED, RATE, 8, channels, channels, RATE, false) });
+            list.add(new Object[] { "8-bit signed" + suffix, //$NON-NLS-1$
+                new AudioFormat(Encoding.PCM_SIGNED, RATE, 8, channels, channels, RATE, false) });
+            list.add(new Object[] { "16-bit signed" + suffix, //$NON-NLS-1$
+                new AudioFormat(Encoding.PCM_SIGNED, RATE, 16, channels, channels * 2, RATE, false) });
+        }
+        return list;
+    }
+
+    /**
+     * Build the samples from firstFrame, each value depends on the index of the frame and on the channel.
+     */
+    static byte[] buildSamples(AudioFormat format, long firstFrame, int frames) {
+        byte[] data = new byte[frames * format.getFrameSize()];
+        ByteBuffer buf = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        for (int f = 0; f < frames; f++) {
+            for (int c = 0; c < format.getChannels(); c++) {
+                double v = Math.sin((firstFrame + f) * (c + 1) * 0.01) * 0.9;
+                if (format.getSampleSizeInBits() == 16) {
+                    buf.putShort((short) (v * Short.MAX_VALUE));
+                } else if (Encoding.PCM_UNSIGNED.equals(format.getEncoding())) {
+                    buf.put((byte) (v * 127 + 128));
+                } else {
+                    buf.put((byte) (v * 127));
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * @return the normalized value of the sample at index in the little endian samples
+     */
+    private float decode(byte[] samples, int index) {
+        if (format.getSampleSizeInBits() == 16) {
+            return (short) ((samples[index + 1] << 8) | (samples[index] & 0xFF)) / 32768.0f;
+        } else if (Encoding.PCM_UNSIGNED.equals(format.getEncoding())) {
+            return ((samples[index] & 0xFF) - 128) / 128.0f;
+        }
+        return samples[index] / 128.0f;
+    }
+
+    File writeDicomLikeFile(byte[] samples) throws IOException {
+        byte[] content = new byte[OFFSET + samples.length + 16];
+        Arrays.fill(content, (byte) 0x7F);
+        System.arraycopy(samples, 0, content, OFFSET, samples.length);
+        File file = folder.newFile();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    /**
+     * A line recording the written bytes and blocking briefly like a line playing them.
+     */
+    static SourceDataLine mockLine(ByteArrayOutputStream written, AtomicInteger writes) {
+        SourceDataLine line = Mockito.mock(SourceDataLine.class);
+        Mockito.when(line.getBufferSize()).thenReturn(0);
+        Mockito.when(line.available()).thenReturn(0);
+        Mockito.when(line.write(Mockito.any(byte[].class), Mockito.anyInt(), Mockito.anyInt())).thenAnswer(i -> {
+            byte[] b = i.getArgument(0);
+            int off = i.getArgument(1);
+            int len = i.getArgument(2);
+            synchronized (written) {
+                written.write(b, off, len);
+            }
+            writes.incrementAndGet();
+            Thread.sleep(1);
+            return len;
+        });
+        return line;
+    }
+
+    static void waitForEnd(AudioEngine engine) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10_000;
+        while (engine.isPlaying() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(5);
+        }
+        assertThat(engine.isPlaying()).isFalse();
+    }
+
+    @Test
+    public void testSeek() throws Exception {
+        byte[] samples = buildSamples(format, 0, FRAMES);
+        AudioEngine engine = new AudioEngine(writeDicomLikeFile(samples), OFFSET, samples.length, format);
+        assertThat(engine.getFrameLength()).isEqualTo(FRAMES);
+        assertThat(engine.getMicrosecondLength()).isEqualTo(1_250_000L);
+
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        SourceDataLine line = mockLine(written, new AtomicInteger());
+        engine.open(line);
+        Mockito.verify(line).open(format);
+
+        engine.setFramePosition(engine.microsecondsToFrames(500_000L));
+        assertThat(engine.getFramePosition()).isEqualTo(4000);
+        // The samples of the previous position are dropped
+        Mockito.verify(line).flush();
+
+        engine.setFramePosition(-10);
+        assertThat(engine.getFramePosition()).isZero();
+        engine.setFramePosition(FRAMES + 10);
+        assertThat(engine.getFramePosition()).isEqualTo(FRAMES);
+
+        // Play from the position until the end, sample-accurate
+        int start = 1234;
+        engine.setFramePosition(start);
+        engine.play();
+        waitForEnd(engine);
+        assertThat(written.toByteArray())
+            .isEqualTo(Arrays.copyOfRange(samples, start * frameSize, samples.length));
+        assertThat(engine.getFramePosition()).isEqualTo(FRAMES);
+        Mockito.verify(line).drain();
+
+        engine.close();
+        Mockito.verify(line).close();
+        assertThat(engine.getLine()).isNull();
+    }
+
+    @Test
+    public void testLoop() throws Exception {
+        byte[] samples = buildSamples(format, 0, FRAMES);
+        AudioEngine engine = new AudioEngine(writeDicomLikeFile(samples), OFFSET, samples.length, format);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        AtomicInteger writes = new AtomicInteger();
+        engine.open(mockLine(written, writes));
+
+        // Shorter than a written chunk: one write by loop
+        int loopStart = 3000;
+        int loopEnd = 3700;
+        engine.setLoopPoints(loopStart, loopEnd);
+        engine.setLooping(true);
+        assertThat(engine.isLooping()).isTrue();
+        engine.setFramePosition(loopStart);
+        engine.play();
+        long timeout = System.currentTimeMillis() + 10_000;
+        while (writes.get() < 3 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(5);
+        }
+        engine.stop();
+        assertThat(engine.isPlaying()).isFalse();
+
+        byte[] loop = Arrays.copyOfRange(samples, loopStart * frameSize, loopEnd * frameSize);
+        byte[] result;
+        synchronized (written) {
+            result = written.toByteArray();
+        }
+        assertThat(result.length).isGreaterThanOrEqualTo(3 * loop.length);
+        assertThat(result.length % loop.length).isZero();
+        for (int i = 0; i < result.length; i += loop.length) {
+            assertThat(Arrays.copyOfRange(result, i, i + loop.length)).isEqualTo(loop);
+        }
+        // The position stays within the loop
+        assertThat(engine.getFramePosition()).isBetween((long) loopStart, (long) loopEnd);
+
+        // Invalid loop points are clamped
+        engine.setLoopPoints(FRAMES - 10, 5);
+        engine.setFramePosition(FRAMES);
+        written.reset();
+        engine.play();
+        waitForEnd(engine);
+        assertThat(written.size()).isZero();
+        engine.close();
+    }
+
+    @Test
+    public void testOverview() throws Exception {
+        byte[] samples = buildSamples(format, 0, FRAMES);
+        AudioEngine engine = new AudioEngine(writeDicomLikeFile(samples), OFFSET, samples.length, format);
+        float[][] overview = engine.getOverview();
+        int channels = format.getChannels();
+        assertThat(overview).hasSize(channels);
+        assertThat(engine.getOverview()).isSameAs(overview);
+
+        int bins = AudioEngine.OVERVIEW_SIZE;
+        for (int c = 0; c < channels; c++) {
+            assertThat(overview[c]).hasSize(bins * 2);
+            for (int b = 0; b < bins; b++) {
+                long start = (long) FRAMES * b / bins;
+                long end = (long) FRAMES * (b + 1) / bins;
+                float min = Float.MAX_VALUE;
+                float max = -Float.MAX_VALUE;
+                for (long f = start; f < end; f++) {
+                    float v = engine.getSample(f, c);
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+                assertThat(overview[c][b * 2]).isEqualTo(min);
+                assertThat(overview[c][b * 2 + 1]).isEqualTo(max);
+            }
+        }
+        // Sample values of each channel
+        for (int c = 0; c < channels; c++) {
+            assertThat(engine.getSample(100, c)).isEqualTo(decode(samples, 100 * frameSize + c * sampleSize));
+        }
+
+        // Shorter than the overview: one range by frame
+        byte[] shortSamples = buildSamples(format, 0, 100);
+        engine = new AudioEngine(writeDicomLikeFile(shortSamples), OFFSET, shortSamples.length, format);
+        overview = engine.getOverview();
+        assertThat(overview[0]).hasSize(200);
+        assertThat(overview[0][20]).isEqualTo(overview[0][21]).isEqualTo(engine.getSample(10, 0));
+    }
+
+    @Test
+    public void testExportWav() throws Exception {
+        byte[] samples = buildSamples(format, 0, FRAMES);
+        AudioEngine engine = new AudioEngine(writeDicomLikeFile(samples), OFFSET, samples.length, format);
+        File wav = folder.newFile("out.wav"); //$NON-NLS-1$
+        engine.exportWav(wav);
+
+        byte[] expected = samples.clone();
+        if (format.getSampleSizeInBits() == 8 && Encoding.PCM_SIGNED.equals(format.getEncoding())) {
+            // 8-bit WAVE samples are unsigned, converted by Java Sound
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] ^= 0x80;
+            }
+        }
+        byte[] content = Files.readAllBytes(wav.toPath());
+        assertThat(content).hasSize(44 + samples.length);
+        assertThat(Arrays.copyOfRange(content, 44, content.length)).isEqualTo(expected);
+        AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(wav);
+        assertThat(fileFormat.getType()).isEqualTo(AudioFileFormat.Type.WAVE);
+        assertThat(fileFormat.getFrameLength()).isEqualTo(FRAMES);
+        int bits = format.getSampleSizeInBits();
+        assertThat(fileFormat.getFormat().matches(new AudioFormat(RATE, bits, format.getChannels(), bits != 8, false)))
+            .isTrue();
+    }
+
+    @Test
+    public void testOneHour() throws Exception {
+        long frames = 3600L * 8000L;
+        long length = frames * frameSize;
+        // The byte positions of writeSamples() and getSample() are int values
+        assertThat(length).isLessThanOrEqualTo(Integer.MAX_VALUE);
+        assertThat((frames - 1) * frameSize + (format.getChannels() - 1) * sampleSize)
+            .isLessThan(Integer.MAX_VALUE);
+
+        int window = 10_000;
+        long middle = frames / 2;
+        long last = frames - window;
+        byte[] middleSamples = buildSamples(format, middle, window);
+        byte[] lastSamples = buildSamples(format, last, window);
+        File file = folder.newFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) { //$NON-NLS-1$
+            // Sparse file, only the samples of the checked ranges are written
+            raf.setLength(OFFSET + length);
+            raf.seek(OFFSET + middle * frameSize);
+            raf.write(middleSamples);
+            raf.seek(OFFSET + last * frameSize);
+            raf.write(lastSamples);
+        }
+
+        AudioEngine engine = new AudioEngine(file, OFFSET, length, format);
+        assertThat(engine.getFrameLength()).isEqualTo(28_800_000L);
+        assertThat(engine.getMicrosecondLength()).isEqualTo(3_600_000_000L);
+        for (int c = 0; c < format.getChannels(); c++) {
+            for (int i : new int[] { 0, 1, window / 2, window - 1 }) {
+                int index = i * frameSize + c * sampleSize;
+                assertThat(engine.getSample(middle + i, c)).isEqualTo(decode(middleSamples, index));
+                assertThat(engine.getSample(last + i, c)).isEqualTo(decode(lastSamples, index));
+            }
+        }
+
+        // Seek to 59:59.5 and play until the end, from the exact frame
+        long seek = engine.microsecondsToFrames(3_599_500_000L);
+        assertThat(seek).isEqualTo(28_796_000L);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        engine.open(mockLine(written, new AtomicInteger()));
+        engine.setFramePosition(seek);
+        assertThat(engine.getFramePosition()).isEqualTo(seek);
+        engine.play();
+        waitForEnd(engine);
+        assertThat(written.toByteArray())
+            .isEqualTo(Arrays.copyOfRange(lastSamples, (int) (seek - last) * frameSize, lastSamples.length));
+        assertThat(engine.getFramePosition()).isEqualTo(frames);
+        engine.close();
+
+        // Beyond the int positions, rejected before mapping the file
+        assertThatThrownBy(() -> new AudioEngine(file, OFFSET, Integer.MAX_VALUE + 1L, format))
+            .isInstanceOf(IOException.class);
+    }
+}
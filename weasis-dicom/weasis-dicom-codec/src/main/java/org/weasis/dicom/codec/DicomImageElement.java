@@ -33,12 +33,16 @@ import org.weasis.core.api.media.data.ImageElement;
 import org.weasis.core.api.media.data.SoftHashMap;
 import org.weasis.core.api.media.data.TagReadable;
 import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.metrics.CacheMetrics;
+import org.weasis.core.api.metrics.MetricRegistry;
 import org.weasis.core.api.util.LangUtil;
 import org.weasis.dicom.codec.display.PresetWindowLevel;
 import org.weasis.dicom.codec.display.WindowAndPresetsOp;
 import org.weasis.dicom.codec.geometry.GeometryOfSlice;
+import org.weasis.dicom.codec.geometry.SlicePlane;
 import org.weasis.dicom.codec.utils.DicomImageUtils;
 import org.weasis.dicom.codec.utils.LutParameters;
+import org.weasis.dicom.codec.utils.OverlayUtils;
 import org.weasis.opencv.data.ImageCV;
 import org.weasis.opencv.data.LookupTableCV;
 import org.weasis.opencv.data.PlanarImage;
@@ -50,9 +54,12 @@ public class DicomImageElement extends ImageElement {
     private static final Logger LOGGER = LoggerFactory.getLogger(DicomImageElement.class);
 
     private static final SoftHashMap<LutParameters, LookupTableCV> LUT_Cache = new SoftHashMap<>();
+    private static final CacheMetrics LUT_CACHE_METRICS =
+        new CacheMetrics(MetricRegistry.getDefault(), "cache.lut"); //$NON-NLS-1$
 
     private volatile List<PresetWindowLevel> windowingPresetCollection = null;
     private volatile Collection<LutShape> lutShapeCollection = null;
+    private volatile DispPlane dispPlane = null;
 
     public DicomImageElement(DcmMediaReader mediaIO, Object key) {
         super(mediaIO, key);
@@ -386,7 +393,7 @@ public class DicomImageElement extends ImageElement {
         if (lutparams == null) {
             return null;
         }
-        LookupTableCV modalityLookup = LUT_Cache.get(lutparams);
+        LookupTableCV modalityLookup = LUT_CACHE_METRICS.record(LUT_Cache.get(lutparams));
 
         if (modalityLookup != null) {
             return modalityLookup;
@@ -755,6 +762,34 @@ public class DicomImageElement extends ImageElement {
         return null;
     }
 
+    /**
+     * @return the plane of {@link #getDispSliceGeometry()}, kept until the pixel size changes (calibration). Null when
+     *         the image has no geometry or when its direction cosines are not orthogonal unit vectors.
+     */
+    public SlicePlane getDispSlicePlane() {
+        DispPlane p = dispPlane;
+        double pixelSize = getPixelSize();
+        double rescaleX = getRescaleX();
+        double rescaleY = getRescaleY();
+        if (p == null || p.pixelSize != pixelSize || p.rescaleX != rescaleX || p.rescaleY != rescaleY) {
+            GeometryOfSlice geometry = getDispSliceGeometry();
+            if (geometry == null) {
+                return null;
+            }
+            SlicePlane plane;
+            try {
+                plane = new SlicePlane(geometry);
+            } catch (IllegalArgumentException e) {
+                // Invalid ImageOrientationPatient: no crossline instead of an exception on the EDT (kept to log once)
+                LOGGER.warn("Cannot build the slice plane of {}: {}", this, e.getMessage()); //$NON-NLS-1$
+                plane = null;
+            }
+            p = new DispPlane(plane, pixelSize, rescaleX, rescaleY);
+            dispPlane = p;
+        }
+        return p.plane;
+    }
+
     public GeometryOfSlice getSliceGeometry() {
         double[] imgOr = TagD.getTagValue(this, Tag.ImageOrientationPatient, double[].class);
         if (imgOr != null && imgOr.length == 6) {
@@ -778,4 +813,23 @@ public class DicomImageElement extends ImageElement {
         return null;
     }
 
+    @Override
+    public void dispose() {
+        OverlayUtils.removeMasks(this);
+        super.dispose();
+    }
+
+    private static final class DispPlane {
+        private final SlicePlane plane;
+        private final double pixelSize;
+        private final double rescaleX;
+        private final double rescaleY;
+
+        DispPlane(SlicePlane plane, double pixelSize, double rescaleX, double rescaleY) {
+            this.plane = plane;
+            this.pixelSize = pixelSize;
+            this.rescaleX = rescaleX;
+            this.rescaleY = rescaleY;
+        }
+    }
 }
@@ -81,8 +81,11 @@ import org.weasis.core.api.media.data.MediaSeriesGroup;
 import org.weasis.core.api.media.data.Series;
 import org.weasis.core.api.media.data.SimpleTagable;
 import org.weasis.core.api.media.data.SoftHashMap;
+import org.weasis.core.api.media.data.TagMap;
 import org.weasis.core.api.media.data.TagView;
 import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.metrics.Histogram;
+import org.weasis.core.api.metrics.MetricRegistry;
 import org.weasis.core.api.service.BundleTools;
 import org.weasis.core.api.util.FileUtil;
 import org.weasis.dicom.codec.TagD.Level;
@@ -104,6 +107,9 @@ public class DicomMediaIO extends ImageReader implements DcmMediaReader {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DicomMediaIO.class);
 
+    private static final Histogram HEADER_TIMER = MetricRegistry.getDefault().timer("dicom.header.read"); //$NON-NLS-1$
+    private static final Histogram DECODE_TIMER = MetricRegistry.getDefault().timer("dicom.image.decode"); //$NON-NLS-1$
+
     public static final File DICOM_EXPORT_DIR = AppProperties.buildAccessibleTempDirectory("dicom"); //$NON-NLS-1$
     public static final File CACHE_UNCOMPRESSED_DIR =
         AppProperties.buildAccessibleTempDirectory(AppProperties.FILE_CACHE_DIR.getName(), "dcm-rawcv"); //$NON-NLS-1$
@@ -318,7 +324,7 @@ public class DicomMediaIO extends ImageReader implements DcmMediaReader {
         super(dicomImageReaderSpi);
         this.uri = Objects.requireNonNull(uri);
         this.numberOfFrame = 0;
-        this.tags = new HashMap<>();
+        this.tags = new TagMap();
         this.mimeType = MIMETYPE;
         this.fileCache = new FileCache(this);
     }
@@ -707,7 +713,9 @@ public class DicomMediaIO extends ImageReader implements DcmMediaReader {
                 LOGGER.debug("Start reading dicom image frame: {} sopUID: {}", //$NON-NLS-1$
                     frame, TagD.getTagValue(this, Tag.SOPInstanceUID));
 
+                long start = System.nanoTime();
                 PlanarImage img = getUncacheImage(media, frame);
+                DECODE_TIMER.recordSince(start);
                 if (pmi == PhotometricInterpretation.PALETTE_COLOR) {
                     img = DicomImageUtils.getRGBImageFromPaletteColorModel(img, getDicomObject());
                 }
@@ -998,7 +1006,7 @@ public class DicomMediaIO extends ImageReader implements DcmMediaReader {
         if (key instanceof Integer) {
             if ((Integer) key > 0) {
                 // Clone the shared tag
-                Map<TagW, Object> tagList = new HashMap<>(tags);
+                Map<TagW, Object> tagList = new TagMap(tags);
                 SimpleTagable tagable = new SimpleTagable(tagList);
                 if (DicomMediaUtils.writePerFrameFunctionalGroupsSequence(tagable, getDicomObject(), (Integer) key)) {
                     DicomMediaUtils.computeSlicePositionVector(tagable);
@@ -1314,6 +1322,7 @@ public class DicomMediaIO extends ImageReader implements DcmMediaReader {
             return dcmMetadata;
         }
 
+        long start = System.nanoTime();
         try {
             readingHeader = true;
             if (iis == null) {
@@ -1381,6 +1390,7 @@ public class DicomMediaIO extends ImageReader implements DcmMediaReader {
                 }
             }
 
+            HEADER_TIMER.recordSince(start);
             HEADER_CACHE.put(this, metadata);
             return metadata;
         } finally {
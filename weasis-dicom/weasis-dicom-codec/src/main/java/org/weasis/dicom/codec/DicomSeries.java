@@ -12,8 +12,9 @@ package org.weasis.dicom.codec;
 
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.dcm4che3.data.Tag;
 import org.slf4j.Logger;
@@ -21,7 +22,6 @@ import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.ObservableEvent;
 import org.weasis.core.api.explorer.model.DataExplorerModel;
 import org.weasis.core.api.gui.util.Filter;
-import org.weasis.core.api.gui.util.MathUtil;
 import org.weasis.core.api.image.CvUtil;
 import org.weasis.core.api.media.data.Series;
 import org.weasis.core.api.media.data.SeriesEvent;
@@ -39,6 +39,8 @@ public class DicomSeries extends Series<DicomImageElement> {
 
     private static volatile PreloadingTask preloadingTask;
 
+    private final Map<Comparator<DicomImageElement>, SliceIndex<DicomImageElement>> sliceIndexes = new HashMap<>(4);
+
     public DicomSeries(String subseriesInstanceUID) {
         this(subseriesInstanceUID, null, defaultTagView);
     }
@@ -132,65 +134,54 @@ public class DicomSeries extends Series<DicomImageElement> {
     }
 
     @Override
-    public DicomImageElement getNearestImage(double location, int offset, Filter<DicomImageElement> filter,
+    protected void mediaListChanged() {
+        synchronized (this) {
+            sliceIndexes.clear();
+        }
+    }
+
+    /**
+     * Returns the index of the slice locations for the list of images. The index is cached only without filter
+     * (filters can change dynamically) and is rebuilt when images are added.
+     */
+    private SliceIndex<DicomImageElement> getSliceIndex(Filter<DicomImageElement> filter,
         Comparator<DicomImageElement> sort) {
         Iterable<DicomImageElement> mediaList = getMedias(filter, sort);
-        DicomImageElement nearest = null;
-        int index = 0;
-        int bestIndex = -1;
         synchronized (this) {
-            double bestDiff = Double.MAX_VALUE;
-            for (Iterator<DicomImageElement> iter = mediaList.iterator(); iter.hasNext();) {
-                DicomImageElement dcm = iter.next();
-                double[] val = (double[]) dcm.getTagValue(TagW.SlicePosition);
-                if (val != null) {
-                    double diff = Math.abs(location - (val[0] + val[1] + val[2]));
-                    if (diff < bestDiff) {
-                        bestDiff = diff;
-                        nearest = dcm;
-                        bestIndex = index;
-                        if (MathUtil.isEqualToZero(diff)) {
-                            break;
-                        }
-                    }
-                }
-                index++;
+            if (filter != null) {
+                return SliceIndex.build(mediaList);
             }
+            return sliceIndexes.computeIfAbsent(sort == null ? mediaOrder : sort, k -> SliceIndex.build(mediaList));
         }
+    }
+
+    @Override
+    public DicomImageElement getNearestImage(double location, int offset, Filter<DicomImageElement> filter,
+        Comparator<DicomImageElement> sort) {
+        SliceIndex<DicomImageElement> index = getSliceIndex(filter, sort);
         if (offset > 0) {
-            return getMedia(bestIndex + offset, filter, sort);
+            return getMedia(index.getNearestPosition(location) + offset, filter, sort);
         }
-        return nearest;
+        return index.getNearest(location);
     }
 
     @Override
     public int getNearestImageIndex(double location, int offset, Filter<DicomImageElement> filter,
         Comparator<DicomImageElement> sort) {
-        Iterable<DicomImageElement> mediaList = getMedias(filter, sort);
-        int index = 0;
-        int bestIndex = -1;
-        synchronized (this) {
-            double bestDiff = Double.MAX_VALUE;
-            for (Iterator<DicomImageElement> iter = mediaList.iterator(); iter.hasNext();) {
-                DicomImageElement dcm = iter.next();
-                double[] val = (double[]) dcm.getTagValue(TagW.SlicePosition);
-                if (val != null) {
-                    double diff = Math.abs(location - (val[0] + val[1] + val[2]));
-                    if (diff < bestDiff) {
-                        bestDiff = diff;
-                        bestIndex = index;
-                        if (MathUtil.isEqualToZero(diff)) {
-                            break;
-                        }
-                    }
-                }
-                index++;
-            }
-        }
-
+        int bestIndex = getSliceIndex(filter, sort).getNearestPosition(location);
         return (offset > 0) ? (bestIndex + offset) : bestIndex;
     }
 
+    /**
+     * @return the images with the smallest and the largest slice location (the first of the list for the same
+     *         location), the values can be null when the images have no slice position.
+     */
+    public DicomImageElement[] getSliceLocationBounds(Filter<DicomImageElement> filter,
+        Comparator<DicomImageElement> sort) {
+        SliceIndex<DicomImageElement> index = getSliceIndex(filter, sort);
+        return new DicomImageElement[] { index.getFirst(), index.getLast() };
+    }
+
     public static synchronized void startPreloading(DicomSeries series, List<DicomImageElement> imageList,
         int currentIndex) {
         if (series != null && imageList != null) {
@@ -10,11 +10,27 @@
  *******************************************************************************/
 package org.weasis.dicom.codec;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
 import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Sequence;
 import org.dcm4che3.data.Tag;
+import org.weasis.dicom.codec.utils.DicomMediaUtils;
 
 public class PRSpecialElement extends DicomSpecialElement {
 
+    // Compared by reference: all the frames or all the instances of a series
+    static final int[] ALL_FRAMES = new int[0];
+    static final Map<String, int[]> ALL_INSTANCES = Collections.emptyMap();
+
+    // SeriesInstanceUID => (SOPInstanceUID => sorted frames)
+    private volatile Map<String, Map<String, int[]>> referencedImages;
+
     public PRSpecialElement(DicomMediaIO mediaIO) {
         super(mediaIO);
     }
@@ -44,4 +60,91 @@ public class PRSpecialElement extends DicomSpecialElement {
             label = buf.toString();
         }
     }
+
+    public Set<String> getReferencedSeriesInstanceUIDSet() {
+        return getReferencedImages().keySet();
+    }
+
+    /**
+     * Same result as isSopuidInReferencedSeriesSequence() with the Referenced Series Sequence, but with hash lookups
+     * on references parsed only once.
+     */
+    public boolean containsSopInstanceUIDReference(String seriesUID, String sopUID, Integer dicomFrameNumber) {
+        return isReferenced(getReferencedImages(), seriesUID, sopUID, dicomFrameNumber);
+    }
+
+    private Map<String, Map<String, int[]>> getReferencedImages() {
+        Map<String, Map<String, int[]>> refs = referencedImages;
+        if (refs == null) {
+            refs = buildReferencedImages(TagD.getTagValue(this, Tag.ReferencedSeriesSequence, Attributes[].class));
+            referencedImages = refs;
+        }
+        return refs;
+    }
+
+    static Map<String, Map<String, int[]>> buildReferencedImages(Attributes[] seq) {
+        if (seq == null || seq.length == 0) {
+            return Collections.emptyMap();
+        }
+        Map<String, Map<String, int[]>> refs = new HashMap<>();
+        for (Attributes item : seq) {
+            String seriesUID = item.getString(Tag.SeriesInstanceUID);
+            if (seriesUID == null) {
+                continue;
+            }
+            Map<String, int[]> sops = refs.get(seriesUID);
+            Sequence refImgs = item.getSequence(Tag.ReferencedImageSequence);
+            if (refImgs == null || refImgs.isEmpty()) {
+                refs.put(seriesUID, ALL_INSTANCES);
+                continue;
+            }
+            if (sops == null) {
+                sops = new HashMap<>();
+                refs.put(seriesUID, sops);
+            } else if (sops == ALL_INSTANCES) {
+                continue;
+            }
+            for (Attributes sop : refImgs) {
+                String sopUID = sop.getString(Tag.ReferencedSOPInstanceUID);
+                if (sopUID != null) {
+                    int[] frames = DicomMediaUtils.getIntAyrrayFromDicomElement(sop, Tag.ReferencedFrameNumber, null);
+                    sops.put(sopUID, mergeFrames(sops.get(sopUID), frames));
+                }
+            }
+        }
+        return refs;
+    }
+
+    private static int[] mergeFrames(int[] previous, int[] frames) {
+        if (frames == null || frames.length == 0 || previous == ALL_FRAMES) {
+            return ALL_FRAMES;
+        }
+        Set<Integer> result = new TreeSet<>();
+        if (previous != null) {
+            for (int f : previous) {
+                result.add(f);
+            }
+        }
+        for (int f : frames) {
+            result.add(f);
+        }
+        return result.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    static boolean isReferenced(Map<String, Map<String, int[]>> refs, String seriesUID, String sopUID,
+        Integer dicomFrameNumber) {
+        Map<String, int[]> sops = refs.get(seriesUID);
+        if (sops == null) {
+            return false;
+        }
+        if (sops == ALL_INSTANCES) {
+            return true;
+        }
+        int[] frames = sops.get(sopUID);
+        if (frames == null) {
+            return false;
+        }
+        return dicomFrameNumber == null || frames == ALL_FRAMES
+            || Arrays.binarySearch(frames, dicomFrameNumber) >= 0;
+    }
 }
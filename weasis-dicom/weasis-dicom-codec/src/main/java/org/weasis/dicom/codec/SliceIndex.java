@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.weasis.core.api.gui.util.MathUtil;
+import org.weasis.core.api.media.data.TagReadable;
+import org.weasis.core.api.media.data.TagW;
+
+/**
+ * Index of the slice locations (sum of the components of {@link TagW#SlicePosition}, i.e. the position along the
+ * normal of the plane) of a list of images. The images are sorted by location and then by their position in the list,
+ * so several phases at the same location form a group where the first image of the list comes first.
+ * <p>
+ * The results are the same as a scan of the list keeping the first image with the smallest distance, and stopping at
+ * the first image located at less than {@link MathUtil#DOUBLE_EPSILON}.
+ */
+final class SliceIndex<E extends TagReadable> {
+
+    private final double[] locations;
+    private final int[] positions;
+    private final int[] groupFirst;
+    private final Object[] elements;
+
+    private SliceIndex(double[] locations, int[] positions, int[] groupFirst, Object[] elements) {
+        this.locations = locations;
+        this.positions = positions;
+        this.groupFirst = groupFirst;
+        this.elements = elements;
+    }
+
+    static <E extends TagReadable> SliceIndex<E> build(Iterable<E> list) {
+        int size = list instanceof List ? ((List<E>) list).size() : 16;
+        double[] locs = new double[size];
+        Object[] elems = new Object[size];
+        Integer[] order = new Integer[size];
+        int n = 0;
+        int index = 0;
+        for (E e : list) {
+            double[] val = (double[]) e.getTagValue(TagW.SlicePosition);
+            if (val != null) {
+                if (n == locs.length) {
+                    int newSize = n * 2 + 1;
+                    locs = Arrays.copyOf(locs, newSize);
+                    elems = Arrays.copyOf(elems, newSize);
+                    order = Arrays.copyOf(order, newSize);
+                }
+                locs[n] = val[0] + val[1] + val[2];
+                elems[n] = e;
+                // Position in the list
+                order[n] = index;
+                n++;
+            }
+            index++;
+        }
+
+        // Sort by location then by position in the list
+        final double[] unsortedLocs = locs;
+        final int[] listPos = new int[n];
+        Integer[] idx = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            listPos[i] = order[i];
+            idx[i] = i;
+        }
+        Arrays.sort(idx, (a, b) -> {
+            int c = Double.compare(unsortedLocs[a], unsortedLocs[b]);
+            return c != 0 ? c : Integer.compare(listPos[a], listPos[b]);
+        });
+
+        double[] locations = new double[n];
+        int[] positions = new int[n];
+        int[] groupFirst = new int[n];
+        Object[] elements = new Object[n];
+        for (int i = 0; i < n; i++) {
+            int k = idx[i];
+            locations[i] = unsortedLocs[k];
+            positions[i] = listPos[k];
+            elements[i] = elems[k];
+            groupFirst[i] = i > 0 && locations[i - 1] == locations[i] ? groupFirst[i - 1] : i;
+        }
+        return new SliceIndex<>(locations, positions, groupFirst, elements);
+    }
+
+    public int size() {
+        return locations.length;
+    }
+
+    /**
+     * @param location
+     *            the location along the normal of the plane
+     * @return the index in the sorted array of the nearest image, or -1 if there is no image with a slice position
+     */
+    private int nearest(double location) {
+        int n = locations.length;
+        if (n == 0) {
+            return -1;
+        }
+
+        // Images at the same location (within the tolerance): the first one in the list wins
+        int best = -1;
+        for (int i = lowerBound(location - MathUtil.DOUBLE_EPSILON); i < n
+            && locations[i] <= location + MathUtil.DOUBLE_EPSILON; i++) {
+            if (MathUtil.isEqualToZero(location - locations[i]) && (best < 0 || positions[i] < positions[best])) {
+                best = i;
+            }
+        }
+        if (best >= 0) {
+            return best;
+        }
+
+        // Otherwise the nearest group on each side
+        int hi = lowerBound(location);
+        if (hi == 0) {
+            return groupFirst[0];
+        }
+        int below = groupFirst[hi - 1];
+        if (hi == n) {
+            return below;
+        }
+        int above = hi;
+        double diffBelow = Math.abs(location - locations[below]);
+        double diffAbove = Math.abs(location - locations[above]);
+        if (diffBelow < diffAbove) {
+            return below;
+        } else if (diffAbove < diffBelow) {
+            return above;
+        }
+        return positions[below] < positions[above] ? below : above;
+    }
+
+    /**
+     * @return the index of the first location greater or equal to the value
+     */
+    private int lowerBound(double value) {
+        int low = 0;
+        int high = locations.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (locations[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param location
+     *            the location along the normal of the plane
+     * @return the position in the list of the nearest image, or -1 if there is no image with a slice position
+     */
+    public int getNearestPosition(double location) {
+        int i = nearest(location);
+        return i < 0 ? -1 : positions[i];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E getNearest(double location) {
+        int i = nearest(location);
+        return i < 0 ? null : (E) elements[i];
+    }
+
+    /**
+     * @return the first image of the list with the smallest location, or null if there is no image with a slice
+     *         position
+     */
+    @SuppressWarnings("unchecked")
+    public E getFirst() {
+        return locations.length == 0 ? null : (E) elements[0];
+    }
+
+    /**
+     * @return the first image of the list with the largest location, or null if there is no image with a slice
+     *         position
+     */
+    @SuppressWarnings("unchecked")
+    public E getLast() {
+        int n = locations.length;
+        return n == 0 ? null : (E) elements[groupFirst[n - 1]];
+    }
+}
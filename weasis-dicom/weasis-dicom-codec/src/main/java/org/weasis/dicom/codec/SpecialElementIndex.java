@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.weasis.dicom.codec.macro.SOPInstanceReferenceAndMAC;
+
+/**
+ * Lookup index of the KO and PR special elements of a patient. It gives the same results as the static methods of
+ * {@link DicomSpecialElement}, but the lists are sorted once by {@link DicomSpecialElement#ORDER_BY_DATE} and the
+ * references are found by hash lookups.
+ *
+ * The index must be built again when a special element is added or removed. The references of the editable KO can be
+ * changed by the user, so they are always checked on the element itself.
+ */
+public final class SpecialElementIndex {
+
+    private final List<DicomSpecialElement> source;
+    private final int sourceSize;
+
+    private final List<KOSpecialElement> koElements;
+    private final List<KOSpecialElement> editableKoElements;
+    // SeriesInstanceUID => SOPInstanceUID => KO not editable
+    private final Map<String, Map<String, List<KOSpecialElement>>> koBySopUID = new HashMap<>();
+    // SeriesInstanceUID => PR
+    private final Map<String, List<PRSpecialElement>> prBySeriesUID = new HashMap<>();
+
+    private final Map<String, List<KOSpecialElement>> koBySeriesUID = new ConcurrentHashMap<>();
+
+    public SpecialElementIndex(List<DicomSpecialElement> specialElements) {
+        this.source = specialElements;
+        this.sourceSize = specialElements == null ? 0 : specialElements.size();
+
+        List<KOSpecialElement> kos = new ArrayList<>();
+        List<KOSpecialElement> editableKos = new ArrayList<>();
+        List<PRSpecialElement> prs = new ArrayList<>();
+        if (specialElements != null) {
+            for (DicomSpecialElement element : specialElements) {
+                if (element instanceof KOSpecialElement) {
+                    KOSpecialElement ko = (KOSpecialElement) element;
+                    kos.add(ko);
+                    if (ko.getMediaReader().isEditableDicom()) {
+                        editableKos.add(ko);
+                    }
+                } else if (element instanceof PRSpecialElement) {
+                    prs.add((PRSpecialElement) element);
+                }
+            }
+        }
+        Collections.sort(kos, DicomSpecialElement.ORDER_BY_DATE);
+        Collections.sort(editableKos, DicomSpecialElement.ORDER_BY_DATE);
+        Collections.sort(prs, DicomSpecialElement.ORDER_BY_DATE);
+        this.koElements = Collections.unmodifiableList(kos);
+        this.editableKoElements = editableKos;
+
+        // Iterate in sorted order to keep the lists sorted
+        for (KOSpecialElement ko : kos) {
+            if (ko.getMediaReader().isEditableDicom()) {
+                continue;
+            }
+            for (String seriesUID : ko.getReferencedSeriesInstanceUIDSet()) {
+                Map<String, SOPInstanceReferenceAndMAC> sops = ko.getReferencedSOPInstanceUIDObject(seriesUID);
+                if (sops != null) {
+                    Map<String, List<KOSpecialElement>> map =
+                        koBySopUID.computeIfAbsent(seriesUID, k -> new HashMap<>());
+                    for (String sopUID : sops.keySet()) {
+                        map.computeIfAbsent(sopUID, k -> new ArrayList<>(1)).add(ko);
+                    }
+                }
+            }
+        }
+        for (PRSpecialElement pr : prs) {
+            for (String seriesUID : pr.getReferencedSeriesInstanceUIDSet()) {
+                prBySeriesUID.computeIfAbsent(seriesUID, k -> new ArrayList<>(2)).add(pr);
+            }
+        }
+    }
+
+    /**
+     * @return true if the index has been built from this list and the list seems unchanged
+     */
+    public boolean isIndexOf(List<DicomSpecialElement> specialElements) {
+        return source == specialElements && sourceSize == (specialElements == null ? 0 : specialElements.size());
+    }
+
+    /**
+     * @see DicomSpecialElement#getKoSpecialElements(Collection, String)
+     */
+    public Collection<KOSpecialElement> getKoSpecialElements(String seriesUID) {
+        if (seriesUID == null) {
+            return koElements;
+        }
+        return koBySeriesUID.computeIfAbsent(seriesUID, uid -> {
+            List<KOSpecialElement> list = new ArrayList<>();
+            for (KOSpecialElement ko : koElements) {
+                if (ko.getMediaReader().isEditableDicom() || ko.containsSeriesInstanceUIDReference(uid)) {
+                    list.add(ko);
+                }
+            }
+            return Collections.unmodifiableList(list);
+        });
+    }
+
+    /**
+     * @return the KO referencing this instance (and frame when not null), the most recent first
+     */
+    public List<KOSpecialElement> getKoSpecialElements(String seriesUID, String sopUID, Integer dicomFrameNumber) {
+        List<KOSpecialElement> result = null;
+        Map<String, List<KOSpecialElement>> map = koBySopUID.get(seriesUID);
+        List<KOSpecialElement> list = map == null ? null : map.get(sopUID);
+        if (list != null) {
+            for (KOSpecialElement ko : list) {
+                // Check only the frames
+                if (ko.containsSopInstanceUIDReference(seriesUID, sopUID, dicomFrameNumber)) {
+                    if (result == null) {
+                        result = new ArrayList<>();
+                    }
+                    result.add(ko);
+                }
+            }
+        }
+
+        boolean hasEditable = false;
+        for (KOSpecialElement ko : editableKoElements) {
+            if (ko.containsSopInstanceUIDReference(seriesUID, sopUID, dicomFrameNumber)) {
+                if (result == null) {
+                    result = new ArrayList<>();
+                }
+                result.add(ko);
+                hasEditable = true;
+            }
+        }
+        if (result == null) {
+            return Collections.emptyList();
+        }
+        if (hasEditable && result.size() > 1) {
+            Collections.sort(result, DicomSpecialElement.ORDER_BY_DATE);
+        }
+        return result;
+    }
+
+    /**
+     * @see DicomSpecialElement#getRejectionKoSpecialElement(Collection, String, String, Integer)
+     */
+    public RejectedKOSpecialElement getRejectionKoSpecialElement(String seriesUID, String sopUID,
+        Integer dicomFrameNumber) {
+        for (KOSpecialElement ko : getKoSpecialElements(seriesUID, sopUID, dicomFrameNumber)) {
+            if (ko instanceof RejectedKOSpecialElement) {
+                return (RejectedKOSpecialElement) ko;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @see DicomSpecialElement#getPRSpecialElements(Collection, String, String, Integer)
+     */
+    public List<PRSpecialElement> getPRSpecialElements(String seriesUID, String sopUID, Integer dicomFrameNumber) {
+        List<PRSpecialElement> list = prBySeriesUID.get(seriesUID);
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        List<PRSpecialElement> result = null;
+        for (PRSpecialElement pr : list) {
+            if (pr.containsSopInstanceUIDReference(seriesUID, sopUID, dicomFrameNumber)) {
+                if (result == null) {
+                    result = new ArrayList<>(list.size());
+                }
+                result.add(pr);
+            }
+        }
+        return result == null ? Collections.emptyList() : result;
+    }
+}
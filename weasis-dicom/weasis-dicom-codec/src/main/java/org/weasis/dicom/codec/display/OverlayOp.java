@@ -11,7 +11,6 @@
 package org.weasis.dicom.codec.display;
 
 import java.awt.Color;
-import java.awt.image.RenderedImage;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Optional;
@@ -57,6 +56,11 @@ public class OverlayOp extends AbstractOp {
         return new OverlayOp(this);
     }
 
+    @Override
+    public boolean handlesInputScale() {
+        return true;
+    }
+
     @Override
     public void handleImageOpEvent(ImageOpEvent event) {
         OpEvent type = event.getEventType();
@@ -80,7 +84,7 @@ public class OverlayOp extends AbstractOp {
         Boolean overlay = (Boolean) params.get(P_SHOW);
 
         if (overlay != null && overlay) {
-            RenderedImage imgOverlay = null;
+            PlanarImage mask = null;
             ImageElement image = (ImageElement) params.get(P_IMAGE_ELEMENT);
 
             if (image != null) {
@@ -94,8 +98,10 @@ public class OverlayOp extends AbstractOp {
                             Integer height = TagD.getTagValue(image, Tag.Rows, Integer.class);
                             Integer width = TagD.getTagValue(image, Tag.Columns, Integer.class);
                             if (height != null && width != null) {
-                                imgOverlay = OverlayUtils.getBinaryOverlays(image, reader.getDicomObject(), frame,
-                                    width, height, params);
+                                boolean scaled = params.get(Param.INPUT_SCALE) != null;
+                                mask = OverlayUtils.getOverlayMask(image, reader.getDicomObject(), frame, width,
+                                    height, params, scaled ? source.width() : width,
+                                    scaled ? source.height() : height);
                             }
                         }
                     } catch (IOException e) {
@@ -103,7 +109,7 @@ public class OverlayOp extends AbstractOp {
                     }
                 }
             }
-            result = imgOverlay == null ? source : ImageProcessor.overlay(source.toMat(), imgOverlay, Color.WHITE);
+            result = mask == null ? source : ImageProcessor.overlay(source.toMat(), mask.toMat(), Color.WHITE);
         }
         params.put(Param.OUTPUT_IMG, result);
     }
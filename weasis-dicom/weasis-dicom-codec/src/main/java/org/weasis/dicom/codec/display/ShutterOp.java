@@ -14,7 +14,6 @@ import java.awt.Color;
 import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
-import java.awt.image.RenderedImage;
 import java.util.HashMap;
 import java.util.Optional;
 
@@ -66,6 +65,11 @@ public class ShutterOp extends AbstractOp {
         return new ShutterOp(this);
     }
 
+    @Override
+    public boolean handlesInputScale() {
+        return true;
+    }
+
     @Override
     public void handleImageOpEvent(ImageOpEvent event) {
         OpEvent type = event.getEventType();
@@ -111,15 +115,19 @@ public class ShutterOp extends AbstractOp {
         Area area = (Area) params.get(P_SHAPE);
         Object pr = params.get(P_PR_ELEMENT);
 
+        double[] inputScale = (double[]) params.get(Param.INPUT_SCALE);
+        ImageElement image = (ImageElement) params.get(P_IMAGE_ELEMENT);
+
         if (shutter && area != null) {
-            result = ImageProcessor.applyShutter(source.toMat(), area, getShutterColor());
+            PlanarImage mask =
+                OverlayUtils.getShutterMask(image, area, inputScale, source.width(), source.height());
+            result = ImageProcessor.applyShutterMask(source.toMat(), mask.toMat(), getShutterColor());
         }
 
         // Potentially override the shutter in the original dicom
         if (shutter && params.get(P_PS_VALUE) != null && (pr instanceof PRSpecialElement)) {
             DicomMediaIO prReader = ((PRSpecialElement) pr).getMediaReader();
             ImageCV imgOverlay = null;
-            ImageElement image = (ImageElement) params.get(P_IMAGE_ELEMENT);
             boolean overlays = LangUtil.getNULLtoFalse((Boolean) prReader.getTagValue(TagW.HasOverlay));
 
             if (overlays && image != null && image.getKey() instanceof Integer) {
@@ -131,9 +139,10 @@ public class ShutterOp extends AbstractOp {
                     Integer shuttOverlayGroup =
                         DicomMediaUtils.getIntegerFromDicomElement(attributes, Tag.ShutterOverlayGroup, null);
                     if (shuttOverlayGroup != null) {
-                        RenderedImage overlayImg =
-                            OverlayUtils.getShutterOverlay(attributes, frame, width, height, shuttOverlayGroup);
-                        imgOverlay = ImageProcessor.applyShutter(result.toMat(), overlayImg, getShutterColor());
+                        PlanarImage mask = OverlayUtils.getShutterOverlayMask(image, attributes, frame, width, height,
+                            shuttOverlayGroup, inputScale == null ? width : result.width(),
+                            inputScale == null ? height : result.height());
+                        imgOverlay = ImageProcessor.overlay(result.toMat(), mask.toMat(), getShutterColor());
                     }
                 }
             }
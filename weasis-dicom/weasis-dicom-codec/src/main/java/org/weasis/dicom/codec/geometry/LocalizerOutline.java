@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec.geometry;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.weasis.core.api.gui.util.MathUtil;
+
+/**
+ * <p>
+ * Allocation-free computation of the outline of a slice on a localizer, with the same results as {@link IntersectSlice}
+ * and {@link IntersectVolume}.
+ * </p>
+ *
+ * <p>
+ * The outlines are written in a double array as column and row pairs in the image space of the localizer, the methods
+ * return the number of points (0 when the slice does not intersect the localizer). The outlines of
+ * {@link #getOutline(SlicePlane, SlicePlane, boolean)} are cached, as the reference lines of the first and the last
+ * slices are the same while scrolling a series.
+ * </p>
+ */
+public final class LocalizerOutline {
+
+    /**
+     * The minimum size of the work array (the eight corners of the slab in the localizer space).
+     */
+    public static final int WORK_SIZE = 24;
+    /**
+     * The minimum size of the output array for one outline (four points).
+     */
+    public static final int OUTPUT_SIZE = 8;
+
+    private static final int MAX_CACHE_SIZE = 4096;
+    private static final double[] NO_OUTLINE = new double[0];
+
+    private static final Map<Key, double[]> CACHE =
+        Collections.synchronizedMap(new LinkedHashMap<Key, double[]>(256, 0.75f, true) {
+            private static final long serialVersionUID = -2539543004306347553L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, double[]> eldest) {
+                return size() > MAX_CACHE_SIZE;
+            }
+        });
+
+    private static final ThreadLocal<double[]> BUFFER =
+        ThreadLocal.withInitial(() -> new double[WORK_SIZE + OUTPUT_SIZE]);
+
+    private LocalizerOutline() {
+    }
+
+    /**
+     * Same result as {@link IntersectSlice}: a line where the slice crosses the localizer or the rectangle of the slice
+     * when it is in the plane of the localizer.
+     *
+     * @param localizer
+     *            the plane on which the outline is drawn
+     * @param source
+     *            the slice
+     * @param work
+     *            an array of at least {@link #WORK_SIZE} values
+     * @param out
+     *            the array receiving the points
+     * @param offset
+     *            the index of the first value to write in out
+     * @return the number of points of the outline
+     */
+    public static int intersectSlice(SlicePlane localizer, SlicePlane source, double[] work, double[] out,
+        int offset) {
+        for (int i = 0; i < 4; i++) {
+            toLocalizerSpace(localizer, source.rectangle, i * 3, work, i * 3);
+        }
+        boolean e0 = crossZPlane(work, 0, 3);
+        boolean e1 = crossZPlane(work, 3, 6);
+        boolean e2 = crossZPlane(work, 6, 9);
+        boolean e3 = crossZPlane(work, 9, 0);
+
+        if (e0 && e1 && e2 && e3) {
+            // Source in exactly the same plane as the localizer: draw a rectangle
+            for (int i = 0; i < 4; i++) {
+                toImageSpace(localizer, work[i * 3], work[i * 3 + 1], out, offset + i * 2);
+            }
+            return 4;
+        }
+        boolean opposite = e0 && e2 || e1 && e3;
+        boolean adjacent = e0 && e1 || e1 && e2 || e2 && e3 || e3 && e0;
+        if (opposite || adjacent) {
+            // Draw line between where the edges cross (have zero Z value)
+            int nb = 0;
+            for (int i = 0; i < 4; i++) {
+                int a = i * 3;
+                int b = i == 3 ? 0 : a + 3;
+                if (crossZPlane(work, a, b)) {
+                    intersectZPlane(localizer, work, a, b, out, offset + nb * 2);
+                    nb++;
+                }
+            }
+            return nb;
+        }
+        // No edges cross the localizer
+        return 0;
+    }
+
+    /**
+     * Same result as {@link IntersectVolume}: the rectangle where the slab of the slice thickness crosses the localizer.
+     *
+     * @param localizer
+     *            the plane on which the outline is drawn
+     * @param source
+     *            the slice
+     * @param work
+     *            an array of at least {@link #WORK_SIZE} values
+     * @param out
+     *            the array receiving the points
+     * @param offset
+     *            the index of the first value to write in out
+     * @return the number of points of the outline
+     */
+    public static int intersectVolume(SlicePlane localizer, SlicePlane source, double[] work, double[] out,
+        int offset) {
+        for (int i = 0; i < 8; i++) {
+            toLocalizerSpace(localizer, source.cube, i * 3, work, i * 3);
+        }
+        // The check and traversal order are the same as LocalizerPoster.getIntersectionsOfCubeWithZPlane()
+        if (crossZPlane(work, 0, 3) && crossZPlane(work, 6, 9) && crossZPlane(work, 12, 15)
+            && crossZPlane(work, 18, 21)) {
+            intersectZPlane(localizer, work, 0, 3, out, offset);
+            intersectZPlane(localizer, work, 6, 9, out, offset + 2);
+            intersectZPlane(localizer, work, 18, 21, out, offset + 4);
+            intersectZPlane(localizer, work, 12, 15, out, offset + 6);
+            return 4;
+        } else if (crossZPlane(work, 0, 9) && crossZPlane(work, 3, 6) && crossZPlane(work, 12, 21)
+            && crossZPlane(work, 15, 18)) {
+            intersectZPlane(localizer, work, 0, 9, out, offset);
+            intersectZPlane(localizer, work, 3, 6, out, offset + 2);
+            intersectZPlane(localizer, work, 15, 18, out, offset + 4);
+            intersectZPlane(localizer, work, 12, 21, out, offset + 6);
+            return 4;
+        } else if (crossZPlane(work, 0, 12) && crossZPlane(work, 3, 15) && crossZPlane(work, 6, 18)
+            && crossZPlane(work, 9, 21)) {
+            intersectZPlane(localizer, work, 0, 12, out, offset);
+            intersectZPlane(localizer, work, 3, 15, out, offset + 2);
+            intersectZPlane(localizer, work, 6, 18, out, offset + 4);
+            intersectZPlane(localizer, work, 9, 21, out, offset + 6);
+            return 4;
+        }
+        return 0;
+    }
+
+    /**
+     * Compute in one pass the outlines of a slice on all the localizers of a layout.
+     *
+     * @param localizers
+     *            the planes on which the outline is drawn
+     * @param source
+     *            the slice
+     * @param volume
+     *            true for the outline of the slice thickness ({@link IntersectVolume}), false for the center of the
+     *            slice ({@link IntersectSlice})
+     * @param work
+     *            an array of at least {@link #WORK_SIZE} values
+     * @param out
+     *            the array receiving the points, the outline of the localizer i starts at i * {@link #OUTPUT_SIZE}
+     * @param counts
+     *            the array receiving the number of points of each outline
+     */
+    public static void intersect(SlicePlane[] localizers, SlicePlane source, boolean volume, double[] work,
+        double[] out, int[] counts) {
+        for (int i = 0; i < localizers.length; i++) {
+            int offset = i * OUTPUT_SIZE;
+            counts[i] = volume ? intersectVolume(localizers[i], source, work, out, offset)
+                : intersectSlice(localizers[i], source, work, out, offset);
+        }
+    }
+
+    /**
+     * Computes in one pass the outlines of a slice on the localizers of a layout which are not yet in the cache, so
+     * that the views then get them with {@link #getOutline(SlicePlane, SlicePlane, boolean)}.
+     *
+     * @param localizers
+     *            the planes on which the outline is drawn
+     * @param source
+     *            the slice
+     * @param volume
+     *            true for the outline of the slice thickness ({@link IntersectVolume}), false for the center of the
+     *            slice ({@link IntersectSlice})
+     */
+    public static void prepareOutlines(SlicePlane[] localizers, SlicePlane source, boolean volume) {
+        Objects.requireNonNull(source);
+        SlicePlane[] missing = new SlicePlane[localizers.length];
+        int nb = 0;
+        for (SlicePlane localizer : localizers) {
+            if (!CACHE.containsKey(new Key(Objects.requireNonNull(localizer), source, volume))) {
+                missing[nb++] = localizer;
+            }
+        }
+        if (nb == 0) {
+            return;
+        }
+        SlicePlane[] batch = nb == missing.length ? missing : Arrays.copyOf(missing, nb);
+        double[] out = new double[nb * OUTPUT_SIZE];
+        int[] counts = new int[nb];
+        intersect(batch, source, volume, BUFFER.get(), out, counts);
+        for (int i = 0; i < nb; i++) {
+            int offset = i * OUTPUT_SIZE;
+            CACHE.put(new Key(batch[i], source, volume),
+                counts[i] == 0 ? NO_OUTLINE : Arrays.copyOfRange(out, offset, offset + counts[i] * 2));
+        }
+    }
+
+    /**
+     * @param localizer
+     *            the plane on which the outline is drawn
+     * @param source
+     *            the slice
+     * @param volume
+     *            true for the outline of the slice thickness ({@link IntersectVolume}), false for the center of the
+     *            slice ({@link IntersectSlice})
+     * @return the cached outline as column and row pairs, empty when there is no intersection. The array is shared
+     *         and must not be modified.
+     */
+    public static double[] getOutline(SlicePlane localizer, SlicePlane source, boolean volume) {
+        Key key = new Key(Objects.requireNonNull(localizer), Objects.requireNonNull(source), volume);
+        double[] outline = CACHE.get(key);
+        if (outline == null) {
+            double[] buf = BUFFER.get();
+            int nb = volume ? intersectVolume(localizer, source, buf, buf, WORK_SIZE)
+                : intersectSlice(localizer, source, buf, buf, WORK_SIZE);
+            outline = nb == 0 ? NO_OUTLINE : Arrays.copyOfRange(buf, WORK_SIZE, WORK_SIZE + nb * 2);
+            CACHE.put(key, outline);
+        }
+        return outline;
+    }
+
+    /**
+     * @param outline
+     *            column and row pairs
+     * @return the points of the outline or null when it is empty (like {@link LocalizerPoster})
+     */
+    public static List<Point2D.Double> toPoints(double[] outline) {
+        if (outline == null || outline.length < 2) {
+            return null;
+        }
+        List<Point2D.Double> pts = new ArrayList<>(outline.length / 2);
+        for (int i = 0; i < outline.length - 1; i += 2) {
+            pts.add(new Point2D.Double(outline[i], outline[i + 1]));
+        }
+        return pts;
+    }
+
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    private static void toLocalizerSpace(SlicePlane localizer, double[] src, int srcPos, double[] dst, int dstPos) {
+        // Move to the origin of the localizer and rotate into the localizer space
+        double x = src[srcPos] - localizer.tlhc[0];
+        double y = src[srcPos + 1] - localizer.tlhc[1];
+        double z = src[srcPos + 2] - localizer.tlhc[2];
+        double[] m = localizer.axes;
+        dst[dstPos] = m[0] * x + m[1] * y + m[2] * z;
+        dst[dstPos + 1] = m[3] * x + m[4] * y + m[5] * z;
+        dst[dstPos + 2] = m[6] * x + m[7] * y + m[8] * z;
+    }
+
+    private static boolean crossZPlane(double[] pts, int a, int b) {
+        double startZ = pts[a + 2];
+        double endZ = pts[b + 2];
+        return (startZ <= 0 && endZ >= 0) || (startZ >= 0 && endZ <= 0);
+    }
+
+    private static void intersectZPlane(SlicePlane localizer, double[] pts, int a, int b, double[] out, int pos) {
+        double ax = pts[a];
+        double ay = pts[a + 1];
+        double az = pts[a + 2];
+        double bx = pts[b];
+        double by = pts[b + 1];
+        double bz = pts[b + 2];
+        // Be careful not to divide by zero when slope infinite (and unnecessary, since multiplicand is then zero)
+        double y = MathUtil.isEqual(bz, az) ? ay : (by - ay) / (bz - az) * (0 - az) + ay;
+        double x = MathUtil.isEqual(by, ay) ? ax : (bx - ax) / (by - ay) * (y - ay) + ax;
+        toImageSpace(localizer, x, y, out, pos);
+    }
+
+    private static void toImageSpace(SlicePlane localizer, double x, double y, double[] out, int pos) {
+        // x is the column and y is the row, see LocalizerPoster.transformPointInLocalizerPlaneIntoImageSpace()
+        out[pos] = x / localizer.spacing[1] * localizer.scaleRows + 0.5;
+        out[pos + 1] = y / localizer.spacing[0] * localizer.scaleColumns + 0.5;
+    }
+
+    private static final class Key {
+        private final SlicePlane localizer;
+        private final SlicePlane source;
+        private final boolean volume;
+
+        Key(SlicePlane localizer, SlicePlane source, boolean volume) {
+            this.localizer = localizer;
+            this.source = source;
+            this.volume = volume;
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * localizer.hashCode() + source.hashCode()) * 2 + (volume ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return volume == other.volume && localizer.equals(other.localizer) && source.equals(other.source);
+        }
+    }
+}
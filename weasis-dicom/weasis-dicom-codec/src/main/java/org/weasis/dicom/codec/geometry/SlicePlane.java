@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec.geometry;
+
+import java.util.Arrays;
+
+import javax.vecmath.Tuple3d;
+
+/**
+ * <p>
+ * Immutable geometry of a slice stored in primitive arrays, with the values required for posting its outline on a
+ * localizer precomputed once: the plane equation, the corners of the slice and the corners of the slab of the slice
+ * thickness.
+ * </p>
+ *
+ * <p>
+ * Two instances are equal when all their values are equal, so a plane can be used as a cache key even when the
+ * geometry is rebuilt from the image attributes.
+ * </p>
+ *
+ * @see LocalizerOutline
+ */
+public final class SlicePlane {
+
+    // row, column and normal as rows of the rotation matrix into the slice space
+    final double[] axes = new double[9];
+    final double[] tlhc;
+    final double[] spacing;
+    final double[] dimensions;
+    final double thickness;
+    // plane equation: normal . p + d = 0
+    final double d;
+    // tlhc, trhc, brhc, blhc of the slice
+    final double[] rectangle = new double[12];
+    // tlhcT, trhcT, brhcT, blhcT, tlhcB, trhcB, brhcB, blhcB of the slab
+    final double[] cube = new double[24];
+    // sub-pixel scale for converting the localizer space into image space
+    final double scaleRows;
+    final double scaleColumns;
+
+    private final int hash;
+
+    /**
+     * @param row
+     *            the direction of the row as X, Y and Z components (direction cosines, unit vector) LPH+
+     * @param column
+     *            the direction of the column as X, Y and Z components (direction cosines, unit vector) LPH+
+     * @param tlhc
+     *            the position of the top left hand corner of the slice as a point (X, Y and Z) LPH+
+     * @param spacing
+     *            the row and column spacing and the slice interval
+     * @param thickness
+     *            the slice thickness
+     * @param dimensions
+     *            the row and column dimensions and the number of slices
+     * @throws IllegalArgumentException
+     *             when the row and column are not orthogonal unit vectors
+     */
+    public SlicePlane(double[] row, double[] column, double[] tlhc, double[] spacing, double thickness,
+        double[] dimensions) {
+        validateDirectionCosines(row, column);
+        System.arraycopy(row, 0, axes, 0, 3);
+        System.arraycopy(column, 0, axes, 3, 3);
+        // Same order of operations as Vector3d.cross()
+        axes[6] = row[1] * column[2] - row[2] * column[1];
+        axes[7] = column[0] * row[2] - column[2] * row[0];
+        axes[8] = row[0] * column[1] - row[1] * column[0];
+        this.tlhc = Arrays.copyOf(tlhc, 3);
+        this.spacing = Arrays.copyOf(spacing, 3);
+        this.dimensions = Arrays.copyOf(dimensions, 3);
+        this.thickness = thickness;
+        this.d = -(axes[6] * tlhc[0] + axes[7] * tlhc[1] + axes[8] * tlhc[2]);
+        this.scaleRows = (dimensions[0] - 1) / dimensions[0];
+        this.scaleColumns = (dimensions[1] - 1) / dimensions[1];
+        buildCorners();
+        this.hash = computeHash();
+    }
+
+    public SlicePlane(GeometryOfSlice geometry) {
+        this(geometry.getRowArray(), geometry.getColumnArray(), geometry.getTLHCArray(),
+            geometry.getVoxelSpacingArray(), geometry.getSliceThickness(), toArray(geometry.getDimensions()));
+    }
+
+    private static double[] toArray(Tuple3d t) {
+        double[] a = new double[3];
+        t.get(a);
+        return a;
+    }
+
+    private static void validateDirectionCosines(double[] row, double[] column) {
+        if (Math.abs(row[0] * row[0] + row[1] * row[1] + row[2] * row[2] - 1) > 0.001) {
+            throw new IllegalArgumentException("Row not a unit vector"); //$NON-NLS-1$
+        }
+        if (Math.abs(column[0] * column[0] + column[1] * column[1] + column[2] * column[2] - 1) > 0.001) {
+            throw new IllegalArgumentException("Column not a unit vector"); //$NON-NLS-1$
+        }
+        if (row[0] * column[0] + row[1] * column[1] + row[2] * column[2] > 0.005) {
+            throw new IllegalArgumentException("Row and column vectors are not orthogonal"); //$NON-NLS-1$
+        }
+    }
+
+    private void buildCorners() {
+        // Same construction as LocalizerPoster.getCornersOfSourceRectangleInSourceSpace() and
+        // LocalizerPoster.getCornersOfSourceCubeInSourceSpace()
+        double alongRow = dimensions[1] * spacing[1];
+        double alongColumn = dimensions[0] * spacing[0];
+        double alongNormal = (dimensions[2] / 2) * thickness;
+        for (int k = 0; k < 3; k++) {
+            double r = axes[k] * alongRow;
+            double c = axes[3 + k] * alongColumn;
+            double n = axes[6 + k] * alongNormal;
+
+            rectangle[k] = tlhc[k];
+            rectangle[3 + k] = tlhc[k] + r;
+            rectangle[6 + k] = tlhc[k] + r + c;
+            rectangle[9 + k] = tlhc[k] + c;
+
+            double top = tlhc[k] + n;
+            cube[k] = top;
+            cube[3 + k] = top + r;
+            cube[6 + k] = top + r + c;
+            cube[9 + k] = top + c;
+            double bottom = tlhc[k] - n;
+            cube[12 + k] = bottom;
+            cube[15 + k] = bottom + r;
+            cube[18 + k] = bottom + r + c;
+            cube[21 + k] = bottom + c;
+        }
+    }
+
+    private int computeHash() {
+        int result = Arrays.hashCode(axes);
+        result = 31 * result + Arrays.hashCode(tlhc);
+        result = 31 * result + Arrays.hashCode(spacing);
+        result = 31 * result + Arrays.hashCode(dimensions);
+        return 31 * result + Double.hashCode(thickness);
+    }
+
+    /**
+     * @param x
+     *            the X coordinate of a point in the patient space
+     * @param y
+     *            the Y coordinate
+     * @param z
+     *            the Z coordinate
+     * @return the signed distance in mm of the point to the plane of the slice
+     */
+    public double distance(double x, double y, double z) {
+        return axes[6] * x + axes[7] * y + axes[8] * z + d;
+    }
+
+    public double[] getNormal() {
+        return Arrays.copyOfRange(axes, 6, 9);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SlicePlane)) {
+            return false;
+        }
+        SlicePlane other = (SlicePlane) obj;
+        return hash == other.hash && Double.doubleToLongBits(thickness) == Double.doubleToLongBits(other.thickness)
+            && Arrays.equals(axes, other.axes) && Arrays.equals(tlhc, other.tlhc)
+            && Arrays.equals(spacing, other.spacing) && Arrays.equals(dimensions, other.dimensions);
+    }
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomOutputStream;
+
+/**
+ * Rewrite a DICOM stream with a modified header in a single pass: the header is parsed up to the pixel data and the
+ * rest of the stream (pixel data and trailing elements) is copied unchanged, without buffering the bulk data in memory
+ * or in temporary files.
+ */
+public final class DicomStreamRewriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private DicomStreamRewriter() {
+    }
+
+    /**
+     * @param in
+     *            the source DICOM stream (with or without file meta information), not closed by this method
+     * @param out
+     *            the destination stream, written as a DICOM file (Part 10) with the transfer syntax of the source. Not
+     *            closed by this method.
+     * @param headerUpdater
+     *            modifies the attributes of the header before writing them (can be null)
+     * @return the header written (without the pixel data)
+     * @throws IOException
+     */
+    public static Attributes rewrite(InputStream in, OutputStream out, Consumer<Attributes> headerUpdater)
+        throws IOException {
+        DicomInputStream dis = new DicomInputStream(in);
+        Attributes dataset = dis.readDataset(-1, Tag.PixelData);
+        String tsuid = dis.getTransferSyntax();
+        // The reader stops after the header of the pixel data element (the stop tag applies only to the root level)
+        boolean pixelData = dis.tag() == Tag.PixelData;
+
+        if (headerUpdater != null) {
+            headerUpdater.accept(dataset);
+        }
+
+        DicomOutputStream dos = new DicomOutputStream(out, UID.ExplicitVRLittleEndian);
+        dos.writeDataset(dataset.createFileMetaInformation(tsuid), dataset);
+        if (pixelData) {
+            dos.writeHeader(Tag.PixelData, dis.vr(), dis.length());
+            byte[] buf = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = dis.read(buf, 0, buf.length)) > 0) {
+                dos.write(buf, 0, n);
+            }
+        }
+        dos.finish();
+        dos.flush();
+        return dataset;
+    }
+}
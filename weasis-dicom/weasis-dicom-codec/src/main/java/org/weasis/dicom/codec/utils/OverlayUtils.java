@@ -10,6 +10,10 @@
  *******************************************************************************/
 package org.weasis.dicom.codec.utils;
 
+import java.awt.Dimension;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
 import java.awt.image.BufferedImage;
 import java.awt.image.ComponentSampleModel;
 import java.awt.image.DataBuffer;
@@ -28,22 +32,166 @@ import java.util.Map;
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.image.Overlays;
+import org.opencv.imgproc.Imgproc;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.media.data.ImageElement;
+import org.weasis.core.api.media.data.NativeCache;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.api.util.FileUtil;
 import org.weasis.dicom.codec.PRSpecialElement;
 import org.weasis.dicom.codec.display.OverlayOp;
+import org.weasis.opencv.data.PlanarImage;
+import org.weasis.opencv.op.ImageConversion;
+import org.weasis.opencv.op.ImageProcessor;
 
 public class OverlayUtils {
     private static final Logger LOGGER = LoggerFactory.getLogger(OverlayUtils.class);
 
     private static final byte[] icmColorValues = new byte[] { (byte) 0xFF, (byte) 0x00 };
 
+    /**
+     * Decoded overlays and rasterized shutters. The sources are immutable for a given key, so the masks are built once
+     * and not on every display update (e.g. while changing the window/level). All the keys have the image as source,
+     * so its masks are removed when the image is disposed.
+     */
+    private static final NativeCache<MaskKey, PlanarImage> MASK_CACHE =
+        new NativeCache<>(Runtime.getRuntime().maxMemory() / 16, "cache.overlay"); //$NON-NLS-1$
+
     private OverlayUtils() {
     }
 
+    static final class MaskKey {
+        private final Object source;
+        private final Object reference;
+        private final int frame;
+        private final int width;
+        private final int height;
+
+        MaskKey(Object source, Object reference, int frame, int width, int height) {
+            this.source = source;
+            this.reference = reference;
+            this.frame = frame;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 31 * System.identityHashCode(source) + System.identityHashCode(reference);
+            result = 31 * result + frame;
+            result = 31 * result + width;
+            return 31 * result + height;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof MaskKey)) {
+                return false;
+            }
+            MaskKey other = (MaskKey) obj;
+            return source == other.source && reference == other.reference && frame == other.frame
+                && width == other.width && height == other.height;
+        }
+    }
+
+    /**
+     * Get the mask of the overlays (from the image and from the presentation state) from the cache or build it.
+     *
+     * @param outWidth
+     *            the width of the displayed image (the mask is downsampled when different of the width)
+     * @param outHeight
+     *            the height of the displayed image
+     * @return the 8-bit mask with non-zero values for the overlay pixels
+     * @see #getBinaryOverlays(ImageElement, Attributes, int, int, int, Map)
+     */
+    public static PlanarImage getOverlayMask(ImageElement image, Attributes attributes, int frameIndex, int width,
+        int height, Map<String, Object> params, int outWidth, int outHeight) throws IOException {
+        Object pr = params.get(OverlayOp.P_PR_ELEMENT);
+        MaskKey key = new MaskKey(image, pr, frameIndex, width, height);
+        PlanarImage mask = MASK_CACHE.get(key);
+        if (mask == null) {
+            mask = ImageConversion.toMat(getBinaryOverlays(image, attributes, frameIndex, width, height, params));
+            MASK_CACHE.put(key, mask);
+        }
+        return getScaledMask(mask, new MaskKey(image, pr, frameIndex, outWidth, outHeight));
+    }
+
+    /**
+     * Get the mask of the shutter overlay from the cache or build it.
+     *
+     * @param image
+     *            the image displaying the shutter, the mask is removed with the image
+     * @return the 8-bit mask with non-zero values for the shutter pixels
+     * @see #getShutterOverlay(Attributes, int, int, int, int)
+     */
+    public static PlanarImage getShutterOverlayMask(ImageElement image, Attributes attributes, int frameIndex,
+        int width, int height, int shuttOverlayGroup, int outWidth, int outHeight) throws IOException {
+        MaskKey key = new MaskKey(image, attributes, frameIndex, width, height);
+        PlanarImage mask = MASK_CACHE.get(key);
+        if (mask == null) {
+            mask = ImageConversion
+                .toMat(getShutterOverlay(attributes, frameIndex, width, height, shuttOverlayGroup));
+            MASK_CACHE.put(key, mask);
+        }
+        return getScaledMask(mask, new MaskKey(image, attributes, frameIndex, outWidth, outHeight));
+    }
+
+    /**
+     * Get the rasterized shutter shape from the cache or build it.
+     *
+     * @param image
+     *            the image displaying the shutter, the mask is removed with the image
+     * @param area
+     *            the shutter shape in the coordinates of the full resolution image (compared by reference)
+     * @param scale
+     *            the horizontal and vertical scales of the displayed image, null for the full resolution
+     * @param width
+     *            the width of the displayed image
+     * @param height
+     *            the height of the displayed image
+     * @return the 8-bit mask with the value 1 inside the shape
+     */
+    public static PlanarImage getShutterMask(ImageElement image, Area area, double[] scale, int width, int height) {
+        MaskKey key = new MaskKey(image, area, -1, width, height);
+        PlanarImage mask = MASK_CACHE.get(key);
+        if (mask == null) {
+            Shape shape = scale == null ? area
+                : AffineTransform.getScaleInstance(scale[0], scale[1]).createTransformedShape(area);
+            mask = ImageProcessor.getShapeMask(shape, width, height);
+            MASK_CACHE.put(key, mask);
+        }
+        return mask;
+    }
+
+    private static PlanarImage getScaledMask(PlanarImage mask, MaskKey key) {
+        if (mask.width() == key.width && mask.height() == key.height) {
+            return mask;
+        }
+        PlanarImage scaled = MASK_CACHE.get(key);
+        if (scaled == null) {
+            scaled =
+                ImageProcessor.scale(mask.toMat(), new Dimension(key.width, key.height), Imgproc.INTER_NEAREST);
+            MASK_CACHE.put(key, scaled);
+        }
+        return scaled;
+    }
+
+    /**
+     * Removes the masks of an image (overlays, shutter overlay and shutter shape).
+     *
+     * @param source
+     *            the image element
+     */
+    public static void removeMasks(Object source) {
+        if (source != null) {
+            MASK_CACHE.removeKeys(k -> k.source == source);
+        }
+    }
+
     /**
      * Merge the overlays into the buffered image. This method apply only white pixel overlays.
      *
@@ -126,6 +274,23 @@ public class OverlayUtils {
         return overBi;
     }
 
+    /**
+     * @param overlay
+     *            the binary overlay of the full resolution image
+     * @param width
+     *            the width of the downsampled image
+     * @param height
+     *            the height of the downsampled image
+     * @return the overlay resized with the nearest neighbor interpolation
+     */
+    public static RenderedImage getScaledOverlay(RenderedImage overlay, int width, int height) {
+        if (overlay == null || (overlay.getWidth() == width && overlay.getHeight() == height)) {
+            return overlay;
+        }
+        return ImageConversion.toBufferedImage(ImageProcessor.scale(ImageConversion.toMat(overlay),
+            new Dimension(width, height), Imgproc.INTER_NEAREST));
+    }
+
     public static byte[] extractOverlay(int gg0000, Raster raster, Attributes attrs) {
         if (attrs.getInt(Tag.OverlayBitsAllocated | gg0000, 1) == 1) {
             return null;
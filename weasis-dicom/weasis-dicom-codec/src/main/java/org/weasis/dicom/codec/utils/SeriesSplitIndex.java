@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec.utils;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.weasis.core.api.media.data.MediaElement;
+import org.weasis.core.api.media.data.Series;
+import org.weasis.core.api.media.data.TagUtil;
+import org.weasis.core.api.metrics.CacheMetrics;
+import org.weasis.core.api.metrics.MetricRegistry;
+import org.weasis.dicom.codec.utils.SplittingModalityRules.Condition;
+import org.weasis.dicom.codec.utils.SplittingModalityRules.Rule;
+
+/**
+ * Index of the sub-series split from one original series (the original series first, then the split series in the
+ * order of their split number).
+ * <p>
+ * The split key of an instance is made of its class and of the values of the rule tags, so finding the sub-series of a
+ * new instance is a hash lookup instead of comparing it with the first media of every sub-series. The key of a
+ * sub-series is the key of its first media and it is computed again when the first media changes. When a rule condition
+ * does not match the new instance, the tag matches any value and the sub-series are compared one by one as in
+ * {@link #isSimilar(List, Series, MediaElement)}.
+ * <p>
+ * The keys are built lazily for each list of rules: using other rules only computes the keys of the existing
+ * sub-series again on the next lookup.
+ */
+public class SeriesSplitIndex {
+
+    private static final CacheMetrics METRICS = new CacheMetrics(MetricRegistry.getDefault(), "dicom.split.index"); //$NON-NLS-1$
+
+    private final Class<?> seriesType;
+    private final List<Series<?>> seriesList = new ArrayList<>();
+    private final Map<List<Rule>, KeyIndex> indexes = new IdentityHashMap<>();
+    private boolean closed = false;
+
+    /**
+     * @param original
+     *            the original series
+     * @param seriesType
+     *            the type of the split series which can receive the new instances
+     */
+    public SeriesSplitIndex(Series<?> original, Class<?> seriesType) {
+        this.seriesType = Objects.requireNonNull(seriesType);
+        this.seriesList.add(Objects.requireNonNull(original));
+    }
+
+    public Series<?> getOriginal() {
+        return seriesList.get(0);
+    }
+
+    public synchronized List<Series<?>> getSeries() {
+        return new ArrayList<>(seriesList);
+    }
+
+    /**
+     * Append a split series. As the split series are scanned in the order of their split number, a series which is not
+     * an instance of the series type ends the list.
+     *
+     * @param series
+     *            the new split series
+     * @return true if the series has been appended
+     */
+    public synchronized boolean add(Series<?> series) {
+        if (closed || series == null) {
+            return false;
+        }
+        if (!seriesType.isInstance(series)) {
+            closed = true;
+            return false;
+        }
+        seriesList.add(series);
+        return true;
+    }
+
+    /**
+     * Updates the key of a series after adding a media, as the first media of the series may have changed. The first
+     * media of each series is also checked at each lookup, so a media added elsewhere cannot make the index stale.
+     *
+     * @param series
+     *            the series which has received a new media
+     */
+    public synchronized void mediaAdded(Series<?> series) {
+        for (KeyIndex index : indexes.values()) {
+            index.refresh(series);
+        }
+    }
+
+    /**
+     * @param rules
+     *            the splitting rules
+     * @param media
+     *            the new instance
+     * @return the first series of the index which is similar to the media, or null when the media must go into a new
+     *         split series
+     */
+    public synchronized Series<?> findSimilar(List<Rule> rules, MediaElement media) {
+        KeyIndex index = indexes.computeIfAbsent(Objects.requireNonNull(rules), KeyIndex::new);
+        index.update(seriesList);
+        // A series can receive a media without mediaAdded(): a key miss is only reliable with up-to-date keys. This
+        // checks the first media of each series by reference and only builds again the keys which have changed.
+        for (Series<?> s : seriesList) {
+            index.refresh(s);
+        }
+
+        SplitKey key = index.unkeyed == 0 ? SplitKey.build(rules, media, true) : null;
+        if (key != null) {
+            Series<?> s = index.keys.get(key);
+            if (s == null) {
+                METRICS.hit();
+                return null;
+            }
+            if (isSimilar(rules, s, media)) {
+                METRICS.hit();
+                return s;
+            }
+        }
+        METRICS.miss();
+        // A tag can match any value: compare with all the series
+        for (Series<?> s : seriesList) {
+            if (isSimilar(rules, s, media)) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    public static boolean isSimilar(List<Rule> list, Series<?> s, final MediaElement media) {
+        final MediaElement firstMedia = s.getMedia(0, null, null);
+        if (firstMedia == null) {
+            // no image
+            return true;
+        }
+        // Not similar when the instances have different classes (even when inheriting class)
+        if (firstMedia.getClass() != media.getClass()) {
+            return false;
+        }
+
+        for (Rule rule : list) {
+            if (!rule.isTagValueMatching(firstMedia, media)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class KeyIndex {
+        private final List<Rule> rules;
+        private final Map<SplitKey, Series<?>> keys = new HashMap<>();
+        private final Map<Series<?>, Entry> entries = new IdentityHashMap<>();
+        // Number of series without key (empty series or value which cannot be hashed)
+        private int unkeyed = 0;
+
+        KeyIndex(List<Rule> rules) {
+            this.rules = rules;
+        }
+
+        void update(List<Series<?>> seriesList) {
+            for (int i = entries.size(); i < seriesList.size(); i++) {
+                Series<?> s = seriesList.get(i);
+                entries.put(s, new Entry(i));
+                refresh(s);
+            }
+        }
+
+        void refresh(Series<?> s) {
+            Entry e = entries.get(s);
+            if (e == null) {
+                return;
+            }
+            MediaElement first = s.getMedia(0, null, null);
+            if (e.indexed && e.first == first) {
+                return;
+            }
+            if (e.key == null) {
+                if (e.indexed) {
+                    unkeyed--;
+                }
+            } else if (keys.get(e.key) == s) {
+                keys.remove(e.key);
+            }
+
+            e.indexed = true;
+            e.first = first;
+            e.key = first == null ? null : SplitKey.build(rules, first, false);
+            if (e.key == null) {
+                unkeyed++;
+            } else {
+                // Keep the first series in the order of the split number
+                Series<?> other = keys.get(e.key);
+                if (other == null || entries.get(other).position > e.position) {
+                    keys.put(e.key, s);
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+        private final int position;
+        private boolean indexed = false;
+        private MediaElement first;
+        private SplitKey key;
+
+        Entry(int position) {
+            this.position = position;
+        }
+    }
+
+    /**
+     * Key of the values compared by {@link Rule#isTagValueMatching(MediaElement, MediaElement)}. Two keys are equal
+     * when {@link TagUtil#isEquals(Object, Object)} is true for all the values.
+     */
+    static final class SplitKey {
+        private final Class<?> type;
+        private final Object[] values;
+        private final int hash;
+
+        private SplitKey(Class<?> type, Object[] values, int hash) {
+            this.type = type;
+            this.values = values;
+            this.hash = hash;
+        }
+
+        /**
+         * @param rules
+         *            the splitting rules
+         * @param media
+         *            the instance
+         * @param newMedia
+         *            true when the media is the new instance to place, false when it is the first media of a series
+         * @return the key or null when a value can match other values (a condition not matching the new instance, or
+         *         null items in an array)
+         */
+        static SplitKey build(List<Rule> rules, MediaElement media, boolean newMedia) {
+            Object[] values = new Object[rules.size()];
+            int h = media.getClass().hashCode();
+            for (int i = 0; i < values.length; i++) {
+                Rule rule = rules.get(i);
+                Condition condition = rule.getCondition();
+                if (newMedia && condition != null && !condition.match(media)) {
+                    return null;
+                }
+                Object val = media.getTagValue(rule.getTag());
+                if (val != null && val.getClass().isArray()) {
+                    int length = Array.getLength(val);
+                    for (int j = 0; j < length; j++) {
+                        Object item = Array.get(val, j);
+                        if (item == null) {
+                            return null;
+                        }
+                        h = 31 * h + item.hashCode();
+                    }
+                } else {
+                    h = 31 * h + Objects.hashCode(val);
+                }
+                values[i] = val;
+            }
+            return new SplitKey(media.getClass(), values, h);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SplitKey)) {
+                return false;
+            }
+            SplitKey other = (SplitKey) obj;
+            if (hash != other.hash || type != other.type || values.length != other.values.length) {
+                return false;
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (!TagUtil.isEquals(values[i], other.values[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
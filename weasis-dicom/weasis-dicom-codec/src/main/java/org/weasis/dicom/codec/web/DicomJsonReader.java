@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec.web;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map.Entry;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.BulkData;
+import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.VR;
+
+/**
+ * Reader of the DICOM JSON model (PS3.18 F.2) returned by QIDO-RS.
+ */
+public final class DicomJsonReader {
+
+    private DicomJsonReader() {
+    }
+
+    /**
+     * @param in
+     *            a JSON array of datasets
+     * @return the datasets
+     */
+    public static List<Attributes> readDatasets(InputStream in) {
+        try (JsonReader reader = Json.createReader(in)) {
+            JsonArray array = reader.readArray();
+            List<Attributes> list = new ArrayList<>(array.size());
+            for (JsonValue v : array) {
+                if (v instanceof JsonObject) {
+                    list.add(readDataset((JsonObject) v));
+                }
+            }
+            return list;
+        }
+    }
+
+    public static Attributes readDataset(JsonObject object) {
+        Attributes attrs = new Attributes(object.size());
+        for (Entry<String, JsonValue> entry : object.entrySet()) {
+            if (entry.getValue() instanceof JsonObject) {
+                int tag = (int) Long.parseLong(entry.getKey(), 16);
+                readAttribute(attrs, tag, (JsonObject) entry.getValue());
+            }
+        }
+        return attrs;
+    }
+
+    private static void readAttribute(Attributes attrs, int tag, JsonObject element) {
+        VR vr = VR.valueOf(element.getString("vr")); //$NON-NLS-1$
+        JsonArray values = element.getJsonArray("Value"); //$NON-NLS-1$
+        if (values != null) {
+            if (vr == VR.SQ) {
+                Sequence seq = attrs.newSequence(tag, values.size());
+                for (JsonValue item : values) {
+                    seq.add(item instanceof JsonObject ? readDataset((JsonObject) item) : new Attributes(0));
+                }
+            } else {
+                String[] strings = new String[values.size()];
+                for (int i = 0; i < strings.length; i++) {
+                    String val = toString(values.get(i), vr);
+                    strings[i] = val == null ? "" : val; //$NON-NLS-1$
+                }
+                try {
+                    attrs.setString(tag, vr, strings);
+                } catch (IllegalArgumentException e) {
+                    // Null value in a binary VR
+                    attrs.setNull(tag, vr);
+                }
+            }
+        } else if (element.containsKey("InlineBinary")) { //$NON-NLS-1$
+            attrs.setBytes(tag, vr, Base64.getDecoder().decode(element.getString("InlineBinary"))); //$NON-NLS-1$
+        } else if (element.containsKey("BulkDataURI")) { //$NON-NLS-1$
+            attrs.setValue(tag, vr, new BulkData(null, element.getString("BulkDataURI"), false)); //$NON-NLS-1$
+        } else {
+            attrs.setNull(tag, vr);
+        }
+    }
+
+    private static String toString(JsonValue value, VR vr) {
+        if (value instanceof JsonString) {
+            return ((JsonString) value).getString();
+        } else if (value instanceof JsonNumber) {
+            return value.toString();
+        } else if (value instanceof JsonObject && vr == VR.PN) {
+            JsonObject pn = (JsonObject) value;
+            StringBuilder buf = new StringBuilder(pn.getString("Alphabetic", "")); //$NON-NLS-1$ //$NON-NLS-2$
+            String ideographic = pn.getString("Ideographic", ""); //$NON-NLS-1$ //$NON-NLS-2$
+            String phonetic = pn.getString("Phonetic", ""); //$NON-NLS-1$ //$NON-NLS-2$
+            if (!ideographic.isEmpty() || !phonetic.isEmpty()) {
+                buf.append('=').append(ideographic);
+            }
+            if (!phonetic.isEmpty()) {
+                buf.append('=').append(phonetic);
+            }
+            return buf.toString();
+        }
+        return null;
+    }
+}
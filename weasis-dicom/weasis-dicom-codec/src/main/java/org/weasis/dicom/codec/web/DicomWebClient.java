@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.dcm4che3.data.Attributes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.util.NetworkUtil;
+import org.weasis.core.api.util.StreamIOException;
+
+/**
+ * Client of the DICOMweb RESTful services: QIDO-RS for searching and WADO-RS for retrieving. The multipart responses
+ * are read incrementally, each part is given to the handler as soon as its headers are received.
+ *
+ * @see <a href="http://dicom.nema.org/medical/dicom/current/output/html/part18.html">PS3.18</a>
+ */
+public class DicomWebClient {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DicomWebClient.class);
+
+    public static final String ACCEPT = "Accept"; //$NON-NLS-1$
+    public static final String APPLICATION_DICOM_JSON = "application/dicom+json"; //$NON-NLS-1$
+    public static final String MULTIPART_DICOM = "multipart/related; type=\"application/dicom\""; //$NON-NLS-1$
+    public static final String MULTIPART_OCTET_STREAM = "multipart/related; type=\"application/octet-stream\""; //$NON-NLS-1$
+
+    @FunctionalInterface
+    public interface PartHandler {
+        /**
+         * @param part
+         *            the current part, its content must be consumed within this method
+         * @return false to stop reading the next parts
+         * @throws IOException
+         */
+        boolean handle(MultipartReader.Part part) throws IOException;
+    }
+
+    private final String baseUrl;
+    private final Map<String, String> headers;
+
+    /**
+     * @param baseUrl
+     *            the base URL of the DICOMweb service (e.g. http://server:8080/dcm4chee-arc/aets/DCM4CHEE/rs)
+     * @param headers
+     *            the additional HTTP headers (e.g. authorization), can be null
+     */
+    public DicomWebClient(String baseUrl, Map<String, String> headers) {
+        String url = Objects.requireNonNull(baseUrl).trim();
+        this.baseUrl = url.endsWith("/") ? url.substring(0, url.length() - 1) : url; //$NON-NLS-1$
+        this.headers = headers == null ? Collections.emptyMap() : headers;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public List<Attributes> searchStudies(Map<String, String> query) throws IOException {
+        return search("studies", query); //$NON-NLS-1$
+    }
+
+    public List<Attributes> searchSeries(String studyUID, Map<String, String> query) throws IOException {
+        return search("studies/" + studyUID + "/series", query); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    public List<Attributes> searchInstances(String studyUID, String seriesUID, Map<String, String> query)
+        throws IOException {
+        return search("studies/" + studyUID + "/series/" + seriesUID + "/instances", query); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+    /**
+     * QIDO-RS search.
+     *
+     * @param resource
+     *            the path relative to the base URL (e.g. studies)
+     * @param query
+     *            the query parameters (e.g. 00100020=123, includefield=00081030), can be null
+     * @return the matching datasets
+     * @throws StreamIOException
+     *             when the server returns an error status
+     */
+    public List<Attributes> search(String resource, Map<String, String> query) throws IOException {
+        URLConnection connection = openConnection(buildUrl(resource, query));
+        try (InputStream in = getInputStream(connection, APPLICATION_DICOM_JSON)) {
+            if (isNoContent(connection)) {
+                return Collections.emptyList();
+            }
+            return DicomJsonReader.readDatasets(in);
+        } catch (StreamIOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // JSON parsing error
+            throw new IOException("Invalid QIDO-RS response", e); //$NON-NLS-1$
+        }
+    }
+
+    public int retrieveStudy(String studyUID, PartHandler handler) throws IOException {
+        return retrieve("studies/" + studyUID, handler); //$NON-NLS-1$
+    }
+
+    public int retrieveSeries(String studyUID, String seriesUID, PartHandler handler) throws IOException {
+        return retrieve("studies/" + studyUID + "/series/" + seriesUID, handler); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * WADO-RS retrieve of DICOM instances.
+     *
+     * @param resource
+     *            the path relative to the base URL (e.g. studies/1.2.3/series/4.5.6)
+     * @param handler
+     *            receives each instance while the response is downloading
+     * @return the number of parts read
+     * @throws StreamIOException
+     *             when the server returns an error status
+     */
+    public int retrieve(String resource, PartHandler handler) throws IOException {
+        return readMultipart(buildUrl(resource, null), MULTIPART_DICOM, handler);
+    }
+
+    /**
+     * WADO-RS retrieve of bulk data.
+     *
+     * @param bulkDataURI
+     *            the absolute URI or the path relative to the base URL
+     * @param handler
+     *            receives each part of the bulk data (usually one part or one part by frame)
+     * @return the number of parts read
+     */
+    public int retrieveBulkData(String bulkDataURI, PartHandler handler) throws IOException {
+        String url = bulkDataURI.contains("://") ? bulkDataURI : buildUrl(bulkDataURI, null); //$NON-NLS-1$
+        return readMultipart(url, MULTIPART_OCTET_STREAM, handler);
+    }
+
+    /**
+     * WADO-RS rendered resource (PS3.18 10.4.1.1.3).
+     *
+     * @param resource
+     *            the path of a study, series, instance or frames relative to the base URL
+     * @param mediaType
+     *            the accepted media type (e.g. image/jpeg)
+     * @param query
+     *            the rendering parameters (e.g. viewport, window), can be null
+     * @return the stream of the rendered image, must be closed by the caller
+     */
+    public InputStream getRendered(String resource, String mediaType, Map<String, String> query) throws IOException {
+        return getInputStream(openConnection(buildUrl(resource + "/rendered", query)), mediaType); //$NON-NLS-1$
+    }
+
+    private int readMultipart(String url, String accept, PartHandler handler) throws IOException {
+        URLConnection connection = openConnection(url);
+        int count = 0;
+        try (InputStream in = getInputStream(connection, accept)) {
+            if (isNoContent(connection)) {
+                return 0;
+            }
+            String contentType = connection.getContentType();
+            MultipartReader reader = new MultipartReader(in, MultipartReader.getBoundary(contentType));
+            MultipartReader.Part part;
+            while ((part = reader.nextPart()) != null) {
+                count++;
+                if (!handler.handle(part)) {
+                    LOGGER.info("Stop reading {} after {} parts", url, count); //$NON-NLS-1$
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private String buildUrl(String resource, Map<String, String> query) {
+        StringBuilder buf = new StringBuilder(baseUrl);
+        buf.append('/');
+        buf.append(resource.startsWith("/") ? resource.substring(1) : resource); //$NON-NLS-1$
+        if (query != null && !query.isEmpty()) {
+            buf.append('?');
+            buf.append(NetworkUtil.buildHttpParamsString(query));
+        }
+        return buf.toString();
+    }
+
+    private static URLConnection openConnection(String url) throws IOException {
+        URLConnection connection = new URL(url).openConnection();
+        connection.setUseCaches(false);
+        return connection;
+    }
+
+    private InputStream getInputStream(URLConnection connection, String accept) throws StreamIOException {
+        Map<String, String> params = new HashMap<>(headers);
+        params.put(ACCEPT, accept);
+        return NetworkUtil.getUrlInputStream(connection, params);
+    }
+
+    private static boolean isNoContent(URLConnection connection) throws IOException {
+        return connection instanceof HttpURLConnection
+            && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NO_CONTENT;
+    }
+}
@@ -0,0 +1,372 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec.web;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Incremental reader of a multipart body (RFC 2046), typically the multipart/related response of WADO-RS. Each part
+ * is streamed: it can be consumed before the next part has been received.
+ *
+ * <pre>
+ * MultipartReader reader = new MultipartReader(in, MultipartReader.getBoundary(contentType));
+ * MultipartReader.Part part;
+ * while ((part = reader.nextPart()) != null) {
+ *     read(part.getInputStream());
+ * }
+ * </pre>
+ */
+public class MultipartReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_LINE = 8 * 1024;
+
+    private final InputStream in;
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    private byte[] delimiter;
+    private boolean partEnded;
+    private boolean finished;
+    private Part current;
+
+    /**
+     * @param in
+     *            the multipart body
+     * @param boundary
+     *            the boundary given by the content type. When null, the boundary is read from the first delimiter line.
+     */
+    public MultipartReader(InputStream in, String boundary) {
+        this.in = in;
+        // The first delimiter can be at the beginning of the body without the preceding CRLF
+        buf[0] = '\r';
+        buf[1] = '\n';
+        limit = 2;
+        if (boundary != null) {
+            this.delimiter = buildDelimiter(boundary);
+        }
+    }
+
+    private static byte[] buildDelimiter(String boundary) {
+        if (boundary.isEmpty() || boundary.length() > 70) {
+            throw new IllegalArgumentException("Invalid multipart boundary: " + boundary); //$NON-NLS-1$
+        }
+        return ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1); //$NON-NLS-1$
+    }
+
+    /**
+     * @param contentType
+     *            the value of the Content-Type header (e.g. multipart/related; type="application/dicom";
+     *            boundary=abc)
+     * @return the boundary or null if not found
+     */
+    public static String getBoundary(String contentType) {
+        String value = getParameter(contentType, "boundary"); //$NON-NLS-1$
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * @return the value of the parameter of a header (without quotes), or null if not found
+     */
+    public static String getParameter(String header, String name) {
+        if (header == null) {
+            return null;
+        }
+        int i = header.indexOf(';');
+        while (i >= 0 && i < header.length()) {
+            int eq = header.indexOf('=', i);
+            if (eq < 0) {
+                return null;
+            }
+            String key = header.substring(i + 1, eq).trim();
+            int start = eq + 1;
+            int end;
+            String value;
+            if (start < header.length() && header.charAt(start) == '"') {
+                end = header.indexOf('"', start + 1);
+                if (end < 0) {
+                    end = header.length();
+                }
+                value = header.substring(start + 1, end);
+                end = header.indexOf(';', end);
+            } else {
+                end = header.indexOf(';', start);
+                value = header.substring(start, end < 0 ? header.length() : end).trim();
+            }
+            if (key.equalsIgnoreCase(name)) {
+                return value;
+            }
+            i = end;
+        }
+        return null;
+    }
+
+    /**
+     * Skip the remaining content of the current part (or the preamble) and read the headers of the next part.
+     *
+     * @return the next part or null when the close delimiter has been reached
+     * @throws IOException
+     *             if the stream ends before the close delimiter
+     */
+    public Part nextPart() throws IOException {
+        if (delimiter == null) {
+            readBoundaryLine();
+        }
+        skipBody();
+        if (finished) {
+            current = null;
+            return null;
+        }
+        partEnded = false;
+        current = new Part(readHeaders());
+        return current;
+    }
+
+    private void readBoundaryLine() throws IOException {
+        // Skip the initial CRLF and the preamble until the first line starting by --
+        pos = limit;
+        String line;
+        do {
+            line = readLine();
+            if (line == null) {
+                throw new EOFException("No multipart boundary found"); //$NON-NLS-1$
+            }
+        } while (!line.startsWith("--")); //$NON-NLS-1$
+        delimiter = buildDelimiter(line.substring(2).trim());
+        partEnded = true;
+    }
+
+    private void skipBody() throws IOException {
+        while (!partEnded) {
+            int n = available();
+            if (n > 0) {
+                pos += n;
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes of the body which can be consumed from pos, 0 if the delimiter has just been read
+     */
+    private int available() throws IOException {
+        if (partEnded) {
+            return 0;
+        }
+        int dlen = delimiter.length;
+        if (limit - pos < dlen) {
+            fill(dlen);
+            if (limit - pos < dlen) {
+                throw new EOFException("Multipart stream ended before the close delimiter"); //$NON-NLS-1$
+            }
+        }
+        int max = limit - dlen;
+        for (int i = pos; i <= max; i++) {
+            if (buf[i] == '\r' && matchDelimiter(i)) {
+                if (i > pos) {
+                    return i - pos;
+                }
+                pos += dlen;
+                afterDelimiter();
+                return 0;
+            }
+        }
+        // Keep the bytes which could be the beginning of the delimiter
+        return max + 1 - pos;
+    }
+
+    private boolean matchDelimiter(int offset) {
+        for (int k = 1; k < delimiter.length; k++) {
+            if (buf[offset + k] != delimiter[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void afterDelimiter() throws IOException {
+        partEnded = true;
+        fill(2);
+        if (limit - pos >= 2 && buf[pos] == '-' && buf[pos + 1] == '-') {
+            // Close delimiter, ignore the epilogue
+            finished = true;
+            pos += 2;
+            return;
+        }
+        // Transport padding and CRLF
+        String rest = readLine();
+        if (rest == null) {
+            throw new EOFException("Multipart stream ended before the close delimiter"); //$NON-NLS-1$
+        }
+        if (!rest.trim().isEmpty()) {
+            throw new IOException("Invalid characters after the multipart boundary: " + rest); //$NON-NLS-1$
+        }
+    }
+
+    private Map<String, String> readHeaders() throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        String line;
+        while ((line = readLine()) != null && !line.isEmpty()) {
+            int sep = line.indexOf(':');
+            if (sep > 0) {
+                headers.put(line.substring(0, sep).trim().toLowerCase(Locale.ENGLISH), line.substring(sep + 1).trim());
+            }
+        }
+        if (line == null) {
+            throw new EOFException("Multipart stream ended in the part headers"); //$NON-NLS-1$
+        }
+        return headers;
+    }
+
+    /**
+     * @return the line without CRLF or null at the end of the stream
+     */
+    private String readLine() throws IOException {
+        // Number of bytes already scanned from pos (pos can change when filling the buffer)
+        int scanned = 0;
+        while (true) {
+            for (int i = pos + scanned; i < limit; i++) {
+                if (buf[i] == '\n') {
+                    int end = i > pos && buf[i - 1] == '\r' ? i - 1 : i;
+                    String line = new String(buf, pos, end - pos, StandardCharsets.ISO_8859_1);
+                    pos = i + 1;
+                    return line;
+                }
+            }
+            scanned = limit - pos;
+            if (scanned > MAX_HEADER_LINE) {
+                throw new IOException("Multipart header line too long"); //$NON-NLS-1$
+            }
+            if (!fill(scanned + 1)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Ensure that at least the given number of bytes is available from pos, unless the end of the stream is reached.
+     *
+     * @return false when no byte has been added
+     */
+    private boolean fill(int minLength) throws IOException {
+        if (limit - pos >= minLength) {
+            return true;
+        }
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (minLength > buf.length) {
+            byte[] b = new byte[Math.max(minLength, buf.length * 2)];
+            System.arraycopy(buf, 0, b, 0, limit);
+            buf = b;
+        }
+        boolean added = false;
+        while (!eof && limit < minLength) {
+            int n = in.read(buf, limit, buf.length - limit);
+            if (n < 0) {
+                eof = true;
+            } else {
+                limit += n;
+                added |= n > 0;
+            }
+        }
+        return added;
+    }
+
+    private int readBody(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n = available();
+        if (n == 0) {
+            return -1;
+        }
+        n = Math.min(n, len);
+        System.arraycopy(buf, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * A part of the multipart body. Its content must be read before requesting the next part.
+     */
+    public class Part {
+        private final Map<String, String> headers;
+        private final InputStream content = new InputStream() {
+            private final byte[] single = new byte[1];
+
+            @Override
+            public int read() throws IOException {
+                int n = read(single, 0, 1);
+                return n < 0 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (current != Part.this) {
+                    return -1;
+                }
+                return readBody(b, off, len);
+            }
+
+            @Override
+            public int available() {
+                return current == Part.this && !partEnded ? Math.max(0, limit - pos - delimiter.length) : 0;
+            }
+        };
+
+        Part(Map<String, String> headers) {
+            this.headers = Collections.unmodifiableMap(headers);
+        }
+
+        /**
+         * @return the headers with lower case names
+         */
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        public String getHeader(String name) {
+            return headers.get(name.toLowerCase(Locale.ENGLISH));
+        }
+
+        public String getContentType() {
+            return headers.get("content-type"); //$NON-NLS-1$
+        }
+
+        public String getContentLocation() {
+            return headers.get("content-location"); //$NON-NLS-1$
+        }
+
+        /**
+         * @return the content of the part, ending at the next boundary. Closing it has no effect.
+         */
+        public InputStream getInputStream() {
+            return content;
+        }
+    }
+}
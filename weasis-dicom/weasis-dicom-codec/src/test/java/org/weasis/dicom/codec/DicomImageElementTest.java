@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.dcm4che3.data.Tag;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class DicomImageElementTest {
+
+    private static DicomImageElement buildImage(double[] orientation) {
+        DicomImageElement image = new DicomImageElement(Mockito.mock(DcmMediaReader.class), 0);
+        image.setTag(TagD.get(Tag.ImageOrientationPatient), orientation);
+        image.setTag(TagD.get(Tag.ImagePositionPatient), new double[] { -120.0, -100.0, 25.0 });
+        image.setTag(TagD.get(Tag.SliceThickness), 2.0);
+        image.setTag(TagD.get(Tag.Rows), 512);
+        image.setTag(TagD.get(Tag.Columns), 512);
+        return image;
+    }
+
+    @Test
+    public void testDispSlicePlane() {
+        DicomImageElement image = buildImage(new double[] { 1.0, 0.0, 0.0, 0.0, 1.0, 0.0 });
+        assertNotNull(image.getDispSlicePlane());
+        // Kept while the pixel size does not change
+        assertSame(image.getDispSlicePlane(), image.getDispSlicePlane());
+    }
+
+    @Test
+    public void testInvalidOrientation() {
+        // Row not a unit vector: no plane instead of an IllegalArgumentException
+        DicomImageElement image = buildImage(new double[] { 1.01, 0.0, 0.0, 0.0, 1.0, 0.0 });
+        assertNotNull(image.getDispSliceGeometry());
+        assertNull(image.getDispSlicePlane());
+        assertNull(image.getDispSlicePlane());
+
+        // Not orthogonal
+        image = buildImage(new double[] { 1.0, 0.0, 0.0, 0.1, 0.995, 0.0 });
+        assertNull(image.getDispSlicePlane());
+    }
+}
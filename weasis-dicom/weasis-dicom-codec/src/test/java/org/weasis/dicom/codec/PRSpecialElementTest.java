@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.junit.Test;
+
+public class PRSpecialElementTest {
+
+    private static final String[] SERIES = { "1.2.3.1", "1.2.3.2", "1.2.3.3" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+    private static String sopUID(int index) {
+        return "1.2.3.4." + index; //$NON-NLS-1$
+    }
+
+    private static Attributes seriesItem(String seriesUID, int nbImages, Random random) {
+        Attributes item = new Attributes();
+        item.setString(Tag.SeriesInstanceUID, VR.UI, seriesUID);
+        if (nbImages > 0) {
+            Sequence seq = item.newSequence(Tag.ReferencedImageSequence, nbImages);
+            for (int i = 0; i < nbImages; i++) {
+                Attributes sop = new Attributes();
+                sop.setString(Tag.ReferencedSOPInstanceUID, VR.UI, sopUID(random.nextInt(20)));
+                if (random.nextBoolean()) {
+                    int[] frames = new int[1 + random.nextInt(3)];
+                    for (int k = 0; k < frames.length; k++) {
+                        frames[k] = 1 + random.nextInt(6);
+                    }
+                    sop.setInt(Tag.ReferencedFrameNumber, VR.IS, frames);
+                }
+                seq.add(sop);
+            }
+        }
+        return item;
+    }
+
+    @Test
+    public void testReferencesLikeReferencedSeriesSequence() {
+        Random random = new Random(7);
+        for (int n = 0; n < 200; n++) {
+            Attributes[] seq = new Attributes[1 + random.nextInt(3)];
+            for (int i = 0; i < seq.length; i++) {
+                // Sometimes the whole series is referenced
+                int nbImages = random.nextInt(5) == 0 ? 0 : 1 + random.nextInt(10);
+                seq[i] = seriesItem(SERIES[random.nextInt(2)], nbImages, random);
+            }
+
+            Map<String, Map<String, int[]>> refs = PRSpecialElement.buildReferencedImages(seq);
+            for (String seriesUID : SERIES) {
+                for (int s = 0; s < 22; s++) {
+                    String sopUID = sopUID(s);
+                    for (int f = 0; f <= 7; f++) {
+                        Integer frame = f == 0 ? null : f;
+                        assertEquals(
+                            DicomSpecialElement.isSopuidInReferencedSeriesSequence(seq, seriesUID, sopUID, frame),
+                            PRSpecialElement.isReferenced(refs, seriesUID, sopUID, frame));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWholeSeriesAndFrames() {
+        Attributes whole = seriesItem(SERIES[0], 0, new Random(1));
+        Attributes images = new Attributes();
+        images.setString(Tag.SeriesInstanceUID, VR.UI, SERIES[1]);
+        Sequence seq = images.newSequence(Tag.ReferencedImageSequence, 2);
+        Attributes sop = new Attributes();
+        sop.setString(Tag.ReferencedSOPInstanceUID, VR.UI, sopUID(1));
+        sop.setInt(Tag.ReferencedFrameNumber, VR.IS, 5, 2);
+        seq.add(sop);
+        sop = new Attributes();
+        sop.setString(Tag.ReferencedSOPInstanceUID, VR.UI, sopUID(1));
+        sop.setInt(Tag.ReferencedFrameNumber, VR.IS, 3);
+        seq.add(sop);
+
+        Map<String, Map<String, int[]>> refs =
+            PRSpecialElement.buildReferencedImages(new Attributes[] { whole, images });
+        assertTrue(PRSpecialElement.isReferenced(refs, SERIES[0], sopUID(9), 4));
+        assertTrue(PRSpecialElement.isReferenced(refs, SERIES[1], sopUID(1), 3));
+        assertTrue(PRSpecialElement.isReferenced(refs, SERIES[1], sopUID(1), 5));
+        assertTrue(PRSpecialElement.isReferenced(refs, SERIES[1], sopUID(1), null));
+        assertFalse(PRSpecialElement.isReferenced(refs, SERIES[1], sopUID(1), 4));
+        assertFalse(PRSpecialElement.isReferenced(refs, SERIES[1], sopUID(2), null));
+        assertFalse(PRSpecialElement.isReferenced(refs, SERIES[2], sopUID(1), null));
+        assertTrue(PRSpecialElement.buildReferencedImages(null).isEmpty());
+    }
+}
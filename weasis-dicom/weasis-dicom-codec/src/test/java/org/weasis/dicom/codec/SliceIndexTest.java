@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.weasis.core.api.gui.util.MathUtil;
+import org.weasis.core.api.media.data.SimpleTagable;
+import org.weasis.core.api.media.data.TagW;
+
+public class SliceIndexTest {
+
+    private static SimpleTagable image(double[] normal, double[] position) {
+        SimpleTagable img = new SimpleTagable();
+        // Same computation as DicomMediaUtils.computeSlicePositionVector()
+        img.setTag(TagW.SlicePosition,
+            new double[] { normal[0] * position[0], normal[1] * position[1], normal[2] * position[2] });
+        return img;
+    }
+
+    private static double[] normalize(double x, double y, double z) {
+        double norm = Math.sqrt(x * x + y * y + z * z);
+        return new double[] { x / norm, y / norm, z / norm };
+    }
+
+    private static List<SimpleTagable> buildSeries(double[] normal, double[] step, int nbSlices, int nbPhases,
+        double jitter, Random random) {
+        List<SimpleTagable> list = new ArrayList<>();
+        for (int p = 0; p < nbPhases; p++) {
+            for (int i = 0; i < nbSlices; i++) {
+                double[] pos = { -120.0 + i * step[0], 80.5 + i * step[1], -300.25 + i * step[2] };
+                if (jitter > 0) {
+                    pos[2] += (random.nextDouble() - 0.5) * jitter;
+                }
+                list.add(image(normal, pos));
+            }
+        }
+        return list;
+    }
+
+    private static double location(SimpleTagable img) {
+        double[] val = (double[]) img.getTagValue(TagW.SlicePosition);
+        return val[0] + val[1] + val[2];
+    }
+
+    // Linear scan previously used in DicomSeries.getNearestImageIndex()
+    private static int scanNearest(List<SimpleTagable> list, double location) {
+        int index = 0;
+        int bestIndex = -1;
+        double bestDiff = Double.MAX_VALUE;
+        for (SimpleTagable img : list) {
+            double[] val = (double[]) img.getTagValue(TagW.SlicePosition);
+            if (val != null) {
+                double diff = Math.abs(location - (val[0] + val[1] + val[2]));
+                if (diff < bestDiff) {
+                    bestDiff = diff;
+                    bestIndex = index;
+                    if (MathUtil.isEqualToZero(diff)) {
+                        break;
+                    }
+                }
+            }
+            index++;
+        }
+        return bestIndex;
+    }
+
+    // Scan previously used in View2d.computeCrosslines()
+    private static SimpleTagable[] scanBounds(List<SimpleTagable> list) {
+        SimpleTagable first = null;
+        SimpleTagable last = null;
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (SimpleTagable img : list) {
+            if (img.getTagValue(TagW.SlicePosition) != null) {
+                double position = location(img);
+                if (min > position) {
+                    min = position;
+                    first = img;
+                }
+                if (max < position) {
+                    max = position;
+                    last = img;
+                }
+            }
+        }
+        return new SimpleTagable[] { first, last };
+    }
+
+    private static void checkSameAsScan(List<SimpleTagable> list, Random random) {
+        SliceIndex<SimpleTagable> index = SliceIndex.build(list);
+        SimpleTagable[] bounds = scanBounds(list);
+        assertSame(bounds[0], index.getFirst());
+        assertSame(bounds[1], index.getLast());
+
+        List<Double> queries = new ArrayList<>();
+        for (SimpleTagable img : list) {
+            if (img.getTagValue(TagW.SlicePosition) != null) {
+                double loc = location(img);
+                queries.add(loc);
+                queries.add(loc + MathUtil.DOUBLE_EPSILON / 2);
+                queries.add(loc - 0.3);
+                queries.add(loc + 0.5);
+            }
+        }
+        for (int i = 0; i < 500; i++) {
+            queries.add((random.nextDouble() - 0.5) * 2000.0);
+        }
+        for (double q : queries) {
+            int expected = scanNearest(list, q);
+            assertEquals("location " + q, expected, index.getNearestPosition(q)); //$NON-NLS-1$
+            assertSame(expected < 0 ? null : list.get(expected), index.getNearest(q));
+        }
+    }
+
+    @Test
+    public void testAxial() {
+        Random random = new Random(1);
+        checkSameAsScan(buildSeries(new double[] { 0, 0, 1 }, new double[] { 0, 0, 1.25 }, 200, 1, 0, random),
+            random);
+    }
+
+    @Test
+    public void testOblique() {
+        Random random = new Random(2);
+        double[] normal = normalize(0.3, -0.5, 0.81);
+        checkSameAsScan(buildSeries(normal, new double[] { 0.9, -1.5, 2.43 }, 150, 1, 0, random), random);
+    }
+
+    @Test
+    public void testGantryTilt() {
+        Random random = new Random(3);
+        // Tilt of 20 degrees around the x axis: the position moves along z and y, the normal is tilted
+        double tilt = Math.toRadians(20);
+        double[] normal = { 0, -Math.sin(tilt), Math.cos(tilt) };
+        checkSameAsScan(buildSeries(normal, new double[] { 0, 1.8, 5.0 }, 120, 1, 0, random), random);
+    }
+
+    @Test
+    public void testMultiPhase() {
+        Random random = new Random(4);
+        double[] normal = normalize(0, 0.1, 1);
+        // 10 phases at the same locations, then 5 phases with small variations of the locations
+        checkSameAsScan(buildSeries(normal, new double[] { 0, 0.2, 2.0 }, 50, 10, 0, random), random);
+        checkSameAsScan(buildSeries(normal, new double[] { 0, 0.2, 2.0 }, 50, 5, 1e-7, random), random);
+    }
+
+    @Test
+    public void testUnsorted() {
+        Random random = new Random(5);
+        List<SimpleTagable> list = buildSeries(new double[] { 0, 0, 1 }, new double[] { 0, 0, 3 }, 100, 3, 0, random);
+        Collections.shuffle(list, random);
+        // Images without slice position are ignored
+        list.add(17, new SimpleTagable());
+        list.add(new SimpleTagable());
+        checkSameAsScan(list, random);
+
+        List<SimpleTagable> empty = new ArrayList<>();
+        empty.add(new SimpleTagable());
+        SliceIndex<SimpleTagable> index = SliceIndex.build(empty);
+        assertEquals(-1, index.getNearestPosition(10.0));
+        assertSame(null, index.getFirst());
+        assertSame(null, index.getLast());
+    }
+}
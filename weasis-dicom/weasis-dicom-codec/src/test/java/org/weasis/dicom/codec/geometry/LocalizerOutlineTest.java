@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec.geometry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class LocalizerOutlineTest {
+
+    private static final double EPSILON = 1e-9;
+    private static final int GEOMETRY_COUNT = 2000;
+
+    @After
+    public void tearDown() {
+        LocalizerOutline.clearCache();
+    }
+
+    private static double[] randomUnit(Random random) {
+        double[] v = { random.nextGaussian(), random.nextGaussian(), random.nextGaussian() };
+        double norm = Math.sqrt(v[0] * v[0] + v[1] * v[1] + v[2] * v[2]);
+        return new double[] { v[0] / norm, v[1] / norm, v[2] / norm };
+    }
+
+    private static double[] orthogonalUnit(double[] u, Random random) {
+        double[] v = randomUnit(random);
+        double dot = u[0] * v[0] + u[1] * v[1] + u[2] * v[2];
+        double[] w = { v[0] - dot * u[0], v[1] - dot * u[1], v[2] - dot * u[2] };
+        double norm = Math.sqrt(w[0] * w[0] + w[1] * w[1] + w[2] * w[2]);
+        return new double[] { w[0] / norm, w[1] / norm, w[2] / norm };
+    }
+
+    private static GeometryOfSlice randomGeometry(Random random, double[] center, double range) {
+        double[] row = randomUnit(random);
+        double[] column = orthogonalUnit(row, random);
+        double spacing = 0.3 + random.nextDouble() * 1.5;
+        double[] dim = { 64 + random.nextInt(448), 64 + random.nextInt(448), 1 };
+        double[] tlhc = new double[3];
+        for (int i = 0; i < 3; i++) {
+            // Place the center of the slice around the given center
+            double c = center[i] + (random.nextDouble() - 0.5) * range;
+            tlhc[i] = c - row[i] * dim[1] * spacing / 2 - column[i] * dim[0] * spacing / 2;
+        }
+        double thickness = 0.5 + random.nextDouble() * 10.0;
+        return new GeometryOfSlice(row, column, tlhc, new double[] { spacing, spacing, thickness }, thickness, dim);
+    }
+
+    private static void assertSameOutline(List<Point2D.Double> expected, double[] out, int offset, int nb) {
+        if (expected == null) {
+            assertEquals(0, nb);
+            return;
+        }
+        assertEquals(expected.size(), nb);
+        for (int i = 0; i < nb; i++) {
+            assertEquals(expected.get(i).x, out[offset + i * 2], EPSILON);
+            assertEquals(expected.get(i).y, out[offset + i * 2 + 1], EPSILON);
+        }
+    }
+
+    @Test
+    public void testSameResultsAsLocalizerPoster() {
+        Random random = new Random(7);
+        double[] work = new double[LocalizerOutline.WORK_SIZE];
+        double[] out = new double[LocalizerOutline.OUTPUT_SIZE];
+        int intersections = 0;
+        for (int i = 0; i < GEOMETRY_COUNT; i++) {
+            double[] center = { (random.nextDouble() - 0.5) * 400, (random.nextDouble() - 0.5) * 400,
+                (random.nextDouble() - 0.5) * 400 };
+            GeometryOfSlice localizer = randomGeometry(random, center, 0);
+            GeometryOfSlice source = randomGeometry(random, center, 200);
+            SlicePlane localizerPlane = new SlicePlane(localizer);
+            SlicePlane sourcePlane = new SlicePlane(source);
+
+            int nb = LocalizerOutline.intersectSlice(localizerPlane, sourcePlane, work, out, 0);
+            assertSameOutline(new IntersectSlice(localizer).getOutlineOnLocalizerForThisGeometry(source), out, 0, nb);
+            if (nb > 0) {
+                intersections++;
+            }
+
+            nb = LocalizerOutline.intersectVolume(localizerPlane, sourcePlane, work, out, 0);
+            assertSameOutline(new IntersectVolume(localizer).getOutlineOnLocalizerForThisGeometry(source), out, 0,
+                nb);
+        }
+        // Make sure that most of the random geometries are not trivial
+        assertTrue(intersections > GEOMETRY_COUNT / 2);
+    }
+
+    @Test
+    public void testSlicesInTheLocalizerPlane() {
+        Random random = new Random(11);
+        double[] work = new double[LocalizerOutline.WORK_SIZE];
+        double[] out = new double[LocalizerOutline.OUTPUT_SIZE];
+        for (int i = 0; i < 100; i++) {
+            GeometryOfSlice localizer = randomGeometry(random, new double[3], 100);
+            SlicePlane plane = new SlicePlane(localizer);
+            int nb = LocalizerOutline.intersectSlice(plane, plane, work, out, 0);
+            // Depending on the rounding, the result is the rectangle or a line
+            List<Point2D.Double> expected = new IntersectSlice(localizer).getOutlineOnLocalizerForThisGeometry(localizer);
+            assertSameOutline(expected, out, 0, nb);
+        }
+
+        GeometryOfSlice axial = new GeometryOfSlice(new double[] { 1, 0, 0 }, new double[] { 0, 1, 0 },
+            new double[] { -120, -80, 35 }, new double[] { 0.5, 0.5, 1 }, 1, new double[] { 512, 512, 1 });
+        SlicePlane plane = new SlicePlane(axial);
+        int nb = LocalizerOutline.intersectSlice(plane, plane, work, out, 0);
+        assertEquals(4, nb);
+        assertSameOutline(new IntersectSlice(axial).getOutlineOnLocalizerForThisGeometry(axial), out, 0, nb);
+    }
+
+    @Test
+    public void testParallelSlicesDoNotIntersect() {
+        double[] row = { 1, 0, 0 };
+        double[] column = { 0, 1, 0 };
+        double[] spacing = { 1, 1, 2 };
+        double[] dim = { 256, 256, 1 };
+        SlicePlane localizer = new SlicePlane(row, column, new double[] { 0, 0, 0 }, spacing, 2, dim);
+        SlicePlane source = new SlicePlane(row, column, new double[] { 0, 0, 10 }, spacing, 2, dim);
+        assertEquals(0, LocalizerOutline.getOutline(localizer, source, false).length);
+        assertEquals(0, LocalizerOutline.getOutline(localizer, source, true).length);
+        assertNull(LocalizerOutline.toPoints(LocalizerOutline.getOutline(localizer, source, true)));
+        assertEquals(-10.0, localizer.distance(0, 0, -10), EPSILON);
+    }
+
+    @Test
+    public void testBatchAndCache() {
+        Random random = new Random(3);
+        int views = 16;
+        SlicePlane[] localizers = new SlicePlane[views];
+        GeometryOfSlice[] geometries = new GeometryOfSlice[views];
+        for (int i = 0; i < views; i++) {
+            geometries[i] = randomGeometry(random, new double[3], 50);
+            localizers[i] = new SlicePlane(geometries[i]);
+        }
+        GeometryOfSlice source = randomGeometry(random, new double[3], 50);
+        SlicePlane sourcePlane = new SlicePlane(source);
+
+        double[] work = new double[LocalizerOutline.WORK_SIZE];
+        double[] out = new double[views * LocalizerOutline.OUTPUT_SIZE];
+        int[] counts = new int[views];
+        for (boolean volume : new boolean[] { false, true }) {
+            LocalizerOutline.intersect(localizers, sourcePlane, volume, work, out, counts);
+            for (int i = 0; i < views; i++) {
+                LocalizerPoster poster = volume ? new IntersectVolume(geometries[i]) : new IntersectSlice(geometries[i]);
+                assertSameOutline(poster.getOutlineOnLocalizerForThisGeometry(source), out,
+                    i * LocalizerOutline.OUTPUT_SIZE, counts[i]);
+
+                double[] outline = LocalizerOutline.getOutline(localizers[i], sourcePlane, volume);
+                assertEquals(counts[i] * 2, outline.length);
+                // The key is compared by value
+                assertSame(outline, LocalizerOutline.getOutline(new SlicePlane(geometries[i]), new SlicePlane(source),
+                    volume));
+            }
+        }
+    }
+
+    @Test
+    public void testPrepareOutlines() {
+        LocalizerOutline.clearCache();
+        Random random = new Random(7);
+        int views = 16;
+        SlicePlane[] localizers = new SlicePlane[views];
+        for (int i = 0; i < views; i++) {
+            localizers[i] = new SlicePlane(randomGeometry(random, new double[3], 50));
+        }
+        SlicePlane source = new SlicePlane(randomGeometry(random, new double[3], 50));
+
+        double[] work = new double[LocalizerOutline.WORK_SIZE];
+        double[] out = new double[LocalizerOutline.OUTPUT_SIZE];
+        for (boolean volume : new boolean[] { false, true }) {
+            // Only half of the views are already in the cache
+            double[][] cached = new double[views][];
+            for (int i = 0; i < views; i += 2) {
+                cached[i] = LocalizerOutline.getOutline(localizers[i], source, volume);
+            }
+            LocalizerOutline.prepareOutlines(localizers, source, volume);
+            for (int i = 0; i < views; i++) {
+                double[] outline = LocalizerOutline.getOutline(localizers[i], source, volume);
+                if (cached[i] != null) {
+                    // Not computed again
+                    assertSame(cached[i], outline);
+                }
+                int nb = volume ? LocalizerOutline.intersectVolume(localizers[i], source, work, out, 0)
+                    : LocalizerOutline.intersectSlice(localizers[i], source, work, out, 0);
+                assertArrayEquals(Arrays.copyOf(out, nb * 2), outline, 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testPlaneEquality() {
+        Random random = new Random(5);
+        GeometryOfSlice g1 = randomGeometry(random, new double[3], 50);
+        GeometryOfSlice g2 = randomGeometry(random, new double[3], 50);
+        assertEquals(new SlicePlane(g1), new SlicePlane(g1));
+        assertEquals(new SlicePlane(g1).hashCode(), new SlicePlane(g1).hashCode());
+        assertNotEquals(new SlicePlane(g1), new SlicePlane(g2));
+        assertArrayEquals(g1.getNormalArray(), new SlicePlane(g1).getNormal(), 1e-12);
+    }
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Fragments;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomOutputStream;
+import org.junit.Test;
+
+public class DicomStreamRewriterTest {
+
+    private static final Consumer<Attributes> OVERRIDE = ds -> {
+        ds.setString(Tag.PatientName, VR.PN, "Override^Name"); //$NON-NLS-1$
+        ds.setString(Tag.PatientID, VR.LO, "ID-2"); //$NON-NLS-1$
+    };
+
+    private static Attributes buildHeader() {
+        Attributes ds = new Attributes();
+        ds.setString(Tag.SOPClassUID, VR.UI, UID.CTImageStorage);
+        ds.setString(Tag.SOPInstanceUID, VR.UI, "1.2.3.4.5.6"); //$NON-NLS-1$
+        ds.setString(Tag.PatientName, VR.PN, "Original^Name"); //$NON-NLS-1$
+        ds.setString(Tag.PatientID, VR.LO, "ID-1"); //$NON-NLS-1$
+        ds.setInt(Tag.Rows, VR.US, 256);
+        ds.setInt(Tag.Columns, VR.US, 256);
+        ds.setInt(Tag.BitsAllocated, VR.US, 16);
+        ds.setInt(Tag.BitsStored, VR.US, 12);
+        ds.setInt(Tag.HighBit, VR.US, 11);
+        ds.setInt(Tag.SamplesPerPixel, VR.US, 1);
+        ds.setString(Tag.PhotometricInterpretation, VR.CS, "MONOCHROME2"); //$NON-NLS-1$
+        Attributes item = new Attributes();
+        item.setString(Tag.CodeValue, VR.SH, "T-A0100"); //$NON-NLS-1$
+        ds.newSequence(Tag.AnatomicRegionSequence, 1).add(item);
+        return ds;
+    }
+
+    private static byte[] pixels(int size) {
+        byte[] b = new byte[size];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = (byte) (i * 31);
+        }
+        return b;
+    }
+
+    private static byte[] write(Attributes ds, String tsuid) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DicomOutputStream dos = new DicomOutputStream(out, UID.ExplicitVRLittleEndian)) {
+            dos.writeDataset(ds.createFileMetaInformation(tsuid), ds);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Previous implementation: read the whole dataset and write it again.
+     */
+    private static byte[] referenceRewrite(byte[] source) throws IOException {
+        try (DicomInputStream dis = new DicomInputStream(new ByteArrayInputStream(source))) {
+            Attributes ds = dis.readDataset(-1, -1);
+            OVERRIDE.accept(ds);
+            return write(ds, dis.getTransferSyntax());
+        }
+    }
+
+    private static void checkRewrite(byte[] source) throws IOException {
+        CountingInputStream in = new CountingInputStream(new ByteArrayInputStream(source));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Attributes header = DicomStreamRewriter.rewrite(in, out, OVERRIDE);
+
+        assertFalse(header.contains(Tag.PixelData));
+        assertEquals("Override^Name", header.getString(Tag.PatientName)); //$NON-NLS-1$
+        assertArrayEquals(referenceRewrite(source), out.toByteArray());
+        // Each byte of the source is read only once
+        assertEquals(source.length, in.count);
+    }
+
+    @Test
+    public void testNativePixelData() throws IOException {
+        Attributes ds = buildHeader();
+        ds.setBytes(Tag.PixelData, VR.OW, pixels(256 * 256 * 2));
+        ds.setBytes(Tag.DataSetTrailingPadding, VR.OB, new byte[8]);
+        checkRewrite(write(ds, UID.ExplicitVRLittleEndian));
+        checkRewrite(write(ds, UID.ImplicitVRLittleEndian));
+    }
+
+    @Test
+    public void testEncapsulatedPixelData() throws IOException {
+        Attributes ds = buildHeader();
+        Fragments frags = ds.newFragments(Tag.PixelData, VR.OB, 3);
+        frags.add(new byte[0]);
+        frags.add(pixels(10_000));
+        frags.add(pixels(20_002));
+        checkRewrite(write(ds, UID.JPEGLossless));
+    }
+
+    @Test
+    public void testWithoutPixelData() throws IOException {
+        Attributes ds = buildHeader();
+        ds.remove(Tag.Rows);
+        ds.setString(Tag.SOPClassUID, VR.UI, UID.BasicTextSRStorage);
+        checkRewrite(write(ds, UID.ExplicitVRLittleEndian));
+    }
+
+    static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long s = super.skip(n);
+            count += s;
+            return s;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.awt.geom.Area;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.opencv.core.Core;
+import org.weasis.core.api.media.data.ImageElement;
+import org.weasis.core.api.media.data.MediaReader;
+import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.metrics.Counter;
+import org.weasis.core.api.metrics.MetricRegistry;
+import org.weasis.dicom.codec.utils.OverlayUtils.MaskKey;
+import org.weasis.opencv.data.PlanarImage;
+
+public class OverlayUtilsTest {
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 4;
+    private static final int SHUTTER_SIZE = 64;
+
+    private static final Counter HITS = MetricRegistry.getDefault().counter("cache.overlay.hit"); //$NON-NLS-1$
+    private static final Counter MISSES = MetricRegistry.getDefault().counter("cache.overlay.miss"); //$NON-NLS-1$
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ImageElement image;
+
+    @Before
+    public void setUp() {
+        image = new ImageElement(Mockito.mock(MediaReader.class), 0);
+    }
+
+    private static boolean isSet(int frame, int x, int y) {
+        // Diagonal for the first frame, first row for the second frame
+        return frame == 0 ? x == y * 2 : y == 0;
+    }
+
+    private static byte[] packedOverlay(int frames) {
+        int length = WIDTH * HEIGHT;
+        byte[] data = new byte[(((frames * length + 7) >>> 3) + 1) & ~1];
+        for (int f = 0; f < frames; f++) {
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    if (isSet(f, x, y)) {
+                        int i = f * length + y * WIDTH + x;
+                        data[i >>> 3] |= 1 << (i & 7);
+                    }
+                }
+            }
+        }
+        return data;
+    }
+
+    private static Attributes overlayAttributes(int gg0000, int frames, byte[] data, int bitsAllocated) {
+        Attributes attrs = new Attributes();
+        attrs.setInt(Tag.Rows, VR.US, HEIGHT);
+        attrs.setInt(Tag.Columns, VR.US, WIDTH);
+        attrs.setInt(Tag.OverlayRows | gg0000, VR.US, HEIGHT);
+        attrs.setInt(Tag.OverlayColumns | gg0000, VR.US, WIDTH);
+        attrs.setString(Tag.OverlayType | gg0000, VR.CS, "G"); //$NON-NLS-1$
+        attrs.setInt(Tag.OverlayOrigin | gg0000, VR.SS, 1, 1);
+        attrs.setInt(Tag.OverlayBitsAllocated | gg0000, VR.US, bitsAllocated);
+        attrs.setInt(Tag.OverlayBitPosition | gg0000, VR.US, bitsAllocated == 1 ? 0 : 12);
+        if (frames > 1) {
+            attrs.setInt(Tag.NumberOfFramesInOverlay | gg0000, VR.IS, frames);
+        }
+        if (data != null) {
+            attrs.setBytes(Tag.OverlayData | gg0000, VR.OW, data);
+        }
+        return attrs;
+    }
+
+    private static void assertOverlay(RenderedImage img, int frame) {
+        assertEquals(WIDTH, img.getWidth());
+        assertEquals(HEIGHT, img.getHeight());
+        Raster raster = ((BufferedImage) img).getRaster();
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals("x=" + x + " y=" + y, isSet(frame, x, y) ? 1 : 0, raster.getSample(x, y, 0)); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+    }
+
+    @Test
+    public void testSeparateOverlay() throws IOException {
+        Attributes attrs = overlayAttributes(0, 1, packedOverlay(1), 1);
+        Map<String, Object> params = new HashMap<>();
+        assertOverlay(OverlayUtils.getBinaryOverlays(image, attrs, 0, WIDTH, HEIGHT, params), 0);
+
+        // Second overlay group with the same content
+        attrs.addAll(overlayAttributes(0x20000, 1, packedOverlay(1), 1));
+        assertOverlay(OverlayUtils.getBinaryOverlays(image, attrs, 0, WIDTH, HEIGHT, params), 0);
+    }
+
+    @Test
+    public void testMultiFrameOverlay() throws IOException {
+        Attributes attrs = overlayAttributes(0, 2, packedOverlay(2), 1);
+        Map<String, Object> params = new HashMap<>();
+        assertOverlay(OverlayUtils.getBinaryOverlays(image, attrs, 0, WIDTH, HEIGHT, params), 0);
+        assertOverlay(OverlayUtils.getBinaryOverlays(image, attrs, 1, WIDTH, HEIGHT, params), 1);
+    }
+
+    @Test
+    public void testEmbeddedOverlay() throws IOException {
+        Attributes attrs = overlayAttributes(0, 1, null, 16);
+        BufferedImage pixels = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_USHORT_GRAY);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                pixels.getRaster().setSample(x, y, 0, (isSet(0, x, y) ? 1 << 12 : 0) | 0x0FF);
+            }
+        }
+        byte[] data = OverlayUtils.extractOverlay(0, pixels.getRaster(), attrs);
+
+        File file = folder.newFile("overlay.ser"); //$NON-NLS-1$
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(new byte[][] { data });
+        }
+        image.setTag(TagW.OverlayBurninDataPath, file.getPath());
+
+        assertOverlay(OverlayUtils.getBinaryOverlays(image, attrs, 0, WIDTH, HEIGHT, new HashMap<>()), 0);
+    }
+
+    @Test
+    public void testShutterOverlay() throws IOException {
+        Attributes attrs = overlayAttributes(0, 1, packedOverlay(1), 1);
+        attrs.setInt(Tag.ShutterOverlayGroup, VR.US, 0x6000);
+        assertOverlay(OverlayUtils.getShutterOverlay(attrs, 0, WIDTH, HEIGHT, 0x6000), 0);
+    }
+
+    private static boolean loadOpenCV() {
+        try {
+            System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            return false;
+        }
+    }
+
+    private static int value(PlanarImage mask, int x, int y) {
+        return (int) mask.toMat().get(y, x)[0];
+    }
+
+    private static void assertMask(PlanarImage mask, int frame) {
+        assertEquals(WIDTH, mask.width());
+        assertEquals(HEIGHT, mask.height());
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                boolean set = value(mask, x, y) != 0;
+                assertEquals("x=" + x + " y=" + y, isSet(frame, x, y), set); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+    }
+
+    @Test
+    public void testMaskKey() {
+        Object source = new Object();
+        Attributes reference = new Attributes();
+        MaskKey key = new MaskKey(source, reference, 1, WIDTH, HEIGHT);
+        MaskKey same = new MaskKey(source, reference, 1, WIDTH, HEIGHT);
+        assertEquals(key, same);
+        assertEquals(key.hashCode(), same.hashCode());
+
+        // The sources are compared by reference
+        assertNotEquals(key, new MaskKey(new Object(), reference, 1, WIDTH, HEIGHT));
+        assertNotEquals(key, new MaskKey(source, new Attributes(), 1, WIDTH, HEIGHT));
+        assertNotEquals(key, new MaskKey(source, null, 1, WIDTH, HEIGHT));
+        assertNotEquals(key, new MaskKey(source, reference, 0, WIDTH, HEIGHT));
+        assertNotEquals(key, new MaskKey(source, reference, 1, WIDTH / 2, HEIGHT));
+        assertNotEquals(key, new MaskKey(source, reference, 1, WIDTH, HEIGHT / 2));
+    }
+
+    @Test
+    public void testOverlayMaskExtractedOncePerFrame() throws IOException {
+        Assume.assumeTrue("OpenCV native library not available", loadOpenCV()); //$NON-NLS-1$
+
+        ImageElement img = Mockito.spy(new ImageElement(Mockito.mock(MediaReader.class), 0));
+        Attributes attrs = overlayAttributes(0, 2, packedOverlay(2), 1);
+        Map<String, Object> params = new HashMap<>();
+
+        long misses = MISSES.getCount();
+        long hits = HITS.getCount();
+        PlanarImage frame0 = OverlayUtils.getOverlayMask(img, attrs, 0, WIDTH, HEIGHT, params, WIDTH, HEIGHT);
+        assertMask(frame0, 0);
+        assertEquals(misses + 1, MISSES.getCount());
+
+        // Same frame: the cached instance is reused, the overlay is not extracted again
+        assertSame(frame0, OverlayUtils.getOverlayMask(img, attrs, 0, WIDTH, HEIGHT, params, WIDTH, HEIGHT));
+        assertEquals(hits + 1, HITS.getCount());
+        Mockito.verify(img, Mockito.times(1)).getTagValue(TagW.OverlayBurninDataPath);
+
+        PlanarImage frame1 = OverlayUtils.getOverlayMask(img, attrs, 1, WIDTH, HEIGHT, params, WIDTH, HEIGHT);
+        assertMask(frame1, 1);
+        assertSame(frame1, OverlayUtils.getOverlayMask(img, attrs, 1, WIDTH, HEIGHT, params, WIDTH, HEIGHT));
+        assertSame(frame0, OverlayUtils.getOverlayMask(img, attrs, 0, WIDTH, HEIGHT, params, WIDTH, HEIGHT));
+        Mockito.verify(img, Mockito.times(2)).getTagValue(TagW.OverlayBurninDataPath);
+
+        // Masks of another image are kept
+        PlanarImage other = OverlayUtils.getOverlayMask(image, attrs, 0, WIDTH, HEIGHT, params, WIDTH, HEIGHT);
+
+        // Disposing the image removes its masks, then the overlay is extracted again
+        OverlayUtils.removeMasks(img);
+        PlanarImage again = OverlayUtils.getOverlayMask(img, attrs, 0, WIDTH, HEIGHT, params, WIDTH, HEIGHT);
+        assertNotSame(frame0, again);
+        assertMask(again, 0);
+        Mockito.verify(img, Mockito.times(3)).getTagValue(TagW.OverlayBurninDataPath);
+        assertSame(other, OverlayUtils.getOverlayMask(image, attrs, 0, WIDTH, HEIGHT, params, WIDTH, HEIGHT));
+
+        OverlayUtils.removeMasks(img);
+        OverlayUtils.removeMasks(image);
+    }
+
+    @Test
+    public void testScaledMask() throws IOException {
+        Assume.assumeTrue("OpenCV native library not available", loadOpenCV()); //$NON-NLS-1$
+
+        Attributes attrs = overlayAttributes(0, 1, packedOverlay(1), 1);
+        Map<String, Object> params = new HashMap<>();
+
+        long misses = MISSES.getCount();
+        long hits = HITS.getCount();
+        PlanarImage scaled = OverlayUtils.getOverlayMask(image, attrs, 0, WIDTH, HEIGHT, params, WIDTH / 2, HEIGHT / 2);
+        assertEquals(WIDTH / 2, scaled.width());
+        assertEquals(HEIGHT / 2, scaled.height());
+        // Miss of the full resolution mask and of the scaled mask
+        assertEquals(misses + 2, MISSES.getCount());
+        assertEquals(hits, HITS.getCount());
+
+        assertSame(scaled,
+            OverlayUtils.getOverlayMask(image, attrs, 0, WIDTH, HEIGHT, params, WIDTH / 2, HEIGHT / 2));
+        assertEquals(misses + 2, MISSES.getCount());
+        assertEquals(hits + 2, HITS.getCount());
+
+        // The full resolution mask is shared by all the scales
+        assertMask(OverlayUtils.getOverlayMask(image, attrs, 0, WIDTH, HEIGHT, params, WIDTH, HEIGHT), 0);
+        assertEquals(misses + 2, MISSES.getCount());
+
+        OverlayUtils.removeMasks(image);
+        assertNotSame(scaled,
+            OverlayUtils.getOverlayMask(image, attrs, 0, WIDTH, HEIGHT, params, WIDTH / 2, HEIGHT / 2));
+        OverlayUtils.removeMasks(image);
+    }
+
+    @Test
+    public void testShutterOverlayMask() throws IOException {
+        Assume.assumeTrue("OpenCV native library not available", loadOpenCV()); //$NON-NLS-1$
+
+        Attributes attrs = overlayAttributes(0, 1, packedOverlay(1), 1);
+        attrs.setInt(Tag.ShutterOverlayGroup, VR.US, 0x6000);
+
+        PlanarImage mask = OverlayUtils.getShutterOverlayMask(image, attrs, 0, WIDTH, HEIGHT, 0x6000, WIDTH, HEIGHT);
+        assertMask(mask, 0);
+        assertSame(mask,
+            OverlayUtils.getShutterOverlayMask(image, attrs, 0, WIDTH, HEIGHT, 0x6000, WIDTH, HEIGHT));
+
+        // The same attributes displayed by another image have their own entry
+        ImageElement img = new ImageElement(Mockito.mock(MediaReader.class), 0);
+        PlanarImage other = OverlayUtils.getShutterOverlayMask(img, attrs, 0, WIDTH, HEIGHT, 0x6000, WIDTH, HEIGHT);
+        assertNotSame(mask, other);
+
+        // The entries are removed with the image displaying the shutter
+        OverlayUtils.removeMasks(image);
+        assertNotSame(mask,
+            OverlayUtils.getShutterOverlayMask(image, attrs, 0, WIDTH, HEIGHT, 0x6000, WIDTH, HEIGHT));
+        assertSame(other, OverlayUtils.getShutterOverlayMask(img, attrs, 0, WIDTH, HEIGHT, 0x6000, WIDTH, HEIGHT));
+        OverlayUtils.removeMasks(image);
+        OverlayUtils.removeMasks(img);
+    }
+
+    private Area getShutterArea(Attributes attrs) {
+        ImageElement img = new ImageElement(Mockito.mock(MediaReader.class), 0);
+        DicomMediaUtils.setShutter(img, attrs);
+        return (Area) img.getTagValue(TagW.ShutterFinalShape);
+    }
+
+    private PlanarImage getShutterMask(Area area, double[] scale, int size) {
+        PlanarImage mask = OverlayUtils.getShutterMask(image, area, scale, size, size);
+        assertEquals(size, mask.width());
+        assertEquals(size, mask.height());
+        assertSame(mask, OverlayUtils.getShutterMask(image, area, scale, size, size));
+        return mask;
+    }
+
+    @Test
+    public void testRectangularShutter() {
+        Assume.assumeTrue("OpenCV native library not available", loadOpenCV()); //$NON-NLS-1$
+
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.ShutterShape, VR.CS, "RECTANGULAR"); //$NON-NLS-1$
+        attrs.setInt(Tag.ShutterLeftVerticalEdge, VR.IS, 10);
+        attrs.setInt(Tag.ShutterRightVerticalEdge, VR.IS, 40);
+        attrs.setInt(Tag.ShutterUpperHorizontalEdge, VR.IS, 20);
+        attrs.setInt(Tag.ShutterLowerHorizontalEdge, VR.IS, 50);
+        Area area = getShutterArea(attrs);
+
+        PlanarImage mask = getShutterMask(area, null, SHUTTER_SIZE);
+        assertEquals(1, value(mask, 15, 25));
+        assertEquals(1, value(mask, 35, 45));
+        assertEquals(0, value(mask, 5, 25));
+        assertEquals(0, value(mask, 45, 25));
+        assertEquals(0, value(mask, 15, 15));
+        assertEquals(0, value(mask, 15, 55));
+
+        // Pyramid level at half resolution
+        PlanarImage half = getShutterMask(area, new double[] { 0.5, 0.5 }, SHUTTER_SIZE / 2);
+        assertNotSame(mask, half);
+        assertEquals(1, value(half, 7, 12));
+        assertEquals(0, value(half, 3, 12));
+        assertEquals(0, value(half, 7, 27));
+
+        OverlayUtils.removeMasks(image);
+        assertNotSame(mask, OverlayUtils.getShutterMask(image, area, null, SHUTTER_SIZE, SHUTTER_SIZE));
+        OverlayUtils.removeMasks(image);
+    }
+
+    @Test
+    public void testCircularShutter() {
+        Assume.assumeTrue("OpenCV native library not available", loadOpenCV()); //$NON-NLS-1$
+
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.ShutterShape, VR.CS, "CIRCULAR"); //$NON-NLS-1$
+        // Row\Column
+        attrs.setInt(Tag.CenterOfCircularShutter, VR.IS, 24, 32);
+        attrs.setInt(Tag.RadiusOfCircularShutter, VR.IS, 16);
+        Area area = getShutterArea(attrs);
+
+        PlanarImage mask = getShutterMask(area, null, SHUTTER_SIZE);
+        assertEquals(1, value(mask, 32, 24));
+        assertEquals(1, value(mask, 20, 24));
+        assertEquals(1, value(mask, 32, 12));
+        assertEquals(0, value(mask, 32, 44));
+        assertEquals(0, value(mask, 12, 24));
+        assertEquals(0, value(mask, 2, 2));
+        // Corner of the bounding box, outside of the circle
+        assertEquals(0, value(mask, 46, 38));
+
+        PlanarImage half = getShutterMask(area, new double[] { 0.5, 0.5 }, SHUTTER_SIZE / 2);
+        assertEquals(1, value(half, 16, 12));
+        assertEquals(0, value(half, 16, 22));
+        OverlayUtils.removeMasks(image);
+    }
+
+    @Test
+    public void testPolygonalShutter() {
+        Assume.assumeTrue("OpenCV native library not available", loadOpenCV()); //$NON-NLS-1$
+
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.ShutterShape, VR.CS, "POLYGONAL"); //$NON-NLS-1$
+        // Triangle, vertices as Row\Column
+        attrs.setInt(Tag.VerticesOfThePolygonalShutter, VR.IS, 10, 10, 10, 50, 50, 10);
+        Area area = getShutterArea(attrs);
+
+        PlanarImage mask = getShutterMask(area, null, SHUTTER_SIZE);
+        assertEquals(1, value(mask, 15, 15));
+        assertEquals(1, value(mask, 40, 12));
+        assertEquals(1, value(mask, 12, 40));
+        assertEquals(0, value(mask, 45, 45));
+        assertEquals(0, value(mask, 5, 5));
+        assertEquals(0, value(mask, 55, 15));
+
+        PlanarImage half = getShutterMask(area, new double[] { 0.5, 0.5 }, SHUTTER_SIZE / 2);
+        assertEquals(1, value(half, 8, 8));
+        assertEquals(0, value(half, 22, 22));
+        OverlayUtils.removeMasks(image);
+    }
+
+    @Test
+    public void testCombinedShutter() {
+        Assume.assumeTrue("OpenCV native library not available", loadOpenCV()); //$NON-NLS-1$
+
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.ShutterShape, VR.CS, "RECTANGULAR", "CIRCULAR"); //$NON-NLS-1$ //$NON-NLS-2$
+        attrs.setInt(Tag.ShutterLeftVerticalEdge, VR.IS, 0);
+        attrs.setInt(Tag.ShutterRightVerticalEdge, VR.IS, 32);
+        attrs.setInt(Tag.ShutterUpperHorizontalEdge, VR.IS, 0);
+        attrs.setInt(Tag.ShutterLowerHorizontalEdge, VR.IS, 64);
+        attrs.setInt(Tag.CenterOfCircularShutter, VR.IS, 32, 32);
+        attrs.setInt(Tag.RadiusOfCircularShutter, VR.IS, 20);
+        Area area = getShutterArea(attrs);
+
+        // Intersection of the rectangle and of the circle: left half of the disk
+        PlanarImage mask = getShutterMask(area, null, SHUTTER_SIZE);
+        assertEquals(1, value(mask, 20, 32));
+        assertEquals(0, value(mask, 44, 32));
+        assertEquals(0, value(mask, 5, 5));
+        OverlayUtils.removeMasks(image);
+    }
+}
@@ -0,0 +1,339 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.weasis.core.api.media.data.MediaElement;
+import org.weasis.core.api.media.data.MediaReader;
+import org.weasis.core.api.media.data.Series;
+import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.media.data.TagW.TagType;
+import org.weasis.dicom.codec.utils.SeriesSplitIndex.SplitKey;
+import org.weasis.dicom.codec.utils.SplittingModalityRules.Condition;
+import org.weasis.dicom.codec.utils.SplittingModalityRules.DefaultCondition;
+import org.weasis.dicom.codec.utils.SplittingModalityRules.Rule;
+
+public class SeriesSplitIndexTest {
+    private static final TagW INSTANCE_NUMBER = new TagW("InstanceNumber", TagType.INTEGER); //$NON-NLS-1$
+    private static final TagW IMAGE_TYPE = new TagW("ImageType", TagType.STRING, 1, Integer.MAX_VALUE) { //$NON-NLS-1$
+        @Override
+        public Object getValue(Object data) {
+            // Read the value of the condition like TagD
+            return data instanceof String ? new String[] { (String) data } : super.getValue(data);
+        }
+    };
+    private static final TagW ECHO_TIME = new TagW("EchoTime", TagType.DOUBLE); //$NON-NLS-1$
+    private static final TagW TEMPORAL_POSITION = new TagW("TemporalPositionIdentifier", TagType.INTEGER); //$NON-NLS-1$
+    private static final TagW B_VALUE = new TagW("DiffusionBValue", TagType.DOUBLE); //$NON-NLS-1$
+    private static final TagW GRADIENT = new TagW("DiffusionGradientOrientation", TagType.DOUBLE, 3, 3); //$NON-NLS-1$
+    private static final TagW ORIENTATION = new TagW("ImageOrientationPlane", TagType.STRING); //$NON-NLS-1$
+
+    private static final String[] ORIGINAL = { "ORIGINAL", "PRIMARY", "M" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    private static final String[] LOCALIZER = { "ORIGINAL", "PRIMARY", "PROJECTION IMAGE" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+    private static final Comparator<MediaElement> INSTANCE_ORDER =
+        Comparator.comparing(m -> (Integer) m.getTagValue(INSTANCE_NUMBER));
+
+    private static long comparisons;
+
+    private MediaReader reader;
+    private List<Rule> rules;
+
+    static class TestMedia extends MediaElement {
+        TestMedia(MediaReader reader, int instanceNumber) {
+            super(reader, null);
+            setTag(INSTANCE_NUMBER, instanceNumber);
+        }
+    }
+
+    static class OtherMedia extends TestMedia {
+        OtherMedia(MediaReader reader, int instanceNumber) {
+            super(reader, instanceNumber);
+        }
+    }
+
+    static class TestSeries extends Series<MediaElement> {
+        TestSeries(String uid) {
+            super(TagW.SubseriesInstanceUID, uid, null);
+        }
+
+        // Sorted by instance number like DicomSeries, so the first media can change
+        @Override
+        public void addMedia(MediaElement media) {
+            synchronized (this) {
+                int index = Collections.binarySearch(medias, media, INSTANCE_ORDER);
+                add(index < 0 ? -(index + 1) : index + 1, media);
+            }
+        }
+
+        @Override
+        public String getMimeType() {
+            return "image/test"; //$NON-NLS-1$
+        }
+    }
+
+    // Counts the comparisons of a new instance with the first media of a series
+    static class CountingRule extends Rule {
+        CountingRule(TagW tag, Condition condition) {
+            super(tag, condition);
+        }
+
+        @Override
+        public boolean isTagValueMatching(MediaElement seriesMedia, MediaElement newMedia) {
+            comparisons++;
+            return super.isTagValueMatching(seriesMedia, newMedia);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        reader = Mockito.mock(MediaReader.class);
+        Condition notProjection = new SplittingModalityRules.And();
+        notProjection.addChild(new DefaultCondition(IMAGE_TYPE, Condition.Type.notContainsIgnoreCase, "PROJECTION")); //$NON-NLS-1$
+        rules = new ArrayList<>();
+        rules.add(new CountingRule(IMAGE_TYPE, null));
+        rules.add(new CountingRule(ECHO_TIME, null));
+        rules.add(new CountingRule(TEMPORAL_POSITION, null));
+        rules.add(new CountingRule(B_VALUE, null));
+        rules.add(new CountingRule(GRADIENT, null));
+        rules.add(new CountingRule(ORIENTATION, notProjection));
+    }
+
+    private MediaElement image(int instanceNumber, String[] imageType, String orientation) {
+        MediaElement media = new TestMedia(reader, instanceNumber);
+        // New arrays for each instance: the values are compared by content
+        media.setTag(IMAGE_TYPE, imageType.clone());
+        media.setTag(ORIENTATION, orientation);
+        return media;
+    }
+
+    private List<MediaElement> multiEcho(int slices, int echoes) {
+        List<MediaElement> list = new ArrayList<>();
+        int nb = 1;
+        for (int e = 1; e <= echoes; e++) {
+            for (int i = 0; i < slices; i++) {
+                MediaElement media = image(nb++, ORIGINAL, "AXIAL"); //$NON-NLS-1$
+                media.setTag(ECHO_TIME, 9.5 * e);
+                list.add(media);
+            }
+        }
+        return list;
+    }
+
+    private List<MediaElement> multiPhase(int slices, int phases) {
+        List<MediaElement> list = new ArrayList<>();
+        int nb = 1;
+        for (int p = 1; p <= phases; p++) {
+            for (int i = 0; i < slices; i++) {
+                MediaElement media = image(nb++, ORIGINAL, "SAGITTAL"); //$NON-NLS-1$
+                media.setTag(TEMPORAL_POSITION, p);
+                list.add(media);
+            }
+        }
+        // Localizers: the orientation is not a splitting criteria for projection images
+        list.add(image(nb++, LOCALIZER, "AXIAL")); //$NON-NLS-1$
+        list.add(image(nb++, LOCALIZER, "CORONAL")); //$NON-NLS-1$
+        MediaElement other = new OtherMedia(reader, nb);
+        other.setTag(IMAGE_TYPE, ORIGINAL.clone());
+        list.add(other);
+        return list;
+    }
+
+    private List<MediaElement> diffusion(int slices, int directions) {
+        List<MediaElement> list = new ArrayList<>();
+        int nb = 1;
+        for (int i = 0; i < slices; i++) {
+            MediaElement media = image(nb++, ORIGINAL, "AXIAL"); //$NON-NLS-1$
+            media.setTag(B_VALUE, 0.0);
+            list.add(media);
+        }
+        for (int d = 0; d < directions; d++) {
+            double angle = Math.PI * d / directions;
+            double[] gradient = { Math.cos(angle), Math.sin(angle), d % 2 == 0 ? 0.0 : 1.0 };
+            for (int i = 0; i < slices; i++) {
+                MediaElement media = image(nb++, ORIGINAL, "AXIAL"); //$NON-NLS-1$
+                media.setTag(B_VALUE, 1000.0);
+                media.setTag(GRADIENT, gradient.clone());
+                list.add(media);
+            }
+        }
+        return list;
+    }
+
+    // Iteration on all the split series previously done in DicomModel.applySplittingRules()
+    private List<TestSeries> splitByScan(List<MediaElement> medias) {
+        List<TestSeries> list = new ArrayList<>();
+        list.add(new TestSeries("1.2.3")); //$NON-NLS-1$
+        for (MediaElement media : medias) {
+            TestSeries similar = null;
+            for (TestSeries s : list) {
+                if (SeriesSplitIndex.isSimilar(rules, s, media)) {
+                    similar = s;
+                    break;
+                }
+            }
+            if (similar == null) {
+                similar = new TestSeries("#" + list.size() + ".1.2.3"); //$NON-NLS-1$ //$NON-NLS-2$
+                list.add(similar);
+            }
+            similar.addMedia(media);
+        }
+        return list;
+    }
+
+    private List<Series<?>> splitByIndex(List<MediaElement> medias) {
+        SeriesSplitIndex index = new SeriesSplitIndex(new TestSeries("1.2.3"), TestSeries.class); //$NON-NLS-1$
+        for (MediaElement media : medias) {
+            Series<?> similar = index.findSimilar(rules, media);
+            if (similar == null) {
+                TestSeries s = new TestSeries("#" + index.getSeries().size() + ".1.2.3"); //$NON-NLS-1$ //$NON-NLS-2$
+                index.add(s);
+                s.addMedia(media);
+            } else {
+                ((TestSeries) similar).addMedia(media);
+                index.mediaAdded(similar);
+            }
+        }
+        return index.getSeries();
+    }
+
+    private void assertSameSplitting(List<MediaElement> medias) {
+        List<TestSeries> expected = splitByScan(medias);
+        List<Series<?>> actual = splitByIndex(medias);
+        assertThat(actual.size()).isEqualTo(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).copyOfMedias(null, null)).isEqualTo(expected.get(i).copyOfMedias(null, null));
+        }
+    }
+
+    @Test
+    public void testMultiEcho() {
+        List<MediaElement> medias = multiEcho(40, 8);
+        assertSameSplitting(medias);
+        assertThat(splitByIndex(medias).size()).isEqualTo(8);
+
+        Collections.shuffle(medias, new Random(7));
+        assertSameSplitting(medias);
+    }
+
+    @Test
+    public void testMultiPhase() {
+        List<MediaElement> medias = multiPhase(24, 20);
+        assertSameSplitting(medias);
+        // 20 phases, one series for the localizers and one for the other media class
+        assertThat(splitByIndex(medias).size()).isEqualTo(22);
+
+        // The projection images can be the first media of a series
+        Collections.shuffle(medias, new Random(11));
+        assertSameSplitting(medias);
+    }
+
+    @Test
+    public void testDiffusion() {
+        List<MediaElement> medias = diffusion(30, 64);
+        assertSameSplitting(medias);
+        assertThat(splitByIndex(medias).size()).isEqualTo(65);
+
+        Collections.shuffle(medias, new Random(3));
+        assertSameSplitting(medias);
+    }
+
+    @Test
+    public void testSplitKey() {
+        MediaElement m1 = image(1, ORIGINAL, "AXIAL"); //$NON-NLS-1$
+        MediaElement m2 = image(2, ORIGINAL, "AXIAL"); //$NON-NLS-1$
+        m1.setTag(GRADIENT, new double[] { 0.0, 0.5, 1.0 });
+        m2.setTag(GRADIENT, new double[] { 0.0, 0.5, 1.0 });
+        SplitKey k1 = SplitKey.build(rules, m1, true);
+        assertThat(k1).isEqualTo(SplitKey.build(rules, m2, true));
+        assertThat(k1.hashCode()).isEqualTo(SplitKey.build(rules, m2, true).hashCode());
+
+        m2.setTag(GRADIENT, new double[] { 0.0, 0.5, -1.0 });
+        assertThat(k1).isNotEqualTo(SplitKey.build(rules, m2, true));
+
+        MediaElement other = new OtherMedia(reader, 3);
+        other.setTag(IMAGE_TYPE, ORIGINAL.clone());
+        other.setTag(ORIENTATION, "AXIAL"); //$NON-NLS-1$
+        other.setTag(GRADIENT, new double[] { 0.0, 0.5, 1.0 });
+        assertThat(k1).isNotEqualTo(SplitKey.build(rules, other, true));
+
+        // The orientation of a projection image matches any orientation
+        MediaElement localizer = image(4, LOCALIZER, "AXIAL"); //$NON-NLS-1$
+        assertThat(SplitKey.build(rules, localizer, true)).isNull();
+        assertThat(SplitKey.build(rules, localizer, false)).isNotNull();
+    }
+
+    @Test
+    public void testStaleKey() {
+        TestSeries original = new TestSeries("1.2.3"); //$NON-NLS-1$
+        SeriesSplitIndex index = new SeriesSplitIndex(original, TestSeries.class);
+        TestSeries s1 = new TestSeries("#1.1.2.3"); //$NON-NLS-1$
+        index.add(s1);
+        MediaElement echo1 = image(10, ORIGINAL, "AXIAL"); //$NON-NLS-1$
+        echo1.setTag(ECHO_TIME, 9.5);
+        original.addMedia(echo1);
+        index.mediaAdded(original);
+        MediaElement echo2 = image(20, ORIGINAL, "AXIAL"); //$NON-NLS-1$
+        echo2.setTag(ECHO_TIME, 30.0);
+        s1.addMedia(echo2);
+        index.mediaAdded(s1);
+        MediaElement echo3 = image(21, ORIGINAL, "AXIAL"); //$NON-NLS-1$
+        echo3.setTag(ECHO_TIME, 30.0);
+        // Builds the keys
+        assertThat(index.findSimilar(rules, echo3)).isSameAs(s1);
+
+        // Added without mediaAdded(): the first media of the original series is now another echo, its key was missing
+        MediaElement first = image(1, ORIGINAL, "AXIAL"); //$NON-NLS-1$
+        first.setTag(ECHO_TIME, 19.0);
+        original.addMedia(first);
+
+        MediaElement echo = image(30, ORIGINAL, "AXIAL"); //$NON-NLS-1$
+        echo.setTag(ECHO_TIME, 19.0);
+        assertThat(index.findSimilar(rules, echo)).isSameAs(original);
+        // Key miss: no series starts with the first echo any more
+        MediaElement other = image(40, ORIGINAL, "AXIAL"); //$NON-NLS-1$
+        other.setTag(ECHO_TIME, 9.5);
+        assertThat(index.findSimilar(rules, other)).isNull();
+    }
+
+    @Test
+    public void testComparisonCount() {
+        List<MediaElement> medias = diffusion(20, 128);
+        // 129 sub-series: with the index, each instance is compared at most with one series
+        comparisons = 0;
+        splitByIndex(medias);
+        assertThat(comparisons).isLessThanOrEqualTo((long) medias.size() * rules.size());
+
+        // The scan compares each instance with all the previous sub-series
+        comparisons = 0;
+        splitByScan(medias);
+        assertThat(comparisons).isGreaterThan(20L * medias.size());
+
+        // Localizers match any orientation: the instances which cannot be keyed are compared with all the series
+        medias = multiPhase(24, 20);
+        comparisons = 0;
+        splitByIndex(medias);
+        long index = comparisons;
+        comparisons = 0;
+        splitByScan(medias);
+        assertThat(index).isLessThanOrEqualTo(comparisons);
+    }
+}
@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.weasis.core.api.util.StreamIOException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class DicomWebClientTest {
+    private static final String STUDY_UID = "1.2.826.0.1.3680043.2.1"; //$NON-NLS-1$
+    private static final String BOUNDARY = "weasis-test-boundary"; //$NON-NLS-1$
+    private static final int INSTANCES = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private DicomWebClient client;
+    private final List<File> files = new ArrayList<>();
+    private final CountDownLatch firstPartReceived = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws IOException {
+        for (int i = 1; i <= INSTANCES; i++) {
+            files.add(writeInstance(folder.newFile("instance" + i + ".dcm"), i)); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0); //$NON-NLS-1$
+        server.createContext("/rs/", this::handle); //$NON-NLS-1$
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        client = new DicomWebClient("http://127.0.0.1:" + server.getAddress().getPort() + "/rs/", null); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+
+    private static File writeInstance(File file, int number) throws IOException {
+        Attributes ds = new Attributes();
+        ds.setString(Tag.SOPClassUID, VR.UI, UID.SecondaryCaptureImageStorage);
+        ds.setString(Tag.SOPInstanceUID, VR.UI, STUDY_UID + ".1." + number); //$NON-NLS-1$
+        ds.setString(Tag.StudyInstanceUID, VR.UI, STUDY_UID);
+        ds.setString(Tag.SeriesInstanceUID, VR.UI, STUDY_UID + ".1"); //$NON-NLS-1$
+        ds.setString(Tag.PatientName, VR.PN, "Test^Patient"); //$NON-NLS-1$
+        ds.setString(Tag.PatientID, VR.LO, "P-1"); //$NON-NLS-1$
+        ds.setInt(Tag.InstanceNumber, VR.IS, number);
+        // Content containing a partial delimiter and the boundary without the leading CRLF
+        byte[] pixels = new byte[4096 * number];
+        byte[] fake = ("\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1) + "x--" + BOUNDARY) //$NON-NLS-1$ //$NON-NLS-2$
+            .getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(fake, 0, pixels, 100, fake.length);
+        ds.setBytes(Tag.PixelData, VR.OB, pixels);
+        try (DicomOutputStream dos = new DicomOutputStream(file)) {
+            dos.writeDataset(ds.createFileMetaInformation(UID.ExplicitVRLittleEndian), ds);
+        }
+        return file;
+    }
+
+    /**
+     * Minimal DICOMweb server backed by the synthetic files.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath().substring(4);
+        String query = exchange.getRequestURI().getQuery();
+        try {
+            if ("studies".equals(path)) { //$NON-NLS-1$
+                if (query != null && query.contains("00100020=unknown")) { //$NON-NLS-1$
+                    exchange.sendResponseHeaders(204, -1);
+                    return;
+                }
+                byte[] json = ("[{\"0020000D\":{\"vr\":\"UI\",\"Value\":[\"" + STUDY_UID //$NON-NLS-1$
+                    + "\"]},\"00100010\":{\"vr\":\"PN\",\"Value\":[{\"Alphabetic\":\"Test^Patient\"}]}," //$NON-NLS-1$
+                    + "\"00201208\":{\"vr\":\"IS\",\"Value\":[" + INSTANCES + "]}," //$NON-NLS-1$ //$NON-NLS-2$
+                    + "\"00081032\":{\"vr\":\"SQ\",\"Value\":[{\"00080100\":{\"vr\":\"SH\",\"Value\":[\"XR\"]}}]}," //$NON-NLS-1$
+                    + "\"00081030\":{\"vr\":\"LO\"}}]").getBytes(StandardCharsets.UTF_8); //$NON-NLS-1$
+                exchange.getResponseHeaders().add("Content-Type", DicomWebClient.APPLICATION_DICOM_JSON); //$NON-NLS-1$
+                exchange.sendResponseHeaders(200, json.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(json);
+                }
+            } else if (("studies/" + STUDY_UID).equals(path)) { //$NON-NLS-1$
+                exchange.getResponseHeaders().add("Content-Type", //$NON-NLS-1$
+                    "multipart/related; type=\"application/dicom\"; boundary=" + BOUNDARY); //$NON-NLS-1$
+                // Chunked transfer
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    for (int i = 0; i < files.size(); i++) {
+                        writePart(out, "application/dicom", Files.readAllBytes(files.get(i).toPath())); //$NON-NLS-1$
+                        out.flush();
+                        if (i == 0) {
+                            // The next parts are sent only when the client has read the first one
+                            firstPartReceived.await(10, TimeUnit.SECONDS);
+                        }
+                    }
+                    out.write(("--" + BOUNDARY + "--").getBytes(StandardCharsets.ISO_8859_1)); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            } else if (path.endsWith("/rendered")) { //$NON-NLS-1$
+                byte[] jpeg = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xD9 };
+                exchange.getResponseHeaders().add("Content-Type", "image/jpeg"); //$NON-NLS-1$ //$NON-NLS-2$
+                exchange.sendResponseHeaders(200, jpeg.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(jpeg);
+                }
+            } else if (path.startsWith("bulk/")) { //$NON-NLS-1$
+                exchange.getResponseHeaders().add("Content-Type", //$NON-NLS-1$
+                    "multipart/related; type=\"application/octet-stream\"; boundary=\"" + BOUNDARY + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    writePart(out, "application/octet-stream", new byte[] { 1, 2, 3 }); //$NON-NLS-1$
+                    out.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.ISO_8859_1)); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            } else if (path.startsWith("error")) { //$NON-NLS-1$
+                exchange.sendResponseHeaders(500, -1);
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void writePart(OutputStream out, String type, byte[] content) throws IOException {
+        out.write(("--" + BOUNDARY + "\r\nContent-Type: " + type + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        out.write(content);
+        out.write("\r\n".getBytes(StandardCharsets.ISO_8859_1)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testSearch() throws IOException {
+        List<Attributes> studies = client.searchStudies(Collections.singletonMap("00100020", "P-1")); //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals(1, studies.size());
+        Attributes study = studies.get(0);
+        assertEquals(STUDY_UID, study.getString(Tag.StudyInstanceUID));
+        assertEquals("Test^Patient", study.getString(Tag.PatientName)); //$NON-NLS-1$
+        assertEquals(INSTANCES, study.getInt(Tag.NumberOfStudyRelatedInstances, 0));
+        assertEquals("XR", study.getNestedDataset(Tag.ProcedureCodeSequence).getString(Tag.CodeValue)); //$NON-NLS-1$
+        assertThat(study.containsValue(Tag.StudyDescription)).isFalse();
+        assertThat(study.contains(Tag.StudyDescription)).isTrue();
+
+        Map<String, String> query = new HashMap<>();
+        query.put("00100020", "unknown"); //$NON-NLS-1$ //$NON-NLS-2$
+        assertThat(client.searchStudies(query)).isEmpty();
+    }
+
+    @Test
+    public void testRetrieveIncrementally() throws IOException {
+        List<String> uids = new ArrayList<>();
+        int parts = client.retrieveStudy(STUDY_UID, part -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[1000];
+            int n;
+            InputStream in = part.getInputStream();
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            byte[] content = out.toByteArray();
+            assertArrayEquals(Files.readAllBytes(files.get(uids.size()).toPath()), content);
+            try (DicomInputStream dis = new DicomInputStream(new ByteArrayInputStream(content))) {
+                uids.add(dis.readDataset(-1, Tag.PixelData).getString(Tag.SOPInstanceUID));
+            }
+            // Without incremental parsing, the server would wait until the timeout
+            firstPartReceived.countDown();
+            return true;
+        });
+        assertEquals(INSTANCES, parts);
+        assertEquals(STUDY_UID + ".1.1", uids.get(0)); //$NON-NLS-1$
+        assertEquals(STUDY_UID + ".1." + INSTANCES, uids.get(INSTANCES - 1)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testStopRetrieve() throws IOException {
+        firstPartReceived.countDown();
+        assertEquals(1, client.retrieveStudy(STUDY_UID, part -> false));
+    }
+
+    @Test
+    public void testBulkDataAndRendered() throws IOException {
+        List<byte[]> contents = new ArrayList<>();
+        int parts = client.retrieveBulkData("bulk/1", part -> { //$NON-NLS-1$
+            assertEquals("application/octet-stream", part.getContentType()); //$NON-NLS-1$
+            byte[] b = new byte[10];
+            int n = part.getInputStream().read(b);
+            contents.add(Arrays.copyOf(b, n));
+            return true;
+        });
+        assertEquals(1, parts);
+        assertArrayEquals(new byte[] { 1, 2, 3 }, contents.get(0));
+
+        try (InputStream in = client.getRendered("studies/" + STUDY_UID + "/series/1/instances/1", "image/jpeg", null)) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            byte[] b = new byte[10];
+            assertEquals(4, in.read(b));
+            assertEquals((byte) 0xD8, b[1]);
+        }
+    }
+
+    @Test
+    public void testErrorStatus() throws IOException {
+        try {
+            client.retrieveStudy("1.2.3.unknown", part -> true); //$NON-NLS-1$
+            fail("404 must throw an exception"); //$NON-NLS-1$
+        } catch (StreamIOException e) {
+            // expected
+        }
+        try {
+            client.search("error", null); //$NON-NLS-1$
+            fail("500 must throw an exception"); //$NON-NLS-1$
+        } catch (StreamIOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.codec.web;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MultipartReaderTest {
+
+    private static final String BOUNDARY = "DICOM-boundary"; //$NON-NLS-1$
+
+    static byte[] multipart(String boundary, String preamble, byte[]... parts) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(preamble.getBytes(StandardCharsets.ISO_8859_1));
+        for (byte[] p : parts) {
+            out.write(("--" + boundary + "\r\nContent-Type: application/dicom\r\n\r\n") //$NON-NLS-1$ //$NON-NLS-2$
+                .getBytes(StandardCharsets.ISO_8859_1));
+            out.write(p);
+            out.write("\r\n".getBytes(StandardCharsets.ISO_8859_1)); //$NON-NLS-1$
+        }
+        out.write(("--" + boundary + "--\r\nepilogue").getBytes(StandardCharsets.ISO_8859_1)); //$NON-NLS-1$ //$NON-NLS-2$
+        return out.toByteArray();
+    }
+
+    static List<byte[]> readAll(InputStream in, String boundary) throws IOException {
+        List<byte[]> list = new ArrayList<>();
+        try (MultipartReader reader = new MultipartReader(in, boundary)) {
+            MultipartReader.Part part;
+            while ((part = reader.nextPart()) != null) {
+                assertEquals("application/dicom", part.getContentType()); //$NON-NLS-1$
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buf = new byte[777];
+                int n;
+                while ((n = part.getInputStream().read(buf)) > 0) {
+                    out.write(buf, 0, n);
+                }
+                list.add(out.toByteArray());
+            }
+        }
+        return list;
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] b = new byte[size];
+        new Random(seed).nextBytes(b);
+        return b;
+    }
+
+    @Test
+    public void testParts() throws IOException {
+        byte[] p1 = random(200_000, 1);
+        byte[] p2 = new byte[0];
+        byte[] p3 = random(10, 3);
+        List<byte[]> parts =
+            readAll(new ByteArrayInputStream(multipart(BOUNDARY, "preamble\r\n", p1, p2, p3)), BOUNDARY); //$NON-NLS-1$
+        assertEquals(3, parts.size());
+        assertArrayEquals(p1, parts.get(0));
+        assertArrayEquals(p2, parts.get(1));
+        assertArrayEquals(p3, parts.get(2));
+    }
+
+    @Test
+    public void testBoundaryLikeContent() throws IOException {
+        // Delimiter without CRLF, partial delimiter, CRLF at the end of the part
+        byte[] p1 = ("x--" + BOUNDARY + "y\r\n--DICOM-bound\r\n-\r\n").getBytes(StandardCharsets.ISO_8859_1); //$NON-NLS-1$ //$NON-NLS-2$
+        byte[] p2 = "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1); //$NON-NLS-1$
+        List<byte[]> parts = readAll(new OneByteInputStream(multipart(BOUNDARY, "", p1, p2)), BOUNDARY); //$NON-NLS-1$
+        assertEquals(2, parts.size());
+        assertArrayEquals(p1, parts.get(0));
+        assertArrayEquals(p2, parts.get(1));
+    }
+
+    @Test
+    public void testSlowStream() throws IOException {
+        byte[] p1 = random(5000, 4);
+        byte[] p2 = random(3, 5);
+        List<byte[]> parts = readAll(new OneByteInputStream(multipart(BOUNDARY, "", p1, p2)), BOUNDARY); //$NON-NLS-1$
+        assertEquals(2, parts.size());
+        assertArrayEquals(p1, parts.get(0));
+        assertArrayEquals(p2, parts.get(1));
+    }
+
+    @Test
+    public void testBoundaryDetection() throws IOException {
+        byte[] p1 = random(1000, 6);
+        List<byte[]> parts = readAll(new ByteArrayInputStream(multipart(BOUNDARY, "", p1)), null); //$NON-NLS-1$
+        assertEquals(1, parts.size());
+        assertArrayEquals(p1, parts.get(0));
+    }
+
+    @Test
+    public void testPaddingAfterBoundary() throws IOException {
+        String body = "--" + BOUNDARY + "  \t\r\nContent-Type: application/dicom\r\n\r\nabc\r\n--" + BOUNDARY //$NON-NLS-1$ //$NON-NLS-2$
+            + "--"; //$NON-NLS-1$
+        List<byte[]> parts =
+            readAll(new ByteArrayInputStream(body.getBytes(StandardCharsets.ISO_8859_1)), BOUNDARY);
+        assertEquals(1, parts.size());
+        assertArrayEquals("abc".getBytes(StandardCharsets.ISO_8859_1), parts.get(0)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testTruncatedStream() throws IOException {
+        byte[] body = multipart(BOUNDARY, "", random(1000, 7)); //$NON-NLS-1$
+        byte[] truncated = new byte[body.length - 30];
+        System.arraycopy(body, 0, truncated, 0, truncated.length);
+        try {
+            readAll(new ByteArrayInputStream(truncated), BOUNDARY);
+            fail("The missing close delimiter must throw an exception"); //$NON-NLS-1$
+        } catch (EOFException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBoundaryParameter() {
+        assertEquals("abc", MultipartReader //$NON-NLS-1$
+            .getBoundary("multipart/related; type=\"application/dicom\"; boundary=abc")); //$NON-NLS-1$
+        assertEquals("a;b c", MultipartReader //$NON-NLS-1$
+            .getBoundary("multipart/related;boundary=\"a;b c\";type=\"application/dicom\"")); //$NON-NLS-1$
+        assertEquals("application/dicom", //$NON-NLS-1$
+            MultipartReader.getParameter("multipart/related; TYPE=\"application/dicom\"", "type")); //$NON-NLS-1$ //$NON-NLS-2$
+        assertNull(MultipartReader.getBoundary("application/dicom")); //$NON-NLS-1$
+        assertNull(MultipartReader.getBoundary(null));
+    }
+
+    /**
+     * Simulate a chunked transfer where the bytes are received one by one.
+     */
+    static class OneByteInputStream extends FilterInputStream {
+        OneByteInputStream(byte[] data) {
+            super(new ByteArrayInputStream(data));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(1, len));
+        }
+    }
+}
@@ -39,6 +39,7 @@ import org.weasis.core.api.media.data.TagW.TagType;
 import org.weasis.core.api.media.data.Thumbnailable;
 import org.weasis.core.api.util.LangUtil;
 import org.weasis.core.ui.model.GraphicModel;
+import org.weasis.core.ui.serialize.XmlSerializer;
 import org.weasis.dicom.codec.DicomSeries;
 import org.weasis.dicom.codec.DicomSpecialElement;
 import org.weasis.dicom.codec.TagD;
@@ -136,7 +137,7 @@ public class CheckTreeModel {
             });
 
             if (!hasGraphics) {
-                GraphicModel grModel = (GraphicModel) dicom.getTagValue(TagW.PresentationModel);
+                GraphicModel grModel = XmlSerializer.getPresentationModel(dicom);
                 hasGraphics = grModel != null && grModel.hasSerializableGraphics();
             }
         }
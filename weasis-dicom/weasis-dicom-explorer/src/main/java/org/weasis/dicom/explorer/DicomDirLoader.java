@@ -18,7 +18,9 @@ import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.dcm4che3.data.Attributes;
@@ -38,6 +40,7 @@ import org.weasis.core.api.media.data.MediaSeriesGroupNode;
 import org.weasis.core.api.media.data.Series;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.api.media.data.Thumbnail;
+import org.weasis.core.api.service.BundleTools;
 import org.weasis.core.ui.docking.UIManager;
 import org.weasis.core.ui.editor.image.ViewerPlugin;
 import org.weasis.dicom.codec.DicomSeries;
@@ -52,16 +55,32 @@ import org.weasis.dicom.mf.SopInstance;
 import org.weasis.dicom.mf.WadoParameters;
 import org.weasis.opencv.op.ImageProcessor;
 
+/**
+ * Builds the patient/study/series hierarchy of a DICOMDIR from its directory records and queues the series for
+ * loading.
+ * <p>
+ * The referenced files are not accessed while building the hierarchy (only the first file of each directory is checked
+ * for the lower-case conversion of the media). The trade-off is that a series is created even when its files are
+ * missing from the media: the error is only reported when the series is loaded, and a series without any readable file
+ * is then removed from the model.
+ */
 public class DicomDirLoader {
     private static final Logger LOGGER = LoggerFactory.getLogger(DicomDirLoader.class);
 
     public static final RecordFactory RecordFactory = new RecordFactory();
+    /**
+     * Number of images of a series read at the same time from the DICOMDIR media.
+     */
+    public static final String CONCURRENT_READS = "dicomdir.concurrent.reads"; //$NON-NLS-1$
 
     private final DicomModel dicomModel;
     private final ArrayList<LoadSeries> seriesList;
     private final WadoParameters wadoParameters;
     private final boolean writeInCache;
     private final File dcmDirFile;
+    private final int concurrentReads;
+    // Relative directory paths of the DICOMDIR and true when the file system has converted them in lower case
+    private final Map<String, Boolean> lowerCaseDirectories = new HashMap<>();
 
     public DicomDirLoader(File dcmDirFile, DataExplorerModel explorerModel, boolean writeInCache) {
         if (dcmDirFile == null || !dcmDirFile.canRead() || !(explorerModel instanceof DicomModel)) {
@@ -70,6 +89,8 @@ public class DicomDirLoader {
         this.dicomModel = (DicomModel) explorerModel;
         this.writeInCache = writeInCache;
         this.dcmDirFile = dcmDirFile;
+        this.concurrentReads = Math.max(1, BundleTools.SYSTEM_PREFERENCES.getIntProperty(CONCURRENT_READS,
+            Math.min(4, Runtime.getRuntime().availableProcessors())));
         wadoParameters = new WadoParameters("", true); //$NON-NLS-1$
         seriesList = new ArrayList<>();
 
@@ -192,19 +213,17 @@ public class DicomDirLoader {
                         Integer frame = DicomMediaUtils.getIntegerFromDicomElement(instance, Tag.InstanceNumber, null);
                         SopInstance sop = seriesInstanceList.getSopInstance(sopInstanceUID, frame);
                         if (sop == null) {
-                            File file = toFileName(instance, reader);
+                            // The hierarchy is built only from the DICOMDIR records, the files are read later by
+                            // LoadSeries (a missing file is reported at this time)
+                            File file = toFileName(instance);
                             if (file != null) {
-                                if (file.exists()) {
-                                    sop = new SopInstance(sopInstanceUID, frame);
-                                    sop.setDirectDownloadFile(file.toURI().toString());
-                                    seriesInstanceList.addSopInstance(sop);
-                                    if (iconInstance == null) {
-                                        // Icon Image Sequence (0088,0200). This Icon Image is representative of the
-                                        // Image. Only a single Item is permitted in this Sequence.
-                                        iconInstance = instance.getNestedDataset(Tag.IconImageSequence);
-                                    }
-                                } else {
-                                    LOGGER.error("Missing DICOMDIR entry: {}", file.getPath()); //$NON-NLS-1$
+                                sop = new SopInstance(sopInstanceUID, frame);
+                                sop.setDirectDownloadFile(file.toURI().toString());
+                                seriesInstanceList.addSopInstance(sop);
+                                if (iconInstance == null) {
+                                    // Icon Image Sequence (0088,0200). This Icon Image is representative of the
+                                    // Image. Only a single Item is permitted in this Sequence.
+                                    iconInstance = instance.getNestedDataset(Tag.IconImageSequence);
                                 }
                             }
                         }
@@ -215,7 +234,8 @@ public class DicomDirLoader {
                 if (!seriesInstanceList.isEmpty()) {
                     dicomSeries.setTag(TagW.DirectDownloadThumbnail, readDicomDirIcon(iconInstance));
                     dicomSeries.setTag(TagW.ReadFromDicomdir, true);
-                    final LoadSeries loadSeries = new LoadSeries(dicomSeries, dicomModel, 1, writeInCache);
+                    final LoadSeries loadSeries =
+                        new LoadSeries(dicomSeries, dicomModel, concurrentReads, writeInCache);
                     loadSeries.setPriority(new DownloadPriority(patient, study, dicomSeries, false));
                     seriesList.add(loadSeries);
                 }
@@ -294,7 +314,7 @@ public class DicomDirLoader {
         return null;
     }
 
-    private File toFileName(Attributes dcmObject, DicomDirReader reader) {
+    private File toFileName(Attributes dcmObject) {
         String[] fileID = dcmObject.getStrings(Tag.ReferencedFileID);
         if (fileID == null || fileID.length == 0) {
             return null;
@@ -303,16 +323,14 @@ public class DicomDirLoader {
         for (int i = 1; i < fileID.length; i++) {
             sb.append(File.separatorChar).append(fileID[i]);
         }
-        File file = new File(reader.getFile().getParent(), sb.toString());
-        if (!file.exists()) {
-            // Try to find lower case relative path, it happens sometimes when mounting cdrom on Linux
-            File fileLowerCase = new File(reader.getFile().getParent(), sb.toString().toLowerCase());
-            if (fileLowerCase.exists()) {
-                file = fileLowerCase;
-            }
-        }
-
-        return file;
+        String path = sb.toString();
+        File root = dcmDirFile.getParentFile();
+        int index = path.lastIndexOf(File.separatorChar);
+        // Check only the first file of each directory instead of accessing all the files of the media.
+        // Try to find lower case relative path, it happens sometimes when mounting cdrom on Linux
+        boolean lowerCase = lowerCaseDirectories.computeIfAbsent(index < 0 ? "" : path.substring(0, index), //$NON-NLS-1$
+            d -> !new File(root, path).exists() && new File(root, path.toLowerCase()).exists());
+        return new File(root, lowerCase ? path.toLowerCase() : path);
     }
 
     public static DicomDirWriter open(File file) throws IOException {
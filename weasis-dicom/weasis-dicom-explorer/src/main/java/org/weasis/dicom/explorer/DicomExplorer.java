@@ -31,8 +31,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -67,6 +69,7 @@ import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.DataExplorerView;
 import org.weasis.core.api.explorer.ObservableEvent;
 import org.weasis.core.api.explorer.model.DataExplorerModel;
+import org.weasis.core.api.explorer.model.TreeModelChange;
 import org.weasis.core.api.gui.util.ActionW;
 import org.weasis.core.api.gui.util.GuiExecutor;
 import org.weasis.core.api.gui.util.JMVUtils;
@@ -1100,6 +1103,14 @@ public class DicomExplorer extends PluginTool implements DataExplorerView, Serie
     }
 
     private void addDicomSeries(Series series) {
+        addDicomSeries(series, null);
+    }
+
+    /**
+     * @param studiesToLayout
+     *            when not null, collects the study panes to lay out instead of doing it immediately
+     */
+    private void addDicomSeries(Series series, Set<StudyPane> studiesToLayout) {
         if (DicomModel.isSpecialModality(series)) {
             // Up to now nothing has to be done in the explorer view about specialModality
             return;
@@ -1157,16 +1168,65 @@ public class DicomExplorer extends PluginTool implements DataExplorerView, Serie
                 }
             }
             if (patientPane.isStudyVisible(study)) {
-                studyPane.removeAll();
-                for (int i = 0; i < seriesList.size(); i++) {
-                    studyPane.addPane(seriesList.get(i), i);
+                if (studiesToLayout == null) {
+                    layoutSeriesPanes(studyPane);
+                } else {
+                    studiesToLayout.add(studyPane);
                 }
-                studyPane.revalidate();
-                studyPane.repaint();
             }
         }
     }
 
+    private void layoutSeriesPanes(StudyPane studyPane) {
+        List<SeriesPane> seriesList = study2series.get(studyPane.dicomStudy);
+        studyPane.removeAll();
+        if (seriesList != null) {
+            for (int i = 0; i < seriesList.size(); i++) {
+                studyPane.addPane(seriesList.get(i), i);
+            }
+        }
+        studyPane.revalidate();
+        studyPane.repaint();
+    }
+
+    /**
+     * Update the panes of the series added or modified by a transaction of the model. Each study pane is laid out only
+     * once for the whole batch.
+     */
+    private void applyModelChange(TreeModelChange change) {
+        Set<StudyPane> studiesToLayout = new LinkedHashSet<>();
+        Map<Object, Series> splitSeries = new LinkedHashMap<>();
+        for (MediaSeriesGroup node : change.getAddedNodes()) {
+            if (node instanceof Series) {
+                Series series = (Series) node;
+                addDicomSeries(series, studiesToLayout);
+                if (series.getTagValue(TagW.SplitSeriesNumber) != null) {
+                    splitSeries.putIfAbsent(TagD.getTagValue(series, Tag.SeriesInstanceUID), series);
+                }
+            }
+        }
+        for (MediaSeriesGroup node : change.getUpdatedNodes()) {
+            if (node instanceof Series) {
+                Series series = (Series) node;
+                if (series.getTagValue(TagW.SplitSeriesNumber) != null) {
+                    splitSeries.putIfAbsent(TagD.getTagValue(series, Tag.SeriesInstanceUID), series);
+                } else {
+                    // Refresh the number of images on the thumbnail
+                    Thumbnail t = (Thumbnail) series.getTagValue(TagW.Thumbnail);
+                    if (t != null) {
+                        t.repaint();
+                    }
+                }
+            }
+        }
+        for (StudyPane studyPane : studiesToLayout) {
+            layoutSeriesPanes(studyPane);
+        }
+        for (Series series : splitSeries.values()) {
+            updateSplitSeries(series);
+        }
+    }
+
     @Override
     public void changingViewContentEvent(SeriesViewerEvent event) {
         EVENT type = event.getEventType();
@@ -1222,6 +1282,8 @@ public class DicomExplorer extends PluginTool implements DataExplorerView, Serie
                 } else if (ObservableEvent.BasicAction.ADD.equals(action)) {
                     if (newVal instanceof Series) {
                         addDicomSeries((Series) newVal);
+                    } else if (newVal instanceof TreeModelChange) {
+                        applyModelChange((TreeModelChange) newVal);
                     }
                 } else if (ObservableEvent.BasicAction.REMOVE.equals(action)) {
                     if (newVal instanceof MediaSeriesGroup) {
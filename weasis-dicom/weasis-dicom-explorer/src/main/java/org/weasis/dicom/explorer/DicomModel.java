@@ -20,6 +20,7 @@ import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -44,6 +45,7 @@ import org.weasis.core.api.explorer.model.DataExplorerModel;
 import org.weasis.core.api.explorer.model.Tree;
 import org.weasis.core.api.explorer.model.TreeModel;
 import org.weasis.core.api.explorer.model.TreeModelNode;
+import org.weasis.core.api.explorer.model.TreeModelTransaction;
 import org.weasis.core.api.gui.util.AppProperties;
 import org.weasis.core.api.gui.util.GuiExecutor;
 import org.weasis.core.api.media.data.Codec;
@@ -73,8 +75,10 @@ import org.weasis.dicom.codec.KOSpecialElement;
 import org.weasis.dicom.codec.PRSpecialElement;
 import org.weasis.dicom.codec.RejectedKOSpecialElement;
 import org.weasis.dicom.codec.SortSeriesStack;
+import org.weasis.dicom.codec.SpecialElementIndex;
 import org.weasis.dicom.codec.TagD;
 import org.weasis.dicom.codec.display.Modality;
+import org.weasis.dicom.codec.utils.SeriesSplitIndex;
 import org.weasis.dicom.codec.utils.SplittingModalityRules;
 import org.weasis.dicom.codec.utils.SplittingModalityRules.Rule;
 import org.weasis.dicom.codec.utils.SplittingRules;
@@ -106,6 +110,10 @@ public class DicomModel implements TreeModel, DataExplorerModel {
     private final Tree<MediaSeriesGroup> model;
     private PropertyChangeSupport propertyChange = null;
     private final SplittingRules splittingRules;
+    // Split series indexed by original series
+    private final Map<Series<?>, SeriesSplitIndex> splitIndexes = new IdentityHashMap<>();
+    // KO and PR lookup indexes by patient
+    private final Map<MediaSeriesGroup, SpecialElementIndex> specialElementIndexes = new IdentityHashMap<>();
 
     public DicomModel() {
         model = new Tree<>(MediaSeriesGroupNode.rootNode);
@@ -212,6 +220,14 @@ public class DicomModel implements TreeModel, DataExplorerModel {
         }
     }
 
+    /**
+     * @return a new transaction for adding a batch of patients, studies, series and instances with a single
+     *         notification
+     */
+    public TreeModelTransaction<DicomModel> newTransaction() {
+        return new TreeModelTransaction<>(this, model);
+    }
+
     @Override
     public void removeHierarchyNode(MediaSeriesGroup root, MediaSeriesGroup leaf) {
         synchronized (model) {
@@ -220,6 +236,13 @@ public class DicomModel implements TreeModel, DataExplorerModel {
                 tree.removeLeaf(leaf);
             }
         }
+        // The split numbers can be reused, so the indexes are built again on the next splitting
+        synchronized (splitIndexes) {
+            splitIndexes.clear();
+        }
+        synchronized (specialElementIndexes) {
+            specialElementIndexes.remove(leaf);
+        }
     }
 
     @Override
@@ -258,6 +281,12 @@ public class DicomModel implements TreeModel, DataExplorerModel {
             }
         }
         model.clear();
+        synchronized (splitIndexes) {
+            splitIndexes.clear();
+        }
+        synchronized (specialElementIndexes) {
+            specialElementIndexes.clear();
+        }
     }
 
     @Override
@@ -296,6 +325,9 @@ public class DicomModel implements TreeModel, DataExplorerModel {
 
     @Override
     public void firePropertyChange(final ObservableEvent event) {
+        if (TreeModelTransaction.absorb(this, event)) {
+            return;
+        }
         if (propertyChange != null) {
             if (event == null) {
                 throw new NullPointerException();
@@ -384,6 +416,7 @@ public class DicomModel implements TreeModel, DataExplorerModel {
             specialElementList.remove(dicomSpecialElement);
 
             if (patientSpecialElementList.remove(dicomSpecialElement)) {
+                invalidateSpecialElementIndex(patientGroup);
                 firePropertyChange(
                     new ObservableEvent(ObservableEvent.BasicAction.UPDATE, this, null, dicomSpecialElement));
             }
@@ -506,7 +539,47 @@ public class DicomModel implements TreeModel, DataExplorerModel {
                 patientSpecialElementList.add(seriesSpecialElement);
             }
         }
+        invalidateSpecialElementIndex(patientGroup);
+    }
 
+    private void invalidateSpecialElementIndex(MediaSeriesGroup patientGroup) {
+        synchronized (specialElementIndexes) {
+            specialElementIndexes.remove(patientGroup);
+        }
+    }
+
+    /**
+     * @param patientGroup
+     * @return the KO and PR lookup index of the patient, built again when the special elements have changed
+     */
+    public SpecialElementIndex getSpecialElementIndex(MediaSeriesGroup patientGroup) {
+        if (patientGroup == null) {
+            return null;
+        }
+        List<DicomSpecialElement> list =
+            (List<DicomSpecialElement>) patientGroup.getTagValue(TagW.DicomSpecialElementList);
+        if (list == null) {
+            return null;
+        }
+        synchronized (specialElementIndexes) {
+            SpecialElementIndex index = specialElementIndexes.get(patientGroup);
+            if (index == null || !index.isIndexOf(list)) {
+                index = new SpecialElementIndex(list);
+                specialElementIndexes.put(patientGroup, index);
+            }
+            return index;
+        }
+    }
+
+    private static SpecialElementIndex getSpecialElementIndex(MediaSeries<DicomImageElement> dicomSeries) {
+        if (dicomSeries != null) {
+            DataExplorerModel model = (DataExplorerModel) dicomSeries.getTagValue(TagW.ExplorerModel);
+            if (model instanceof DicomModel) {
+                DicomModel dicomModel = (DicomModel) model;
+                return dicomModel.getSpecialElementIndex(dicomModel.getParent(dicomSeries, DicomModel.patient));
+            }
+        }
+        return null;
     }
 
     public static boolean isSpecialModality(MediaSeries<?> series) {
@@ -529,12 +602,26 @@ public class DicomModel implements TreeModel, DataExplorerModel {
     }
 
     public static Collection<KOSpecialElement> getKoSpecialElements(MediaSeries<DicomImageElement> dicomSeries) {
-        // Get all DicomSpecialElement at patient level
-        List<DicomSpecialElement> specialElementList = getSpecialElements(dicomSeries);
+        // Get the index of the DicomSpecialElement at patient level
+        SpecialElementIndex index = getSpecialElementIndex(dicomSeries);
 
-        if (specialElementList != null) {
+        if (index != null) {
             String referencedSeriesInstanceUID = TagD.getTagValue(dicomSeries, Tag.SeriesInstanceUID, String.class);
-            return DicomSpecialElement.getKoSpecialElements(specialElementList, referencedSeriesInstanceUID);
+            return index.getKoSpecialElements(referencedSeriesInstanceUID);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the KO referencing the instance (and the frame when not null), the most recent first
+     */
+    public static List<KOSpecialElement> getKoSpecialElements(MediaSeries<DicomImageElement> dicomSeries,
+        String sopUID, Integer dicomFrameNumber) {
+        SpecialElementIndex index = getSpecialElementIndex(dicomSeries);
+
+        if (index != null && sopUID != null) {
+            String referencedSeriesInstanceUID = TagD.getTagValue(dicomSeries, Tag.SeriesInstanceUID, String.class);
+            return index.getKoSpecialElements(referencedSeriesInstanceUID, sopUID, dicomFrameNumber);
         }
         return Collections.emptyList();
     }
@@ -553,26 +640,24 @@ public class DicomModel implements TreeModel, DataExplorerModel {
 
     public static RejectedKOSpecialElement getRejectionKoSpecialElement(MediaSeries<DicomImageElement> dicomSeries,
         String sopUID, Integer dicomFrameNumber) {
-        // Get all DicomSpecialElement at patient level
-        List<DicomSpecialElement> specialElementList = getSpecialElements(dicomSeries);
+        // Get the index of the DicomSpecialElement at patient level
+        SpecialElementIndex index = getSpecialElementIndex(dicomSeries);
 
-        if (specialElementList != null) {
+        if (index != null && sopUID != null) {
             String referencedSeriesInstanceUID = TagD.getTagValue(dicomSeries, Tag.SeriesInstanceUID, String.class);
-            return DicomSpecialElement.getRejectionKoSpecialElement(specialElementList, referencedSeriesInstanceUID,
-                sopUID, dicomFrameNumber);
+            return index.getRejectionKoSpecialElement(referencedSeriesInstanceUID, sopUID, dicomFrameNumber);
         }
         return null;
     }
 
     public static List<PRSpecialElement> getPrSpecialElements(MediaSeries<DicomImageElement> dicomSeries, String sopUID,
         Integer dicomFrameNumber) {
-        // Get all DicomSpecialElement at patient level
-        List<DicomSpecialElement> specialElementList = getSpecialElements(dicomSeries);
+        // Get the index of the DicomSpecialElement at patient level
+        SpecialElementIndex index = getSpecialElementIndex(dicomSeries);
 
-        if (!specialElementList.isEmpty()) {
+        if (index != null && sopUID != null) {
             String referencedSeriesInstanceUID = TagD.getTagValue(dicomSeries, Tag.SeriesInstanceUID, String.class);
-            return DicomSpecialElement.getPRSpecialElements(specialElementList, referencedSeriesInstanceUID, sopUID,
-                dicomFrameNumber);
+            return index.getPRSpecialElements(referencedSeriesInstanceUID, sopUID, dicomFrameNumber);
         }
         return Collections.emptyList();
     }
@@ -699,6 +784,7 @@ public class DicomModel implements TreeModel, DataExplorerModel {
         s.setTag(TagW.ExplorerModel, this);
         s.setTag(TagW.WadoParameters, original.getTagValue(TagW.WadoParameters));
         addHierarchyNode(st, s);
+        addToSplitIndexes(seriesUID, s);
         LOGGER.info("Series splitting: {}", s); //$NON-NLS-1$
         return s;
     }
@@ -728,10 +814,43 @@ public class DicomModel implements TreeModel, DataExplorerModel {
         s.setTag(TagW.ExplorerModel, this);
         s.setTag(TagW.WadoParameters, original.getTagValue(TagW.WadoParameters));
         addHierarchyNode(st, s);
+        addToSplitIndexes(seriesUID, s);
         s.addMedia(media);
         LOGGER.info("Replace Series: {}", s); //$NON-NLS-1$
     }
 
+    private SeriesSplitIndex getSplitIndex(Series<?> original, Class<?> seriesType) {
+        synchronized (splitIndexes) {
+            SeriesSplitIndex index = splitIndexes.get(original);
+            if (index == null) {
+                index = new SeriesSplitIndex(original, seriesType);
+                MediaSeriesGroup st = getParent(original, DicomModel.study);
+                String seriesUID = TagD.getTagValue(original, Tag.SeriesInstanceUID, String.class);
+                int k = 1;
+                while (true) {
+                    String uid = "#" + k + "." + seriesUID; //$NON-NLS-1$ //$NON-NLS-2$
+                    MediaSeriesGroup group = getHierarchyNode(st, uid);
+                    if (!(group instanceof Series) || !index.add((Series<?>) group)) {
+                        break;
+                    }
+                    k++;
+                }
+                splitIndexes.put(original, index);
+            }
+            return index;
+        }
+    }
+
+    private void addToSplitIndexes(String seriesUID, Series<?> split) {
+        synchronized (splitIndexes) {
+            for (SeriesSplitIndex index : splitIndexes.values()) {
+                if (Objects.equals(seriesUID, TagD.getTagValue(index.getOriginal(), Tag.SeriesInstanceUID))) {
+                    index.add(split);
+                }
+            }
+        }
+    }
+
     private void rebuildSeries(DicomMediaIO dicomReader, MediaElement media) {
         String studyUID = TagD.getTagValue(dicomReader, Tag.StudyInstanceUID, String.class);
         String patientPseudoUID = (String) dicomReader.getTagValue(TagW.PatientPseudoUID);
@@ -768,9 +887,9 @@ public class DicomModel implements TreeModel, DataExplorerModel {
         }
         dicomSeries.addMedia(media);
 
-        // Load image and create thumbnail in this Thread
+        // Load image and create thumbnail in this Thread. In a transaction, the explorer builds it later in the EDT.
         Thumbnail t = (Thumbnail) dicomSeries.getTagValue(TagW.Thumbnail);
-        if (t == null) {
+        if (t == null && !TreeModelTransaction.isCommitting()) {
             t = DicomExplorer.createThumbnail(dicomSeries, this, Thumbnail.DEFAULT_SIZE);
             dicomSeries.setTag(TagW.Thumbnail, t);
             Optional.ofNullable(t).ifPresent(v -> v.repaint());
@@ -833,28 +952,14 @@ public class DicomModel implements TreeModel, DataExplorerModel {
                     } else {
                         rules = frames > 1 ? splitRules.getMultiFrameRules() : splitRules.getSingleFrameRules();
                     }
-                    // If similar add to the original series
-                    if (isSimilar(rules, initialSeries, media)) {
-                        initialSeries.addMedia((DicomImageElement) media);
+                    // If similar add to the original series, else try to find a similar previous split series
+                    SeriesSplitIndex index = getSplitIndex(initialSeries, DicomSeries.class);
+                    Series<?> similar = index.findSimilar(rules, media);
+                    if (similar instanceof DicomSeries) {
+                        ((DicomSeries) similar).addMedia((DicomImageElement) media);
+                        index.mediaAdded(similar);
                         return false;
                     }
-
-                    // else try to find a similar previous split series
-                    MediaSeriesGroup study = getParent(initialSeries, DicomModel.study);
-                    int k = 1;
-                    while (true) {
-                        String uid = "#" + k + "." + seriesUID; //$NON-NLS-1$ //$NON-NLS-2$
-                        MediaSeriesGroup group = getHierarchyNode(study, uid);
-                        if (group instanceof DicomSeries) {
-                            if (isSimilar(rules, (DicomSeries) group, media)) {
-                                ((DicomSeries) group).addMedia((DicomImageElement) media);
-                                return false;
-                            }
-                        } else {
-                            break;
-                        }
-                        k++;
-                    }
                     // no matching series exists, so split series
                     splitSeries(dicomReader, initialSeries, media);
                     return true;
@@ -883,8 +988,6 @@ public class DicomModel implements TreeModel, DataExplorerModel {
         if (frames < 1) {
             original.addMedia(media);
         } else {
-            String seriesUID = TagD.getTagValue(original, Tag.SeriesInstanceUID, String.class);
-
             Modality modality = Modality.getModality(TagD.getTagValue(original, Tag.Modality, String.class));
             SplittingModalityRules splitRules = splittingRules.getSplittingModalityRules(modality, Modality.DEFAULT);
             List<Rule> rules;
@@ -893,28 +996,14 @@ public class DicomModel implements TreeModel, DataExplorerModel {
             } else {
                 rules = frames > 1 ? splitRules.getMultiFrameRules() : splitRules.getSingleFrameRules();
             }
-            // If similar add to the original series
-            if (isSimilar(rules, original, media)) {
-                original.addMedia(media);
+            // If similar add to the original series, else try to find a similar previous split series
+            SeriesSplitIndex index = getSplitIndex(original, Series.class);
+            Series similar = index.findSimilar(rules, media);
+            if (similar != null) {
+                similar.addMedia(media);
+                index.mediaAdded(similar);
                 return false;
             }
-
-            // else try to find a similar previous split series
-            MediaSeriesGroup study = getParent(original, DicomModel.study);
-            int k = 1;
-            while (true) {
-                String uid = "#" + k + "." + seriesUID; //$NON-NLS-1$ //$NON-NLS-2$
-                MediaSeriesGroup group = getHierarchyNode(study, uid);
-                if (group instanceof Series) {
-                    if (isSimilar(rules, (Series) group, media)) {
-                        ((Series) group).addMedia(media);
-                        return false;
-                    }
-                } else {
-                    break;
-                }
-                k++;
-            }
             // no matching series exists, so split series
             splitSeries(dicomReader, original, media);
             return true;
@@ -922,25 +1011,6 @@ public class DicomModel implements TreeModel, DataExplorerModel {
         return false;
     }
 
-    private static boolean isSimilar(List<Rule> list, Series<?> s, final MediaElement media) {
-        final MediaElement firstMedia = s.getMedia(0, null, null);
-        if (firstMedia == null) {
-            // no image
-            return true;
-        }
-        // Not similar when the instances have different classes (even when inheriting class)
-        if (firstMedia.getClass() != media.getClass()) {
-            return false;
-        }
-
-        for (Rule rule : list) {
-            if (!rule.isTagValueMatching(firstMedia, media)) {
-                return false;
-            }
-        }
-        return true;
-    }
-
     public void get(String[] argv) throws IOException {
         final String[] usage = { "Load DICOM files remotely or locally", //$NON-NLS-1$
             "Usage: dicom:get ([-l PATH]... [-r URI]... [-p] [-i DATA]... [-w URI]...)", //$NON-NLS-1$
@@ -14,28 +14,30 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Optional;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.dcm4che3.data.Tag;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.ObservableEvent;
 import org.weasis.core.api.explorer.model.DataExplorerModel;
+import org.weasis.core.api.explorer.model.TreeModelChange;
+import org.weasis.core.api.explorer.model.TreeModelTransaction;
 import org.weasis.core.api.gui.util.GuiExecutor;
 import org.weasis.core.api.media.MimeInspector;
 import org.weasis.core.api.media.data.MediaElement;
-import org.weasis.core.api.media.data.MediaSeries;
 import org.weasis.core.api.media.data.MediaSeriesGroup;
 import org.weasis.core.api.media.data.MediaSeriesGroupNode;
 import org.weasis.core.api.media.data.Series;
 import org.weasis.core.api.media.data.SeriesThumbnail;
 import org.weasis.core.api.media.data.TagW;
-import org.weasis.core.api.media.data.Thumbnail;
 import org.weasis.core.api.util.FileUtil;
 import org.weasis.core.ui.docking.UIManager;
 import org.weasis.core.ui.editor.SeriesViewerFactory;
 import org.weasis.core.ui.editor.ViewerPluginBuilder;
-import org.weasis.core.ui.model.GraphicModel;
 import org.weasis.core.ui.serialize.XmlSerializer;
 import org.weasis.dicom.codec.DicomCodec;
 import org.weasis.dicom.codec.DicomMediaIO;
@@ -46,6 +48,9 @@ import org.weasis.dicom.codec.TagD.Level;
 public class LoadLocalDicom extends ExplorerTask<Boolean, String> {
 
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(LoadLocalDicom.class);
+    // Maximum number of nodes and instances applied to the model in one step
+    private static final int BATCH_SIZE = 500;
+
     private final File[] files;
     private final DicomModel dicomModel;
     private final boolean recursive;
@@ -81,12 +86,12 @@ public class LoadLocalDicom extends ExplorerTask<Boolean, String> {
         if (file == null || file.length < 1) {
             return;
         }
-        final ArrayList<SeriesThumbnail> thumbs = new ArrayList<>();
         final ArrayList<File> folders = new ArrayList<>();
+        final Batch batch = new Batch(dicomModel.newTransaction());
 
         for (int i = 0; i < file.length; i++) {
             if (isCancelled()) {
-                return;
+                break;
             }
 
             if (file[i] == null) {
@@ -101,106 +106,140 @@ public class LoadLocalDicom extends ExplorerTask<Boolean, String> {
                         || MimeInspector.isMatchingMimeTypeFromMagicNumber(file[i], DicomMediaIO.MIMETYPE)) {
                         DicomMediaIO loader = new DicomMediaIO(file[i]);
                         if (loader.isReadableDicom()) {
-                            // Issue: must handle adding image to viewer and building thumbnail (middle image)
-                            SeriesThumbnail t = buildDicomStructure(loader, openPlugin);
-                            if (t != null) {
-                                thumbs.add(t);
-                            }
+                            buildDicomStructure(batch, loader);
 
-                            File gpxFile = new File(file[i].getPath() + ".xml"); //$NON-NLS-1$
-                            GraphicModel graphicModel = XmlSerializer.readPresentationModel(gpxFile);
-                            if (graphicModel != null) {
-                                loader.setTag(TagW.PresentationModel, graphicModel);
+                            // The graphics are read when the image is displayed or exported
+                            XmlSerializer.setPresentationModelPath(loader, file[i]);
+                            if (batch.transaction.size() >= BATCH_SIZE) {
+                                commit(batch);
                             }
                         }
                     }
                 }
             }
         }
-        for (final SeriesThumbnail t : thumbs) {
-            MediaSeries<MediaElement> series = t.getSeries();
-            // Avoid to rebuild most of CR series thumbnail
-            if (series != null && series.size(null) > 2) {
-                GuiExecutor.instance().execute(t::reBuildThumbnail);
-            }
+        // Commit also when cancelled, the files already read are kept
+        commit(batch);
+
+        // The thumbnails are built by the explorer with the content of the first commit. Rebuild the ones of the
+        // series which have received instances in the next commits.
+        if (!batch.thumbnailsToRebuild.isEmpty()) {
+            GuiExecutor.instance().execute(() -> {
+                for (Series series : batch.thumbnailsToRebuild) {
+                    SeriesThumbnail t = (SeriesThumbnail) series.getTagValue(TagW.Thumbnail);
+                    // Avoid to rebuild most of CR series thumbnail
+                    if (t != null && series.size(null) > 2) {
+                        t.reBuildThumbnail();
+                    }
+                }
+            });
         }
         for (int i = 0; i < folders.size(); i++) {
+            if (isCancelled()) {
+                return;
+            }
             addSelectionAndnotify(folders.get(i).listFiles(), false);
         }
     }
 
-    private SeriesThumbnail buildDicomStructure(DicomMediaIO dicomReader, boolean open) {
-        SeriesThumbnail thumb = null;
+    private void buildDicomStructure(Batch batch, DicomMediaIO dicomReader) {
+        TreeModelTransaction<DicomModel> tx = batch.transaction;
         String studyUID = (String) dicomReader.getTagValue(TagD.getUID(Level.STUDY));
         String patientPseudoUID = (String) dicomReader.getTagValue(TagD.getUID(Level.PATIENT));
-        MediaSeriesGroup patient = dicomModel.getHierarchyNode(MediaSeriesGroupNode.rootNode, patientPseudoUID);
+        MediaSeriesGroup patient = tx.getNode(MediaSeriesGroupNode.rootNode, patientPseudoUID);
         if (patient == null) {
-            MediaSeriesGroup study = dicomModel.getStudyNode(studyUID);
+            MediaSeriesGroup study = tx.findPendingNode(studyUID, DicomModel.study);
+            if (study == null) {
+                study = dicomModel.getStudyNode(studyUID);
+            }
             if (study == null) {
                 patient =
                     new MediaSeriesGroupNode(TagW.PatientPseudoUID, patientPseudoUID, DicomModel.patient.getTagView());
                 dicomReader.writeMetaData(patient);
-                dicomModel.addHierarchyNode(MediaSeriesGroupNode.rootNode, patient);
+                tx.addNode(MediaSeriesGroupNode.rootNode, patient);
                 LOGGER.info("Adding patient: {}", patient); //$NON-NLS-1$
             } else {
-                patient = dicomModel.getParent(study, DicomModel.patient);
+                patient = tx.getParent(study, DicomModel.patient);
                 LOGGER.warn("DICOM patient attributes are inconsistent! Name or ID is different within an exam."); //$NON-NLS-1$
             }
         }
 
-        MediaSeriesGroup study = dicomModel.getHierarchyNode(patient, studyUID);
+        MediaSeriesGroup study = tx.getNode(patient, studyUID);
         if (study == null) {
             study = new MediaSeriesGroupNode(TagD.getUID(Level.STUDY), studyUID, DicomModel.study.getTagView());
             dicomReader.writeMetaData(study);
-            dicomModel.addHierarchyNode(patient, study);
+            tx.addNode(patient, study);
         }
 
         String seriesUID = (String) dicomReader.getTagValue(TagD.get(Tag.SeriesInstanceUID));
-        Series dicomSeries = (Series) dicomModel.getHierarchyNode(study, seriesUID);
+        Series dicomSeries = (Series) tx.getNode(study, seriesUID);
         try {
+            String sopUID = TagD.getTagValue(dicomReader, Tag.SOPInstanceUID, String.class);
             if (dicomSeries == null) {
                 dicomSeries = dicomReader.buildSeries(seriesUID);
                 dicomSeries.setTag(TagW.ExplorerModel, dicomModel);
                 dicomReader.writeMetaData(dicomSeries);
-                dicomModel.addHierarchyNode(study, dicomSeries);
-                MediaElement[] medias = dicomReader.getMediaElement();
-                if (medias != null) {
-                    for (MediaElement media : medias) {
-                        dicomModel.applySplittingRules(dicomSeries, media);
-                    }
-                    if (medias.length > 0) {
-                        dicomSeries.setFileSize(dicomSeries.getFileSize() + medias[0].getLength());
-                    }
-                }
+                tx.addNode(study, dicomSeries);
+            } else if (!tx.isPending(dicomSeries)
+                && isSOPInstanceUIDExist(study, dicomSeries, seriesUID, sopUID)) {
+                return;
+            }
+            // Test if SOPInstanceUID already exists in the pending instances
+            if (sopUID != null && !batch.sopInstanceUIDs.add(sopUID)) {
+                return;
+            }
 
-                // Load image and create thumbnail in this Thread
-                SeriesThumbnail t = (SeriesThumbnail) dicomSeries.getTagValue(TagW.Thumbnail);
-                if (t == null) {
-                    t = DicomExplorer.createThumbnail(dicomSeries, dicomModel, Thumbnail.DEFAULT_SIZE);
-                    dicomSeries.setTag(TagW.Thumbnail, t);
-                    Optional.ofNullable(t).ifPresent(v -> v.repaint());
+            MediaElement[] medias = dicomReader.getMediaElement();
+            if (medias != null) {
+                for (MediaElement media : medias) {
+                    tx.addMedia(dicomSeries, media);
+                }
+                if (medias.length > 0) {
+                    dicomSeries.setFileSize(dicomSeries.getFileSize() + medias[0].getLength());
                 }
-
                 if (DicomModel.isSpecialModality(dicomSeries)) {
-                    dicomModel.addSpecialModality(dicomSeries);
                     Arrays.stream(medias).filter(DicomSpecialElement.class::isInstance)
-                        .map(DicomSpecialElement.class::cast).findFirst().ifPresent(d -> dicomModel.firePropertyChange(
-                            new ObservableEvent(ObservableEvent.BasicAction.UPDATE, dicomModel, null, d)));
-                } else {
-                    dicomModel.firePropertyChange(
-                        new ObservableEvent(ObservableEvent.BasicAction.ADD, dicomModel, null, dicomSeries));
+                        .map(DicomSpecialElement.class::cast).findFirst().ifPresent(batch.specialElements::add);
                 }
+            }
+        } catch (Exception e) {
+            LOGGER.error("Build DicomModel", e); //$NON-NLS-1$
+        }
+    }
 
-                // After the thumbnail is sent to interface, it will be return to be rebuilt later
-                thumb = t;
-
-                Integer splitNb = (Integer) dicomSeries.getTagValue(TagW.SplitSeriesNumber);
-                if (splitNb != null) {
-                    dicomModel.firePropertyChange(
-                        new ObservableEvent(ObservableEvent.BasicAction.UPDATE, dicomModel, null, dicomSeries));
+    private void commit(Batch batch) {
+        if (batch.transaction.isEmpty()) {
+            return;
+        }
+        TreeModelChange change = batch.transaction.commit(c -> {
+            for (MediaSeriesGroup node : c.getAddedNodes()) {
+                if (node instanceof Series && DicomModel.isSpecialModality((Series) node)) {
+                    dicomModel.addSpecialModality((Series) node);
                 }
+            }
+            for (MediaSeriesGroup node : c.getUpdatedNodes()) {
+                if (node instanceof Series && DicomModel.isSpecialModality((Series) node)) {
+                    dicomModel.addSpecialModality((Series) node);
+                }
+            }
+        });
 
-                if (open) {
+        for (DicomSpecialElement d : batch.specialElements) {
+            dicomModel.firePropertyChange(new ObservableEvent(ObservableEvent.BasicAction.UPDATE, dicomModel, null, d));
+        }
+        batch.specialElements.clear();
+        batch.sopInstanceUIDs.clear();
+
+        for (MediaSeriesGroup node : change.getUpdatedNodes()) {
+            if (batch.createdSeries.contains(node)) {
+                batch.thumbnailsToRebuild.add((Series) node);
+            }
+        }
+        for (MediaSeriesGroup node : change.getAddedNodes()) {
+            if (node instanceof Series) {
+                Series dicomSeries = (Series) node;
+                batch.createdSeries.add(dicomSeries);
+                if (openPlugin) {
                     SeriesViewerFactory plugin = UIManager.getViewerFactory(dicomSeries.getMimeType());
                     if (plugin != null && !(plugin instanceof MimeSystemAppFactory)) {
                         openPlugin = false;
@@ -211,48 +250,23 @@ public class LoadLocalDicom extends ExplorerTask<Boolean, String> {
                             new ObservableEvent(ObservableEvent.BasicAction.SELECT, dicomModel, null, dicomSeries));
                     }
                 }
-            } else {
-                // Test if SOPInstanceUID already exists
-                if (isSOPInstanceUIDExist(study, dicomSeries, seriesUID,
-                    TagD.getTagValue(dicomReader, Tag.SOPInstanceUID, String.class))) {
-                    return null;
-                }
-                MediaElement[] medias = dicomReader.getMediaElement();
-                if (medias != null) {
-                    for (MediaElement media : medias) {
-                        dicomModel.applySplittingRules(dicomSeries, media);
-                    }
-                    if (medias.length > 0) {
-                        dicomSeries.setFileSize(dicomSeries.getFileSize() + medias[0].getLength());
-                        // Refresh the number of images on the thumbnail
-                        Thumbnail t = (Thumbnail) dicomSeries.getTagValue(TagW.Thumbnail);
-                        if (t != null) {
-                            t.repaint();
-                        }
-                    }
+            }
+        }
+    }
 
-                    if (DicomModel.isSpecialModality(dicomSeries)) {
-                        dicomModel.addSpecialModality(dicomSeries);
-                        Arrays.stream(medias).filter(DicomSpecialElement.class::isInstance)
-                            .map(DicomSpecialElement.class::cast).findFirst()
-                            .ifPresent(d -> dicomModel.firePropertyChange(
-                                new ObservableEvent(ObservableEvent.BasicAction.UPDATE, dicomModel, null, d)));
-                    }
+    /**
+     * Content read from one folder, committed to the model every {@link LoadLocalDicom#BATCH_SIZE} elements.
+     */
+    private static class Batch {
+        private final TreeModelTransaction<DicomModel> transaction;
+        private final Set<String> sopInstanceUIDs = new HashSet<>();
+        private final List<DicomSpecialElement> specialElements = new ArrayList<>();
+        private final Set<Series> createdSeries = new HashSet<>();
+        private final Set<Series> thumbnailsToRebuild = new LinkedHashSet<>();
 
-                    // If Split series or special DICOM element update the explorer view and View2DContainer
-                    Integer splitNb = (Integer) dicomSeries.getTagValue(TagW.SplitSeriesNumber);
-                    if (splitNb != null) {
-                        dicomModel.firePropertyChange(
-                            new ObservableEvent(ObservableEvent.BasicAction.UPDATE, dicomModel, null, dicomSeries));
-                    }
-                }
-            }
-        } catch (Exception e) {
-            LOGGER.error("Build DicomModel", e); //$NON-NLS-1$
-        } finally {
-            // dicomReader.reset();
+        Batch(TreeModelTransaction<DicomModel> transaction) {
+            this.transaction = transaction;
         }
-        return thumb;
     }
 
     private boolean isSOPInstanceUIDExist(MediaSeriesGroup study, Series dicomSeries, String seriesUID, Object sopUID) {
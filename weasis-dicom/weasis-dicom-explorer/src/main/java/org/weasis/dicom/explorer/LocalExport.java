@@ -503,7 +503,7 @@ public class LocalExport extends AbstractItemDialogPage implements ExportDicom {
                             if (series != null) {
                                 String seriesInstanceUID = UIDUtils.createUID();
                                 for (MediaElement dcm : series.getMedias(null, null)) {
-                                    GraphicModel grModel = (GraphicModel) dcm.getTagValue(TagW.PresentationModel);
+                                    GraphicModel grModel = XmlSerializer.getPresentationModel(dcm);
                                     if (grModel != null && grModel.hasSerializableGraphics()) {
                                         String path = buildPath(dcm, keepNames, writeDicomdir, cdCompatible, node);
                                         buildAndWritePR(dcm, keepNames, new File(writeDir, path), writer, node,
@@ -542,7 +542,7 @@ public class LocalExport extends AbstractItemDialogPage implements ExportDicom {
         Attributes imgAttributes = img.getMediaReader() instanceof DcmMediaReader
             ? ((DcmMediaReader) img.getMediaReader()).getDicomObject() : null;
         if (imgAttributes != null) {
-            GraphicModel grModel = (GraphicModel) img.getTagValue(TagW.PresentationModel);
+            GraphicModel grModel = XmlSerializer.getPresentationModel(img);
             if (grModel != null && grModel.hasSerializableGraphics()) {
                 String prUid = UIDUtils.createUID();
                 File outputFile = new File(destinationDir, keepNames ? prUid : makeFileIDs(prUid));
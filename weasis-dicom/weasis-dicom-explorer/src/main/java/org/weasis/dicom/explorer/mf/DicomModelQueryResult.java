@@ -29,6 +29,7 @@ import org.weasis.core.api.media.data.MediaSeriesGroupNode;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.api.util.StringUtil;
 import org.weasis.core.ui.model.GraphicModel;
+import org.weasis.core.ui.serialize.XmlSerializer;
 import org.weasis.dicom.codec.DicomImageElement;
 import org.weasis.dicom.codec.DicomSpecialElement;
 import org.weasis.dicom.codec.KOSpecialElement;
@@ -188,7 +189,7 @@ public class DicomModelQueryResult extends AbstractQueryResult {
             }
 
             if (media instanceof DicomImageElement) {
-                GraphicModel model = (GraphicModel) media.getTagValue(TagW.PresentationModel);
+                GraphicModel model = XmlSerializer.getPresentationModel(media);
                 if (model != null && model.hasSerializableGraphics()) {
                     images.add((DicomImageElement) media);
                 }
@@ -104,7 +104,7 @@ public class ManifestBuilder {
             buf.append(">\n"); //$NON-NLS-1$
 
             for (DicomImageElement img : images) {
-                GraphicModel model = (GraphicModel) img.getTagValue(TagW.PresentationModel);
+                GraphicModel model = XmlSerializer.getPresentationModel(img);
                 if (model != null && model.hasSerializableGraphics()) {
                     GraphicModel m = DicomPrSerializer.getModelForSerialization(model, null);
                     XmlSerializer.writePresentation(m, buf);
@@ -10,17 +10,22 @@
  *******************************************************************************/
 package org.weasis.dicom.explorer.wado;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.URI;
 import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -30,7 +35,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.zip.GZIPInputStream;
+import java.util.function.Consumer;
 
 import javax.swing.JOptionPane;
 import javax.swing.SwingWorker.StateValue;
@@ -53,16 +58,18 @@ import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.ObservableEvent;
 import org.weasis.core.api.gui.util.AppProperties;
 import org.weasis.core.api.gui.util.GuiExecutor;
-import org.weasis.core.api.media.MimeInspector;
 import org.weasis.core.api.media.data.MediaSeriesGroup;
 import org.weasis.core.api.media.data.MediaSeriesGroupNode;
 import org.weasis.core.api.media.data.Series;
 import org.weasis.core.api.media.data.TagUtil;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.api.media.data.Thumbnail;
+import org.weasis.core.api.metrics.AdaptiveConcurrency;
+import org.weasis.core.api.metrics.MetricRegistry;
 import org.weasis.core.api.service.BundleTools;
 import org.weasis.core.api.util.BiConsumerWithException;
 import org.weasis.core.api.util.FileUtil;
+import org.weasis.core.api.util.GzipManager;
 import org.weasis.core.api.util.NetworkUtil;
 import org.weasis.core.api.util.StreamIOException;
 import org.weasis.core.api.util.StringUtil;
@@ -100,6 +107,7 @@ public class DownloadManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(DownloadManager.class);
 
     public static final String CONCURRENT_SERIES = "download.concurrent.series"; //$NON-NLS-1$
+    public static final String CONCURRENT_SERIES_MAX = "download.concurrent.series.max"; //$NON-NLS-1$
     public static final List<LoadSeries> TASKS = new ArrayList<>();
 
     // Executor without concurrency (only one task is executed at the same time)
@@ -112,10 +120,19 @@ public class DownloadManager {
     private static final BlockingQueue<Runnable> PRIORITY_QUEUE =
         new PriorityBlockingQueue<>(10, new PriorityTaskComparator());
     public static final ThreadPoolExecutor CONCURRENT_EXECUTOR =
-        new ThreadPoolExecutor(BundleTools.SYSTEM_PREFERENCES.getIntProperty(CONCURRENT_SERIES, 3),
-            BundleTools.SYSTEM_PREFERENCES.getIntProperty(CONCURRENT_SERIES, 3), 0L, TimeUnit.MILLISECONDS,
+        new ThreadPoolExecutor(getDefaultConcurrentSeries(), getDefaultConcurrentSeries(), 0L, TimeUnit.MILLISECONDS,
             PRIORITY_QUEUE, ThreadUtil.getThreadFactory("Series Downloader")); //$NON-NLS-1$
 
+    // Number of simultaneous series adapted from the throughput and the errors of the instance downloads
+    public static final AdaptiveConcurrency SERIES_CONCURRENCY = new AdaptiveConcurrency(1,
+        getDefaultConcurrentSeries(), Math.max(getDefaultConcurrentSeries(),
+            BundleTools.SYSTEM_PREFERENCES.getIntProperty(CONCURRENT_SERIES_MAX, 8)),
+        2000L, n -> applyConcurrentSeries());
+
+    static {
+        MetricRegistry.getDefault().register("download.series.concurrency", SERIES_CONCURRENCY); //$NON-NLS-1$
+    }
+
     public static class PriorityTaskComparator implements Comparator<Runnable>, Serializable {
 
         private static final long serialVersionUID = 513213203958362767L;
@@ -151,16 +168,38 @@ public class DownloadManager {
     private DownloadManager() {
     }
 
+    private static int getDefaultConcurrentSeries() {
+        return Math.max(1, BundleTools.SYSTEM_PREFERENCES.getIntProperty(CONCURRENT_SERIES, 3));
+    }
+
+    private static void applyConcurrentSeries() {
+        synchronized (CONCURRENT_EXECUTOR) {
+            int size = SERIES_CONCURRENCY.getLimit();
+            // The maximum pool size cannot be lower than the core pool size
+            if (size > CONCURRENT_EXECUTOR.getMaximumPoolSize()) {
+                CONCURRENT_EXECUTOR.setMaximumPoolSize(size);
+                CONCURRENT_EXECUTOR.setCorePoolSize(size);
+            } else {
+                CONCURRENT_EXECUTOR.setCorePoolSize(size);
+                CONCURRENT_EXECUTOR.setMaximumPoolSize(size);
+            }
+        }
+    }
+
     public static boolean removeSeriesInQueue(final LoadSeries series) {
         return series.getPriority().hasConcurrentDownload() ? DownloadManager.PRIORITY_QUEUE.remove(series)
             : DownloadManager.UNIQUE_QUEUE.remove(series);
     }
 
     public static void offerSeriesInQueue(final LoadSeries series) {
+        series.setQueued();
+        // The tasks are put directly in the queues, so the threads must be started for executing them
         if (series.getPriority().hasConcurrentDownload()) {
             DownloadManager.PRIORITY_QUEUE.offer(series);
+            CONCURRENT_EXECUTOR.prestartAllCoreThreads();
         } else {
             DownloadManager.UNIQUE_QUEUE.offer(series);
+            UNIQUE_EXECUTOR.prestartAllCoreThreads();
         }
     }
 
@@ -200,8 +239,7 @@ public class DownloadManager {
             }
             if (DownloadManager.TASKS.isEmpty()) {
                 // When all loadseries are ended, reset to default the number of simultaneous download (series)
-                DownloadManager.CONCURRENT_EXECUTOR.setCorePoolSize(
-                    BundleTools.SYSTEM_PREFERENCES.getIntProperty(DownloadManager.CONCURRENT_SERIES, 3));
+                SERIES_CONCURRENCY.reset(getDefaultConcurrentSeries());
             }
         }
     }
@@ -250,62 +288,78 @@ public class DownloadManager {
 
     public static Collection<LoadSeries> buildDicomSeriesFromXml(URI uri, final DicomModel model)
         throws DownloadException {
+        return buildDicomSeriesFromXml(uri, model, null);
+    }
+
+    /**
+     * Read the manifest while it is downloading.
+     *
+     * @param uri
+     *            the URI of the manifest
+     * @param model
+     *            the DICOM model
+     * @param seriesHandler
+     *            when not null, receives each LoadSeries as soon as the end of its series element is read, so the
+     *            download of the first series can start before the end of the manifest.
+     * @return all the LoadSeries of the manifest
+     * @throws DownloadException
+     */
+    public static Collection<LoadSeries> buildDicomSeriesFromXml(URI uri, final DicomModel model,
+        Consumer<LoadSeries> seriesHandler) throws DownloadException {
+        return buildDicomSeriesFromXml(uri, model, seriesHandler, Collections.emptySet());
+    }
+
+    /**
+     * Read the manifest while it is downloading, when reading it again after a network error.
+     *
+     * @param uri
+     *            the URI of the manifest
+     * @param model
+     *            the DICOM model
+     * @param seriesHandler
+     *            when not null, receives each LoadSeries as soon as the end of its series element is read
+     * @param submittedSeries
+     *            the SeriesInstanceUIDs already given to the handler by a previous reading of the manifest: no new
+     *            LoadSeries is built for these series
+     * @return the LoadSeries of the manifest which are not in submittedSeries
+     * @throws DownloadException
+     */
+    public static Collection<LoadSeries> buildDicomSeriesFromXml(URI uri, final DicomModel model,
+        Consumer<LoadSeries> seriesHandler, Set<String> submittedSeries) throws DownloadException {
         Map<String, LoadSeries> seriesMap = new HashMap<>();
         XMLStreamReader xmler = null;
         InputStream stream = null;
+        File tempFile = null;
         try {
             XMLInputFactory xmlif = XMLInputFactory.newInstance();
 
             String path = uri.getPath();
-            
+
             URLConnection urlConnection = uri.toURL().openConnection();
             urlConnection.setUseCaches(false);
 
             LOGGER.info("Downloading XML manifest: {}", path); //$NON-NLS-1$
             InputStream urlInputStream = NetworkUtil.getUrlInputStream(urlConnection, BundleTools.SESSION_TAGS_MANIFEST,  StringUtil.getInt(System.getProperty("UrlConnectionTimeout"), 7000)  , StringUtil.getInt(System.getProperty("UrlReadTimeout"), 15000) * 2); //$NON-NLS-1$ //$NON-NLS-2$
 
-            if (path.endsWith(".gz")) { //$NON-NLS-1$
-                stream = new BufferedInputStream(new GZIPInputStream(urlInputStream));
-            } else if (path.endsWith(".xml")) { //$NON-NLS-1$
+            if (path.endsWith(".xml")) { //$NON-NLS-1$
                 stream = urlInputStream;
             } else {
-                // In case wado file has no extension
-                File outFile = File.createTempFile("wado_", "", AppProperties.APP_TEMP_DIR); //$NON-NLS-1$ //$NON-NLS-2$
-                FileUtil.writeStreamWithIOException(urlInputStream, outFile);
-                if (MimeInspector.isMatchingMimeTypeFromMagicNumber(outFile, "application/x-gzip")) { //$NON-NLS-1$
-                    stream = new BufferedInputStream(new GZIPInputStream(new FileInputStream(outFile)));
-                } else {
-                    stream = new FileInputStream(outFile);
-                }
+                // Read the magic number of gzip (".gz" or no extension), the manifest is parsed while inflating
+                stream = GzipManager.gzipUncompressStream(urlInputStream);
             }
 
-            File tempFile = null;
             if (uri.toString().startsWith("file:") && path.endsWith(".xml")) { //$NON-NLS-1$ //$NON-NLS-2$
                 tempFile = new File(path);
             } else {
+                // Copy the manifest while reading it for validating it at the end
                 tempFile = File.createTempFile("wado_", ".xml", AppProperties.APP_TEMP_DIR); //$NON-NLS-1$ //$NON-NLS-2$
-                FileUtil.writeStreamWithIOException(stream, tempFile);
+                stream = new CopyInputStream(stream, new FileOutputStream(tempFile));
             }
-            xmler = xmlif.createXMLStreamReader(new FileInputStream(tempFile));
 
-            Source xmlFile = new StAXSource(xmler);
-            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            try {
-                Schema schema = schemaFactory.newSchema(new Source[] {
-                    new StreamSource(DownloadManager.class.getResource("/config/wado_query.xsd").toExternalForm()), //$NON-NLS-1$
-                    new StreamSource(DownloadManager.class.getResource("/config/manifest.xsd").toExternalForm()) }); //$NON-NLS-1$
-                Validator validator = schema.newValidator();
-                validator.validate(xmlFile);
-                LOGGER.info("[Validate with XSD schema] wado_query is valid"); //$NON-NLS-1$
-            } catch (SAXException e) {
-                LOGGER.error("[Validate with XSD schema] wado_query is NOT valid", e); //$NON-NLS-1$
-            } catch (Exception e) {
-                LOGGER.error("Error when validate XSD schema. Try to update JRE", e); //$NON-NLS-1$
-            }
-
-            ReaderParams params = new ReaderParams(model, seriesMap);
+            ReaderParams params = new ReaderParams(model, seriesMap, seriesHandler);
+            params.getSubmittedSeries().addAll(submittedSeries);
             // Try to read the xml even it is not valid.
-            xmler = xmlif.createXMLStreamReader(new FileInputStream(tempFile));
+            xmler = xmlif.createXMLStreamReader(stream);
 
             BiConsumerWithException<XMLStreamReader, ReaderParams, XMLStreamException> method = (x, r) -> {
                 String key = x.getName().getLocalPart();
@@ -334,7 +388,11 @@ public class DownloadManager {
                 }
             };
             readElement(xmler, ArcParameters.TAG_DOCUMENT_ROOT, method, params);
+            params.handleUpdatedSeries();
 
+            FileUtil.safeClose(xmler);
+            FileUtil.safeClose(stream);
+            validateManifest(xmlif, tempFile);
         } catch (StreamIOException e) {
             throw new DownloadException(getErrorMessage(uri), e); // rethrow network issue
         } catch (Exception e) {
@@ -358,6 +416,27 @@ public class DownloadManager {
         return seriesMap.values();
     }
 
+    private static void validateManifest(XMLInputFactory xmlif, File file) {
+        XMLStreamReader xmler = null;
+        try (InputStream in = new FileInputStream(file)) {
+            xmler = xmlif.createXMLStreamReader(in);
+            Source xmlFile = new StAXSource(xmler);
+            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            Schema schema = schemaFactory.newSchema(new Source[] {
+                new StreamSource(DownloadManager.class.getResource("/config/wado_query.xsd").toExternalForm()), //$NON-NLS-1$
+                new StreamSource(DownloadManager.class.getResource("/config/manifest.xsd").toExternalForm()) }); //$NON-NLS-1$
+            Validator validator = schema.newValidator();
+            validator.validate(xmlFile);
+            LOGGER.info("[Validate with XSD schema] wado_query is valid"); //$NON-NLS-1$
+        } catch (SAXException e) {
+            LOGGER.error("[Validate with XSD schema] wado_query is NOT valid", e); //$NON-NLS-1$
+        } catch (Exception e) {
+            LOGGER.error("Error when validate XSD schema. Try to update JRE", e); //$NON-NLS-1$
+        } finally {
+            FileUtil.safeClose(xmler);
+        }
+    }
+
     private static String getErrorMessage(URI uri) {
         StringBuilder buf = new StringBuilder(Messages.getString("DownloadManager.error_load_xml")); //$NON-NLS-1$
         buf.append(StringUtil.COLON_AND_SPACE);
@@ -441,15 +520,21 @@ public class DownloadManager {
                 }
             });
         }
-        for (LoadSeries loadSeries : params.getSeriesMap().values()) {
-            String modality = TagD.getTagValue(loadSeries.getDicomSeries(), Tag.Modality, String.class);
-            boolean ps = modality != null && ("PR".equals(modality) || "KO".equals(modality)); //$NON-NLS-1$ //$NON-NLS-2$
-            if (!ps) {
-                loadSeries.startDownloadImageReference(wadoParameters);
+        if (params.getSeriesHandler() == null) {
+            for (LoadSeries loadSeries : params.getSeriesMap().values()) {
+                startDownloadImageReference(loadSeries, wadoParameters);
             }
         }
     }
 
+    private static void startDownloadImageReference(LoadSeries loadSeries, WadoParameters wadoParameters) {
+        String modality = TagD.getTagValue(loadSeries.getDicomSeries(), Tag.Modality, String.class);
+        boolean ps = modality != null && ("PR".equals(modality) || "KO".equals(modality)); //$NON-NLS-1$ //$NON-NLS-2$
+        if (!ps) {
+            loadSeries.startDownloadImageReference(wadoParameters);
+        }
+    }
+
     private static MediaSeriesGroup readPatient(XMLStreamReader xmler, ReaderParams params,
         WadoParameters wadoParameters) throws XMLStreamException {
         // PatientID, PatientBirthDate, StudyInstanceUID, SeriesInstanceUID and SOPInstanceUID override
@@ -576,10 +661,24 @@ public class DownloadManager {
         dicomSeries.setTag(TagW.WadoInstanceReferenceList, seriesInstanceList);
 
         if (!seriesInstanceList.isEmpty()) {
+            if (params.getSubmittedSeries().contains(seriesUID)) {
+                // Already queued when reading the manifest before a network error
+                return dicomSeries;
+            }
+            LoadSeries handled = params.getHandledSeries(seriesUID);
+            if (handled != null) {
+                // The series is already downloading, the new instances are handled at the end of the manifest
+                params.getUpdatedSeries().add(handled);
+                return dicomSeries;
+            }
             final LoadSeries loadSeries = new LoadSeries(dicomSeries, model,
                 BundleTools.SYSTEM_PREFERENCES.getIntProperty(LoadSeries.CONCURRENT_DOWNLOADS_IN_SERIES, 4), true);
             loadSeries.setPriority(new DownloadPriority(patient, study, dicomSeries, true));
             params.getSeriesMap().put(seriesUID, loadSeries);
+            if (params.getSeriesHandler() != null) {
+                params.getSeriesHandler().accept(loadSeries);
+                startDownloadImageReference(loadSeries, wadoParameters);
+            }
         }
         return dicomSeries;
     }
@@ -612,6 +711,8 @@ public class DownloadManager {
                                 }
                             }
                         }
+                        // With a streaming manifest, some images can be already loaded
+                        series.applyPresentationModels();
                     }
                 }
             }
@@ -727,10 +828,18 @@ public class DownloadManager {
     static class ReaderParams {
         private final DicomModel model;
         private final Map<String, LoadSeries> seriesMap;
+        private final Consumer<LoadSeries> seriesHandler;
+        private final Set<LoadSeries> updatedSeries = new LinkedHashSet<>();
+        private final Set<String> submittedSeries = new HashSet<>();
 
         public ReaderParams(DicomModel model, Map<String, LoadSeries> seriesMap) {
+            this(model, seriesMap, null);
+        }
+
+        public ReaderParams(DicomModel model, Map<String, LoadSeries> seriesMap, Consumer<LoadSeries> seriesHandler) {
             this.model = model;
             this.seriesMap = seriesMap;
+            this.seriesHandler = seriesHandler;
         }
 
         public DicomModel getModel() {
@@ -741,5 +850,85 @@ public class DownloadManager {
             return seriesMap;
         }
 
+        public Consumer<LoadSeries> getSeriesHandler() {
+            return seriesHandler;
+        }
+
+        public LoadSeries getHandledSeries(String seriesUID) {
+            return seriesHandler == null ? null : seriesMap.get(seriesUID);
+        }
+
+        public Set<LoadSeries> getUpdatedSeries() {
+            return updatedSeries;
+        }
+
+        public Set<String> getSubmittedSeries() {
+            return submittedSeries;
+        }
+
+        /**
+         * Download the instances of a series which has been declared several times in the manifest. When the series is
+         * still in the queue, the instances will be taken when starting.
+         */
+        void handleUpdatedSeries() {
+            for (LoadSeries s : updatedSeries) {
+                if (!StateValue.PENDING.equals(s.getState())) {
+                    LoadSeries task = s.cancelAndReplace(s);
+                    seriesMap.put(TagD.getTagValue(task.getDicomSeries(), Tag.SeriesInstanceUID, String.class), task);
+                }
+            }
+            updatedSeries.clear();
+        }
+    }
+
+    /**
+     * Copy the bytes while they are read.
+     */
+    private static class CopyInputStream extends FilterInputStream {
+        private final OutputStream out;
+
+        CopyInputStream(InputStream in, OutputStream out) {
+            super(in);
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                out.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                out.write(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buf = new byte[(int) Math.min(n, 8192)];
+            int read = read(buf, 0, buf.length);
+            return read < 0 ? 0 : read;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                out.close();
+            }
+        }
     }
 }
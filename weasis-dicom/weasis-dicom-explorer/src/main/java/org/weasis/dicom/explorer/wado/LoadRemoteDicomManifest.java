@@ -22,11 +22,14 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import javax.swing.JOptionPane;
 
+import org.dcm4che3.data.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.ObservableEvent;
@@ -39,6 +42,7 @@ import org.weasis.core.api.util.StreamIOException;
 import org.weasis.core.api.util.StringUtil;
 import org.weasis.core.api.util.StringUtil.Suffix;
 import org.weasis.core.ui.docking.UIManager;
+import org.weasis.dicom.codec.TagD;
 import org.weasis.dicom.explorer.DicomModel;
 import org.weasis.dicom.explorer.ExplorerTask;
 import org.weasis.dicom.explorer.Messages;
@@ -52,6 +56,8 @@ public class LoadRemoteDicomManifest extends ExplorerTask<Boolean, String> {
     private final List<String> xmlFiles;
     private final AtomicInteger retryNb = new AtomicInteger(0);
     private final List<LoadSeries> loadSeriesList = new ArrayList<>();
+    // SeriesInstanceUIDs already queued, not queued again when reading the manifest after a network error
+    private final Set<String> submittedSeries = ConcurrentHashMap.newKeySet();
     private final PropertyChangeListener propertyChangeListener = evt -> {
         if (evt instanceof ObservableEvent) {
             ObservableEvent event = (ObservableEvent) evt;
@@ -155,6 +161,7 @@ public class LoadRemoteDicomManifest extends ExplorerTask<Boolean, String> {
                 LOGGER.info("Try donloaging again: {}", xmlFiles); //$NON-NLS-1$
                 LoadRemoteDicomManifest mf = new LoadRemoteDicomManifest(xmlFiles, dicomModel);
                 mf.retryNb.set(retryNb.get());
+                mf.submittedSeries.addAll(submittedSeries);
                 mf.execute();
             }
         }
@@ -168,14 +175,18 @@ public class LoadRemoteDicomManifest extends ExplorerTask<Boolean, String> {
     private void downloadManifest(Iterator<String> iter) throws DownloadException {
         try {
             URI uri = NetworkUtil.getURI(iter.next());
-            Collection<LoadSeries> wadoTasks = DownloadManager.buildDicomSeriesFromXml(uri, dicomModel);
+            boolean downloadImmediately =
+                BundleTools.SYSTEM_PREFERENCES.getBooleanProperty(SeriesDownloadPrefView.DOWNLOAD_IMMEDIATELY, true);
+            // Start downloading each series as soon as it is read in the manifest
+            Collection<LoadSeries> wadoTasks = DownloadManager.buildDicomSeriesFromXml(uri, dicomModel, s -> {
+                submittedSeries.add(TagD.getTagValue(s.getDicomSeries(), Tag.SeriesInstanceUID, String.class));
+                loadSeriesList.add(s);
+                DownloadManager.addLoadSeries(s, dicomModel, downloadImmediately);
+            }, submittedSeries);
             iter.remove();
 
-            if (wadoTasks != null) {
-                loadSeriesList.addAll(wadoTasks);
-                boolean downloadImmediately = BundleTools.SYSTEM_PREFERENCES
-                    .getBooleanProperty(SeriesDownloadPrefView.DOWNLOAD_IMMEDIATELY, true);
-                startDownloadingSeries(wadoTasks, downloadImmediately);
+            if (wadoTasks != null && !wadoTasks.isEmpty()) {
+                Collections.sort(DownloadManager.TASKS, Collections.reverseOrder(new PriorityTaskComparator()));
             }
         } catch (URISyntaxException | MalformedURLException e) {
             LOGGER.error("Loading manifest", e); //$NON-NLS-1$
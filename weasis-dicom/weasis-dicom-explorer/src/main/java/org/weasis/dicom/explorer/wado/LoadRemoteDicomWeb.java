@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.explorer.wado;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.explorer.ObservableEvent;
+import org.weasis.core.api.explorer.model.DataExplorerModel;
+import org.weasis.core.api.util.FileUtil;
+import org.weasis.dicom.codec.DicomMediaIO;
+import org.weasis.dicom.codec.web.DicomWebClient;
+import org.weasis.dicom.explorer.DicomModel;
+import org.weasis.dicom.explorer.ExplorerTask;
+import org.weasis.dicom.explorer.LoadLocalDicom;
+import org.weasis.dicom.explorer.Messages;
+
+/**
+ * Retrieve studies with WADO-RS. Each instance is added to the model as soon as its part of the multipart response is
+ * received.
+ */
+public class LoadRemoteDicomWeb extends ExplorerTask<Boolean, String> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadRemoteDicomWeb.class);
+
+    private final DicomWebClient client;
+    private final List<String> studyUIDs;
+    private final DicomModel dicomModel;
+
+    public LoadRemoteDicomWeb(DicomWebClient client, List<String> studyUIDs, DataExplorerModel explorerModel) {
+        super(Messages.getString("DicomExplorer.loading"), true); //$NON-NLS-1$
+        if (client == null || studyUIDs == null || !(explorerModel instanceof DicomModel)) {
+            throw new IllegalArgumentException("invalid parameters"); //$NON-NLS-1$
+        }
+        this.client = client;
+        this.studyUIDs = studyUIDs;
+        this.dicomModel = (DicomModel) explorerModel;
+    }
+
+    @Override
+    protected Boolean doInBackground() throws Exception {
+        dicomModel
+            .firePropertyChange(new ObservableEvent(ObservableEvent.BasicAction.LOADING_START, dicomModel, null, this));
+        LoadLocalDicom loader = new LoadLocalDicom(new File[0], false, dicomModel);
+        for (String studyUID : studyUIDs) {
+            if (isCancelled()) {
+                break;
+            }
+            try {
+                int nb = client.retrieveStudy(studyUID, part -> {
+                    File file = File.createTempFile("dcm_", ".dcm", DicomMediaIO.DICOM_EXPORT_DIR); //$NON-NLS-1$ //$NON-NLS-2$
+                    FileUtil.writeStreamWithIOException(part.getInputStream(), file);
+                    loader.addSelectionAndnotify(new File[] { file }, false);
+                    return !isCancelled();
+                });
+                LOGGER.info("WADO-RS: {} instances retrieved from the study {}", nb, studyUID); //$NON-NLS-1$
+            } catch (IOException e) {
+                LOGGER.error("WADO-RS retrieve of the study {}", studyUID, e); //$NON-NLS-1$
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void done() {
+        dicomModel
+            .firePropertyChange(new ObservableEvent(ObservableEvent.BasicAction.LOADING_STOP, dicomModel, null, this));
+    }
+}
@@ -14,10 +14,13 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelListener;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -25,25 +28,23 @@ import java.net.URLConnection;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.stream.IntStream;
 
 import javax.swing.JProgressBar;
 
-import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.ElementDictionary;
 import org.dcm4che3.data.Tag;
-import org.dcm4che3.io.DicomInputStream;
-import org.dcm4che3.io.DicomInputStream.IncludeBulkData;
-import org.dcm4che3.io.DicomOutputStream;
-import org.dcm4che3.util.SafeClose;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.ObservableEvent;
+import org.weasis.core.api.explorer.model.TreeModelTransaction;
 import org.weasis.core.api.gui.util.AppProperties;
 import org.weasis.core.api.gui.util.GuiExecutor;
 import org.weasis.core.api.media.data.MediaElement;
@@ -55,9 +56,12 @@ import org.weasis.core.api.media.data.SeriesThumbnail;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.api.media.data.TagW.TagType;
 import org.weasis.core.api.media.data.Thumbnail;
+import org.weasis.core.api.metrics.Histogram;
+import org.weasis.core.api.metrics.MetricRegistry;
 import org.weasis.core.api.service.AuditLog;
 import org.weasis.core.api.service.BundleTools;
 import org.weasis.core.api.util.FileUtil;
+import org.weasis.core.api.util.LangUtil;
 import org.weasis.core.api.util.NetworkUtil;
 import org.weasis.core.api.util.StreamIOException;
 import org.weasis.core.api.util.StringUtil;
@@ -77,6 +81,7 @@ import org.weasis.dicom.codec.TagD;
 import org.weasis.dicom.codec.TagD.Level;
 import org.weasis.dicom.codec.TransferSyntax;
 import org.weasis.dicom.codec.utils.DicomMediaUtils;
+import org.weasis.dicom.codec.utils.DicomStreamRewriter;
 import org.weasis.dicom.explorer.DicomModel;
 import org.weasis.dicom.explorer.ExplorerTask;
 import org.weasis.dicom.explorer.Messages;
@@ -94,6 +99,10 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
     public static final File DICOM_TMP_DIR = AppProperties.buildAccessibleTempDirectory("downloading"); //$NON-NLS-1$
     public static final TagW DOWNLOAD_START_TIME = new TagW("DownloadSartTime", TagType.TIME); //$NON-NLS-1$
 
+    private static final Histogram QUEUE_TIMER = MetricRegistry.getDefault().timer("download.series.queue"); //$NON-NLS-1$
+    private static final Histogram INSTANCE_TIMER =
+        MetricRegistry.getDefault().timer("download.instance"); //$NON-NLS-1$
+
     public enum Status {
         DOWNLOADING, PAUSED, COMPLETE, CANCELLED, ERROR
     }
@@ -105,8 +114,10 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
     private final JProgressBar progressBar;
     private volatile DownloadPriority priority = null;
     private final boolean writeInCache;
+    private final Object modelUpdateLock = new Object();
 
     private volatile boolean hasError = false;
+    private volatile long queuedTime = 0L;
 
     public LoadSeries(Series<?> dicomSeries, DicomModel dicomModel, int concurrentDownloads, boolean writeInCache) {
         super(Messages.getString("DicomExplorer.loading"), writeInCache, true); //$NON-NLS-1$
@@ -146,9 +157,21 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
 
     @Override
     protected Boolean doInBackground() {
+        long queued = queuedTime;
+        if (queued != 0L) {
+            QUEUE_TIMER.recordSince(queued);
+            queuedTime = 0L;
+        }
         return startDownload();
     }
 
+    /**
+     * Mark the time when the task is put in the download queue, for measuring the waiting time.
+     */
+    void setQueued() {
+        this.queuedTime = System.nanoTime();
+    }
+
     @Override
     public JProgressBar getProgressBar() {
         return progressBar;
@@ -322,7 +345,9 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
         ExecutorService imageDownloader =
             ThreadUtil.buildNewFixedThreadExecutor(concurrentDownloads, "Image Downloader"); //$NON-NLS-1$
         ArrayList<Callable<Boolean>> tasks = new ArrayList<>(sopList.size());
-        int[] dindex = generateDownladOrder(sopList.size());
+        // Read the local media (CD, DVD, USB) in the storage order rather than in the display order
+        int[] dindex = LangUtil.getNULLtoFalse((Boolean) dicomSeries.getTagValue(TagW.ReadFromDicomdir))
+            ? generateFileOrder(sopList) : generateDownladOrder(sopList.size());
         GuiExecutor.instance().execute(() -> {
             progressBar.setMaximum(sopList.size());
             progressBar.setValue(0);
@@ -564,6 +589,13 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
         return outFile;
     }
 
+    static int[] generateFileOrder(List<SopInstance> sopList) {
+        return IntStream.range(0, sopList.size()).boxed()
+            .sorted(Comparator.comparing(i -> sopList.get(i).getDirectDownloadFile(),
+                Comparator.nullsLast(Comparator.naturalOrder())))
+            .mapToInt(Integer::intValue).toArray();
+    }
+
     private int[] generateDownladOrder(final int size) {
         int[] dindex = new int[size];
         if (size < 4) {
@@ -606,6 +638,7 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
         private final URLConnection urlConnection; // download URL
         private final WadoParameters wado;
         private Status status; // current status of download
+        private long transferred;
 
         public Download(URLConnection urlConnection, WadoParameters wado) {
             this.urlConnection = urlConnection;
@@ -655,15 +688,26 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
 
         @Override
         public Boolean call() throws Exception {
+            long start = System.nanoTime();
+            DownloadPriority p = getPriority();
+            boolean adaptive = p != null && p.hasConcurrentDownload();
             try {
                 process();
+                if (adaptive && status == Status.COMPLETE) {
+                    DownloadManager.SERIES_CONCURRENCY.onSuccess(transferred);
+                }
             } catch (StreamIOException es) {
                 hasError = true; // network issue (allow to retry)
                 error();
+                if (adaptive) {
+                    DownloadManager.SERIES_CONCURRENCY.onError();
+                }
                 LOGGER.error("Downloading", es); //$NON-NLS-1$
             } catch (IOException | URISyntaxException e) {
                 error();
                 LOGGER.error("Downloading", e); //$NON-NLS-1$
+            } finally {
+                INSTANCE_TIMER.recordSince(start);
             }
             return Boolean.TRUE;
         }
@@ -717,6 +761,7 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
                         if (tempFile.renameTo(renameFile)) {
                             tempFile = renameFile;
                         }
+                        transferred = tempFile.length();
                     } else {
                         tempFile = new File(urlConnection.getURL().toURI());
                     }
@@ -732,7 +777,7 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
                         MediaSeriesGroup study = dicomModel.getParent(dicomSeries, DicomModel.study);
                         dicomReader.writeMetaData(study);
                         dicomReader.writeMetaData(dicomSeries);
-                        GuiExecutor.instance().invokeAndWait(() -> {
+                        GuiExecutor.instance().execute(() -> {
                             Thumbnail thumb = (Thumbnail) dicomSeries.getTagValue(TagW.Thumbnail);
                             if (thumb != null) {
                                 thumb.repaint();
@@ -751,10 +796,9 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
                     if (cache) {
                         dicomReader.getFileCache().setOriginalTempFile(tempFile);
                     }
-                    final DicomMediaIO reader = dicomReader;
-                    // Necessary to wait the runnable because the dicomSeries must be added to the dicomModel
-                    // before reaching done() of SwingWorker
-                    GuiExecutor.instance().invokeAndWait(() -> updateUI(reader));
+                    // The model is updated in this thread (without waiting the EDT) because the dicomSeries must
+                    // be added to the dicomModel before reaching done() of SwingWorker
+                    updateUI(dicomReader);
                 }
             }
             // Increment progress bar in EDT and repaint when downloaded
@@ -802,44 +846,28 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
                 return 0;
             }
 
-            DicomInputStream dis = null;
-            DicomOutputStream dos = null;
-
-            try {
-                String tsuid = null;
-                Attributes dataset;
-                dis = new DicomInputStream(in);
-                try {
-                    dis.setIncludeBulkData(IncludeBulkData.URI);
-                    dataset = dis.readDataset(-1, -1);
-                    tsuid = dis.getTransferSyntax();
-                } finally {
-                    dis.close();
-                }
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+                // Parse only the header and copy the pixel data unchanged in the same pass
+                DicomStreamRewriter.rewrite(in, out, dataset -> {
+                    if (overrideList != null) {
+                        MediaSeriesGroup study = dicomModel.getParent(dicomSeries, DicomModel.study);
+                        MediaSeriesGroup patient = dicomModel.getParent(dicomSeries, DicomModel.patient);
+                        ElementDictionary dic = ElementDictionary.getStandardElementDictionary();
+
+                        for (int tag : overrideList) {
+                            TagW tagElement = patient.getTagElement(tag);
+                            Object value = null;
+                            if (tagElement == null) {
+                                tagElement = study.getTagElement(tag);
+                                value = study.getTagValue(tagElement);
+                            } else {
+                                value = patient.getTagValue(tagElement);
+                            }
 
-                dos = new DicomOutputStream(tempFile);
-
-                if (overrideList != null) {
-                    MediaSeriesGroup study = dicomModel.getParent(dicomSeries, DicomModel.study);
-                    MediaSeriesGroup patient = dicomModel.getParent(dicomSeries, DicomModel.patient);
-                    ElementDictionary dic = ElementDictionary.getStandardElementDictionary();
-
-                    for (int tag : overrideList) {
-                        TagW tagElement = patient.getTagElement(tag);
-                        Object value = null;
-                        if (tagElement == null) {
-                            tagElement = study.getTagElement(tag);
-                            value = study.getTagValue(tagElement);
-                        } else {
-                            value = patient.getTagValue(tagElement);
+                            DicomMediaUtils.fillAttributes(dataset, tagElement, value, dic);
                         }
-
-                        DicomMediaUtils.fillAttributes(dataset, tagElement, value, dic);
                     }
-                }
-                dos.writeDataset(dataset.createFileMetaInformation(tsuid), dataset);
-                dos.finish();
-                dos.flush();
+                });
                 return -1;
             } catch (InterruptedIOException e) {
                 FileUtil.delete(tempFile);
@@ -853,15 +881,7 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
                 LOGGER.error("Writing DICOM temp file", e); //$NON-NLS-1$
                 return 0;
             } finally {
-                SafeClose.close(dos);
-                if (dis != null) {
-                    List<File> blkFiles = dis.getBulkDataFiles();
-                    if (blkFiles != null) {
-                        for (File file : blkFiles) {
-                            FileUtil.delete(file);
-                        }
-                    }
-                }
+                FileUtil.safeClose(in);
             }
         }
 
@@ -869,67 +889,88 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
             boolean firstImageToDisplay = false;
             MediaElement[] medias = reader.getMediaElement();
             if (medias != null) {
-                firstImageToDisplay = dicomSeries.size(null) == 0;
-                if (firstImageToDisplay) {
-                    MediaSeriesGroup patient = dicomModel.getParent(dicomSeries, DicomModel.patient);
-                    if (patient != null) {
-                        String dicomPtUID = (String) reader.getTagValue(TagW.PatientPseudoUID);
-                        if (!patient.getTagValue(TagW.PatientPseudoUID).equals(dicomPtUID)) {
-                            // Fix when patientUID in xml have different patient name
-                            dicomModel.mergePatientUID((String) patient.getTagValue(TagW.PatientPseudoUID), dicomPtUID);
+                // Serialize the concurrent downloads of the series for finding the first image
+                synchronized (modelUpdateLock) {
+                    firstImageToDisplay = dicomSeries.size(null) == 0;
+                    if (firstImageToDisplay) {
+                        MediaSeriesGroup patient = dicomModel.getParent(dicomSeries, DicomModel.patient);
+                        if (patient != null) {
+                            String dicomPtUID = (String) reader.getTagValue(TagW.PatientPseudoUID);
+                            if (!patient.getTagValue(TagW.PatientPseudoUID).equals(dicomPtUID)) {
+                                // Fix when patientUID in xml have different patient name
+                                dicomModel.mergePatientUID((String) patient.getTagValue(TagW.PatientPseudoUID),
+                                    dicomPtUID);
+                            }
                         }
                     }
+
+                    TreeModelTransaction<DicomModel> transaction = dicomModel.newTransaction();
+                    for (MediaElement media : medias) {
+                        applyPresentationModel(media);
+                        transaction.addMedia(dicomSeries, media);
+                    }
+                    transaction.commit();
+                    if (firstImageToDisplay && dicomSeries.size(null) == 0) {
+                        firstImageToDisplay = false;
+                    }
                 }
+            }
 
-                for (MediaElement media : medias) {
-                    applyPresentationModel(media);
-                    dicomModel.applySplittingRules(dicomSeries, media);
+            final boolean openViewer = firstImageToDisplay;
+            GuiExecutor.instance().execute(() -> {
+                Thumbnail thumb = (Thumbnail) dicomSeries.getTagValue(TagW.Thumbnail);
+                if (thumb != null) {
+                    thumb.repaint();
                 }
-                if (firstImageToDisplay && dicomSeries.size(null) == 0) {
-                    firstImageToDisplay = false;
+                if (openViewer) {
+                    openFirstImage();
                 }
-            }
+            });
+        }
 
-            Thumbnail thumb = (Thumbnail) dicomSeries.getTagValue(TagW.Thumbnail);
-            if (thumb != null) {
-                thumb.repaint();
-            }
-
-            if (firstImageToDisplay) {
-                boolean openNewTab = true;
-                MediaSeriesGroup entry1 = dicomModel.getParent(dicomSeries, DicomModel.patient);
-                if (entry1 != null) {
-                    synchronized (UIManager.VIEWER_PLUGINS) {
-                        for (final ViewerPlugin p : UIManager.VIEWER_PLUGINS) {
-                            if (entry1.equals(p.getGroupID())) {
-                                if (p instanceof ImageViewerPlugin) {
-                                    ViewCanvas pane = ((ImageViewerPlugin) p).getSelectedImagePane();
-                                    if (pane != null && pane.getImageLayer() != null
-                                        && pane.getImageLayer().getSourceImage() == null) {
-                                        // When the selected view has no image send, open in it.
-                                        break;
-                                    }
+        private void openFirstImage() {
+            boolean openNewTab = true;
+            MediaSeriesGroup entry1 = dicomModel.getParent(dicomSeries, DicomModel.patient);
+            if (entry1 != null) {
+                synchronized (UIManager.VIEWER_PLUGINS) {
+                    for (final ViewerPlugin p : UIManager.VIEWER_PLUGINS) {
+                        if (entry1.equals(p.getGroupID())) {
+                            if (p instanceof ImageViewerPlugin) {
+                                ViewCanvas pane = ((ImageViewerPlugin) p).getSelectedImagePane();
+                                if (pane != null && pane.getImageLayer() != null
+                                    && pane.getImageLayer().getSourceImage() == null) {
+                                    // When the selected view has no image send, open in it.
+                                    break;
                                 }
-                                openNewTab = false;
-                                break;
                             }
+                            openNewTab = false;
+                            break;
                         }
                     }
                 }
-                if (openNewTab) {
-                    SeriesViewerFactory plugin = UIManager.getViewerFactory(dicomSeries.getMimeType());
-                    if (plugin != null && !(plugin instanceof MimeSystemAppFactory)) {
-                        ViewerPluginBuilder.openSequenceInPlugin(plugin, dicomSeries, dicomModel, true, true);
-                    } else if (plugin != null) {
-                        // Send event to select the related patient in Dicom Explorer.
-                        dicomModel.firePropertyChange(
-                            new ObservableEvent(ObservableEvent.BasicAction.SELECT, dicomModel, null, dicomSeries));
-                    }
+            }
+            if (openNewTab) {
+                SeriesViewerFactory plugin = UIManager.getViewerFactory(dicomSeries.getMimeType());
+                if (plugin != null && !(plugin instanceof MimeSystemAppFactory)) {
+                    ViewerPluginBuilder.openSequenceInPlugin(plugin, dicomSeries, dicomModel, true, true);
+                } else if (plugin != null) {
+                    // Send event to select the related patient in Dicom Explorer.
+                    dicomModel.firePropertyChange(
+                        new ObservableEvent(ObservableEvent.BasicAction.SELECT, dicomModel, null, dicomSeries));
                 }
             }
         }
     }
 
+    /**
+     * Apply the presentation models to the images already loaded.
+     */
+    public void applyPresentationModels() {
+        for (MediaElement media : dicomSeries.copyOfMedias(null, null)) {
+            applyPresentationModel(media);
+        }
+    }
+
     private void applyPresentationModel(MediaElement media) {
         String sopUID = TagD.getTagValue(media, Tag.SOPInstanceUID, String.class);
 
@@ -982,6 +1023,10 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
                 // Set the priority to the current loadingSeries and stop a task.
                 p.setPriority(DownloadPriority.COUNTER.getAndDecrement());
                 DownloadManager.offerSeriesInQueue(this);
+                // Prefer an additional download slot rather than interrupting a running series
+                if (p.hasConcurrentDownload() && DownloadManager.SERIES_CONCURRENCY.boost()) {
+                    return;
+                }
                 synchronized (DownloadManager.TASKS) {
                     for (LoadSeries s : DownloadManager.TASKS) {
                         if (s != this && StateValue.STARTED.equals(s.getState())) {
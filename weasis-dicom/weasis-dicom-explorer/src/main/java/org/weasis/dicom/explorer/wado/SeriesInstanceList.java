@@ -18,12 +18,15 @@ import java.util.Map;
 
 import org.weasis.dicom.mf.SopInstance;
 
+/**
+ * Thread-safe list of the instances of a series, as it can be updated while the manifest is still being read.
+ */
 public class SeriesInstanceList {
     private final Map<String, SopInstance> dicomInstanceMap = new HashMap<>();
     private final Map<String, SopInstance> dicomUniqueSopInstanceMap = new HashMap<>();
     private boolean containsMultiframes = false;
 
-    public void addSopInstance(SopInstance s) {
+    public synchronized void addSopInstance(SopInstance s) {
         if (s != null) {
             SopInstance.addSopInstance(dicomInstanceMap, s);
             SopInstance sop = dicomUniqueSopInstanceMap.get(s.getSopInstanceUID());
@@ -35,27 +38,27 @@ public class SeriesInstanceList {
         }
     }
 
-    public SopInstance getSopInstance(String sopUID, Integer instanceNumber) {
+    public synchronized SopInstance getSopInstance(String sopUID, Integer instanceNumber) {
         return SopInstance.getSopInstance(dicomInstanceMap, sopUID, instanceNumber);
     }
 
-    public SopInstance getSopInstance(String sopUID) {
+    public synchronized SopInstance getSopInstance(String sopUID) {
         return dicomUniqueSopInstanceMap.get(sopUID);
     }
 
-    public boolean isContainsMultiframes() {
+    public synchronized boolean isContainsMultiframes() {
         return containsMultiframes;
     }
 
-    public boolean isEmpty() {
+    public synchronized boolean isEmpty() {
         return dicomInstanceMap.isEmpty();
     }
 
-    public int size() {
+    public synchronized int size() {
         return dicomInstanceMap.size();
     }
 
-    public List<SopInstance> getSortedList() {
+    public synchronized List<SopInstance> getSortedList() {
         ArrayList<SopInstance> sopList = new ArrayList<>(dicomInstanceMap.values());
         Collections.sort(sopList);
         return sopList;
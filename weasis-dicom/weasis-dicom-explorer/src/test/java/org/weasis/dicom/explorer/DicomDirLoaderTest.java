@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.explorer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.security.Permission;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.media.DicomDirWriter;
+import org.dcm4che3.media.RecordType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.weasis.core.api.media.data.MediaSeriesGroup;
+import org.weasis.core.api.media.data.MediaSeriesGroupNode;
+import org.weasis.core.api.media.data.TagW;
+import org.weasis.dicom.codec.TagD;
+import org.weasis.dicom.explorer.wado.LoadSeries;
+import org.weasis.dicom.explorer.wado.SeriesInstanceList;
+import org.weasis.dicom.mf.SopInstance;
+
+public class DicomDirLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // PatientID -> StudyInstanceUID -> SeriesInstanceUID -> SOPInstanceUIDs
+    private static final class Hierarchy extends TreeMap<String, Map<String, Map<String, Set<String>>>> {
+        private static final long serialVersionUID = 1L;
+
+        void add(String patientID, String studyUID, String seriesUID, String sopUID) {
+            computeIfAbsent(patientID, k -> new TreeMap<>()).computeIfAbsent(studyUID, k -> new TreeMap<>())
+                .computeIfAbsent(seriesUID, k -> new HashSet<>()).add(sopUID);
+        }
+
+        int instances() {
+            int nb = 0;
+            for (Map<String, Map<String, Set<String>>> studies : values()) {
+                for (Map<String, Set<String>> series : studies.values()) {
+                    for (Set<String> sops : series.values()) {
+                        nb += sops.size();
+                    }
+                }
+            }
+            return nb;
+        }
+    }
+
+    /**
+     * Counts the file accesses (open, exists...) in a directory.
+     */
+    private static final class FileAccessCounter extends SecurityManager {
+        private final String root;
+        private final String excluded;
+        private final AtomicInteger count = new AtomicInteger();
+
+        FileAccessCounter(File root, File excluded) {
+            this.root = root.getPath();
+            this.excluded = excluded.getPath();
+        }
+
+        @Override
+        public void checkPermission(Permission perm) {
+            // Everything is allowed
+        }
+
+        @Override
+        public void checkPermission(Permission perm, Object context) {
+            // Everything is allowed
+        }
+
+        @Override
+        public void checkRead(String file) {
+            if (file.startsWith(root) && !file.equals(excluded)) {
+                count.incrementAndGet();
+            }
+        }
+    }
+
+    private static Attributes buildDataset(int patient, int study, int series, int instance) {
+        Attributes dataset = new Attributes();
+        dataset.setString(Tag.PatientID, VR.LO, "PAT" + patient); //$NON-NLS-1$
+        dataset.setString(Tag.PatientName, VR.PN, "Patient^" + patient); //$NON-NLS-1$
+        dataset.setString(Tag.StudyInstanceUID, VR.UI, "1.2.826.0.1." + patient + "." + study); //$NON-NLS-1$ //$NON-NLS-2$
+        dataset.setString(Tag.SeriesInstanceUID, VR.UI, "1.2.826.0.1." + patient + "." + study + "." + series); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        dataset.setString(Tag.SOPInstanceUID, VR.UI,
+            "1.2.826.0.1." + patient + "." + study + "." + series + "." + instance); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        dataset.setString(Tag.SOPClassUID, VR.UI, UID.CTImageStorage);
+        dataset.setString(Tag.Modality, VR.CS, "CT"); //$NON-NLS-1$
+        dataset.setString(Tag.SeriesNumber, VR.IS, Integer.toString(series));
+        dataset.setInt(Tag.InstanceNumber, VR.IS, instance);
+        return dataset;
+    }
+
+    private static File getFile(File root, int patient, int study, int series, int instance) {
+        return new File(root, String.format("P%d%sST%d%sSE%d%sI%05d", patient, File.separator, study, //$NON-NLS-1$
+            File.separator, series, File.separator, instance));
+    }
+
+    /**
+     * Writes the DICOMDIR records (and the files when writeFiles is true) of patients x studies x series x instances.
+     */
+    private static File writeDicomDir(File root, int patients, int studies, int series, int instances,
+        boolean writeFiles) throws IOException {
+        File dicomdir = new File(root, "DICOMDIR"); //$NON-NLS-1$
+        DicomDirWriter writer = DicomDirLoader.open(dicomdir);
+        try {
+            for (int p = 0; p < patients; p++) {
+                Attributes patRec = null;
+                for (int st = 0; st < studies; st++) {
+                    Attributes studyRec = null;
+                    for (int se = 0; se < series; se++) {
+                        Attributes seriesRec = null;
+                        for (int i = 1; i <= instances; i++) {
+                            Attributes dataset = buildDataset(p, st, se, i);
+                            if (patRec == null) {
+                                patRec = DicomDirLoader.RecordFactory.createRecord(RecordType.PATIENT, null, dataset,
+                                    null, null);
+                                writer.addRootDirectoryRecord(patRec);
+                            }
+                            if (studyRec == null) {
+                                studyRec = DicomDirLoader.RecordFactory.createRecord(RecordType.STUDY, null, dataset,
+                                    null, null);
+                                writer.addLowerDirectoryRecord(patRec, studyRec);
+                            }
+                            if (seriesRec == null) {
+                                seriesRec = DicomDirLoader.RecordFactory.createRecord(RecordType.SERIES, null, dataset,
+                                    null, null);
+                                writer.addLowerDirectoryRecord(studyRec, seriesRec);
+                            }
+                            Attributes fmi = dataset.createFileMetaInformation(UID.ExplicitVRLittleEndian);
+                            File file = getFile(root, p, st, se, i);
+                            if (writeFiles) {
+                                file.getParentFile().mkdirs();
+                                try (DicomOutputStream out = new DicomOutputStream(file)) {
+                                    out.writeDataset(fmi, dataset);
+                                }
+                            }
+                            writer.addLowerDirectoryRecord(seriesRec,
+                                DicomDirLoader.RecordFactory.createRecord(dataset, fmi, writer.toFileIDs(file)));
+                        }
+                    }
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        return dicomdir;
+    }
+
+    private static Hierarchy getHierarchy(DicomModel model) {
+        Hierarchy hierarchy = new Hierarchy();
+        for (MediaSeriesGroup patient : model.getChildren(MediaSeriesGroupNode.rootNode)) {
+            String patientID = TagD.getTagValue(patient, Tag.PatientID, String.class);
+            for (MediaSeriesGroup study : model.getChildren(patient)) {
+                String studyUID = TagD.getTagValue(study, Tag.StudyInstanceUID, String.class);
+                for (MediaSeriesGroup series : model.getChildren(study)) {
+                    String seriesUID = TagD.getTagValue(series, Tag.SeriesInstanceUID, String.class);
+                    SeriesInstanceList list = (SeriesInstanceList) series.getTagValue(TagW.WadoInstanceReferenceList);
+                    for (SopInstance sop : list.getSortedList()) {
+                        hierarchy.add(patientID, studyUID, seriesUID, sop.getSopInstanceUID());
+                    }
+                }
+            }
+        }
+        return hierarchy;
+    }
+
+    @Test
+    public void testHierarchyLikeFullParse() throws IOException {
+        File root = folder.getRoot();
+        File dicomdir = writeDicomDir(root, 2, 2, 3, 20, true);
+
+        // Full parse: read the hierarchy from all the referenced files
+        Hierarchy expected = new Hierarchy();
+        for (int p = 0; p < 2; p++) {
+            for (int st = 0; st < 2; st++) {
+                for (int se = 0; se < 3; se++) {
+                    for (int i = 1; i <= 20; i++) {
+                        try (DicomInputStream in = new DicomInputStream(getFile(root, p, st, se, i))) {
+                            Attributes dcm = in.readDataset(-1, -1);
+                            expected.add(dcm.getString(Tag.PatientID), dcm.getString(Tag.StudyInstanceUID),
+                                dcm.getString(Tag.SeriesInstanceUID), dcm.getString(Tag.SOPInstanceUID));
+                        }
+                    }
+                }
+            }
+        }
+
+        DicomModel model = new DicomModel();
+        List<LoadSeries> loadSeries = new DicomDirLoader(dicomdir, model, false).readDicomDir();
+        assertThat(loadSeries).hasSize(12);
+        assertThat(getHierarchy(model)).isEqualTo(expected);
+
+        // The files are referenced by URI, to be read later by LoadSeries
+        for (LoadSeries s : loadSeries) {
+            SeriesInstanceList list =
+                (SeriesInstanceList) s.getDicomSeries().getTagValue(TagW.WadoInstanceReferenceList);
+            for (SopInstance sop : list.getSortedList()) {
+                assertThat(new File(URI.create(sop.getDirectDownloadFile()))).isFile();
+            }
+        }
+    }
+
+    @Test
+    public void testLargeDicomDir() throws IOException {
+        File root = folder.getRoot();
+        // 50,000 image records in 100 series (one directory by series), the files do not exist
+        File dicomdir = writeDicomDir(root, 1, 10, 10, 500, false);
+        int directories = 100;
+
+        FileAccessCounter counter = new FileAccessCounter(root, dicomdir);
+        DicomModel model = new DicomModel();
+        List<LoadSeries> loadSeries;
+        System.setSecurityManager(counter);
+        try {
+            loadSeries = new DicomDirLoader(dicomdir, model, false).readDicomDir();
+        } finally {
+            System.setSecurityManager(null);
+        }
+        assertThat(loadSeries).hasSize(100);
+        Hierarchy hierarchy = getHierarchy(model);
+        assertThat(hierarchy.instances()).isEqualTo(50000);
+        assertThat(hierarchy.get("PAT0")).hasSize(10); //$NON-NLS-1$
+
+        // Before the first display, at most the file and its lower case path are checked in each directory
+        assertThat(counter.count.get()).isLessThanOrEqualTo(2 * directories);
+    }
+}
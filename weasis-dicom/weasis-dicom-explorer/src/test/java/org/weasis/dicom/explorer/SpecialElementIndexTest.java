@@ -0,0 +1,354 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.explorer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomOutputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.weasis.core.api.media.data.MediaElement;
+import org.weasis.core.api.media.data.MediaSeriesGroup;
+import org.weasis.core.api.media.data.MediaSeriesGroupNode;
+import org.weasis.core.api.media.data.Series;
+import org.weasis.core.api.media.data.TagW;
+import org.weasis.dicom.codec.AbstractKOSpecialElement.Reference;
+import org.weasis.dicom.codec.DicomMediaIO;
+import org.weasis.dicom.codec.DicomSeries;
+import org.weasis.dicom.codec.DicomSpecialElement;
+import org.weasis.dicom.codec.KOSpecialElement;
+import org.weasis.dicom.codec.PRSpecialElement;
+import org.weasis.dicom.codec.RejectedKOSpecialElement;
+import org.weasis.dicom.codec.SpecialElementIndex;
+import org.weasis.dicom.codec.TagD;
+import org.weasis.dicom.codec.TagD.Level;
+import org.weasis.dicom.codec.utils.DicomMediaUtils;
+
+public class SpecialElementIndexTest {
+
+    private static final String STUDY_UID = "1.2.3"; //$NON-NLS-1$
+    private static final String SERIES_UID = "1.2.3.1"; //$NON-NLS-1$
+    private static final String OTHER_SERIES_UID = "1.2.3.2"; //$NON-NLS-1$
+    private static final int NB_INSTANCES = 3000;
+    private static final int NB_FRAMES = 6;
+    private static final long CONTENT_TIME = 1_500_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(11);
+
+    private DicomModel model;
+    private MediaSeriesGroup patient;
+    private MediaSeriesGroup study;
+    private DicomSeries imageSeries;
+    private KOSpecialElement editableKo;
+
+    private static String sopUID(int index) {
+        return SERIES_UID + "." + index; //$NON-NLS-1$
+    }
+
+    private static Attributes header(String modality, String seriesUID, int number) {
+        Attributes attributes = new Attributes();
+        attributes.setString(Tag.PatientID, VR.LO, "12345"); //$NON-NLS-1$
+        attributes.setString(Tag.PatientName, VR.PN, "Doe^John"); //$NON-NLS-1$
+        attributes.setString(Tag.PatientBirthDate, VR.DA, "19700101"); //$NON-NLS-1$
+        attributes.setString(Tag.StudyInstanceUID, VR.UI, STUDY_UID);
+        attributes.setString(Tag.SeriesInstanceUID, VR.UI, seriesUID);
+        attributes.setString(Tag.SOPInstanceUID, VR.UI, seriesUID + ".1"); //$NON-NLS-1$
+        attributes.setString(Tag.Modality, VR.CS, modality);
+        attributes.setInt(Tag.SeriesNumber, VR.IS, number);
+        attributes.setInt(Tag.InstanceNumber, VR.IS, 1);
+        // Distinct dates, otherwise the sorted sets of the list scans merge the elements
+        attributes.setDate(Tag.ContentDateAndTime, new Date(CONTENT_TIME + number * 60_000L));
+        return attributes;
+    }
+
+    private Attributes referencedSop(String sopUID, String sopClassUID) {
+        Attributes sop = new Attributes();
+        sop.setString(Tag.ReferencedSOPClassUID, VR.UI, sopClassUID);
+        sop.setString(Tag.ReferencedSOPInstanceUID, VR.UI, sopUID);
+        if (random.nextInt(3) == 0) {
+            sop.setInt(Tag.ReferencedFrameNumber, VR.IS, frames());
+        }
+        return sop;
+    }
+
+    private int[] frames() {
+        int[] frames = new int[1 + random.nextInt(3)];
+        for (int k = 0; k < frames.length; k++) {
+            frames[k] = 1 + random.nextInt(NB_FRAMES);
+        }
+        return frames;
+    }
+
+    private Attributes koSeriesItem(String seriesUID, int nbImages) {
+        Attributes item = new Attributes();
+        item.setString(Tag.SeriesInstanceUID, VR.UI, seriesUID);
+        Sequence seq = item.newSequence(Tag.ReferencedSOPSequence, nbImages);
+        for (int i = 0; i < nbImages; i++) {
+            seq.add(referencedSop(sopUID(random.nextInt(NB_INSTANCES)), UID.CTImageStorage));
+        }
+        return item;
+    }
+
+    private Attributes keyObject(int number, boolean rejection, boolean other, boolean images) {
+        Attributes attributes = header("KO", "1.2.3.8." + number, number); //$NON-NLS-1$ //$NON-NLS-2$
+        attributes.setString(Tag.SOPClassUID, VR.UI, UID.KeyObjectSelectionDocumentStorage);
+        attributes.setString(Tag.ValueType, VR.CS, "CONTAINER"); //$NON-NLS-1$
+        Attributes title = new Attributes();
+        title.setString(Tag.CodingSchemeDesignator, VR.SH, "DCM"); //$NON-NLS-1$
+        title.setString(Tag.CodeValue, VR.SH, rejection ? "113001" : "113000"); //$NON-NLS-1$ //$NON-NLS-2$
+        title.setString(Tag.CodeMeaning, VR.LO,
+            rejection ? "Rejected for Quality Reasons" : "Of Interest"); //$NON-NLS-1$ //$NON-NLS-2$
+        attributes.newSequence(Tag.ConceptNameCodeSequence, 1).add(title);
+
+        Attributes studyItem = new Attributes();
+        studyItem.setString(Tag.StudyInstanceUID, VR.UI, STUDY_UID);
+        Sequence series = studyItem.newSequence(Tag.ReferencedSeriesSequence, 2);
+        if (images) {
+            series.add(koSeriesItem(SERIES_UID, 400));
+        }
+        if (other) {
+            series.add(koSeriesItem(OTHER_SERIES_UID, 20));
+        }
+        attributes.newSequence(Tag.CurrentRequestedProcedureEvidenceSequence, 1).add(studyItem);
+        return attributes;
+    }
+
+    private Attributes presentationState(int number, boolean wholeSeries, boolean other) {
+        Attributes attributes = header("PR", "1.2.3.7." + number, number); //$NON-NLS-1$ //$NON-NLS-2$
+        attributes.setString(Tag.SOPClassUID, VR.UI, UID.GrayscaleSoftcopyPresentationStateStorage);
+        Attributes item = new Attributes();
+        item.setString(Tag.SeriesInstanceUID, VR.UI, other ? OTHER_SERIES_UID : SERIES_UID);
+        if (!wholeSeries) {
+            Sequence seq = item.newSequence(Tag.ReferencedImageSequence, 300);
+            for (int i = 0; i < 300; i++) {
+                seq.add(referencedSop(sopUID(random.nextInt(NB_INSTANCES)), UID.CTImageStorage));
+            }
+        }
+        attributes.newSequence(Tag.ReferencedSeriesSequence, 1).add(item);
+        return attributes;
+    }
+
+    private DicomSpecialElement load(Attributes attributes, boolean editable) throws IOException, URISyntaxException {
+        DicomMediaIO reader;
+        if (editable) {
+            reader = new DicomMediaIO(attributes);
+        } else {
+            File file = folder.newFile();
+            try (DicomOutputStream out = new DicomOutputStream(file)) {
+                out.writeDataset(attributes.createFileMetaInformation(UID.ExplicitVRLittleEndian), attributes);
+            }
+            reader = new DicomMediaIO(file);
+        }
+        assertThat(reader.isReadableDicom()).isTrue();
+        MediaElement[] medias = reader.getMediaElement();
+        assertThat(medias).hasSize(1);
+        assertThat(reader.isEditableDicom()).isEqualTo(editable);
+        return (DicomSpecialElement) medias[0];
+    }
+
+    /**
+     * Adds the special element to the model like the loaders.
+     */
+    private void addToModel(DicomSpecialElement element) {
+        DicomMediaIO reader = (DicomMediaIO) element.getMediaReader();
+        String seriesUID = TagD.getTagValue(reader, Tag.SeriesInstanceUID, String.class);
+        Series<?> series = (Series<?>) model.getHierarchyNode(study, seriesUID);
+        if (series == null) {
+            series = new DicomSeries(seriesUID);
+            series.setTag(TagW.ExplorerModel, model);
+            reader.writeMetaData(series);
+            model.addHierarchyNode(study, series);
+        }
+        model.applySplittingRules(series, element);
+        model.addSpecialModality(series);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<DicomSpecialElement> getPatientSpecialElements() {
+        return (List<DicomSpecialElement>) patient.getTagValue(TagW.DicomSpecialElementList);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        List<DicomSpecialElement> elements = new ArrayList<>();
+        int number = 1;
+        for (int i = 0; i < 10; i++) {
+            // The last one references only the other series
+            elements.add(load(keyObject(number++, i % 4 == 1, i % 3 == 0, i != 9), false));
+        }
+        for (int i = 0; i < 6; i++) {
+            elements.add(load(presentationState(number++, i == 2, i == 4), false));
+        }
+
+        // Created like a new selection of the user
+        Attributes source = header("CT", SERIES_UID, 1); //$NON-NLS-1$
+        Attributes koAttributes = DicomMediaUtils.createDicomKeyObject(source, "Selection", null); //$NON-NLS-1$
+        editableKo = (KOSpecialElement) load(koAttributes, true);
+        for (int i = 0; i < 200; i++) {
+            editableKo.addKeyObject(reference(random.nextInt(NB_INSTANCES)));
+        }
+        elements.add(editableKo);
+
+        model = new DicomModel();
+        String patientPseudoUID = (String) elements.get(0).getTagValue(TagW.PatientPseudoUID);
+        patient = new MediaSeriesGroupNode(TagW.PatientPseudoUID, patientPseudoUID, DicomModel.patient.getTagView());
+        model.addHierarchyNode(MediaSeriesGroupNode.rootNode, patient);
+        study = new MediaSeriesGroupNode(TagD.getUID(Level.STUDY), STUDY_UID, DicomModel.study.getTagView());
+        model.addHierarchyNode(patient, study);
+
+        imageSeries = new DicomSeries(SERIES_UID);
+        imageSeries.setTag(TagW.ExplorerModel, model);
+        DicomMediaUtils.writeMetaData(imageSeries, header("CT", SERIES_UID, 1)); //$NON-NLS-1$
+        model.addHierarchyNode(study, imageSeries);
+
+        for (DicomSpecialElement element : elements) {
+            addToModel(element);
+        }
+        assertThat(getPatientSpecialElements()).hasSameSizeAs(elements);
+    }
+
+    private Reference reference(int index) {
+        return new Reference(STUDY_UID, SERIES_UID, sopUID(index), UID.CTImageStorage,
+            random.nextBoolean() ? null : frames());
+    }
+
+    private void assertSameAsListScans() {
+        List<DicomSpecialElement> list = getPatientSpecialElements();
+        SpecialElementIndex index = model.getSpecialElementIndex(patient);
+
+        Collection<KOSpecialElement> kos = DicomSpecialElement.getKoSpecialElements(list, SERIES_UID);
+        assertThat(DicomModel.getKoSpecialElements(imageSeries)).containsExactlyElementsOf(kos);
+        assertThat(index.getKoSpecialElements(OTHER_SERIES_UID))
+            .containsExactlyElementsOf(DicomSpecialElement.getKoSpecialElements(list, OTHER_SERIES_UID));
+        assertThat(index.getKoSpecialElements(null))
+            .containsExactlyElementsOf(DicomSpecialElement.getKoSpecialElements(list, null));
+
+        int nbKo = 0;
+        int nbRejected = 0;
+        int nbPr = 0;
+        for (int i = 0; i < NB_INSTANCES; i++) {
+            String sopUID = sopUID(i);
+            for (int f = 0; f <= NB_FRAMES; f++) {
+                Integer frame = f == 0 ? null : f;
+                List<KOSpecialElement> expectedKo = kos.stream()
+                    .filter(k -> k.containsSopInstanceUIDReference(SERIES_UID, sopUID, frame))
+                    .collect(Collectors.toList());
+                assertThat(DicomModel.getKoSpecialElements(imageSeries, sopUID, frame))
+                    .containsExactlyElementsOf(expectedKo);
+
+                RejectedKOSpecialElement expectedRejected =
+                    DicomSpecialElement.getRejectionKoSpecialElement(list, SERIES_UID, sopUID, frame);
+                assertThat(DicomModel.getRejectionKoSpecialElement(imageSeries, sopUID, frame))
+                    .isSameAs(expectedRejected);
+
+                List<PRSpecialElement> expectedPr =
+                    DicomSpecialElement.getPRSpecialElements(list, SERIES_UID, sopUID, frame);
+                assertThat(DicomModel.getPrSpecialElements(imageSeries, sopUID, frame))
+                    .containsExactlyElementsOf(expectedPr);
+
+                nbKo += expectedKo.size();
+                nbRejected += expectedRejected == null ? 0 : 1;
+                nbPr += expectedPr.size();
+            }
+        }
+        // The references must not be empty to compare something
+        assertThat(nbKo).isPositive();
+        assertThat(nbRejected).isPositive();
+        assertThat(nbPr).isPositive();
+    }
+
+    @Test
+    public void testSameAsListScans() {
+        assertSameAsListScans();
+        // Built only once while the special elements are unchanged
+        assertThat(model.getSpecialElementIndex(patient)).isSameAs(model.getSpecialElementIndex(patient));
+    }
+
+    @Test
+    public void testEditableKeyObject() {
+        SpecialElementIndex index = model.getSpecialElementIndex(patient);
+
+        int sop = NB_INSTANCES - 1;
+        editableKo.removeKeyObject(new Reference(STUDY_UID, SERIES_UID, sopUID(sop), UID.CTImageStorage, null));
+        assertThat(DicomModel.getKoSpecialElements(imageSeries, sopUID(sop), null)).doesNotContain(editableKo);
+        editableKo.addKeyObject(new Reference(STUDY_UID, SERIES_UID, sopUID(sop), UID.CTImageStorage, null));
+        assertThat(DicomModel.getKoSpecialElements(imageSeries, sopUID(sop), null)).contains(editableKo);
+
+        for (int i = 0; i < 300; i++) {
+            editableKo.addKeyObject(reference(random.nextInt(NB_INSTANCES)));
+        }
+        assertSameAsListScans();
+        for (int i = 0; i < 1000; i++) {
+            editableKo.removeKeyObject(reference(random.nextInt(NB_INSTANCES)));
+        }
+        assertSameAsListScans();
+
+        // The changes of the references do not rebuild the index
+        assertThat(model.getSpecialElementIndex(patient)).isSameAs(index);
+    }
+
+    @Test
+    public void testInvalidationOnAddAndRemove() throws Exception {
+        SpecialElementIndex index = model.getSpecialElementIndex(patient);
+
+        Attributes attributes = keyObject(100, true, false, true);
+        Attributes studyItem = attributes.getNestedDataset(Tag.CurrentRequestedProcedureEvidenceSequence);
+        Attributes seriesItem = studyItem.getNestedDataset(Tag.ReferencedSeriesSequence);
+        Attributes sop = new Attributes();
+        sop.setString(Tag.ReferencedSOPClassUID, VR.UI, UID.CTImageStorage);
+        sop.setString(Tag.ReferencedSOPInstanceUID, VR.UI, sopUID(0));
+        seriesItem.getSequence(Tag.ReferencedSOPSequence).add(sop);
+        RejectedKOSpecialElement rejection = (RejectedKOSpecialElement) load(attributes, false);
+
+        addToModel(rejection);
+        SpecialElementIndex added = model.getSpecialElementIndex(patient);
+        assertThat(added).isNotSameAs(index);
+        // The most recent rejection
+        assertThat(DicomModel.getRejectionKoSpecialElement(imageSeries, sopUID(0), null)).isSameAs(rejection);
+        assertThat(DicomModel.getKoSpecialElements(imageSeries)).contains(rejection);
+        assertSameAsListScans();
+
+        model.removeSpecialElement(rejection);
+        SpecialElementIndex removed = model.getSpecialElementIndex(patient);
+        assertThat(removed).isNotSameAs(added);
+        assertThat(getPatientSpecialElements()).doesNotContain(rejection);
+        assertThat(DicomModel.getKoSpecialElements(imageSeries)).doesNotContain(rejection);
+        assertThat(DicomModel.getRejectionKoSpecialElement(imageSeries, sopUID(0), null)).isNotSameAs(rejection);
+        assertSameAsListScans();
+
+        PRSpecialElement pr = getPatientSpecialElements().stream().filter(PRSpecialElement.class::isInstance)
+            .map(PRSpecialElement.class::cast).findFirst().get();
+        model.removeSpecialElement(pr);
+        assertThat(model.getSpecialElementIndex(patient)).isNotSameAs(removed);
+        assertThat(getPatientSpecialElements()).doesNotContain(pr);
+        assertSameAsListScans();
+    }
+}
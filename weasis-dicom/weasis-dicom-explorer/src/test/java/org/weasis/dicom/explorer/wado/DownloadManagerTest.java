@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.explorer.wado;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.dcm4che3.data.Tag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.weasis.core.api.media.data.TagW;
+import org.weasis.dicom.codec.TagD;
+import org.weasis.dicom.explorer.DicomModel;
+
+public class DownloadManagerTest {
+    private static final String[] SERIES = { "1.2.3.1", "1.2.3.2", "1.2.3.3" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+    private File manifest;
+
+    @Before
+    public void setUp() throws IOException {
+        StringBuilder buf = new StringBuilder();
+        buf.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"); //$NON-NLS-1$
+        buf.append("<manifest xmlns=\"http://www.weasis.org/xsd/2.5\">\n"); //$NON-NLS-1$
+        buf.append("<arcQuery arcId=\"1000\" baseUrl=\"http://localhost:8080/wado\">\n"); //$NON-NLS-1$
+        buf.append("<Patient PatientID=\"P1\" PatientName=\"Test^Manifest\">\n"); //$NON-NLS-1$
+        buf.append("<Study StudyInstanceUID=\"1.2.3\">\n"); //$NON-NLS-1$
+        for (String uid : SERIES) {
+            buf.append("<Series SeriesInstanceUID=\"").append(uid).append("\" Modality=\"CT\">\n"); //$NON-NLS-1$ //$NON-NLS-2$
+            for (int i = 1; i <= 2; i++) {
+                // Direct download without thumbnail URL: no network access when the series is handled
+                buf.append("<Instance SOPInstanceUID=\"").append(uid).append('.').append(i) //$NON-NLS-1$
+                    .append("\" InstanceNumber=\"").append(i) //$NON-NLS-1$
+                    .append("\" DirectDownloadFile=\"").append(uid).append('/').append(i).append(".dcm\"/>\n"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            buf.append("</Series>\n"); //$NON-NLS-1$
+        }
+        buf.append("</Study>\n</Patient>\n</arcQuery>\n</manifest>\n"); //$NON-NLS-1$
+        manifest = File.createTempFile("manifest_", ".xml"); //$NON-NLS-1$ //$NON-NLS-2$
+        Files.write(manifest.toPath(), buf.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(manifest.toPath());
+    }
+
+    private static List<String> getSeriesUIDs(Collection<LoadSeries> list) {
+        List<String> uids = new ArrayList<>();
+        for (LoadSeries s : list) {
+            uids.add(TagD.getTagValue(s.getDicomSeries(), Tag.SeriesInstanceUID, String.class));
+        }
+        return uids;
+    }
+
+    @Test
+    public void testBuildDicomSeriesFromXml() throws Exception {
+        DicomModel model = new DicomModel();
+        List<LoadSeries> handled = new ArrayList<>();
+        Collection<LoadSeries> tasks = DownloadManager.buildDicomSeriesFromXml(manifest.toURI(), model, handled::add);
+
+        // Each series is handled once, in the order of the manifest
+        assertThat(getSeriesUIDs(handled)).containsExactly(SERIES);
+        assertThat(tasks).containsOnlyElementsOf(handled);
+        for (LoadSeries s : handled) {
+            assertThat(s.getDicomSeries().getTagValue(TagW.WadoInstanceReferenceList))
+                .isNotNull();
+        }
+    }
+
+    @Test
+    public void testReadAgainAfterNetworkError() throws Exception {
+        DicomModel model = new DicomModel();
+        List<LoadSeries> handled = new ArrayList<>();
+        DownloadManager.buildDicomSeriesFromXml(manifest.toURI(), model, handled::add);
+
+        // Like LoadRemoteDicomManifest when the stream has been interrupted after the first series
+        Set<String> submitted = new HashSet<>(Arrays.asList(SERIES[0]));
+        List<LoadSeries> retry = new ArrayList<>();
+        Collection<LoadSeries> tasks =
+            DownloadManager.buildDicomSeriesFromXml(manifest.toURI(), model, retry::add, submitted);
+        assertThat(getSeriesUIDs(retry)).containsExactly(SERIES[1], SERIES[2]);
+        assertThat(getSeriesUIDs(tasks)).containsOnly(SERIES[1], SERIES[2]);
+
+        // All the series already queued: nothing is queued again
+        retry.clear();
+        submitted.addAll(getSeriesUIDs(handled));
+        tasks = DownloadManager.buildDicomSeriesFromXml(manifest.toURI(), model, retry::add, submitted);
+        assertThat(retry).isEmpty();
+        assertThat(tasks).isEmpty();
+    }
+}
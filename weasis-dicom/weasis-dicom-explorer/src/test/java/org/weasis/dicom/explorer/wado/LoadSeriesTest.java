@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.explorer.wado;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.weasis.dicom.mf.SopInstance;
+
+public class LoadSeriesTest {
+
+    @Test
+    public void testFileOrder() {
+        List<SopInstance> sopList = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            SopInstance sop = new SopInstance("1.2.3." + i, null); //$NON-NLS-1$
+            // Instance order different from the file order
+            sop.setDirectDownloadFile(String.format("file:/media/cdrom/DICOM/S%02d/I%04d", i % 7, i)); //$NON-NLS-1$
+            sopList.add(sop);
+        }
+        Collections.shuffle(sopList, new Random(5));
+        SopInstance noFile = new SopInstance("1.2.3.no.file", null); //$NON-NLS-1$
+        sopList.add(sopList.size() / 2, noFile);
+
+        int[] order = LoadSeries.generateFileOrder(sopList);
+        assertThat(order).hasSize(sopList.size());
+        // A permutation of the indexes
+        int[] sorted = order.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++) {
+            assertThat(sorted[i]).isEqualTo(i);
+        }
+        // Sequential reading of the media, the instances without file at the end
+        for (int i = 1; i < order.length - 1; i++) {
+            assertThat(sopList.get(order[i - 1]).getDirectDownloadFile())
+                .isLessThan(sopList.get(order[i]).getDirectDownloadFile());
+        }
+        assertThat(sopList.get(order[order.length - 1])).isSameAs(noFile);
+    }
+}
@@ -22,7 +22,9 @@ import java.time.LocalDateTime;
 import java.time.temporal.TemporalAdjusters;
 import java.time.temporal.WeekFields;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -50,6 +52,7 @@ import javax.swing.tree.TreePath;
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.net.Status;
+import org.dcm4che3.util.TagUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.gui.util.AbstractItemDialogPage;
@@ -76,6 +79,7 @@ import org.weasis.dicom.codec.TagD.Level;
 import org.weasis.dicom.codec.display.Modality;
 import org.weasis.dicom.codec.utils.DicomMediaUtils;
 import org.weasis.dicom.codec.utils.PatientComparator;
+import org.weasis.dicom.codec.web.DicomWebClient;
 import org.weasis.dicom.explorer.DicomModel;
 import org.weasis.dicom.explorer.ImportDicom;
 import org.weasis.dicom.explorer.pref.node.AbstractDicomNode;
@@ -479,15 +483,42 @@ public class DicomQrView extends AbstractItemDialogPage implements ImportDicom {
             final DicomState state = CFind.process(params, ((DefaultDicomNode) callingNode).getDicomNodeWithOnlyAET(),
                 node.getDicomNode(), p.toArray(new DicomParam[p.size()]));
             if (state.getStatus() == Status.Success) {
-                displayResult(state);
+                displayResult(state.getDicomRSP());
             } else {
                 LOGGER.error("Dicom cfind error: {}", state.getMessage()); //$NON-NLS-1$
                 GuiExecutor.instance().execute(() -> JOptionPane.showMessageDialog(basePanel, state.getMessage(), null,
                     JOptionPane.ERROR_MESSAGE));
             }
         } else if (selectedItem instanceof DicomWebNode) {
-            throw new IllegalAccessError("Not implemented yet"); //$NON-NLS-1$
+            DicomWebNode node = (DicomWebNode) selectedItem;
+            try {
+                DicomWebClient client = new DicomWebClient(node.getUrl().toString(), null);
+                displayResult(client.searchStudies(buildQidoQuery(p)));
+            } catch (IOException e) {
+                LOGGER.error("QIDO-RS search error", e); //$NON-NLS-1$
+                final String message = e.getMessage();
+                GuiExecutor.instance().execute(
+                    () -> JOptionPane.showMessageDialog(basePanel, message, null, JOptionPane.ERROR_MESSAGE));
+            }
+        }
+    }
+
+    private static Map<String, String> buildQidoQuery(List<DicomParam> params) {
+        Map<String, String> query = new LinkedHashMap<>();
+        List<String> includeFields = new ArrayList<>();
+        for (DicomParam param : params) {
+            String key = TagUtils.toHexString(param.getTag());
+            String[] values = param.getValues();
+            if (values == null || values.length == 0) {
+                includeFields.add(key);
+            } else {
+                query.put(key, String.join(",", values)); //$NON-NLS-1$
+            }
+        }
+        if (!includeFields.isEmpty()) {
+            query.put("includefield", String.join(",", includeFields)); //$NON-NLS-1$ //$NON-NLS-2$
         }
+        return query;
     }
 
     private static void addReturnTags(List<DicomParam> list, DicomParam p) {
@@ -496,8 +527,7 @@ public class DicomQrView extends AbstractItemDialogPage implements ImportDicom {
         }
     }
 
-    private void displayResult(DicomState state) {
-        List<Attributes> items = state.getDicomRSP();
+    private void displayResult(List<Attributes> items) {
         if (items != null) {
             for (int i = 0; i < items.size(); i++) {
                 Attributes item = items.get(i);
@@ -586,7 +616,13 @@ public class DicomQrView extends AbstractItemDialogPage implements ImportDicom {
         comboDestinationNode.removeActionListener(destNodeListener);
         comboDestinationNode.removeAllItems();
         AbstractDicomNode.loadDicomNodes(comboDestinationNode, AbstractDicomNode.Type.DICOM, UsageType.RETRIEVE);
-        // AbstractDicomNode.loadDicomNodes(comboNode, AbstractDicomNode.Type.WEB, UsageType.RETRIEVE);
+        // The WADO-RS base URL is also used for QIDO-RS
+        for (AbstractDicomNode node : AbstractDicomNode.loadDicomNodes(AbstractDicomNode.Type.WEB,
+            UsageType.RETRIEVE)) {
+            if (node instanceof DicomWebNode && DicomWebNode.WebType.WADORS == ((DicomWebNode) node).getWebType()) {
+                comboDestinationNode.addItem(node);
+            }
+        }
         restoreNodeSelection(comboDestinationNode.getModel(), LAST_SEL_NODE);
         String lastType = DicomQrFactory.IMPORT_PERSISTENCE.getProperty(LAST_RETRIEVE_TYPE);
         if (lastType != null) {
@@ -33,6 +33,7 @@ import org.weasis.core.api.gui.util.GuiExecutor;
 import org.weasis.core.api.util.FileUtil;
 import org.weasis.core.api.util.ResourceUtil;
 import org.weasis.core.api.util.StringUtil;
+import org.weasis.dicom.codec.web.DicomWebClient;
 import org.weasis.dicom.explorer.DicomModel;
 import org.weasis.dicom.explorer.ExplorerTask;
 import org.weasis.dicom.explorer.LoadLocalDicom;
@@ -41,6 +42,7 @@ import org.weasis.dicom.explorer.pref.node.AbstractDicomNode.RetrieveType;
 import org.weasis.dicom.explorer.pref.node.DefaultDicomNode;
 import org.weasis.dicom.explorer.pref.node.DicomWebNode;
 import org.weasis.dicom.explorer.wado.LoadRemoteDicomManifest;
+import org.weasis.dicom.explorer.wado.LoadRemoteDicomWeb;
 import org.weasis.dicom.mf.ArcQuery;
 import org.weasis.dicom.mf.WadoParameters;
 import org.weasis.dicom.op.CGet;
@@ -229,7 +231,8 @@ public class RetrieveTask extends ExplorerTask<ExplorerTask<Boolean, String>, St
             }
 
         } else if (selectedItem instanceof DicomWebNode) {
-            throw new IllegalAccessError("Not implemented yet"); //$NON-NLS-1$
+            DicomWebClient client = new DicomWebClient(((DicomWebNode) selectedItem).getUrl().toString(), null);
+            loadingTask = new LoadRemoteDicomWeb(client, studies, explorerDcmModel);
         } else {
             errorMessage = Messages.getString("RetrieveTask.no_calling_node"); //$NON-NLS-1$
         }
@@ -61,6 +61,7 @@ import org.weasis.core.ui.model.GraphicModel;
 import org.weasis.core.ui.model.graphic.Graphic;
 import org.weasis.core.ui.model.imp.XmlGraphicModel;
 import org.weasis.core.ui.model.layer.LayerType;
+import org.weasis.core.ui.serialize.XmlSerializer;
 import org.weasis.dicom.codec.DicomImageElement;
 import org.weasis.dicom.codec.DicomSeries;
 import org.weasis.dicom.codec.TagD;
@@ -539,7 +540,7 @@ public class RtDisplayTool extends PluginTool implements SeriesViewerListener {
 
                 // Any RT layer is available
                 if (contours != null || dose != null) {
-                    GraphicModel modelList = (GraphicModel) dicom.getTagValue(TagW.PresentationModel);
+                    GraphicModel modelList = XmlSerializer.getPresentationModel(dicom);
                     // After getting a new image iterator, update the measurements
                     if (modelList == null) {
                         modelList = new XmlGraphicModel(dicom);
@@ -47,6 +47,7 @@ import org.weasis.core.api.util.LangUtil;
 import org.weasis.core.api.util.StringUtil;
 import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.core.ui.model.GraphicModel;
+import org.weasis.core.ui.serialize.XmlSerializer;
 import org.weasis.dicom.codec.DicomImageElement;
 import org.weasis.dicom.codec.TagD;
 import org.weasis.dicom.explorer.CheckTreeModel;
@@ -272,7 +273,7 @@ public class SendDicomView extends AbstractItemDialogPage implements ExportDicom
                         if (series != null) {
                             String seriesInstanceUID = UIDUtils.createUID();
                             for (MediaElement dcm : series.getMedias(null, null)) {
-                                GraphicModel grModel = (GraphicModel) dcm.getTagValue(TagW.PresentationModel);
+                                GraphicModel grModel = XmlSerializer.getPresentationModel(dcm);
                                 if (grModel != null && grModel.hasSerializableGraphics()) {
                                     String path = LocalExport.buildPath(dcm, false, false, false, node);
                                     LocalExport.buildAndWritePR(dcm, false, new File(writeDir, path), null, node,
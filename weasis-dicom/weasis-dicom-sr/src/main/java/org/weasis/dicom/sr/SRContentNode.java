@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.sr;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Code;
+
+/**
+ * Node of the content tree of a structured report. The tree is built once from the DICOM items, then the HTML can be
+ * rendered several times (e.g. when expanding a container) without parsing again the nested sequences.
+ */
+public final class SRContentNode {
+    private final String level;
+    private final SRDocumentContent content;
+    private final String valueType;
+    private final Code conceptNameCode;
+    private final boolean continuous;
+    private final String contentReference;
+    private SRContentNode[] children;
+    private int descendantCount;
+    private String imageReference;
+    private String[] graphicReferences;
+
+    SRContentNode(String level, Attributes item) {
+        this.level = level;
+        this.content = new SRDocumentContent(item);
+        this.valueType = content.getValueType();
+        this.conceptNameCode = content.getConceptNameCode();
+        this.continuous = "CONTINUOUS".equals(content.getContinuityOfContent()); //$NON-NLS-1$
+        int[] refs = content.getReferencedContentItemIdentifier();
+        this.contentReference = refs == null ? null : SRReader.getReferencedContentItemIdentifier(refs);
+    }
+
+    public String getLevel() {
+        return level;
+    }
+
+    public SRDocumentContent getContent() {
+        return content;
+    }
+
+    public String getValueType() {
+        return valueType;
+    }
+
+    public Code getConceptNameCode() {
+        return conceptNameCode;
+    }
+
+    /**
+     * @return true when the children are displayed as a continuous text
+     */
+    public boolean isContinuous() {
+        return continuous;
+    }
+
+    /**
+     * @return the identifier of the referenced content item (by-reference relationship) or null
+     */
+    public String getContentReference() {
+        return contentReference;
+    }
+
+    /**
+     * @return the children or null when the item has no Content Sequence
+     */
+    public SRContentNode[] getChildren() {
+        return children;
+    }
+
+    void setChildren(SRContentNode[] children) {
+        this.children = children;
+    }
+
+    /**
+     * @return the number of items in the whole subtree of this node (excluding itself)
+     */
+    public int getDescendantCount() {
+        return descendantCount;
+    }
+
+    void setDescendantCount(int descendantCount) {
+        this.descendantCount = descendantCount;
+    }
+
+    /**
+     * @return the key of the image reference (IMAGE value type) or null
+     */
+    public String getImageReference() {
+        return imageReference;
+    }
+
+    void setImageReference(String imageReference) {
+        this.imageReference = imageReference;
+    }
+
+    /**
+     * @return the keys of the image references where the graphic is drawn (SCOORD value type) or null
+     */
+    public String[] getGraphicReferences() {
+        return graphicReferences;
+    }
+
+    void setGraphicReferences(String[] graphicReferences) {
+        this.graphicReferences = graphicReferences;
+    }
+}
@@ -13,12 +13,23 @@ package org.weasis.dicom.sr;
 import java.awt.Color;
 import java.time.LocalDateTime;
 import java.time.temporal.TemporalAccessor;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Code;
 import org.dcm4che3.data.Sequence;
 import org.dcm4che3.data.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.weasis.core.api.media.data.MediaElement;
 import org.weasis.core.api.media.data.Series;
 import org.weasis.core.api.media.data.TagUtil;
@@ -34,9 +45,15 @@ import org.weasis.dicom.codec.macro.SeriesAndInstanceReference;
 import org.weasis.dicom.explorer.pr.PrGraphicUtil;
 
 public class SRReader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SRReader.class);
+
+    public static final String EXPAND_LINK = "expand:"; //$NON-NLS-1$
 
     private final DicomSpecialElement dicomSR;
     private final Attributes dcmItems;
+    private final Map<String, SRImageReference> imageReferences = new HashMap<>();
+    private final Map<String, List<SRImageReference>> sopInstanceReferences = new HashMap<>();
+    private SRContentNode[] contentTree;
 
     public SRReader(Series series, DicomSpecialElement dicomSR) {
         if (dicomSR == null) {
@@ -62,6 +79,21 @@ public class SRReader {
     }
 
     public void readDocumentGeneralModule(StringBuilder html, Map<String, SRImageReference> map) {
+        writeDocument(html, null);
+        if (map != null) {
+            map.putAll(getImageReferences());
+        }
+    }
+
+    /**
+     * Write the HTML of the report.
+     *
+     * @param html
+     *            the output
+     * @param collapsed
+     *            the levels of the containers displayed without their content, null for the whole document
+     */
+    public void writeDocument(StringBuilder html, Set<String> collapsed) {
         if (dcmItems != null) {
             SRDocumentContentModule content = new SRDocumentContentModule(dcmItems);
             addCodeMeaning(html, content.getConceptNameCode(), "<h1>", "</h1>"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -137,32 +169,201 @@ public class SRReader {
 
             html.append("</table>"); //$NON-NLS-1$
             html.append("<hr size=2>"); //$NON-NLS-1$
-            Sequence cts = content.getContent();
-            if (cts != null) {
-                for (int i = 0; i < cts.size(); i++) {
-                    SRDocumentContent c = new SRDocumentContent(cts.get(i));
-                    html.append("<BR>"); //$NON-NLS-1$
-                    html.append("<B>"); //$NON-NLS-1$
-                    String level = "1." + (i + 1); //$NON-NLS-1$
-                    html.append(level);
-                    html.append(" </B>"); //$NON-NLS-1$
-                    Code code = c.getConceptNameCode();
-                    addCodeMeaning(html, code, "<B>", "</B>"); //$NON-NLS-1$ //$NON-NLS-2$
-                    convertContentToHTML(html, c, false, code == null, map, level);
-                    html.append("<BR>"); //$NON-NLS-1$
-                    addContent(html, c, map, level);
+            SRContentNode[] cts = getContentTree();
+            for (SRContentNode c : cts) {
+                html.append("<BR>"); //$NON-NLS-1$
+                html.append("<B>"); //$NON-NLS-1$
+                html.append(c.getLevel());
+                html.append(" </B>"); //$NON-NLS-1$
+                Code code = c.getConceptNameCode();
+                addCodeMeaning(html, code, "<B>", "</B>"); //$NON-NLS-1$ //$NON-NLS-2$
+                convertContentToHTML(html, c, false, code == null);
+                html.append("<BR>"); //$NON-NLS-1$
+                addContent(html, c, collapsed);
+            }
+        }
+    }
+
+    /**
+     * Parse the content tree the first time and build the image references. The DICOM items are read only once, the
+     * rendering methods use the node model.
+     *
+     * @return the top level content items
+     */
+    public synchronized SRContentNode[] getContentTree() {
+        if (contentTree == null) {
+            Sequence cts = dcmItems == null ? null : new SRDocumentContentModule(dcmItems).getContent();
+            if (cts == null) {
+                contentTree = new SRContentNode[0];
+            } else {
+                SRContentNode[] nodes = new SRContentNode[cts.size()];
+                for (int i = 0; i < nodes.length; i++) {
+                    nodes[i] = buildNode(cts.get(i), "1." + (i + 1), imageReferences); //$NON-NLS-1$
+                }
+                contentTree = nodes;
+            }
+            for (SRImageReference imgRef : imageReferences.values()) {
+                SOPInstanceReference ref = imgRef.getSopInstanceReference();
+                String uid = ref == null ? null : ref.getReferencedSOPInstanceUID();
+                if (uid != null) {
+                    sopInstanceReferences.computeIfAbsent(uid, k -> new ArrayList<>()).add(imgRef);
                 }
             }
         }
+        return contentTree;
+    }
+
+    /**
+     * @return the image references by key (the level of the node or the referenced content item identifier)
+     */
+    public Map<String, SRImageReference> getImageReferences() {
+        getContentTree();
+        return imageReferences;
+    }
+
+    /**
+     * @param sopInstanceUID
+     *            the SOP Instance UID of a referenced image
+     * @return the image references of all the nodes referencing this instance (IMAGE and SCOORD nodes), an empty list
+     *         when the instance is not referenced
+     */
+    public List<SRImageReference> getImageReferences(String sopInstanceUID) {
+        getContentTree();
+        List<SRImageReference> list = sopInstanceReferences.get(sopInstanceUID);
+        return list == null ? Collections.emptyList() : list;
     }
 
-    private static void convertContentToHTML(StringBuilder html, SRDocumentContent c, boolean continuous,
-        boolean noCodeName, Map<String, SRImageReference> map, String level) {
-        if (c != null) {
+    /**
+     * @param level
+     *            the level of the node (e.g. 1.2.3)
+     * @return the node or null when not found
+     */
+    public SRContentNode getNode(String level) {
+        if (level == null || !level.startsWith("1.")) { //$NON-NLS-1$
+            return null;
+        }
+        SRContentNode[] nodes = getContentTree();
+        SRContentNode node = null;
+        for (String index : level.substring(2).split("\\.")) { //$NON-NLS-1$
+            int i;
+            try {
+                i = Integer.parseInt(index) - 1;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (nodes == null || i < 0 || i >= nodes.length) {
+                return null;
+            }
+            node = nodes[i];
+            nodes = node.getChildren();
+        }
+        return node;
+    }
+
+    /**
+     * Select the containers to collapse for displaying at most maxItems of a subtree. The levels are expanded in the
+     * breadth-first order, so the top of the document is always visible.
+     *
+     * @param level
+     *            the level of the expanded node or null for the whole document
+     * @param maxItems
+     *            the maximum number of items to display
+     * @return the levels of the containers to collapse (empty when the subtree has less than maxItems)
+     */
+    public Set<String> getCollapsedContainers(String level, int maxItems) {
+        Set<String> collapsed = new HashSet<>();
+        SRContentNode[] top;
+        if (level == null) {
+            top = getContentTree();
+        } else {
+            SRContentNode node = getNode(level);
+            top = node == null ? null : node.getChildren();
+        }
+        if (top == null) {
+            return collapsed;
+        }
+        int displayed = top.length;
+        Deque<SRContentNode> queue = new ArrayDeque<>(Arrays.asList(top));
+        while (!queue.isEmpty()) {
+            SRContentNode node = queue.poll();
+            SRContentNode[] children = node.getChildren();
+            if (children != null && children.length > 0) {
+                if (displayed + children.length <= maxItems) {
+                    displayed += children.length;
+                    queue.addAll(Arrays.asList(children));
+                } else {
+                    collapsed.add(node.getLevel());
+                }
+            }
+        }
+        return collapsed;
+    }
+
+    private static SRContentNode buildNode(Attributes item, String level, Map<String, SRImageReference> map) {
+        SRContentNode node = new SRContentNode(level, item);
+        String type = node.getValueType();
+        if ("IMAGE".equals(type)) { //$NON-NLS-1$
+            if (getReferencedImage(map, level, item) != null) {
+                node.setImageReference(level);
+            }
+        } else if ("SCOORD".equals(type)) { //$NON-NLS-1$
+            Sequence sc = node.getContent().getContent();
+            if (sc != null) {
+                List<String> refs = new ArrayList<>(sc.size());
+                for (Attributes attributes : sc) {
+                    SRDocumentContent c2 = new SRDocumentContent(attributes);
+                    String id = getReferencedContentItemIdentifier(c2.getReferencedContentItemIdentifier());
+                    SRImageReference imgRef = null;
+                    if (id == null) {
+                        imgRef = getReferencedImage(map, level, attributes);
+                        id = level;
+                    } else {
+                        imgRef = map.get(id);
+                        if (imgRef == null) {
+                            imgRef = new SRImageReference(id);
+                            map.put(id, imgRef);
+                        }
+                    }
+
+                    if (imgRef != null) {
+                        try {
+                            Graphic graphic =
+                                PrGraphicUtil.buildGraphic(item, Color.MAGENTA, false, 1, 1, false, null, true);
+                            if (graphic != null) {
+                                imgRef.addGraphic(graphic);
+                            }
+                        } catch (InvalidShapeException e) {
+                            LOGGER.error("Cannot build the graphic of the node {}", level, e); //$NON-NLS-1$
+                        }
+                        refs.add(id);
+                    }
+                }
+                node.setGraphicReferences(refs.toArray(new String[refs.size()]));
+            }
+        }
+
+        Sequence cts = node.getContent().getContent();
+        if (cts != null) {
+            SRContentNode[] children = new SRContentNode[cts.size()];
+            int count = children.length;
+            for (int i = 0; i < children.length; i++) {
+                children[i] = buildNode(cts.get(i), level + "." + (i + 1), map); //$NON-NLS-1$
+                count += children[i].getDescendantCount();
+            }
+            node.setChildren(children);
+            node.setDescendantCount(count);
+        }
+        return node;
+    }
+
+    private static void convertContentToHTML(StringBuilder html, SRContentNode node, boolean continuous,
+        boolean noCodeName) {
+        if (node != null) {
+            SRDocumentContent c = node.getContent();
             html.append("<A name=\""); //$NON-NLS-1$
-            html.append(level);
+            html.append(node.getLevel());
             html.append("\"<></A>"); //$NON-NLS-1$
-            String type = c.getValueType();
+            String type = node.getValueType();
 
             if ("TEXT".equals(type)) { //$NON-NLS-1$
                 html.append(continuous || noCodeName ? " " : StringUtil.COLON_AND_SPACE); //$NON-NLS-1$
@@ -189,10 +390,9 @@ public class SRReader {
                 return;
             } else if ("IMAGE".equals(type)) { //$NON-NLS-1$
                 html.append(continuous || noCodeName ? " " : StringUtil.COLON_AND_SPACE); //$NON-NLS-1$
-                SRImageReference imgRef = getReferencedImage(map, level, c.getAttributes());
-                if (imgRef != null) {
+                if (node.getImageReference() != null) {
                     html.append("<a href=\"http://"); //$NON-NLS-1$
-                    html.append(level);
+                    html.append(node.getImageReference());
                     html.append("\" style=\"color:#FF9900\">"); //$NON-NLS-1$
                     html.append(Messages.getString("SRReader.show_img")); //$NON-NLS-1$
                     html.append("</a>"); //$NON-NLS-1$
@@ -224,43 +424,17 @@ public class SRReader {
                     }
                 }
             } else if ("SCOORD".equals(type)) { //$NON-NLS-1$
-                Attributes graphicsItems = c.getAttributes();
-                Sequence sc = c.getContent();
-                if (sc != null) {
-                    for (Attributes attributes : sc) {
-                        SRDocumentContent c2 = new SRDocumentContent(attributes);
-                        String id = getReferencedContentItemIdentifier(c2.getReferencedContentItemIdentifier());
-                        SRImageReference imgRef = null;
-                        if (id == null) {
-                            imgRef = getReferencedImage(map, level, attributes);
-                            id = level;
-                        } else {
-                            imgRef = map.get(id);
-                            if (imgRef == null) {
-                                imgRef = new SRImageReference(id);
-                                map.put(id, imgRef);
-                            }
-                        }
-
-                        if (imgRef != null) {
-                            try {
-                                Graphic graphic = PrGraphicUtil.buildGraphic(graphicsItems, Color.MAGENTA, false, 1, 1,
-                                    false, null, true);
-                                if (graphic != null) {
-                                    imgRef.addGraphic(graphic);
-                                }
-                            } catch (InvalidShapeException e) {
-                                e.printStackTrace();
-                            }
-
-                            html.append(continuous || noCodeName ? " " : StringUtil.COLON_AND_SPACE); //$NON-NLS-1$
-
-                            html.append("<a href=\"http://"); //$NON-NLS-1$
-                            html.append(id);
-                            html.append("\" style=\"color:#FF9900\">"); //$NON-NLS-1$
-                            html.append(graphicsItems.getString(Tag.GraphicType));
-                            html.append("</a>"); //$NON-NLS-1$
-                        }
+                String[] graphicRefs = node.getGraphicReferences();
+                if (graphicRefs != null) {
+                    String graphicType = c.getAttributes().getString(Tag.GraphicType);
+                    for (String id : graphicRefs) {
+                        html.append(continuous || noCodeName ? " " : StringUtil.COLON_AND_SPACE); //$NON-NLS-1$
+
+                        html.append("<a href=\"http://"); //$NON-NLS-1$
+                        html.append(id);
+                        html.append("\" style=\"color:#FF9900\">"); //$NON-NLS-1$
+                        html.append(graphicType);
+                        html.append("</a>"); //$NON-NLS-1$
                     }
                 }
 
@@ -279,10 +453,9 @@ public class SRReader {
 
             }
 
-            int[] refs = c.getReferencedContentItemIdentifier();
-            if (refs != null) {
+            String id = node.getContentReference();
+            if (id != null) {
                 html.append(Messages.getString("SRReader.content_ref") + StringUtil.COLON_AND_SPACE); //$NON-NLS-1$
-                String id = getReferencedContentItemIdentifier(refs);
                 html.append("<a href=\"#"); //$NON-NLS-1$
                 html.append(id);
                 html.append("\">"); //$NON-NLS-1$
@@ -309,7 +482,7 @@ public class SRReader {
         return imgRef;
     }
 
-    private static String getReferencedContentItemIdentifier(int[] refs) {
+    static String getReferencedContentItemIdentifier(int[] refs) {
         if (refs != null) {
             StringBuilder r = new StringBuilder();
             for (int j = 0; j < refs.length - 1; j++) {
@@ -324,25 +497,33 @@ public class SRReader {
         return null;
     }
 
-    private static void addContent(StringBuilder html, SRDocumentContent c, Map<String, SRImageReference> map,
-        String level) {
-        Sequence cts = c.getContent();
+    private static void addContent(StringBuilder html, SRContentNode node, Set<String> collapsed) {
+        SRContentNode[] cts = node.getChildren();
         if (cts != null) {
-            boolean continuity = "CONTINUOUS".equals(c.getContinuityOfContent()); //$NON-NLS-1$
+            if (collapsed != null && collapsed.contains(node.getLevel())) {
+                html.append(" <a href=\""); //$NON-NLS-1$
+                html.append(EXPAND_LINK);
+                html.append(node.getLevel());
+                html.append("\">["); //$NON-NLS-1$
+                html.append(Messages.getString("SRReader.expand")); //$NON-NLS-1$
+                html.append(" ("); //$NON-NLS-1$
+                html.append(node.getDescendantCount());
+                html.append(")]</a>"); //$NON-NLS-1$
+                return;
+            }
+            boolean continuity = node.isContinuous();
             if (!continuity) {
                 html.append("<OL>"); //$NON-NLS-1$
             }
-            for (int i = 0; i < cts.size(); i++) {
-                SRDocumentContent srContent = new SRDocumentContent(cts.get(i));
+            for (SRContentNode srContent : cts) {
                 html.append(continuity ? " " : "<LI>"); //$NON-NLS-1$ //$NON-NLS-2$
                 Code code = null;
                 if (!continuity) {
                     code = srContent.getConceptNameCode();
                     addCodeMeaning(html, code, "<B>", "</B>"); //$NON-NLS-1$ //$NON-NLS-2$
                 }
-                String level2 = level + "." + (i + 1); //$NON-NLS-1$
-                convertContentToHTML(html, srContent, continuity, code == null, map, level2);
-                addContent(html, srContent, map, level2);
+                convertContentToHTML(html, srContent, continuity, code == null);
+                addContent(html, srContent, collapsed);
                 html.append(continuity ? " " : "</LI>"); //$NON-NLS-1$ //$NON-NLS-2$
             }
             if (!continuity) {
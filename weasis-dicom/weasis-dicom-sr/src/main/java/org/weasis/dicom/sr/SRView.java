@@ -15,11 +15,15 @@ import java.awt.Dimension;
 import java.beans.PropertyChangeListener;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
@@ -27,11 +31,15 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextPane;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.border.EmptyBorder;
 import javax.swing.event.HyperlinkEvent;
 
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.DataExplorerView;
 import org.weasis.core.api.explorer.ObservableEvent;
 import org.weasis.core.api.gui.util.JMVUtils;
@@ -54,6 +62,7 @@ import org.weasis.core.ui.model.imp.XmlGraphicModel;
 import org.weasis.core.ui.model.layer.GraphicLayer;
 import org.weasis.core.ui.model.layer.LayerType;
 import org.weasis.core.ui.model.layer.imp.DefaultLayer;
+import org.weasis.core.ui.serialize.XmlSerializer;
 import org.weasis.dicom.codec.AbstractKOSpecialElement.Reference;
 import org.weasis.dicom.codec.DcmMediaReader;
 import org.weasis.dicom.codec.DicomImageElement;
@@ -71,9 +80,19 @@ import org.weasis.dicom.explorer.LoadDicomObjects;
 import org.weasis.dicom.explorer.MimeSystemAppFactory;
 
 public class SRView extends JScrollPane implements SeriesViewerListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SRView.class);
+
+    /**
+     * Maximum number of content items displayed when opening the report or expanding a container. Beyond this limit,
+     * the containers are displayed collapsed and their content is rendered on demand.
+     */
+    public static final int MAX_DISPLAYED_ITEMS = 2000;
 
     private final JTextPane htmlPanel = new JTextPane();
-    private final Map<String, SRImageReference> map = new HashMap<>();
+    private final Set<String> collapsed = new HashSet<>();
+    private Map<String, SRImageReference> map = Collections.emptyMap();
+    private SRReader reader;
+    private SwingWorker<String, Void> renderer;
     private Series<?> series;
     private KOSpecialElement keyReferences;
 
@@ -99,9 +118,11 @@ public class SRView extends JScrollPane implements SeriesViewerListener {
                 String desc = e.getDescription();
                 URL url = e.getURL();
                 if (url == null && desc != null && desc.startsWith("#")) { //$NON-NLS-1$
-                    htmlPanel.scrollToReference(desc.substring(1));
-                } else {
-                    openRelatedSeries(e.getURL().getHost());
+                    showContentItem(desc.substring(1));
+                } else if (url == null && desc != null && desc.startsWith(SRReader.EXPAND_LINK)) {
+                    expandContainer(desc.substring(SRReader.EXPAND_LINK.length()));
+                } else if (url != null) {
+                    openRelatedSeries(url.getHost());
                 }
             }
         });
@@ -167,6 +188,11 @@ public class SRView extends JScrollPane implements SeriesViewerListener {
     }
 
     public void dispose() {
+        if (renderer != null) {
+            renderer.cancel(false);
+            renderer = null;
+        }
+        reader = null;
         if (series != null) {
             closingSeries(series);
             series = null;
@@ -182,15 +208,99 @@ public class SRView extends JScrollPane implements SeriesViewerListener {
     }
 
     private void displayLimitedDicomInfo(DicomSpecialElement media) {
+        collapsed.clear();
+        map = Collections.emptyMap();
+        reader = media == null ? null : new SRReader(series, media);
+        render(null, true);
+    }
+
+    /**
+     * Parse the report (only the first time) and build the HTML in a background thread, then update the view in the
+     * EDT.
+     *
+     * @param reference
+     *            the anchor to show after the update, null to display the top of the document
+     * @param firstRendering
+     *            true to select the containers to collapse in the whole document
+     */
+    private void render(final String reference, final boolean firstRendering) {
+        if (renderer != null) {
+            renderer.cancel(false);
+        }
+        final SRReader srReader = reader;
+        if (srReader == null) {
+            renderer = null;
+            htmlPanel.setText(""); //$NON-NLS-1$
+            this.setViewportView(htmlPanel);
+            return;
+        }
+
+        final Set<String> hidden = new HashSet<>(collapsed);
+        renderer = new SwingWorker<String, Void>() {
+
+            @Override
+            protected String doInBackground() throws Exception {
+                if (firstRendering) {
+                    hidden.addAll(srReader.getCollapsedContainers(null, MAX_DISPLAYED_ITEMS));
+                }
+                StringBuilder html = new StringBuilder();
+                srReader.writeDocument(html, hidden);
+                return html.toString();
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || srReader != reader) {
+                    return;
+                }
+                try {
+                    String text = get();
+                    collapsed.clear();
+                    collapsed.addAll(hidden);
+                    map = srReader.getImageReferences();
+                    htmlPanel.setText(text);
+                    setViewportView(htmlPanel);
+                    if (reference == null) {
+                        htmlPanel.setCaretPosition(0);
+                    } else {
+                        SwingUtilities.invokeLater(() -> htmlPanel.scrollToReference(reference));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    LOGGER.error("Cannot display the structured report", e); //$NON-NLS-1$
+                }
+            }
+        };
+        renderer.execute();
+    }
 
-        StringBuilder html = new StringBuilder();
-        if (media != null) {
-            SRReader reader = new SRReader(series, media);
-            map.clear();
-            reader.readDocumentGeneralModule(html, map);
+    private void expandContainer(String level) {
+        if (reader != null && collapsed.remove(level)) {
+            collapsed.addAll(reader.getCollapsedContainers(level, MAX_DISPLAYED_ITEMS));
+            render(level, false);
+        }
+    }
+
+    private void showContentItem(String level) {
+        boolean expand = false;
+        if (reader != null) {
+            // Expand the collapsed parents of the item, from the top level
+            int index = level.indexOf('.', 2);
+            while (index > 0) {
+                String parent = level.substring(0, index);
+                if (collapsed.remove(parent)) {
+                    collapsed.addAll(reader.getCollapsedContainers(parent, MAX_DISPLAYED_ITEMS));
+                    expand = true;
+                }
+                index = level.indexOf('.', index + 1);
+            }
+        }
+        if (expand) {
+            render(level, false);
+        } else {
+            htmlPanel.scrollToReference(level);
         }
-        htmlPanel.setText(html.toString());
-        this.setViewportView(htmlPanel);
     }
 
     private void openRelatedSeries(String reference) {
@@ -221,7 +331,7 @@ public class SRView extends JScrollPane implements SeriesViewerListener {
                             keyReferences.addKeyObject(koRef);
                             SeriesViewerFactory plugin = UIManager.getViewerFactory(DicomMediaIO.SERIES_MIMETYPE);
                             if (plugin != null && !(plugin instanceof MimeSystemAppFactory)) {
-                                addGraphicstoView(s.getMedia(0, null, null), imgRef);
+                                addGraphicstoView(s.getMedia(0, null, null), getGraphics(ref));
                                 String uid = UUID.randomUUID().toString();
                                 Map<String, Object> props = Collections.synchronizedMap(new HashMap<String, Object>());
                                 props.put(ViewerPluginBuilder.CMP_ENTRY_BUILD_NEW_VIEWER, false);
@@ -249,10 +359,28 @@ public class SRView extends JScrollPane implements SeriesViewerListener {
         }
     }
 
-    private void addGraphicstoView(MediaElement mediaElement, SRImageReference imgRef) {
-        if (mediaElement instanceof ImageElement && imgRef.getGraphics() != null && !imgRef.getGraphics().isEmpty()) {
+    /**
+     * @return the graphics of all the nodes referencing the same image (SOP instance and frames)
+     */
+    private List<Graphic> getGraphics(SOPInstanceReference ref) {
+        List<Graphic> graphics = new ArrayList<>();
+        SRReader srReader = reader;
+        if (srReader != null) {
+            for (SRImageReference imgRef : srReader.getImageReferences(ref.getReferencedSOPInstanceUID())) {
+                SOPInstanceReference r = imgRef.getSopInstanceReference();
+                if (imgRef.getGraphics() != null
+                    && Arrays.equals(r.getReferencedFrameNumber(), ref.getReferencedFrameNumber())) {
+                    graphics.addAll(imgRef.getGraphics());
+                }
+            }
+        }
+        return graphics;
+    }
+
+    private void addGraphicstoView(MediaElement mediaElement, List<Graphic> graphics) {
+        if (mediaElement instanceof ImageElement && !graphics.isEmpty()) {
 
-            GraphicModel modelList = (GraphicModel) mediaElement.getTagValue(TagW.PresentationModel);
+            GraphicModel modelList = XmlSerializer.getPresentationModel(mediaElement);
             // After getting a new image iterator, update the measurements
             if (modelList == null) {
                 modelList = new XmlGraphicModel((ImageElement) mediaElement);
@@ -291,7 +419,7 @@ public class SRView extends JScrollPane implements SeriesViewerListener {
                     }
                 }
 
-                if (imgRef.getGraphics().size() == size) {
+                if (graphics.size() == size) {
                     return;
                 }
 
@@ -300,7 +428,7 @@ public class SRView extends JScrollPane implements SeriesViewerListener {
                 }
             }
 
-            for (Graphic graphic : imgRef.getGraphics()) {
+            for (Graphic graphic : graphics) {
                 graphic.setLayer(layer);
                 for (PropertyChangeListener listener : modelList.getGraphicsListeners()) {
                     graphic.addPropertyChangeListener(listener);
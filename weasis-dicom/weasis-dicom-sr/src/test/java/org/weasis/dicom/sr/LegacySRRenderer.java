@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.sr;
+
+import java.awt.Color;
+import java.util.Map;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Code;
+import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.Tag;
+import org.weasis.core.api.util.EscapeChars;
+import org.weasis.core.api.util.StringUtil;
+import org.weasis.core.ui.model.graphic.Graphic;
+import org.weasis.core.ui.model.utils.exceptions.InvalidShapeException;
+import org.weasis.dicom.codec.TagD;
+import org.weasis.dicom.codec.macro.SOPInstanceReference;
+
+/**
+ * Previous renderer of the content tree, reading the DICOM items recursively. Kept for comparing the output of the node
+ * model.
+ */
+class LegacySRRenderer {
+
+    private LegacySRRenderer() {
+    }
+
+    /**
+     * Write the content items, the part of the document following the header.
+     */
+    static void writeContent(StringBuilder html, Attributes dcmItems, Map<String, SRImageReference> map) {
+        SRDocumentContentModule content = new SRDocumentContentModule(dcmItems);
+        Sequence cts = content.getContent();
+        if (cts != null) {
+            for (int i = 0; i < cts.size(); i++) {
+                SRDocumentContent c = new SRDocumentContent(cts.get(i));
+                html.append("<BR>"); //$NON-NLS-1$
+                html.append("<B>"); //$NON-NLS-1$
+                String level = "1." + (i + 1); //$NON-NLS-1$
+                html.append(level);
+                html.append(" </B>"); //$NON-NLS-1$
+                Code code = c.getConceptNameCode();
+                addCodeMeaning(html, code, "<B>", "</B>"); //$NON-NLS-1$ //$NON-NLS-2$
+                convertContentToHTML(html, c, false, code == null, map, level);
+                html.append("<BR>"); //$NON-NLS-1$
+                addContent(html, c, map, level);
+            }
+        }
+    }
+
+    private static void convertContentToHTML(StringBuilder html, SRDocumentContent c, boolean continuous,
+        boolean noCodeName, Map<String, SRImageReference> map, String level) {
+        if (c != null) {
+            html.append("<A name=\""); //$NON-NLS-1$
+            html.append(level);
+            html.append("\"<></A>"); //$NON-NLS-1$
+            String type = c.getValueType();
+
+            if ("TEXT".equals(type)) { //$NON-NLS-1$
+                html.append(continuous || noCodeName ? " " : StringUtil.COLON_AND_SPACE); //$NON-NLS-1$
+                convertTextToHTML(html, c.getTextValue());
+            } else if ("CODE".equals(type)) { //$NON-NLS-1$
+                html.append(continuous || noCodeName ? " " : StringUtil.COLON_AND_SPACE); //$NON-NLS-1$
+                addCodeMeaning(html, c.getConceptCode(), null, null);
+            } else if ("PNAME".equals(type)) { //$NON-NLS-1$
+                html.append(continuous || noCodeName ? " " : StringUtil.COLON_AND_SPACE); //$NON-NLS-1$
+                convertTextToHTML(html, TagD.getDicomPersonName(c.getPersonName()));
+            } else if ("NUM".equals(type)) { //$NON-NLS-1$
+                html.append(continuous || noCodeName ? " " : " = "); //$NON-NLS-1$ //$NON-NLS-2$
+                Attributes val = c.getMeasuredValue();
+                if (val != null) {
+                    html.append(val.getFloat(Tag.NumericValue, 0.0f));
+                    Attributes item = val.getNestedDataset(Tag.MeasurementUnitsCodeSequence);
+                    if (item != null) {
+                        Code unit = new Code(item);
+                        html.append(" "); //$NON-NLS-1$
+                        html.append(EscapeChars.forHTML(unit.getCodeValue()));
+                    }
+                }
+            } else if ("CONTAINER".equals(type)) { //$NON-NLS-1$
+                return;
+            } else if ("IMAGE".equals(type)) { //$NON-NLS-1$
+                html.append(continuous || noCodeName ? " " : StringUtil.COLON_AND_SPACE); //$NON-NLS-1$
+                SRImageReference imgRef = getReferencedImage(map, level, c.getAttributes());
+                if (imgRef != null) {
+                    html.append("<a href=\"http://"); //$NON-NLS-1$
+                    html.append(level);
+                    html.append("\" style=\"color:#FF9900\">"); //$NON-NLS-1$
+                    html.append(Messages.getString("SRReader.show_img")); //$NON-NLS-1$
+                    html.append("</a>"); //$NON-NLS-1$
+                }
+            } else if ("DATETIME".equals(type)) { //$NON-NLS-1$
+                html.append(continuous || noCodeName ? " " : StringUtil.COLON_AND_SPACE); //$NON-NLS-1$
+                html.append(c.getDateTime());
+            } else if ("DATE".equals(type)) { //$NON-NLS-1$
+                html.append(continuous || noCodeName ? " " : StringUtil.COLON_AND_SPACE); //$NON-NLS-1$
+                html.append(c.getDate());
+            } else if ("TIME".equals(type)) { //$NON-NLS-1$
+                html.append(continuous || noCodeName ? " " : StringUtil.COLON_AND_SPACE); //$NON-NLS-1$
+                html.append(c.getTime());
+            } else if ("UIDREF".equals(type)) { //$NON-NLS-1$
+                html.append(continuous || noCodeName ? " " : StringUtil.COLON_AND_SPACE); //$NON-NLS-1$
+                convertTextToHTML(html, c.getUID());
+            } else if ("COMPOSITE".equals(type)) { //$NON-NLS-1$
+                Sequence sequenceElt = c.getAttributes().getSequence(Tag.ReferencedSOPSequence);
+                if (sequenceElt != null && !sequenceElt.isEmpty()) {
+                    html.append(continuous || noCodeName ? " " : StringUtil.COLON_AND_SPACE); //$NON-NLS-1$
+                    for (int i = 0; i < sequenceElt.size(); i++) {
+                        SOPInstanceReference sopRef = new SOPInstanceReference(sequenceElt.get(i));
+                        // TODO convert UID to text
+                        html.append(sopRef.getReferencedSOPClassUID());
+                        html.append(" (SOP Instance UID"); //$NON-NLS-1$
+                        html.append(StringUtil.COLON_AND_SPACE);
+                        html.append(sopRef.getReferencedSOPInstanceUID());
+                        html.append(")"); //$NON-NLS-1$
+                    }
+                }
+            } else if ("SCOORD".equals(type)) { //$NON-NLS-1$
+                Attributes graphicsItems = c.getAttributes();
+                Sequence sc = c.getContent();
+                if (sc != null) {
+                    for (Attributes attributes : sc) {
+                        SRDocumentContent c2 = new SRDocumentContent(attributes);
+                        String id = getReferencedContentItemIdentifier(c2.getReferencedContentItemIdentifier());
+                        SRImageReference imgRef = null;
+                        if (id == null) {
+                            imgRef = getReferencedImage(map, level, attributes);
+                            id = level;
+                        } else {
+                            imgRef = map.get(id);
+                            if (imgRef == null) {
+                                imgRef = new SRImageReference(id);
+                                map.put(id, imgRef);
+                            }
+                        }
+
+                        if (imgRef != null) {
+                            try {
+                                Graphic graphic = PrGraphicUtil.buildGraphic(graphicsItems, Color.MAGENTA, false, 1, 1,
+                                    false, null, true);
+                                if (graphic != null) {
+                                    imgRef.addGraphic(graphic);
+                                }
+                            } catch (InvalidShapeException e) {
+                                e.printStackTrace();
+                            }
+
+                            html.append(continuous || noCodeName ? " " : StringUtil.COLON_AND_SPACE); //$NON-NLS-1$
+
+                            html.append("<a href=\"http://"); //$NON-NLS-1$
+                            html.append(id);
+                            html.append("\" style=\"color:#FF9900\">"); //$NON-NLS-1$
+                            html.append(graphicsItems.getString(Tag.GraphicType));
+                            html.append("</a>"); //$NON-NLS-1$
+                        }
+                    }
+                }
+
+                // } else if ("TCOORD".equals(type)) {
+                // html.append(continuous || noCodeName ? " " : StringUtil.COLON_AND_SPACE);
+                // // TODO
+                // } else if ("WAVEFORM".equals(type)) {
+                // html.append(continuous || noCodeName ? " " : StringUtil.COLON_AND_SPACE);
+                // // TODO
+            } else if (type != null) {
+                html.append("<i>"); //$NON-NLS-1$
+                html.append(type);
+                html.append(" "); //$NON-NLS-1$
+                html.append(Messages.getString("SRReader.tag_missing")); //$NON-NLS-1$
+                html.append("</i>"); //$NON-NLS-1$
+
+            }
+
+            int[] refs = c.getReferencedContentItemIdentifier();
+            if (refs != null) {
+                html.append(Messages.getString("SRReader.content_ref") + StringUtil.COLON_AND_SPACE); //$NON-NLS-1$
+                String id = getReferencedContentItemIdentifier(refs);
+                html.append("<a href=\"#"); //$NON-NLS-1$
+                html.append(id);
+                html.append("\">"); //$NON-NLS-1$
+                html.append(Messages.getString("SRReader.node")); //$NON-NLS-1$
+                html.append(" "); //$NON-NLS-1$
+                html.append(id);
+                html.append("</a>"); //$NON-NLS-1$
+
+            }
+
+        }
+    }
+
+    private static SRImageReference getReferencedImage(Map<String, SRImageReference> map, String level,
+        Attributes attributes) {
+        Attributes item = attributes.getNestedDataset(Tag.ReferencedSOPSequence);
+        if (item == null) {
+            return null;
+        }
+        SRImageReference imgRef = map.computeIfAbsent(level, k ->  new SRImageReference(level));
+        if (imgRef.getSopInstanceReference() == null) {
+            imgRef.setSopInstanceReference(new SOPInstanceReference(item));
+        }
+        return imgRef;
+    }
+
+    private static String getReferencedContentItemIdentifier(int[] refs) {
+        if (refs != null) {
+            StringBuilder r = new StringBuilder();
+            for (int j = 0; j < refs.length - 1; j++) {
+                r.append(refs[j]);
+                r.append('.');
+            }
+            if (refs.length - 1 >= 0) {
+                r.append(refs[refs.length - 1]);
+            }
+            return r.toString();
+        }
+        return null;
+    }
+
+    private static void addContent(StringBuilder html, SRDocumentContent c, Map<String, SRImageReference> map,
+        String level) {
+        Sequence cts = c.getContent();
+        if (cts != null) {
+            boolean continuity = "CONTINUOUS".equals(c.getContinuityOfContent()); //$NON-NLS-1$
+            if (!continuity) {
+                html.append("<OL>"); //$NON-NLS-1$
+            }
+            for (int i = 0; i < cts.size(); i++) {
+                SRDocumentContent srContent = new SRDocumentContent(cts.get(i));
+                html.append(continuity ? " " : "<LI>"); //$NON-NLS-1$ //$NON-NLS-2$
+                Code code = null;
+                if (!continuity) {
+                    code = srContent.getConceptNameCode();
+                    addCodeMeaning(html, code, "<B>", "</B>"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                String level2 = level + "." + (i + 1); //$NON-NLS-1$
+                convertContentToHTML(html, srContent, continuity, code == null, map, level2);
+                addContent(html, srContent, map, level2);
+                html.append(continuity ? " " : "</LI>"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            if (!continuity) {
+                html.append("</OL>"); //$NON-NLS-1$
+            }
+        }
+    }
+
+    private static void addCodeMeaning(StringBuilder html, Code code, String startTag, String endTag) {
+        if (code != null) {
+            if (startTag != null) {
+                html.append(startTag);
+            }
+            html.append(EscapeChars.forHTML(code.getCodeMeaning()));
+            if (endTag != null) {
+                html.append(endTag);
+            }
+        }
+    }
+
+    private static void convertTextToHTML(StringBuilder html, String text) {
+        if (text != null) {
+            String[] lines = EscapeChars.convertToLines(text);
+            if (lines.length > 0) {
+                html.append(EscapeChars.forHTML(lines[0]));
+                for (int i = 1; i < lines.length; i++) {
+                    html.append("<BR>"); //$NON-NLS-1$
+                    html.append(EscapeChars.forHTML(lines[i]));
+                }
+            }
+        }
+    }
+}
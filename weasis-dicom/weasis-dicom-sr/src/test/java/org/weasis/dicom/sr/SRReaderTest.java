@@ -0,0 +1,346 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.dicom.sr;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.JTextPane;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.weasis.dicom.codec.DicomMediaIO;
+import org.weasis.dicom.codec.DicomSpecialElement;
+
+public class SRReaderTest {
+    private static final String CONTENT_START = "<hr size=2>"; //$NON-NLS-1$
+    private static final String ANCHOR = "<A name=\""; //$NON-NLS-1$
+
+    private static Attributes code(String value, String meaning) {
+        Attributes code = new Attributes(3);
+        code.setString(Tag.CodeValue, VR.SH, value);
+        code.setString(Tag.CodingSchemeDesignator, VR.SH, "99TEST"); //$NON-NLS-1$
+        code.setString(Tag.CodeMeaning, VR.LO, meaning);
+        return code;
+    }
+
+    private static Attributes contentItem(String relationship, String valueType, String meaning) {
+        Attributes item = new Attributes();
+        item.setString(Tag.RelationshipType, VR.CS, relationship);
+        if (valueType != null) {
+            item.setString(Tag.ValueType, VR.CS, valueType);
+        }
+        if (meaning != null) {
+            item.newSequence(Tag.ConceptNameCodeSequence, 1).add(code("C" + meaning.hashCode(), meaning)); //$NON-NLS-1$
+        }
+        return item;
+    }
+
+    private static Attributes sopReference(String sopInstanceUID) {
+        Attributes ref = new Attributes(2);
+        ref.setString(Tag.ReferencedSOPClassUID, VR.UI, "1.2.840.10008.5.1.4.1.1.2"); //$NON-NLS-1$
+        ref.setString(Tag.ReferencedSOPInstanceUID, VR.UI, sopInstanceUID);
+        return ref;
+    }
+
+    private static int[] toIdentifier(String level) {
+        String[] values = level.split("\\."); //$NON-NLS-1$
+        int[] id = new int[values.length];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = Integer.parseInt(values[i]);
+        }
+        return id;
+    }
+
+    /**
+     * Build the leaves of a container by blocks of 10 items with all the supported value types, image references and
+     * by-reference relationships to the previous siblings.
+     */
+    private static void addLeaves(Sequence seq, String parentLevel, int leaves, String imageUID) {
+        for (int j = 0; j < leaves; j++) {
+            String level = parentLevel + "." + (j + 1); //$NON-NLS-1$
+            Attributes item;
+            switch (j % 10) {
+                case 0:
+                    item = contentItem("CONTAINS", "TEXT", "Finding"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    item.setString(Tag.TextValue, VR.UT, "Lesion " + level + "\r\nsize < 5 & stable"); //$NON-NLS-1$ //$NON-NLS-2$
+                    break;
+                case 1:
+                    item = contentItem("HAS PROPERTIES", "CODE", "Site"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    item.newSequence(Tag.ConceptCodeSequence, 1).add(code("T-28000", "Lung")); //$NON-NLS-1$ //$NON-NLS-2$
+                    break;
+                case 2:
+                    item = contentItem("CONTAINS", "NUM", "Diameter"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    Attributes value = new Attributes(2);
+                    value.setString(Tag.NumericValue, VR.DS, String.valueOf(j / 4.0));
+                    value.newSequence(Tag.MeasurementUnitsCodeSequence, 1).add(code("mm", "millimeter")); //$NON-NLS-1$ //$NON-NLS-2$
+                    item.newSequence(Tag.MeasuredValueSequence, 1).add(value);
+                    break;
+                case 3:
+                    item = contentItem("HAS OBS CONTEXT", "PNAME", "Observer"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    item.setString(Tag.PersonName, VR.PN, "Doe^John"); //$NON-NLS-1$
+                    break;
+                case 4:
+                    item = contentItem("HAS OBS CONTEXT", "UIDREF", "Tracking UID"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    item.setString(Tag.UID, VR.UI, "1.2.3." + level); //$NON-NLS-1$
+                    break;
+                case 5:
+                    item = contentItem("HAS OBS CONTEXT", "DATE", "Date"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    item.setString(Tag.Date, VR.DA, "20180102"); //$NON-NLS-1$
+                    break;
+                case 6:
+                    item = contentItem("CONTAINS", "IMAGE", "Key image"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    item.newSequence(Tag.ReferencedSOPSequence, 1).add(sopReference(imageUID));
+                    break;
+                case 7:
+                    // Graphic drawn on the previous image, referenced by its identifier
+                    item = contentItem("CONTAINS", "SCOORD", null); //$NON-NLS-1$ //$NON-NLS-2$
+                    item.setString(Tag.GraphicType, VR.CS, "POINT"); //$NON-NLS-1$
+                    item.setFloat(Tag.GraphicData, VR.FL, 10.0f, 20.0f);
+                    Attributes selected = contentItem("SELECTED FROM", null, null); //$NON-NLS-1$
+                    selected.setInt(Tag.ReferencedContentItemIdentifier, VR.UL,
+                        toIdentifier(parentLevel + "." + j)); //$NON-NLS-1$
+                    item.newSequence(Tag.ContentSequence, 1).add(selected);
+                    break;
+                case 8:
+                    // By-reference relationship to the first item of the block
+                    item = contentItem("INFERRED FROM", null, null); //$NON-NLS-1$
+                    item.setInt(Tag.ReferencedContentItemIdentifier, VR.UL,
+                        toIdentifier(parentLevel + "." + (j - 7))); //$NON-NLS-1$
+                    break;
+                default:
+                    // Graphic drawn on the same image, referenced by its SOP instance
+                    item = contentItem("CONTAINS", "SCOORD", "Region"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    item.setString(Tag.GraphicType, VR.CS, "POINT"); //$NON-NLS-1$
+                    item.setFloat(Tag.GraphicData, VR.FL, 30.0f, 40.0f);
+                    Attributes image = contentItem("SELECTED FROM", "IMAGE", null); //$NON-NLS-1$ //$NON-NLS-2$
+                    image.newSequence(Tag.ReferencedSOPSequence, 1).add(sopReference(imageUID));
+                    item.newSequence(Tag.ContentSequence, 1).add(image);
+                    break;
+            }
+            seq.add(item);
+        }
+    }
+
+    private static Attributes buildDocument() {
+        Attributes dcm = new Attributes();
+        dcm.setString(Tag.ValueType, VR.CS, "CONTAINER"); //$NON-NLS-1$
+        dcm.newSequence(Tag.ConceptNameCodeSequence, 1).add(code("18748-4", "Imaging Report")); //$NON-NLS-1$ //$NON-NLS-2$
+        dcm.setString(Tag.ContinuityOfContent, VR.CS, "SEPARATE"); //$NON-NLS-1$
+        dcm.setString(Tag.PatientName, VR.PN, "Test^Patient"); //$NON-NLS-1$
+        dcm.setString(Tag.PatientID, VR.LO, "12345"); //$NON-NLS-1$
+        dcm.setString(Tag.InstitutionName, VR.LO, "Hospital"); //$NON-NLS-1$
+        dcm.setString(Tag.CompletionFlag, VR.CS, "COMPLETE"); //$NON-NLS-1$
+        return dcm;
+    }
+
+    /**
+     * @return a report with sections containing sub-sections of leaves (1 + 10 items each 10 leaves)
+     */
+    static Attributes buildLargeReport(int sections, int subSections, int leaves) {
+        Attributes dcm = buildDocument();
+        Sequence seq = dcm.newSequence(Tag.ContentSequence, sections);
+        for (int i = 0; i < sections; i++) {
+            String level = "1." + (i + 1); //$NON-NLS-1$
+            Attributes section = contentItem("CONTAINS", "CONTAINER", "Section " + level); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            section.setString(Tag.ContinuityOfContent, VR.CS, i == 1 ? "CONTINUOUS" : "SEPARATE"); //$NON-NLS-1$ //$NON-NLS-2$
+            Sequence sub = section.newSequence(Tag.ContentSequence, subSections);
+            for (int k = 0; k < subSections; k++) {
+                String subLevel = level + "." + (k + 1); //$NON-NLS-1$
+                Attributes subSection = contentItem("CONTAINS", "CONTAINER", null); //$NON-NLS-1$ //$NON-NLS-2$
+                subSection.setString(Tag.ContinuityOfContent, VR.CS, "SEPARATE"); //$NON-NLS-1$
+                addLeaves(subSection.newSequence(Tag.ContentSequence, leaves), subLevel, leaves, "1.2.3.4." + subLevel); //$NON-NLS-1$
+                sub.add(subSection);
+            }
+            seq.add(section);
+        }
+        return dcm;
+    }
+
+    /**
+     * @return a report of nested containers, the last one containing a block of leaves
+     */
+    static Attributes buildDeepReport(int depth) {
+        Attributes dcm = buildDocument();
+        Sequence seq = dcm.newSequence(Tag.ContentSequence, 1);
+        StringBuilder level = new StringBuilder("1"); //$NON-NLS-1$
+        for (int i = 0; i < depth; i++) {
+            level.append(".1"); //$NON-NLS-1$
+            Attributes container = contentItem("CONTAINS", "CONTAINER", "Level " + i); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            seq.add(container);
+            seq = container.newSequence(Tag.ContentSequence, 1);
+        }
+        addLeaves(seq, level.toString(), 10, "1.2.3.4.5"); //$NON-NLS-1$
+        return dcm;
+    }
+
+    private static SRReader buildReader(Attributes dcm) {
+        DicomMediaIO io = Mockito.mock(DicomMediaIO.class);
+        Mockito.when(io.getDicomObject()).thenReturn(dcm);
+        DicomSpecialElement element = Mockito.mock(DicomSpecialElement.class);
+        Mockito.when(element.getMediaReader()).thenReturn(io);
+        return new SRReader(null, element);
+    }
+
+    private static String getContent(StringBuilder html) {
+        return html.substring(html.indexOf(CONTENT_START) + CONTENT_START.length());
+    }
+
+    private static int countItems(String html) {
+        int count = 0;
+        int index = html.indexOf(ANCHOR);
+        while (index >= 0) {
+            count++;
+            index = html.indexOf(ANCHOR, index + ANCHOR.length());
+        }
+        return count;
+    }
+
+    private static int size(List<?> list) {
+        return list == null ? 0 : list.size();
+    }
+
+    private static void assertSameAsLegacy(Attributes dcm) {
+        Map<String, SRImageReference> legacyMap = new HashMap<>();
+        StringBuilder legacy = new StringBuilder();
+        LegacySRRenderer.writeContent(legacy, dcm, legacyMap);
+
+        SRReader reader = buildReader(dcm);
+        Map<String, SRImageReference> map = new HashMap<>();
+        StringBuilder html = new StringBuilder();
+        reader.readDocumentGeneralModule(html, map);
+
+        assertThat(getContent(html)).isEqualTo(legacy.toString());
+        assertThat(map.keySet()).isEqualTo(legacyMap.keySet());
+        for (Map.Entry<String, SRImageReference> entry : legacyMap.entrySet()) {
+            SRImageReference ref = map.get(entry.getKey());
+            SRImageReference legacyRef = entry.getValue();
+            assertThat(ref.getSopInstanceReference().getReferencedSOPInstanceUID())
+                .isEqualTo(legacyRef.getSopInstanceReference().getReferencedSOPInstanceUID());
+            assertThat(size(ref.getGraphics())).isEqualTo(size(legacyRef.getGraphics()));
+        }
+    }
+
+    @Test
+    public void testSameAsLegacyRenderer() {
+        assertSameAsLegacy(buildLargeReport(3, 2, 30));
+        assertSameAsLegacy(buildDeepReport(40));
+    }
+
+    @Test
+    public void testDeepReport() {
+        int depth = 500;
+        Attributes dcm = buildDeepReport(depth);
+        assertSameAsLegacy(dcm);
+
+        SRReader reader = buildReader(dcm);
+        assertThat(reader.getContentTree()).hasSize(1);
+        // With the nested items of the graphics
+        assertThat(reader.getContentTree()[0].getDescendantCount()).isEqualTo(depth - 1 + 12);
+        assertThat(reader.getCollapsedContainers(null, SRView.MAX_DISPLAYED_ITEMS)).isEmpty();
+
+        // One item by level is displayed
+        Set<String> collapsed = reader.getCollapsedContainers(null, 100);
+        assertThat(collapsed).hasSize(1);
+        String level = collapsed.iterator().next();
+        assertThat(level.split("\\.")).hasSize(101); //$NON-NLS-1$
+        StringBuilder html = new StringBuilder();
+        reader.writeDocument(html, collapsed);
+        assertThat(countItems(getContent(html))).isEqualTo(100);
+        assertThat(html.toString()).contains(SRReader.EXPAND_LINK + level + "\""); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testLargeReport() {
+        // 50 sections of 10 sub-sections of 100 leaves: 50 550 items and 10 000 nested image items
+        Attributes dcm = buildLargeReport(50, 10, 100);
+        Map<String, SRImageReference> legacyMap = new HashMap<>();
+        StringBuilder legacy = new StringBuilder();
+        long start = System.nanoTime();
+        LegacySRRenderer.writeContent(legacy, dcm, legacyMap);
+        long legacyRender = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        SRReader reader = buildReader(dcm);
+        SRContentNode[] tree = reader.getContentTree();
+        long parse = System.nanoTime() - start;
+        int total = 0;
+        for (SRContentNode node : tree) {
+            total += 1 + node.getDescendantCount();
+        }
+        assertThat(total).isEqualTo(50 + 50 * 10 + 50 * 10 * 120);
+
+        StringBuilder html = new StringBuilder();
+        start = System.nanoTime();
+        reader.writeDocument(html, null);
+        long render = System.nanoTime() - start;
+        assertThat(getContent(html)).isEqualTo(legacy.toString());
+
+        // Displayed when opening the report
+        start = System.nanoTime();
+        Set<String> collapsed = reader.getCollapsedContainers(null, SRView.MAX_DISPLAYED_ITEMS);
+        StringBuilder limited = new StringBuilder();
+        reader.writeDocument(limited, collapsed);
+        long limitedRender = System.nanoTime() - start;
+        int displayed = countItems(getContent(limited));
+        assertThat(displayed).isEqualTo(SRView.MAX_DISPLAYED_ITEMS);
+
+        // Expanding a sub-section renders its content
+        String level = "1.50.10"; //$NON-NLS-1$
+        assertThat(collapsed).contains(level);
+        Set<String> expanded = new HashSet<>(collapsed);
+        expanded.remove(level);
+        expanded.addAll(reader.getCollapsedContainers(level, SRView.MAX_DISPLAYED_ITEMS));
+        StringBuilder expandedHtml = new StringBuilder();
+        reader.writeDocument(expandedHtml, expanded);
+        assertThat(countItems(getContent(expandedHtml))).isEqualTo(displayed + 120);
+        assertThat(expandedHtml.toString()).contains(ANCHOR + level + ".100\""); //$NON-NLS-1$
+
+        // Index from the SOP instance to the image references: 10 images with a graphic referencing them by
+        // identifier, 10 graphics with a nested image
+        List<SRImageReference> refs = reader.getImageReferences("1.2.3.4.1.50.10"); //$NON-NLS-1$
+        assertThat(refs).hasSize(30);
+        int graphics = 0;
+        for (SRImageReference ref : refs) {
+            graphics += size(ref.getGraphics());
+        }
+        assertThat(graphics).isEqualTo(20);
+        assertThat(reader.getImageReferences("1.2.3.4.9")).isEmpty(); //$NON-NLS-1$
+
+        // First paint: the whole document before, the limited document now
+        long legacyPaint = setText(legacy.toString());
+        long limitedPaint = setText(limited.toString());
+
+        assertThat(limitedRender + limitedPaint)
+            .as("Open the report in %d ms (legacy %d ms), parse %d ms, full render %d ms (legacy %d ms)", //$NON-NLS-1$
+                (limitedRender + limitedPaint) / 1_000_000, (legacyRender + legacyPaint) / 1_000_000,
+                parse / 1_000_000, render / 1_000_000, legacyRender / 1_000_000)
+            .isLessThan(legacyRender + legacyPaint);
+    }
+
+    private static long setText(String html) {
+        JTextPane pane = new JTextPane();
+        pane.setContentType("text/html"); //$NON-NLS-1$
+        pane.setEditable(false);
+        long start = System.nanoTime();
+        pane.setText(html);
+        return System.nanoTime() - start;
+    }
+}
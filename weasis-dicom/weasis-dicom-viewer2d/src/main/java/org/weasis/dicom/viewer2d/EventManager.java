@@ -82,6 +82,7 @@ import org.weasis.core.api.util.ResourceUtil;
 import org.weasis.core.ui.docking.DockableTool;
 import org.weasis.core.ui.editor.SeriesViewerEvent;
 import org.weasis.core.ui.editor.SeriesViewerEvent.EVENT;
+import org.weasis.core.ui.editor.image.CineEngine;
 import org.weasis.core.ui.editor.image.DefaultView2d;
 import org.weasis.core.ui.editor.image.ImageViewerEventManager;
 import org.weasis.core.ui.editor.image.ImageViewerPlugin;
@@ -109,6 +110,8 @@ import org.weasis.dicom.codec.SortSeriesStack;
 import org.weasis.dicom.codec.TagD;
 import org.weasis.dicom.codec.display.PresetWindowLevel;
 import org.weasis.dicom.codec.geometry.ImageOrientation;
+import org.weasis.dicom.codec.geometry.LocalizerOutline;
+import org.weasis.dicom.codec.geometry.SlicePlane;
 import org.weasis.dicom.viewer2d.mip.MipView;
 import org.weasis.dicom.viewer2d.mpr.MPRContainer;
 import org.weasis.dicom.viewer2d.mpr.MprView;
@@ -239,10 +242,15 @@ public class EventManager extends ImageViewerEventManager<DicomImageElement> imp
     protected SliderCineListener getMoveTroughSliceAction(int speed, TIME time, double mouseSensivity) {
         return new SliderCineListener(ActionW.SCROLL_SERIES, 1, 2, 1, speed, time, mouseSensivity) {
 
-            protected CineThread currentCine;
+            protected volatile CineEngine currentCine;
 
             @Override
             public void stateChanged(BoundedRangeModel model) {
+                CineEngine engine = currentCine;
+                if (engine != null) {
+                    // Continue the cine from a frame selected manually
+                    engine.setCurrentIndex(model.getValue());
+                }
 
                 ViewCanvas<DicomImageElement> view2d = null;
                 Series<DicomImageElement> series = null;
@@ -298,6 +306,7 @@ public class EventManager extends ImageViewerEventManager<DicomImageElement> imp
                                     } else {
                                         return; // Do not throw event
                                     }
+                                    prepareCrosslines(panes, view2d, image);
                                     break;
                                 }
                             }
@@ -393,72 +402,9 @@ public class EventManager extends ImageViewerEventManager<DicomImageElement> imp
             @Override
             public void setSpeed(int speed) {
                 super.setSpeed(speed);
-                if (currentCine != null) {
-                    currentCine.iniSpeed();
-                }
-            }
-
-            /** Create a thread to cine the images. */
-
-            class CineThread extends Thread {
-
-                private volatile int iteration;
-                private volatile int waitTimeMillis;
-                private volatile int currentCineRate;
-                private volatile long start;
-                private volatile boolean cining = true;
-
-                @Override
-                public void run() {
-                    iniSpeed();
-                    while (cining) {
-                        long startFrameTime = System.currentTimeMillis();
-                        // Set the value to SliderCineListener, must be in EDT for refreshing UI correctly
-                        GuiExecutor.instance().invokeAndWait(new Runnable() {
-
-                            @Override
-                            public void run() {
-                                if (cining) {
-                                    int frameIndex = getSliderValue() + 1;
-                                    setSliderValue(frameIndex > getSliderMax() ? 0 : frameIndex);
-                                }
-                            }
-                        });
-                        // Time to set the new frame index
-                        long elapsedFrame = System.currentTimeMillis() - startFrameTime;
-                        /*
-                         * If this time is smaller than the time to wait according to the cine speed (fps), then wait
-                         * the time left, otherwise continue (that means the cine speed cannot be reached)
-                         */
-                        if (elapsedFrame < waitTimeMillis) {
-                            try {
-                                Thread.sleep(waitTimeMillis - elapsedFrame);
-                            } catch (Exception e) {
-                            }
-                        }
-
-                        iteration++;
-                        // Check the speed every 3 images
-                        if (iteration > 2) {
-                            // Get the speed rate (fps) on the last 3 images
-                            currentCineRate = (int) (iteration * 1000 / (System.currentTimeMillis() - start));
-                            // reinitialize the parameters for computing speed next time
-                            iteration = 0;
-                            waitTimeMillis = 1000 / getSpeed();
-                            start = System.currentTimeMillis();
-                        }
-                    }
-                }
-
-                public void iniSpeed() {
-                    iteration = 0;
-                    currentCineRate = getSpeed();
-                    waitTimeMillis = 1000 / currentCineRate;
-                    start = System.currentTimeMillis();
-                }
-
-                public int getCurrentCineRate() {
-                    return currentCineRate;
+                CineEngine engine = currentCine;
+                if (engine != null) {
+                    engine.setPeriod(getCinePeriod(speed, time));
                 }
             }
 
@@ -470,7 +416,7 @@ public class EventManager extends ImageViewerEventManager<DicomImageElement> imp
                     stop();
                 }
                 if (getSliderMax() - getSliderMin() > 0) {
-                    currentCine = new CineThread();
+                    currentCine = newCineEngine(this, time);
                     currentCine.start();
                 }
             }
@@ -479,11 +425,10 @@ public class EventManager extends ImageViewerEventManager<DicomImageElement> imp
 
             @Override
             public synchronized void stop() {
-                CineThread moribund = currentCine;
+                CineEngine moribund = currentCine;
                 currentCine = null;
                 if (moribund != null) {
-                    moribund.cining = false;
-                    moribund.interrupt();
+                    moribund.stop();
                 }
             }
 
@@ -496,10 +441,7 @@ public class EventManager extends ImageViewerEventManager<DicomImageElement> imp
 
             @Override
             public int getCurrentCineRate() {
-                if (currentCine != null) {
-                    return currentCine.getCurrentCineRate();
-                }
-                return 0;
+                return getCineRate(currentCine, time);
             }
 
             @Override
@@ -565,6 +507,50 @@ public class EventManager extends ImageViewerEventManager<DicomImageElement> imp
         }
     }
 
+    /**
+     * Computes in one pass the crosslines of all the views of the layout, they are then taken from the cache when each
+     * view refreshes its crosslines (see View2d.computeCrosslines()).
+     */
+    private static void prepareCrosslines(List<ViewCanvas<DicomImageElement>> panes,
+        ViewCanvas<DicomImageElement> view2d, DicomImageElement image) {
+        SlicePlane source = image.getDispSlicePlane();
+        if (source == null) {
+            return;
+        }
+        List<SlicePlane> planes = new ArrayList<>(panes.size());
+        for (ViewCanvas<DicomImageElement> p : panes) {
+            DicomImageElement img = p.getImage();
+            if (p != view2d && img != null
+                && LangUtil.getNULLtoFalse((Boolean) p.getActionValue(ActionW.SYNCH_CROSSLINE.cmd()))) {
+                SlicePlane plane = img.getDispSlicePlane();
+                if (plane != null) {
+                    planes.add(plane);
+                }
+            }
+        }
+        if (planes.isEmpty()) {
+            return;
+        }
+        SlicePlane[] localizers = planes.toArray(new SlicePlane[planes.size()]);
+        LocalizerOutline.prepareOutlines(localizers, source, true);
+        LocalizerOutline.prepareOutlines(localizers, source, false);
+
+        MediaSeries<DicomImageElement> series = view2d.getSeries();
+        if (series instanceof DicomSeries) {
+            DicomImageElement[] bounds = ((DicomSeries) series).getSliceLocationBounds(
+                (Filter<DicomImageElement>) view2d.getActionValue(ActionW.FILTERED_SERIES.cmd()),
+                view2d.getCurrentSortComparator());
+            if (bounds[0] != null && bounds[0] != bounds[1]) {
+                for (DicomImageElement bound : bounds) {
+                    SlicePlane plane = bound == null ? null : bound.getDispSlicePlane();
+                    if (plane != null) {
+                        LocalizerOutline.prepareOutlines(localizers, plane, false);
+                    }
+                }
+            }
+        }
+    }
+
     private ComboItemListener<PresetWindowLevel> newPresetAction() {
         return new ComboItemListener<PresetWindowLevel>(ActionW.PRESET, null) {
 
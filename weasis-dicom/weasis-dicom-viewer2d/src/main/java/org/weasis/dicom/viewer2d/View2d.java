@@ -130,9 +130,8 @@ import org.weasis.dicom.codec.display.WindowAndPresetsOp;
 import org.weasis.dicom.codec.geometry.GeometryOfSlice;
 import org.weasis.dicom.codec.geometry.ImageOrientation;
 import org.weasis.dicom.codec.geometry.ImageOrientation.Label;
-import org.weasis.dicom.codec.geometry.IntersectSlice;
-import org.weasis.dicom.codec.geometry.IntersectVolume;
-import org.weasis.dicom.codec.geometry.LocalizerPoster;
+import org.weasis.dicom.codec.geometry.LocalizerOutline;
+import org.weasis.dicom.codec.geometry.SlicePlane;
 import org.weasis.dicom.explorer.DicomExplorer;
 import org.weasis.dicom.explorer.DicomModel;
 import org.weasis.dicom.explorer.LoadLocalDicom;
@@ -583,17 +582,8 @@ public class View2d extends DefaultView2d<DicomImageElement> {
                     if (koElement.containsSopInstanceUIDReference(seriesInstanceUID, sopInstanceUID, frame)) {
                         newSelectionState = eState.SELECTED;
                     }
-                } else {
-                    Collection<KOSpecialElement> koElements = DicomModel.getKoSpecialElements(getSeries());
-
-                    if (koElements != null) {
-                        for (KOSpecialElement koElement : koElements) {
-                            if (koElement.containsSopInstanceUIDReference(seriesInstanceUID, sopInstanceUID, frame)) {
-                                newSelectionState = eState.EXIST;
-                                break;
-                            }
-                        }
-                    }
+                } else if (!DicomModel.getKoSpecialElements(getSeries(), sopInstanceUID, frame).isEmpty()) {
+                    newSelectionState = eState.EXIST;
                 }
             }
         }
@@ -695,8 +685,8 @@ public class View2d extends DefaultView2d<DicomImageElement> {
     protected void computeCrosslines(double location) {
         DicomImageElement image = this.getImage();
         if (image != null) {
-            GeometryOfSlice sliceGeometry = image.getDispSliceGeometry();
-            if (sliceGeometry != null) {
+            SlicePlane slicePlane = image.getDispSlicePlane();
+            if (slicePlane != null) {
                 ViewCanvas<DicomImageElement> view2DPane = eventManager.getSelectedViewPane();
                 MediaSeries<DicomImageElement> selSeries = view2DPane == null ? null : view2DPane.getSeries();
                 if (selSeries != null) {
@@ -706,23 +696,32 @@ public class View2d extends DefaultView2d<DicomImageElement> {
 
                     DicomImageElement firstImage = null;
                     DicomImageElement lastImage = null;
-                    double min = Double.MAX_VALUE;
-                    double max = -Double.MAX_VALUE;
-                    final Iterable<DicomImageElement> list = selSeries.getMedias(
-                        (Filter<DicomImageElement>) view2DPane.getActionValue(ActionW.FILTERED_SERIES.cmd()),
-                        getCurrentSortComparator());
-                    synchronized (selSeries) {
-                        for (DicomImageElement dcm : list) {
-                            double[] loc = (double[]) dcm.getTagValue(TagW.SlicePosition);
-                            if (loc != null) {
-                                double position = loc[0] + loc[1] + loc[2];
-                                if (min > position) {
-                                    min = position;
-                                    firstImage = dcm;
-                                }
-                                if (max < position) {
-                                    max = position;
-                                    lastImage = dcm;
+                    Filter<DicomImageElement> filter =
+                        (Filter<DicomImageElement>) view2DPane.getActionValue(ActionW.FILTERED_SERIES.cmd());
+                    if (selSeries instanceof DicomSeries) {
+                        // Bounds cached by the series
+                        DicomImageElement[] bounds =
+                            ((DicomSeries) selSeries).getSliceLocationBounds(filter, getCurrentSortComparator());
+                        firstImage = bounds[0];
+                        lastImage = bounds[1];
+                    } else {
+                        double min = Double.MAX_VALUE;
+                        double max = -Double.MAX_VALUE;
+                        final Iterable<DicomImageElement> list =
+                            selSeries.getMedias(filter, getCurrentSortComparator());
+                        synchronized (selSeries) {
+                            for (DicomImageElement dcm : list) {
+                                double[] loc = (double[]) dcm.getTagValue(TagW.SlicePosition);
+                                if (loc != null) {
+                                    double position = loc[0] + loc[1] + loc[2];
+                                    if (min > position) {
+                                        min = position;
+                                        firstImage = dcm;
+                                    }
+                                    if (max < position) {
+                                        max = position;
+                                        lastImage = dcm;
+                                    }
                                 }
                             }
                         }
@@ -730,18 +729,17 @@ public class View2d extends DefaultView2d<DicomImageElement> {
 
                     GraphicLayer layer = AbstractGraphicModel.getOrBuildLayer(this, LayerType.CROSSLINES);
                     // IntersectSlice: display a line representing the center of the slice
-                    IntersectSlice slice = new IntersectSlice(sliceGeometry);
                     if (firstImage != null && firstImage != lastImage) {
-                        addCrossline(firstImage, layer, slice, false);
+                        addCrossline(firstImage, layer, slicePlane, false, false);
                     }
                     if (lastImage != null && firstImage != lastImage) {
-                        addCrossline(lastImage, layer, slice, false);
+                        addCrossline(lastImage, layer, slicePlane, false, false);
                     }
                     if (selImage != null) {
                         // IntersectVolume: display a rectangle to show the slice thickness
-                        if (!addCrossline(selImage, layer, new IntersectVolume(sliceGeometry), true)) {
+                        if (!addCrossline(selImage, layer, slicePlane, true, true)) {
                             // When the volume limits are outside the image, get the only the intersection
-                            addCrossline(selImage, layer, slice, true);
+                            addCrossline(selImage, layer, slicePlane, false, true);
                         }
                     }
                     repaint();
@@ -751,11 +749,26 @@ public class View2d extends DefaultView2d<DicomImageElement> {
 
     }
 
-    protected boolean addCrossline(DicomImageElement selImage, GraphicLayer layer, LocalizerPoster localizer,
-        boolean center) {
-        GeometryOfSlice sliceGeometry = selImage.getDispSliceGeometry();
-        if (sliceGeometry != null) {
-            List<Point2D.Double> pts = localizer.getOutlineOnLocalizerForThisGeometry(sliceGeometry);
+    /**
+     * @param selImage
+     *            the image of the selected view
+     * @param layer
+     *            the layer of the crosslines
+     * @param localizer
+     *            the plane of the image of this view
+     * @param volume
+     *            true to display the slice thickness (IntersectVolume), false for the center of the slice
+     *            (IntersectSlice)
+     * @param center
+     *            true for the current image of the selected view
+     * @return true if the crossline has been added
+     */
+    protected boolean addCrossline(DicomImageElement selImage, GraphicLayer layer, SlicePlane localizer,
+        boolean volume, boolean center) {
+        SlicePlane slicePlane = selImage.getDispSlicePlane();
+        if (slicePlane != null) {
+            List<Point2D.Double> pts =
+                LocalizerOutline.toPoints(LocalizerOutline.getOutline(localizer, slicePlane, volume));
             if (pts != null && !pts.isEmpty()) {
                 Color color = center ? Color.blue : Color.cyan;
                 try {
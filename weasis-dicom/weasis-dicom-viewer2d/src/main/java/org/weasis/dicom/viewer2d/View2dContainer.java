@@ -46,6 +46,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.DataExplorerView;
 import org.weasis.core.api.explorer.ObservableEvent;
+import org.weasis.core.api.explorer.model.TreeModelChange;
 import org.weasis.core.api.gui.Insertable.Type;
 import org.weasis.core.api.gui.InsertableUtil;
 import org.weasis.core.api.gui.util.ActionState;
@@ -356,6 +357,31 @@ public class View2dContainer extends ImageViewerPlugin<DicomImageElement> implem
         return false;
     }
 
+    private void updateSliderOfSelectedView(DicomSeries series) {
+        ViewCanvas<DicomImageElement> view2DPane = eventManager.getSelectedViewPane();
+        if (view2DPane != null) {
+            DicomImageElement img = view2DPane.getImage();
+            if (img != null && view2DPane.getSeries() == series) {
+                ActionState seqAction = eventManager.getAction(ActionW.SCROLL_SERIES);
+                if (seqAction instanceof SliderCineListener) {
+                    SliderCineListener sliceAction = (SliderCineListener) seqAction;
+                    Filter<DicomImageElement> filter =
+                        (Filter<DicomImageElement>) view2DPane.getActionValue(ActionW.FILTERED_SERIES.cmd());
+                    int imgIndex = series.getImageIndex(img, filter, view2DPane.getCurrentSortComparator());
+                    if (imgIndex < 0) {
+                        imgIndex = 0;
+                        // add again the series for registering listeners
+                        // (require at least one image)
+                        view2DPane.setSeries(series, null);
+                    }
+                    if (imgIndex >= 0) {
+                        sliceAction.setSliderMinMaxValue(1, series.size(filter), imgIndex + 1);
+                    }
+                }
+            }
+        }
+    }
+
     @Override
     public void propertyChange(PropertyChangeEvent evt) {
 
@@ -374,33 +400,8 @@ public class View2dContainer extends ImageViewerPlugin<DicomImageElement> implem
                 if (ObservableEvent.BasicAction.ADD.equals(action)) {
 
                     if (SeriesEvent.Action.ADD_IMAGE.equals(action2)) {
-                        if (source instanceof DicomSeries) {
-                            DicomSeries series = (DicomSeries) source;
-                            ViewCanvas<DicomImageElement> view2DPane = eventManager.getSelectedViewPane();
-                            if (view2DPane != null) {
-                                DicomImageElement img = view2DPane.getImage();
-                                if (img != null && view2DPane.getSeries() == series) {
-                                    ActionState seqAction = eventManager.getAction(ActionW.SCROLL_SERIES);
-                                    if (seqAction instanceof SliderCineListener) {
-                                        SliderCineListener sliceAction = (SliderCineListener) seqAction;
-                                        if (param instanceof DicomImageElement) {
-                                            Filter<DicomImageElement> filter = (Filter<DicomImageElement>) view2DPane
-                                                .getActionValue(ActionW.FILTERED_SERIES.cmd());
-                                            int imgIndex = series.getImageIndex(img, filter,
-                                                view2DPane.getCurrentSortComparator());
-                                            if (imgIndex < 0) {
-                                                imgIndex = 0;
-                                                // add again the series for registering listeners
-                                                // (require at least one image)
-                                                view2DPane.setSeries(series, null);
-                                            }
-                                            if (imgIndex >= 0) {
-                                                sliceAction.setSliderMinMaxValue(1, series.size(filter), imgIndex + 1);
-                                            }
-                                        }
-                                    }
-                                }
-                            }
+                        if (source instanceof DicomSeries && param instanceof DicomImageElement) {
+                            updateSliderOfSelectedView((DicomSeries) source);
                         }
                     } else if (SeriesEvent.Action.UPDATE_IMAGE.equals(action2)) {
                         if (source instanceof DicomImageElement) {
@@ -437,6 +438,13 @@ public class View2dContainer extends ImageViewerPlugin<DicomImageElement> implem
                         }
                     }
                 }
+            } else if (newVal instanceof TreeModelChange) {
+                // Batch of images added by a transaction of the model
+                ViewCanvas<DicomImageElement> view2DPane = eventManager.getSelectedViewPane();
+                if (view2DPane != null && view2DPane.getSeries() instanceof DicomSeries
+                    && ((TreeModelChange) newVal).getUpdatedNodes().contains(view2DPane.getSeries())) {
+                    updateSliderOfSelectedView((DicomSeries) view2DPane.getSeries());
+                }
             } else if (ObservableEvent.BasicAction.REMOVE.equals(action)) {
                 if (newVal instanceof MediaSeriesGroup) {
                     MediaSeriesGroup group = (MediaSeriesGroup) newVal;
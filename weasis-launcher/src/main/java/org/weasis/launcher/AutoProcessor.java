@@ -11,12 +11,21 @@
 package org.weasis.launcher;
 
 import java.io.File;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -24,6 +33,14 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Pack200;
 import java.util.jar.Pack200.Unpacker;
@@ -80,6 +97,14 @@ public class AutoProcessor {
 
     public static final String PACK200_COMPRESSION = ".pack.gz"; //$NON-NLS-1$
 
+    /**
+     * The directory (in weasis.path) of the jars unpacked from the Pack200 archives.
+     */
+    public static final String JAR_CACHE_DIR = "cache-jar"; //$NON-NLS-1$
+    public static final int JAR_CACHE_MAX_AGE_DAYS = 60;
+
+    private static final int MAX_INSTALL_THREADS = 8;
+
     /**
      * Used to instigate auto-deploy directory process and auto-install/auto-start configuration property processing
      * during.
@@ -283,7 +308,7 @@ public class AutoProcessor {
         }
         weasisLoader.setMax(bundleList.size());
 
-        final Map<String, Bundle> installedBundleMap = new HashMap<>();
+        final Map<String, Bundle> installedBundleMap = new ConcurrentHashMap<>();
         Bundle[] bundles = context.getBundles();
         for (int i = 0; i < bundles.length; i++) {
             String bundleName = getBundleNameFromLocation(bundles[i].getLocation());
@@ -314,74 +339,121 @@ public class AutoProcessor {
             }
         }
 
-        int bundleIter = 0;
-
-        // Parse and install the bundles associated with the key.
-        for (Iterator<Entry<String, BundleElement>> iter = bundleList.entrySet().iterator(); iter.hasNext();) {
-            Entry<String, BundleElement> element = iter.next();
-            String bundleName = element.getKey();
-            BundleElement bundle = element.getValue();
-            if (bundle == null) {
-                // Should never happen
-                continue;
-            }
-            try {
-                weasisLoader.writeLabel(WeasisLoader.LBL_DOWNLOADING + " " + bundleName); //$NON-NLS-1$
-                // Do not download again the same bundle version but with different location or already in installed
-                // in cache from a previous version of Weasis
-                Bundle b = installedBundleMap.get(bundleName);
-                if (b == null) {
-                    b = installBundle(context, bundle.getLocation());
-                    installedBundleMap.put(bundleName, b);
-                }
-                sl.setBundleStartLevel(b, bundle.getStartLevel());
-                loadTranslationBundle(context, b, installedBundleMap);
-            } catch (Exception ex) {
-                if (bundleName.contains(System.getProperty("native.library.spec"))) { //$NON-NLS-1$
-                    System.err.println("Cannot install native bundle: " + bundleName); //$NON-NLS-1$
-                } else {
-                    printError(ex, "Cannot install bundle: " + bundleName); //$NON-NLS-1$
-                    if (ex.getCause() != null) {
-                        ex.printStackTrace();
-                    }
-                    if (!Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT
-                        .equals(configMap.get(Constants.FRAMEWORK_STORAGE_CLEAN))) {
-                        // Reset all the old cache
-                        throw new IllegalStateException("A bundle cannot be started"); //$NON-NLS-1$
+        StartupTrace trace = new StartupTrace();
+        File jarCache = getJarCacheDir();
+        AtomicInteger bundleIter = new AtomicInteger();
+        // Keeps the progress values posted by the installer threads in increasing order
+        Object progressLock = new Object();
+        boolean failed = false;
+
+        // Install the bundles concurrently, the download and the unpacking are the longest tasks
+        ExecutorService executor = Executors.newFixedThreadPool(getInstallThreadCount(bundleList.size()), r -> {
+            Thread t = new Thread(r, "Bundle installer"); //$NON-NLS-1$
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Callable<Boolean>> tasks = new ArrayList<>(bundleList.size());
+            for (Entry<String, BundleElement> element : bundleList.entrySet()) {
+                tasks.add(() -> {
+                    try {
+                        return installAutoBundle(context, sl, element.getKey(), element.getValue(),
+                            installedBundleMap, jarCache, trace, weasisLoader);
+                    } finally {
+                        synchronized (progressLock) {
+                            weasisLoader.setValue(bundleIter.incrementAndGet());
+                        }
                     }
+                });
+            }
+            for (Future<Boolean> f : executor.invokeAll(tasks)) {
+                if (!f.get()) {
+                    failed = true;
                 }
-            } finally {
-                bundleIter++;
-                weasisLoader.setValue(bundleIter);
             }
-
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed = true;
+        } catch (ExecutionException e) {
+            printError(e, "Cannot install bundles"); //$NON-NLS-1$
+            failed = true;
+        } finally {
+            executor.shutdown();
+        }
+        trace.installDone();
+        pruneJarCache(jarCache);
+
+        // Other bundles are installed even when one fails, the error is thrown at the end
+        if (failed
+            && !Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT.equals(configMap.get(Constants.FRAMEWORK_STORAGE_CLEAN))) {
+            // Reset all the old cache
+            throw new IllegalStateException("A bundle cannot be started"); //$NON-NLS-1$
         }
 
         weasisLoader.writeLabel(Messages.getString("AutoProcessor.start")); //$NON-NLS-1$
-        // Now loop through the auto-start bundles and start them.
-        for (Iterator<Entry<String, BundleElement>> iter = bundleList.entrySet().iterator(); iter.hasNext();) {
-            Entry<String, BundleElement> element = iter.next();
+        // Now loop through the auto-start bundles and start them by start level
+        List<Entry<String, BundleElement>> startList = new ArrayList<>(bundleList.entrySet());
+        startList.sort(Comparator.comparingInt((Entry<String, BundleElement> e) -> e.getValue().getStartLevel())
+            .thenComparing(Entry::getKey));
+        for (Entry<String, BundleElement> element : startList) {
             String bundleName = element.getKey();
             BundleElement bundle = element.getValue();
-            if (bundle == null) {
-                // Should never happen
-                continue;
-            }
             if (bundle.isCanBeStarted()) {
+                long start = System.nanoTime();
                 try {
                     Bundle b = installedBundleMap.get(bundleName);
                     if (b == null) {
                         // Try to reinstall
-                        b = installBundle(context, bundle.getLocation());
+                        b = installBundle(context, bundle.getLocation(), jarCache, trace);
                     }
                     if (b != null) {
                         b.start();
                     }
                 } catch (Exception ex) {
                     printError(ex, "Cannot start bundle: " + bundleName); //$NON-NLS-1$
+                } finally {
+                    trace.record(bundleName, StartupTrace.Phase.START, start);
                 }
             }
         }
+        trace.startDone();
+        trace.publish();
+    }
+
+    /**
+     * @return true if the bundle is installed or if the failure can be ignored (native bundle of another platform)
+     */
+    private static boolean installAutoBundle(BundleContext context, StartLevel sl, String bundleName,
+        BundleElement bundle, Map<String, Bundle> installedBundleMap, File jarCache, StartupTrace trace,
+        WeasisLoader weasisLoader) {
+        try {
+            weasisLoader.writeLabel(WeasisLoader.LBL_DOWNLOADING + " " + bundleName); //$NON-NLS-1$
+            // Do not download again the same bundle version but with different location or already in installed
+            // in cache from a previous version of Weasis
+            Bundle b = installedBundleMap.get(bundleName);
+            if (b == null) {
+                b = installBundle(context, bundle.getLocation(), jarCache, trace);
+                installedBundleMap.put(bundleName, b);
+            }
+            sl.setBundleStartLevel(b, bundle.getStartLevel());
+            loadTranslationBundle(context, b, installedBundleMap);
+            return true;
+        } catch (Exception ex) {
+            if (bundleName.contains(System.getProperty("native.library.spec"))) { //$NON-NLS-1$
+                System.err.println("Cannot install native bundle: " + bundleName); //$NON-NLS-1$
+                return true;
+            }
+            printError(ex, "Cannot install bundle: " + bundleName); //$NON-NLS-1$
+            if (ex.getCause() != null) {
+                ex.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    private static int getInstallThreadCount(int bundles) {
+        int threads = Math.min(MAX_INSTALL_THREADS, Runtime.getRuntime().availableProcessors() * 2);
+        return Math.max(1, Math.min(threads, bundles));
     }
 
     private static String getBundleNameFromLocation(String location) {
@@ -394,7 +466,10 @@ public class AutoProcessor {
         return null;
     }
 
-    private static void loadTranslationBundle(BundleContext context, Bundle b,
+    /**
+     * Synchronized because it is called from the installer threads: the translation packs are installed one at a time.
+     */
+    private static synchronized void loadTranslationBundle(BundleContext context, Bundle b,
         final Map<String, Bundle> installedBundleMap) {
         if (WeasisLauncher.modulesi18n != null) {
             if (b != null) {
@@ -495,6 +570,11 @@ public class AutoProcessor {
     }
 
     private static Bundle installBundle(BundleContext context, String location) throws Exception {
+        return installBundle(context, location, null, null);
+    }
+
+    private static Bundle installBundle(BundleContext context, String location, File jarCache, StartupTrace trace)
+        throws Exception {
         boolean pack = location.endsWith(PACK200_COMPRESSION);
         if (pack) {
             // Remove the pack classifier from the location path
@@ -502,27 +582,123 @@ public class AutoProcessor {
             pack = context.getBundle(location) == null;
         }
 
+        String bundleName = getBundleNameFromLocation(location);
         if (pack) {
-            final URL url = new URL(location + PACK200_COMPRESSION);
-            final PipedInputStream in = new PipedInputStream();
-            try (final PipedOutputStream out = new PipedOutputStream(in)) {
-                Thread t = new Thread(() -> {
-                    try (JarOutputStream jarStream = new JarOutputStream(out);
-                                    GZIPInputStream gzStream =
-                                        new GZIPInputStream(FileUtil.getAdaptedConnection(url).getInputStream())) {
+            File jar = getUnpackedJar(new URL(location + PACK200_COMPRESSION), jarCache, bundleName, trace);
+            long start = System.nanoTime();
+            try (InputStream in = new FileInputStream(jar)) {
+                return context.installBundle(location, in);
+            } finally {
+                record(trace, bundleName, StartupTrace.Phase.INSTALL, start);
+                if (jarCache == null) {
+                    Files.deleteIfExists(jar.toPath());
+                }
+            }
+        }
+        long start = System.nanoTime();
+        try {
+            return context.installBundle(location,
+                FileUtil.getAdaptedConnection(new URI(location).toURL()).getInputStream());
+        } finally {
+            record(trace, bundleName, StartupTrace.Phase.INSTALL, start);
+        }
+    }
+
+    private static void record(StartupTrace trace, String bundleName, StartupTrace.Phase phase, long start) {
+        if (trace != null && bundleName != null) {
+            trace.record(bundleName, phase, start);
+        }
+    }
+
+    private static File getJarCacheDir() {
+        String path = System.getProperty(WeasisLauncher.P_WEASIS_PATH);
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        File dir = new File(path, JAR_CACHE_DIR);
+        return dir.isDirectory() || dir.mkdirs() ? dir : null;
+    }
+
+    /**
+     * Download the Pack200 archive and unpack it in the jar cache. The unpacked jars are named by the checksum of the
+     * archive, so the unpacking is skipped when the same archive has already been unpacked by a previous launch.
+     *
+     * @return the unpacked jar file
+     */
+    static File getUnpackedJar(URL url, File jarCache, String bundleName, StartupTrace trace)
+        throws IOException {
+        File dir = jarCache == null ? FileUtil.getApplicationTempDir() : jarCache;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create the directory " + dir); //$NON-NLS-1$
+        }
+        long start = System.nanoTime();
+        Path packFile = Files.createTempFile(dir.toPath(), "bundle", PACK200_COMPRESSION); //$NON-NLS-1$
+        try {
+            MessageDigest md = getChecksumDigest();
+            try (InputStream in = new DigestInputStream(FileUtil.getAdaptedConnection(url).getInputStream(), md)) {
+                Files.copy(in, packFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            record(trace, bundleName, StartupTrace.Phase.DOWNLOAD, start);
+
+            File jar = new File(dir, toHex(md.digest()) + ".jar"); //$NON-NLS-1$
+            if (jar.isFile()) {
+                // Keep the date of the last use for pruning the cache
+                jar.setLastModified(System.currentTimeMillis());
+            } else {
+                start = System.nanoTime();
+                Path tmp = Files.createTempFile(dir.toPath(), jar.getName(), ".tmp"); //$NON-NLS-1$
+                try {
+                    try (GZIPInputStream gzStream = new GZIPInputStream(Files.newInputStream(packFile));
+                                    JarOutputStream jarStream = new JarOutputStream(Files.newOutputStream(tmp))) {
                         Unpacker unpacker = Pack200.newUnpacker();
                         unpacker.unpack(gzStream, jarStream);
-                    } catch (Exception e1) {
-                        System.err.println("Cannot install pack bundle: " + url); //$NON-NLS-1$
-                        e1.printStackTrace();
                     }
-                });
-                t.start();
-                return context.installBundle(location, in);
+                    try {
+                        Files.move(tmp, jar.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(tmp, jar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+                record(trace, bundleName, StartupTrace.Phase.UNPACK, start);
+            }
+            return jar;
+        } finally {
+            Files.deleteIfExists(packFile);
+        }
+    }
+
+    private static MessageDigest getChecksumDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder buf = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            buf.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Remove the unpacked jars not used for {@value #JAR_CACHE_MAX_AGE_DAYS} days.
+     */
+    static void pruneJarCache(File jarCache) {
+        File[] files = jarCache == null ? null : jarCache.listFiles();
+        if (files != null) {
+            long limit = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(JAR_CACHE_MAX_AGE_DAYS);
+            for (File f : files) {
+                if (f.lastModified() < limit && !f.delete()) {
+                    System.err.println("Cannot delete cached jar: " + f); //$NON-NLS-1$
+                }
             }
         }
-        return context.installBundle(location,
-            FileUtil.getAdaptedConnection(new URI(location).toURL()).getInputStream());
     }
 
     static class BundleElement {
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durations of the startup phases of each bundle (thread-safe).
+ * <p>
+ * When the system property {@value #P_TRACE_FILE} is defined, the trace is written in this file as a JSON object: the
+ * total duration of the install and start phases and for each bundle the time in milliseconds of its phases
+ * (download, unpack, install and start). The download of a jar is included in its install time, only the Pack200
+ * archives are downloaded separately.
+ */
+public final class StartupTrace {
+
+    public static final String P_TRACE_FILE = "weasis.startup.trace"; //$NON-NLS-1$
+
+    public enum Phase {
+        DOWNLOAD, UNPACK, INSTALL, START
+    }
+
+    private final long startTime = System.nanoTime();
+    private final Map<String, long[]> bundles = new ConcurrentHashMap<>();
+    private volatile long installEnd;
+    private volatile long startEnd;
+
+    /**
+     * @param bundleName
+     *            the name of the bundle
+     * @param phase
+     *            the phase
+     * @param start
+     *            the start time of the phase (System.nanoTime())
+     */
+    public void record(String bundleName, Phase phase, long start) {
+        long elapsed = System.nanoTime() - start;
+        long[] times = bundles.computeIfAbsent(bundleName, k -> new long[Phase.values().length]);
+        synchronized (times) {
+            times[phase.ordinal()] += elapsed;
+        }
+    }
+
+    public void installDone() {
+        installEnd = System.nanoTime();
+    }
+
+    public void startDone() {
+        startEnd = System.nanoTime();
+    }
+
+    public long getTotal(Phase phase) {
+        long total = 0;
+        for (long[] times : bundles.values()) {
+            synchronized (times) {
+                total += times[phase.ordinal()];
+            }
+        }
+        return total;
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private long getInstallMillis() {
+        return installEnd == 0 ? 0 : toMillis(installEnd - startTime);
+    }
+
+    private long getStartMillis() {
+        return startEnd == 0 || installEnd == 0 ? 0 : toMillis(startEnd - installEnd);
+    }
+
+    public String toJson() {
+        StringBuilder buf = new StringBuilder("{\"install\":"); //$NON-NLS-1$
+        buf.append(getInstallMillis());
+        buf.append(",\"start\":"); //$NON-NLS-1$
+        buf.append(getStartMillis());
+        buf.append(",\"bundles\":{"); //$NON-NLS-1$
+        boolean first = true;
+        for (Entry<String, long[]> e : new TreeMap<>(bundles).entrySet()) {
+            if (!first) {
+                buf.append(',');
+            }
+            first = false;
+            buf.append('"').append(e.getKey().replace("\\", "\\\\").replace("\"", "\\\"")).append("\":{"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+            long[] times = e.getValue();
+            synchronized (times) {
+                for (Phase p : Phase.values()) {
+                    if (p.ordinal() > 0) {
+                        buf.append(',');
+                    }
+                    buf.append('"').append(p.name().toLowerCase(Locale.ENGLISH)).append("\":"); //$NON-NLS-1$
+                    buf.append(toMillis(times[p.ordinal()]));
+                }
+            }
+            buf.append('}');
+        }
+        buf.append("}}"); //$NON-NLS-1$
+        return buf.toString();
+    }
+
+    /**
+     * Print the summary and write the trace file when {@value #P_TRACE_FILE} is defined.
+     */
+    public void publish() {
+        System.out.println(String.format(
+            "Bundles installed in %d ms and started in %d ms (cumulated download: %d ms, unpack: %d ms, install: %d ms, start: %d ms)", //$NON-NLS-1$
+            getInstallMillis(), getStartMillis(), toMillis(getTotal(Phase.DOWNLOAD)), toMillis(getTotal(Phase.UNPACK)),
+            toMillis(getTotal(Phase.INSTALL)), toMillis(getTotal(Phase.START))));
+        String path = System.getProperty(P_TRACE_FILE);
+        if (path != null && !path.trim().isEmpty()) {
+            File file = new File(path);
+            try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+                writer.write(toJson());
+            } catch (IOException e) {
+                System.err.println("Cannot write the startup trace: " + file); //$NON-NLS-1$
+            }
+        }
+    }
+}
@@ -61,7 +61,11 @@ public class WeasisLoader {
     }
 
     public void writeLabel(String text) {
-        loadingLabel.setText(text);
+        if (isClosed()) {
+            return;
+        }
+        // Can be called from the bundle installer threads
+        EventQueue.invokeLater(() -> loadingLabel.setText(text));
     }
 
     /*
@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.launcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.jar.Pack200;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.felix.framework.Felix;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.startlevel.BundleStartLevel;
+import org.weasis.launcher.StartupTrace.Phase;
+
+public class AutoProcessorTest {
+    private static final String ENTRY = "org/weasis/test/resource.txt"; //$NON-NLS-1$
+    private static final String CONTENT = "Pack200 bundle content"; //$NON-NLS-1$
+
+    private static final String NATIVE_SPEC = "native.library.spec"; //$NON-NLS-1$
+    private static final String[] INSTALLED_BUNDLES =
+        { "test.a3", "test.b2", "test.c3", "test.z1", "test.installed" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Felix felix;
+    private String nativeSpec;
+
+    /** Activator of the synthetic bundles, loaded from the class path of the test (boot delegation). */
+    public static class RecordingActivator implements BundleActivator {
+        static final List<String> STARTED = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void start(BundleContext context) {
+            STARTED.add(context.getBundle().getSymbolicName());
+        }
+
+        @Override
+        public void stop(BundleContext context) {
+            // Nothing to release
+        }
+    }
+
+    /** Records the progress values posted by the installer threads. */
+    static class RecordingLoader extends WeasisLoader {
+        final List<Integer> values = Collections.synchronizedList(new ArrayList<>());
+
+        RecordingLoader() {
+            super(null, null, null);
+        }
+
+        @Override
+        public void setValue(int val) {
+            values.add(val);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        RecordingActivator.STARTED.clear();
+        nativeSpec = System.getProperty(NATIVE_SPEC);
+        System.setProperty(NATIVE_SPEC, "linux-x86-64"); //$NON-NLS-1$
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (nativeSpec == null) {
+            System.clearProperty(NATIVE_SPEC);
+        } else {
+            System.setProperty(NATIVE_SPEC, nativeSpec);
+        }
+        if (felix != null) {
+            felix.stop();
+            felix.waitForStop(10000);
+        }
+    }
+
+    private BundleContext startFramework() throws Exception {
+        Map<String, String> config = new HashMap<>();
+        config.put(Constants.FRAMEWORK_STORAGE, folder.newFolder("felix-cache").getPath()); //$NON-NLS-1$
+        config.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+        // The activator of the synthetic bundles is loaded from the class path of the test
+        config.put(Constants.FRAMEWORK_BUNDLE_PARENT, Constants.FRAMEWORK_BUNDLE_PARENT_APP);
+        config.put(Constants.FRAMEWORK_BOOTDELEGATION, "org.weasis.launcher"); //$NON-NLS-1$
+        config.put(Constants.FRAMEWORK_BEGINNING_STARTLEVEL, "5"); //$NON-NLS-1$
+        felix = new Felix(config);
+        felix.init();
+        felix.start();
+        return felix.getBundleContext();
+    }
+
+    private String buildBundle(File dir, String name) throws IOException {
+        Manifest manifest = new Manifest();
+        Attributes attrs = manifest.getMainAttributes();
+        attrs.put(Attributes.Name.MANIFEST_VERSION, "1.0"); //$NON-NLS-1$
+        attrs.putValue(Constants.BUNDLE_MANIFESTVERSION, "2"); //$NON-NLS-1$
+        attrs.putValue(Constants.BUNDLE_SYMBOLICNAME, name);
+        attrs.putValue(Constants.BUNDLE_VERSION, "1.0.0"); //$NON-NLS-1$
+        attrs.putValue(Constants.BUNDLE_ACTIVATOR, RecordingActivator.class.getName());
+        File jar = new File(dir, name + ".jar"); //$NON-NLS-1$
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest)) {
+            out.putNextEntry(new JarEntry(ENTRY));
+            out.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        return jar.toURI().toString();
+    }
+
+    /**
+     * Bundles at the start levels 1 to 3, one installed only, and one which cannot be installed.
+     */
+    private Map<String, String> buildConfig() throws IOException {
+        File dir = folder.newFolder("bundles"); //$NON-NLS-1$
+        File broken = new File(dir, "test.broken.jar"); //$NON-NLS-1$
+        Files.write(broken.toPath(), "not a jar".getBytes(StandardCharsets.US_ASCII)); //$NON-NLS-1$
+
+        Map<String, String> config = new HashMap<>();
+        config.put(AutoProcessor.AUTO_START_PROP + ".3", //$NON-NLS-1$
+            buildBundle(dir, "test.c3") + " " + buildBundle(dir, "test.a3")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        config.put(AutoProcessor.AUTO_START_PROP + ".2", //$NON-NLS-1$
+            buildBundle(dir, "test.b2") + " " + broken.toURI()); //$NON-NLS-1$ //$NON-NLS-2$
+        config.put(AutoProcessor.AUTO_START_PROP + ".1", buildBundle(dir, "test.z1")); //$NON-NLS-1$ //$NON-NLS-2$
+        config.put(AutoProcessor.AUTO_INSTALL_PROP + ".2", buildBundle(dir, "test.installed")); //$NON-NLS-1$ //$NON-NLS-2$
+        return config;
+    }
+
+    private static Bundle getBundle(BundleContext context, String symbolicName) {
+        for (Bundle b : context.getBundles()) {
+            if (symbolicName.equals(b.getSymbolicName())) {
+                return b;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testStartLevelOrderWithFailedInstall() throws Exception {
+        BundleContext context = startFramework();
+        Map<String, String> config = buildConfig();
+        // First launch: a bundle which cannot be installed does not stop the launch
+        config.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+        RecordingLoader loader = new RecordingLoader();
+
+        AutoProcessor.process(config, context, loader);
+
+        // Started by start level, then by name, whatever the order of the parallel install
+        assertThat(RecordingActivator.STARTED).containsExactly("test.z1", "test.b2", "test.a3", "test.c3"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        assertThat(getBundle(context, "test.z1").adapt(BundleStartLevel.class).getStartLevel()).isEqualTo(1); //$NON-NLS-1$
+        assertThat(getBundle(context, "test.c3").adapt(BundleStartLevel.class).getStartLevel()).isEqualTo(3); //$NON-NLS-1$
+        Bundle installed = getBundle(context, "test.installed"); //$NON-NLS-1$
+        assertThat(installed).isNotNull();
+        assertThat(installed.getState()).isNotEqualTo(Bundle.ACTIVE);
+        assertThat(installed.adapt(BundleStartLevel.class).getStartLevel()).isEqualTo(2);
+
+        // One progress value by bundle, in increasing order even if posted from several threads
+        assertThat(loader.values).containsExactly(1, 2, 3, 4, 5, 6);
+    }
+
+    @Test
+    public void testFailedInstallIsolated() throws Exception {
+        BundleContext context = startFramework();
+        Map<String, String> config = buildConfig();
+
+        // With an existing cache, the failure is reported after installing the other bundles
+        assertThatThrownBy(() -> AutoProcessor.process(config, context, new RecordingLoader()))
+            .isInstanceOf(IllegalStateException.class);
+        for (String name : INSTALLED_BUNDLES) {
+            assertThat(getBundle(context, name)).isNotNull();
+        }
+        // Nothing is started when the cache must be reset
+        assertThat(RecordingActivator.STARTED).isEmpty();
+    }
+
+    private File buildPackedBundle() throws IOException {
+        File jar = folder.newFile("bundle.jar"); //$NON-NLS-1$
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(ENTRY));
+            out.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        File pack = folder.newFile("bundle.jar" + AutoProcessor.PACK200_COMPRESSION); //$NON-NLS-1$
+        try (JarFile in = new JarFile(jar); OutputStream out = new GZIPOutputStream(new FileOutputStream(pack))) {
+            Pack200.newPacker().pack(in, out);
+        }
+        return pack;
+    }
+
+    private static String readEntry(File jar) throws IOException {
+        try (JarFile file = new JarFile(jar); InputStream in = file.getInputStream(file.getJarEntry(ENTRY))) {
+            byte[] buf = new byte[CONTENT.length() * 2];
+            int length = 0;
+            int n;
+            while ((n = in.read(buf, length, buf.length - length)) > 0) {
+                length += n;
+            }
+            return new String(buf, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testToHex() throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest("abc".getBytes(StandardCharsets.US_ASCII)); //$NON-NLS-1$ //$NON-NLS-2$
+        assertThat(AutoProcessor.toHex(digest)).isEqualTo("a9993e364706816aba3e25717850c26c9cd0d89d"); //$NON-NLS-1$
+        assertThat(AutoProcessor.toHex(new byte[] { 0, 15, -1 })).isEqualTo("000fff"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testUnpackedJarCache() throws Exception {
+        File pack = buildPackedBundle();
+        File cache = folder.newFolder("cache-jar"); //$NON-NLS-1$
+        StartupTrace trace = new StartupTrace();
+
+        File jar = AutoProcessor.getUnpackedJar(pack.toURI().toURL(), cache, "bundle", trace); //$NON-NLS-1$
+        // Named by the checksum of the archive
+        byte[] sha1 = MessageDigest.getInstance("SHA-1").digest(Files.readAllBytes(pack.toPath())); //$NON-NLS-1$
+        assertThat(jar.getName()).isEqualTo(AutoProcessor.toHex(sha1) + ".jar"); //$NON-NLS-1$
+        assertThat(jar.getParentFile()).isEqualTo(cache);
+        assertThat(readEntry(jar)).isEqualTo(CONTENT);
+        // The downloaded archive and the temporary jar are removed
+        assertThat(cache.list()).containsExactly(jar.getName());
+        long unpack = trace.getTotal(Phase.UNPACK);
+        assertThat(unpack).isGreaterThan(0L);
+
+        // Second launch: the cached jar is used without unpacking
+        jar.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(10));
+        File cached = AutoProcessor.getUnpackedJar(pack.toURI().toURL(), cache, "bundle", trace); //$NON-NLS-1$
+        assertThat(cached).isEqualTo(jar);
+        assertThat(trace.getTotal(Phase.UNPACK)).isEqualTo(unpack);
+        assertThat(trace.getTotal(Phase.DOWNLOAD)).isGreaterThan(0L);
+        assertThat(cache.list()).containsExactly(jar.getName());
+        // The date of the last use is updated for pruning
+        assertThat(cached.lastModified()).isGreaterThan(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1));
+    }
+
+    @Test
+    public void testPruneJarCache() throws IOException {
+        File cache = folder.newFolder("cache-jar"); //$NON-NLS-1$
+        File recent = new File(cache, "recent.jar"); //$NON-NLS-1$
+        File old = new File(cache, "old.jar"); //$NON-NLS-1$
+        Files.write(recent.toPath(), new byte[] { 1 });
+        Files.write(old.toPath(), new byte[] { 1 });
+        long now = System.currentTimeMillis();
+        recent.setLastModified(now - TimeUnit.DAYS.toMillis(AutoProcessor.JAR_CACHE_MAX_AGE_DAYS - 1));
+        old.setLastModified(now - TimeUnit.DAYS.toMillis(AutoProcessor.JAR_CACHE_MAX_AGE_DAYS + 1));
+
+        AutoProcessor.pruneJarCache(cache);
+        assertThat(cache.list()).containsExactly(recent.getName());
+        // No cache directory
+        AutoProcessor.pruneJarCache(null);
+    }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.launcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.weasis.launcher.StartupTrace.Phase;
+
+public class StartupTraceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static long ago(long millis) {
+        return System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void testRecord() {
+        StartupTrace trace = new StartupTrace();
+        trace.record("a", Phase.INSTALL, ago(30)); //$NON-NLS-1$
+        trace.record("a", Phase.INSTALL, ago(20)); //$NON-NLS-1$
+        trace.record("b", Phase.INSTALL, ago(10)); //$NON-NLS-1$
+        trace.record("b", Phase.DOWNLOAD, ago(40)); //$NON-NLS-1$
+
+        // The durations are cumulated by bundle and by phase
+        long install = TimeUnit.NANOSECONDS.toMillis(trace.getTotal(Phase.INSTALL));
+        assertThat(install).isBetween(60L, 60L + 1000L);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(trace.getTotal(Phase.DOWNLOAD))).isGreaterThanOrEqualTo(40L);
+        assertThat(trace.getTotal(Phase.UNPACK)).isZero();
+        assertThat(trace.getTotal(Phase.START)).isZero();
+    }
+
+    @Test
+    public void testConcurrentRecord() throws InterruptedException {
+        StartupTrace trace = new StartupTrace();
+        int threads = 8;
+        int records = 1000;
+        long start = System.nanoTime();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < records; j++) {
+                    trace.record("bundle" + (j % 4), Phase.START, start); //$NON-NLS-1$
+                }
+                done.countDown();
+            }).start();
+        }
+        assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        // Each record is at least the time elapsed since the start, no record is lost
+        long elapsed = System.nanoTime() - start;
+        assertThat(trace.getTotal(Phase.START)).isGreaterThan(0L).isLessThanOrEqualTo(elapsed * threads * records);
+        assertThat(trace.toJson()).contains("\"bundle0\":{").contains("\"bundle3\":{"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    @Test
+    public void testJson() {
+        StartupTrace trace = new StartupTrace();
+        assertThat(trace.toJson()).isEqualTo("{\"install\":0,\"start\":0,\"bundles\":{}}"); //$NON-NLS-1$
+
+        long start = System.nanoTime();
+        trace.record("org.weasis.core.api", Phase.INSTALL, start); //$NON-NLS-1$
+        trace.record("name \"with\" \\quotes", Phase.UNPACK, start); //$NON-NLS-1$
+        trace.installDone();
+        trace.startDone();
+
+        String json = trace.toJson();
+        // Sorted by bundle name, all the phases in lower case and the names escaped
+        assertThat(json).matches("\\{\"install\":\\d+,\"start\":\\d+,\"bundles\":\\{" //$NON-NLS-1$
+            + "\"name \\\\\"with\\\\\" \\\\\\\\quotes\":\\{\"download\":0,\"unpack\":\\d+,\"install\":0,\"start\":0\\}," //$NON-NLS-1$
+            + "\"org.weasis.core.api\":\\{\"download\":0,\"unpack\":0,\"install\":\\d+,\"start\":0\\}\\}\\}"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testJsonLocale() {
+        Locale locale = Locale.getDefault();
+        try {
+            // "INSTALL".toLowerCase() is "ınstall" in Turkish
+            Locale.setDefault(new Locale("tr", "TR")); //$NON-NLS-1$ //$NON-NLS-2$
+            StartupTrace trace = new StartupTrace();
+            trace.record("a", Phase.INSTALL, System.nanoTime()); //$NON-NLS-1$
+            assertThat(trace.toJson()).contains("\"install\":"); //$NON-NLS-1$
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void testPublish() throws Exception {
+        File file = new File(folder.getRoot(), "trace.json"); //$NON-NLS-1$
+        String old = System.getProperty(StartupTrace.P_TRACE_FILE);
+        try {
+            System.setProperty(StartupTrace.P_TRACE_FILE, file.getPath());
+            StartupTrace trace = new StartupTrace();
+            trace.record("a", Phase.DOWNLOAD, System.nanoTime()); //$NON-NLS-1$
+            trace.installDone();
+            trace.startDone();
+            trace.publish();
+            assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8))
+                .isEqualTo(trace.toJson());
+        } finally {
+            if (old == null) {
+                System.clearProperty(StartupTrace.P_TRACE_FILE);
+            } else {
+                System.setProperty(StartupTrace.P_TRACE_FILE, old);
+            }
+        }
+    }
+}
@@ -49,6 +49,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.opencv.data.ImageCV;
 import org.weasis.opencv.data.PlanarImage;
+import org.weasis.opencv.op.tile.TileExecutor;
+import org.weasis.opencv.op.tile.TiledAlgorithm;
+import org.weasis.opencv.op.tile.TiledStatistics;
 
 
 public class ImageProcessor {
@@ -88,14 +91,35 @@ public class ImageProcessor {
             lutMat.put(0, 0, lut[0]);
         }
 
+        final Mat lutTable = lutMat;
         ImageCV dstImg = new ImageCV();
-        Core.LUT(srcImg, lutMat, dstImg);
+        new TiledAlgorithm() {
+            @Override
+            protected int getOutputType(Mat src) {
+                return CvType.makeType(lutTable.depth(), src.channels());
+            }
+
+            @Override
+            protected void processTile(Mat tileInput, Mat tileOutput) {
+                Core.LUT(tileInput, lutTable, tileOutput);
+            }
+        }.process(srcImg, dstImg);
         return dstImg;
     }
 
-    public static ImageCV rescaleToByte(Mat source, double alpha, double beta) {
+    public static ImageCV rescaleToByte(Mat source, final double alpha, final double beta) {
         ImageCV dstImg = new ImageCV();
-        Objects.requireNonNull(source).convertTo(dstImg, CvType.CV_8U, alpha, beta);
+        new TiledAlgorithm() {
+            @Override
+            protected int getOutputType(Mat src) {
+                return CvType.makeType(CvType.CV_8U, src.channels());
+            }
+
+            @Override
+            protected void processTile(Mat tileInput, Mat tileOutput) {
+                tileInput.convertTo(tileOutput, CvType.CV_8U, alpha, beta);
+            }
+        }.process(Objects.requireNonNull(source), dstImg);
         return dstImg;
     }
 
@@ -191,6 +215,14 @@ public class ImageProcessor {
 
         // System.out.println(mask.dump());
 
+        if (srcImg.total() > (long) TiledAlgorithm.DEFAULT_TILE_SIZE * TiledAlgorithm.DEFAULT_TILE_SIZE) {
+            double[][] val = TiledStatistics.meanStdDev(srcImg, mask, TiledAlgorithm.DEFAULT_TILE_SIZE,
+                TileExecutor.getDefaultParallelism());
+            if (val != null) {
+                return val;
+            }
+        }
+
         MatOfDouble mean = new MatOfDouble();
         MatOfDouble stddev = new MatOfDouble();
         Core.meanStdDev(srcImg, mean, stddev, mask);
@@ -294,8 +326,21 @@ public class ImageProcessor {
     }
 
     public static ImageCV overlay(Mat source, RenderedImage imgOverlay, Color color) {
+        return overlay(source, ImageConversion.toMat(Objects.requireNonNull(imgOverlay)), color);
+    }
+
+    /**
+     * @param source
+     *            the source image
+     * @param mask
+     *            the 8-bit mask, the non-zero pixels are painted with the color
+     * @param color
+     *            the color of the overlay
+     * @return the new image
+     */
+    public static ImageCV overlay(Mat source, Mat mask, Color color) {
         ImageCV srcImg = ImageCV.toImageCV(Objects.requireNonNull(source));
-        Mat mask = ImageConversion.toMat(Objects.requireNonNull(imgOverlay));
+        Objects.requireNonNull(mask);
         if (isGray(color) && srcImg.channels() == 1) {
             Mat grayImg = new Mat(srcImg.size(), CvType.CV_8UC1, new Scalar(color.getRed()));
             ImageCV dstImg = new ImageCV();
@@ -348,38 +393,44 @@ public class ImageProcessor {
     
     public static ImageCV applyShutter(Mat source, Shape shape, Color color) {
         Mat srcImg = Objects.requireNonNull(source);
-        Mat mask = Mat.zeros(srcImg.size(), CvType.CV_8UC1);
-        List<MatOfPoint> pts = transformShapeToContour(shape, true);
+        return applyShutterMask(srcImg, getShapeMask(shape, srcImg.width(), srcImg.height()), color);
+    }
+
+    /**
+     * @param shape
+     *            the shape in image coordinates
+     * @param width
+     *            the width of the mask
+     * @param height
+     *            the height of the mask
+     * @return the 8-bit mask with the value 1 inside the shape
+     */
+    public static ImageCV getShapeMask(Shape shape, int width, int height) {
+        ImageCV mask = new ImageCV(new Size(width, height), CvType.CV_8UC1, new Scalar(0));
+        List<MatOfPoint> pts = transformShapeToContour(Objects.requireNonNull(shape), true);
         Imgproc.fillPoly(mask, pts, new Scalar(1));
+        return mask;
+    }
+
+    /**
+     * @param source
+     *            the source image
+     * @param shapeMask
+     *            the 8-bit mask of the visible area (see {@link #getShapeMask(Shape, int, int)})
+     * @param color
+     *            the color of the shutter
+     * @return the new image where the pixels outside the mask are filled with the color
+     */
+    public static ImageCV applyShutterMask(Mat source, Mat shapeMask, Color color) {
+        Mat srcImg = Objects.requireNonNull(source);
         ImageCV dstImg =
             new ImageCV(srcImg.size(), srcImg.type(), new Scalar(color.getBlue(), color.getGreen(), color.getRed()));
-        srcImg.copyTo(dstImg, mask);
+        srcImg.copyTo(dstImg, Objects.requireNonNull(shapeMask));
         return dstImg;
     }
 
     public static ImageCV applyShutter(Mat source, RenderedImage imgOverlay, Color color) {
-        ImageCV srcImg = ImageCV.toImageCV(Objects.requireNonNull(source));
-        Mat mask = ImageConversion.toMat(Objects.requireNonNull(imgOverlay));
-        if (isGray(color) && srcImg.channels() == 1) {
-            Mat grayImg = new Mat(srcImg.size(), CvType.CV_8UC1, new Scalar(color.getRed()));
-            ImageCV dstImg = new ImageCV();
-            srcImg.copyTo(dstImg);
-            grayImg.copyTo(dstImg, mask);
-            return dstImg;
-        }
-
-        ImageCV dstImg = new ImageCV();
-        if (srcImg.channels() < 3) {
-            Imgproc.cvtColor(srcImg, dstImg, Imgproc.COLOR_GRAY2BGR);
-        }
-        else {
-            srcImg.copyTo(dstImg); 
-        }
-        
-        Mat colorImg =
-            new Mat(dstImg.size(), CvType.CV_8UC3, new Scalar(color.getBlue(), color.getGreen(), color.getRed()));
-        colorImg.copyTo(dstImg, mask);
-        return dstImg;
+        return overlay(source, imgOverlay, color);
     }
 
     public static BufferedImage getAsImage(Area shape, RenderedImage source) {
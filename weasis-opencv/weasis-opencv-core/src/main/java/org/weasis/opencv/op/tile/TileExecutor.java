@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.opencv.op.tile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the tiles of an operation on a shared fork/join pool. Each worker pulls the next tile index until all the tiles
+ * are processed, so the number of workers bounds the number of tiles in memory at the same time.
+ */
+public final class TileExecutor {
+
+    public interface TileTask {
+        /**
+         * @param tile
+         *            the index of the tile
+         * @param worker
+         *            the index of the worker (between 0 and the number of workers - 1), a worker processes its tiles
+         *            sequentially and can reuse its buffers
+         */
+        void run(int tile, int worker);
+    }
+
+    private static volatile ForkJoinPool pool;
+
+    private TileExecutor() {
+    }
+
+    public static int getDefaultParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private static ForkJoinPool getPool() {
+        ForkJoinPool p = pool;
+        if (p == null) {
+            synchronized (TileExecutor.class) {
+                p = pool;
+                if (p == null) {
+                    p = new ForkJoinPool(getDefaultParallelism());
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * @param tileCount
+     *            the number of tiles
+     * @param workers
+     *            the maximum number of tiles processed at the same time
+     * @param task
+     *            the task to apply on each tile
+     */
+    public static void execute(final int tileCount, int workers, final TileTask task) {
+        int nbWorkers = Math.max(1, Math.min(workers, tileCount));
+        if (nbWorkers == 1) {
+            for (int i = 0; i < tileCount; i++) {
+                task.run(i, 0);
+            }
+            return;
+        }
+
+        final AtomicInteger nextTile = new AtomicInteger();
+        // Keep the original exception, the pool rethrows a copy built in the calling thread
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        List<Callable<Void>> callables = new ArrayList<>(nbWorkers);
+        for (int w = 0; w < nbWorkers; w++) {
+            final int worker = w;
+            callables.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    int tile;
+                    while (failure.get() == null && (tile = nextTile.getAndIncrement()) < tileCount) {
+                        try {
+                            task.run(tile, worker);
+                        } catch (RuntimeException e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        List<Future<Void>> futures = getPool().invokeAll(callables);
+        for (Future<Void> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Tiled operation interrupted", e); //$NON-NLS-1$
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Tiled operation failed", e.getCause()); //$NON-NLS-1$
+            }
+        }
+        RuntimeException e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+    }
+}
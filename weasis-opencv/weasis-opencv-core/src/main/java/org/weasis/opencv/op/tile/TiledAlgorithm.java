@@ -10,120 +10,229 @@
  *******************************************************************************/
 package org.weasis.opencv.op.tile;
 
+import java.util.Objects;
+
 import org.opencv.core.Core;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.Point;
 import org.opencv.core.Rect;
 
-public class TiledAlgorithm {
-    private final int mTileSize;
-    private final int mPadding;
-    private final int mBorderType;
+/**
+ * Applies an operation tile by tile in parallel.
+ * <p>
+ * For neighborhood operators, the padding (halo) adds the neighbor pixels around each tile. At the image borders the
+ * halo is extrapolated with the border mode, so that the result is identical to the operation applied on the whole
+ * image with the same border mode. Point operators (padding of 0) read and write directly the sub-regions of the source
+ * and the result without copy.
+ * <p>
+ * The number of tiles processed at the same time is bounded by the parallelism and by the working-memory budget (the
+ * buffers of the padded tiles).
+ */
+public abstract class TiledAlgorithm {
+
+    public static final int DEFAULT_TILE_SIZE = 512;
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024L * 1024L;
+
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int padding;
+    private final int borderType;
+    private int parallelism;
+    private long memoryBudget;
+
+    protected TiledAlgorithm() {
+        this(DEFAULT_TILE_SIZE, 0, Core.BORDER_DEFAULT);
+    }
 
-    TiledAlgorithm(int tileSize, int padding, int borderType) {
-        this.mTileSize = tileSize;
-        this.mPadding = padding;
-        this.mBorderType = borderType;
+    protected TiledAlgorithm(int tileSize, int padding, int borderType) {
+        this(tileSize, tileSize, padding, borderType);
     }
 
-    void process(Mat sourceImage, Mat resultImage) {
-        if (sourceImage.rows() != resultImage.rows() || sourceImage.cols() != resultImage.cols()) {
-            throw new IllegalStateException("");
+    /**
+     * @param tileWidth
+     *            the width of the tiles
+     * @param tileHeight
+     *            the height of the tiles
+     * @param padding
+     *            the number of neighbor pixels required on each side of a tile
+     * @param borderType
+     *            the extrapolation of the pixels outside the image (see Core.BORDER_*)
+     */
+    protected TiledAlgorithm(int tileWidth, int tileHeight, int padding, int borderType) {
+        if (tileWidth < 1 || tileHeight < 1 || padding < 0) {
+            throw new IllegalArgumentException("Invalid tile size or padding"); //$NON-NLS-1$
         }
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.padding = padding;
+        this.borderType = borderType;
+        this.parallelism = TileExecutor.getDefaultParallelism();
+        this.memoryBudget = DEFAULT_MEMORY_BUDGET;
+    }
 
-        final int rows = (sourceImage.rows() / mTileSize) + (sourceImage.rows() % mTileSize != 0 ? 1 : 0);
-        final int cols = (sourceImage.cols() / mTileSize) + (sourceImage.cols() % mTileSize != 0 ? 1 : 0);
-
-        Mat tileInput = new Mat();
-        Mat tileOutput = new Mat();
+    public int getParallelism() {
+        return parallelism;
+    }
 
-        for (int rowTile = 0; rowTile < rows; rowTile++) {
-            for (int colTile = 0; colTile < cols; colTile++) {
-                Rect srcTile = new Rect(colTile * mTileSize - mPadding, rowTile * mTileSize - mPadding,
-                    mTileSize + 2 * mPadding, mTileSize + 2 * mPadding);
-                Rect dstTile = new Rect(colTile * mTileSize, rowTile * mTileSize, mTileSize, mTileSize);
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
 
-                copySourceTile(sourceImage, tileInput, srcTile);
-                processTileImpl(tileInput, tileOutput);
-                copyTileToResultImage(tileOutput, resultImage, dstTile);
-            }
-        }
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
 
+    /**
+     * @param memoryBudget
+     *            the maximum size in bytes of the tile buffers allocated at the same time
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
     }
 
-    private void copyTileToResultImage(Mat tileOutput, Mat resultImage, Rect dstTile) {
-        Rect srcTile = new Rect(mPadding, mPadding, mTileSize, mTileSize);
+    /**
+     * @param source
+     *            the source image
+     * @return the type of the result image, by default the type of the source
+     */
+    protected int getOutputType(Mat source) {
+        return source.type();
+    }
 
-        Point br = dstTile.br();
+    /**
+     * Applies the operation on a tile. Called concurrently from several threads.
+     *
+     * @param tileInput
+     *            the source tile including the padding
+     * @param tileOutput
+     *            the result tile, of the same size as the input
+     */
+    protected abstract void processTile(Mat tileInput, Mat tileOutput);
+
+    /**
+     * Applies the operation on the whole image when there is no tiling. By default, calls processTile() without halo,
+     * so the operation must handle the image borders itself.
+     *
+     * @param source
+     *            the source image
+     * @param result
+     *            the result image, of the same size as the source
+     */
+    protected void processWholeImage(Mat source, Mat result) {
+        processTile(source, result);
+    }
 
-        if (br.x >= resultImage.cols()) {
-            dstTile.width -= br.x - resultImage.cols();
-            srcTile.width -= br.x - resultImage.cols();
+    /**
+     * Applies processTile() on the source extended by the halo extrapolated with the border type, like each tile of the
+     * tiled processing.
+     *
+     * @param source
+     *            the source image
+     * @param result
+     *            the result image, of the same size as the source
+     */
+    protected void processWithHalo(Mat source, Mat result) {
+        if (padding == 0) {
+            processTile(source, result);
+            return;
         }
-
-        if (br.y >= resultImage.rows()) {
-            dstTile.height -= br.y - resultImage.rows();
-            srcTile.height -= br.y - resultImage.rows();
+        Mat tileInput = new Mat();
+        Mat tileOutput = new Mat();
+        try {
+            Core.copyMakeBorder(source, tileInput, padding, padding, padding, padding, borderType);
+            processTile(tileInput, tileOutput);
+            tileOutput.submat(new Rect(padding, padding, source.cols(), source.rows())).copyTo(result);
+        } finally {
+            tileInput.release();
+            tileOutput.release();
         }
-
-        Mat tileView = tileOutput.submat(srcTile);
-        Mat dstView = resultImage.submat(dstTile);
-
-        assert (tileView.rows() == dstView.rows());
-        assert (tileView.cols() == dstView.cols());
-
-        tileView.copyTo(dstView);
-    }
-
-    private void processTileImpl(Mat tileInput, Mat tileOutput) {
-        // TODO Auto-generated method stub
-
     }
 
-    private void copySourceTile(Mat sourceImage, Mat tileInput, Rect tile) {
-        Point tl = tile.tl();
-        Point br = tile.br();
-
-        Point tloffset = new Point();
-        Point broffset = new Point();
-
-        // Take care of border cases
-        if (tile.x < 0) {
-            tloffset.x = -tile.x;
-            tile.x = 0;
+    /**
+     * @param source
+     *            the source image
+     * @param result
+     *            the result image, (re)allocated with the size of the source and the output type
+     */
+    public void process(final Mat source, final Mat result) {
+        Objects.requireNonNull(source);
+        Objects.requireNonNull(result);
+        result.create(source.size(), getOutputType(source));
+
+        final int cols = source.cols();
+        final int rows = source.rows();
+        final int tileCols = (cols + tileWidth - 1) / tileWidth;
+        final int tileRows = (rows + tileHeight - 1) / tileHeight;
+        int tileCount = tileCols * tileRows;
+        int workers = getWorkerCount(source, tileCount);
+        if (tileCount <= 1 || workers <= 1) {
+            processWholeImage(source, result);
+            return;
         }
 
-        if (tile.y < 0) {
-            tloffset.y = -tile.y;
-            tile.y = 0;
-        }
+        final Mat[] inputs = new Mat[workers];
+        final Mat[] outputs = new Mat[workers];
+        TileExecutor.execute(tileCount, workers, new TileExecutor.TileTask() {
+
+            @Override
+            public void run(int tile, int worker) {
+                int x = (tile % tileCols) * tileWidth;
+                int y = (tile / tileCols) * tileHeight;
+                Rect dstTile = new Rect(x, y, Math.min(tileWidth, cols - x), Math.min(tileHeight, rows - y));
+                if (padding == 0) {
+                    processTile(source.submat(dstTile), result.submat(dstTile));
+                } else {
+                    if (inputs[worker] == null) {
+                        inputs[worker] = new Mat();
+                        outputs[worker] = new Mat();
+                    }
+                    Mat tileInput = inputs[worker];
+                    Mat tileOutput = outputs[worker];
+                    copySourceTile(source, tileInput, dstTile);
+                    processTile(tileInput, tileOutput);
+                    tileOutput.submat(new Rect(padding, padding, dstTile.width, dstTile.height))
+                        .copyTo(result.submat(dstTile));
+                }
+            }
+        });
 
-        if (br.x >= sourceImage.cols()) {
-            broffset.x = br.x - sourceImage.cols() + 1;
-            tile.width -= broffset.x;
+        for (int i = 0; i < workers; i++) {
+            if (inputs[i] != null) {
+                inputs[i].release();
+                outputs[i].release();
+            }
         }
+    }
 
-        if (br.y >= sourceImage.rows()) {
-            broffset.y = br.y - sourceImage.rows() + 1;
-            tile.height -= broffset.y;
+    private int getWorkerCount(Mat source, int tileCount) {
+        int workers = Math.min(parallelism, tileCount);
+        if (padding > 0) {
+            long pixels = (long) (tileWidth + 2 * padding) * (tileHeight + 2 * padding);
+            long elemSize = source.elemSize() + CvType.ELEM_SIZE(getOutputType(source));
+            long tileBytes = Math.max(1L, pixels * elemSize);
+            workers = (int) Math.min(workers, Math.max(1L, memoryBudget / tileBytes));
         }
+        return workers;
+    }
 
-        // If any of the tile sides exceed source image boundary we must use copyMakeBorder to make proper paddings
-        // for this side
-        if (tloffset.x > 0 || tloffset.y > 0 || broffset.x > 0 || broffset.y > 0) {
-            Rect paddedTile = new Rect(tile.tl(), tile.br());
-            assert (paddedTile.x >= 0);
-            assert (paddedTile.y >= 0);
-            assert (paddedTile.br().x < sourceImage.cols());
-            assert (paddedTile.br().y < sourceImage.rows());
-
-            Core.copyMakeBorder(sourceImage.submat(paddedTile), tileInput, (int) tloffset.y, (int) broffset.y,
-                (int) tloffset.x, (int) broffset.x, mBorderType);
+    private void copySourceTile(Mat source, Mat tileInput, Rect dstTile) {
+        int x0 = dstTile.x - padding;
+        int y0 = dstTile.y - padding;
+        int x1 = dstTile.x + dstTile.width + padding;
+        int y1 = dstTile.y + dstTile.height + padding;
+
+        // Parts of the padded tile outside the image
+        int left = Math.max(0, -x0);
+        int top = Math.max(0, -y0);
+        int right = Math.max(0, x1 - source.cols());
+        int bottom = Math.max(0, y1 - source.rows());
+
+        Mat view = source.submat(new Rect(x0 + left, y0 + top, x1 - right - x0 - left, y1 - bottom - y0 - top));
+        if (left > 0 || top > 0 || right > 0 || bottom > 0) {
+            // Only the sides at the image borders are extrapolated
+            Core.copyMakeBorder(view, tileInput, top, bottom, left, right, borderType);
         } else {
-            // Entire tile (with paddings lies inside image and it's safe to just take a region:
-            sourceImage.submat(tile).copyTo(tileInput);
+            view.copyTo(tileInput);
         }
-
     }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.opencv.op.tile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.opencv.core.Core;
+import org.opencv.core.Core.MinMaxLocResult;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.Rect;
+
+/**
+ * Min, max, mean and standard deviation of an image computed by tiles in parallel. The partial statistics of the
+ * tiles are merged with the pairwise algorithm of Chan et al., which keeps the precision of the variance.
+ */
+public final class TiledStatistics {
+
+    private TiledStatistics() {
+    }
+
+    private static final class Partial {
+        long count;
+        double[] min;
+        double[] max;
+        double[] mean;
+        double[] m2;
+
+        Partial(int channels) {
+            min = new double[channels];
+            max = new double[channels];
+            mean = new double[channels];
+            m2 = new double[channels];
+            for (int c = 0; c < channels; c++) {
+                min[c] = Double.MAX_VALUE;
+                max[c] = -Double.MAX_VALUE;
+            }
+        }
+
+        void merge(long n, double[] tMin, double[] tMax, double[] tMean, double[] tStd) {
+            if (n == 0) {
+                return;
+            }
+            long total = count + n;
+            for (int c = 0; c < mean.length; c++) {
+                min[c] = Math.min(min[c], tMin[c]);
+                max[c] = Math.max(max[c], tMax[c]);
+                double delta = tMean[c] - mean[c];
+                mean[c] += delta * n / total;
+                m2[c] += tStd[c] * tStd[c] * n + delta * delta * ((double) count * n / total);
+            }
+            count = total;
+        }
+
+        void merge(Partial p) {
+            double[] std = new double[p.mean.length];
+            for (int c = 0; c < std.length; c++) {
+                std[c] = p.count == 0 ? 0.0 : Math.sqrt(p.m2[c] / p.count);
+            }
+            merge(p.count, p.min, p.max, p.mean, std);
+        }
+    }
+
+    /**
+     * @param source
+     *            the image
+     * @param mask
+     *            the mask of the pixels to include (8-bit, same size as the source), null for all the pixels
+     * @param tileSize
+     *            the size of the square tiles
+     * @param parallelism
+     *            the number of tiles processed at the same time
+     * @return the values by channel: [0] min, [1] max, [2] mean and [3] standard deviation, or null when no pixel is
+     *         included
+     */
+    public static double[][] meanStdDev(final Mat source, final Mat mask, final int tileSize, int parallelism) {
+        Objects.requireNonNull(source);
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("Invalid tile size"); //$NON-NLS-1$
+        }
+        final int channels = source.channels();
+        final int cols = source.cols();
+        final int rows = source.rows();
+        final int tileCols = (cols + tileSize - 1) / tileSize;
+        int tileCount = tileCols * ((rows + tileSize - 1) / tileSize);
+        int workers = Math.max(1, Math.min(parallelism, tileCount));
+
+        final List<Partial> partials = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            partials.add(new Partial(channels));
+        }
+
+        TileExecutor.execute(tileCount, workers, new TileExecutor.TileTask() {
+
+            @Override
+            public void run(int tile, int worker) {
+                int x = (tile % tileCols) * tileSize;
+                int y = (tile / tileCols) * tileSize;
+                Rect rect = new Rect(x, y, Math.min(tileSize, cols - x), Math.min(tileSize, rows - y));
+                Mat img = source.submat(rect);
+                Mat m = mask == null ? new Mat() : mask.submat(rect);
+                long n = mask == null ? rect.area() : Core.countNonZero(m);
+                if (n == 0) {
+                    return;
+                }
+                MatOfDouble mean = new MatOfDouble();
+                MatOfDouble stddev = new MatOfDouble();
+                Core.meanStdDev(img, mean, stddev, m);
+
+                double[] min = new double[channels];
+                double[] max = new double[channels];
+                List<Mat> planes = new ArrayList<>(channels);
+                if (channels > 1) {
+                    Core.split(img, planes);
+                } else {
+                    planes.add(img);
+                }
+                for (int c = 0; c < channels; c++) {
+                    MinMaxLocResult minMax =
+                        mask == null ? Core.minMaxLoc(planes.get(c)) : Core.minMaxLoc(planes.get(c), m);
+                    min[c] = minMax.minVal;
+                    max[c] = minMax.maxVal;
+                }
+                partials.get(worker).merge(n, min, max, mean.toArray(), stddev.toArray());
+            }
+        });
+
+        Partial result = partials.get(0);
+        for (int i = 1; i < partials.size(); i++) {
+            result.merge(partials.get(i));
+        }
+        if (result.count == 0) {
+            return null;
+        }
+        double[][] val = new double[4][];
+        val[0] = result.min;
+        val[1] = result.max;
+        val[2] = result.mean;
+        val[3] = new double[channels];
+        for (int c = 0; c < channels; c++) {
+            val[3][c] = Math.sqrt(result.m2[c] / result.count);
+        }
+        return val;
+    }
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2018 Weasis Team and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Nicolas Roduit - initial API and implementation
+ *******************************************************************************/
+package org.weasis.opencv.op.tile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+public class TileExecutorTest {
+
+    @Test
+    public void testAllTilesProcessedOnce() {
+        for (int workers : new int[] { 1, 2, 3, 8, 100 }) {
+            final int tileCount = 37;
+            final int nbWorkers = workers;
+            final AtomicIntegerArray counts = new AtomicIntegerArray(tileCount);
+            TileExecutor.execute(tileCount, workers, new TileExecutor.TileTask() {
+                @Override
+                public void run(int tile, int worker) {
+                    assertTrue(worker >= 0 && worker < Math.min(nbWorkers, tileCount));
+                    counts.incrementAndGet(tile);
+                }
+            });
+            for (int i = 0; i < tileCount; i++) {
+                assertEquals("tile " + i + " with " + workers + " workers", 1, counts.get(i)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            }
+        }
+    }
+
+    @Test
+    public void testNoTile() {
+        TileExecutor.execute(0, 4, new TileExecutor.TileTask() {
+            @Override
+            public void run(int tile, int worker) {
+                fail("No tile to process"); //$NON-NLS-1$
+            }
+        });
+    }
+
+    @Test
+    public void testExceptionPropagated() {
+        final IllegalArgumentException error = new IllegalArgumentException("tile 5"); //$NON-NLS-1$
+        try {
+            TileExecutor.execute(16, 4, new TileExecutor.TileTask() {
+                @Override
+                public void run(int tile, int worker) {
+                    if (tile == 5) {
+                        throw error;
+                    }
+                }
+            });
+            fail("Exception expected"); //$NON-NLS-1$
+        } catch (IllegalArgumentException e) {
+            assertSame(error, e);
+        }
+    }
+}